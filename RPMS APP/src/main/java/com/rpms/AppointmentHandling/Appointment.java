@@ -4,9 +4,14 @@ import com.rpms.Users.Doctor;
 import com.rpms.Users.Patient;
 import com.rpms.Users.Administrator;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import com.rpms.utilities.DateUtil;
+import com.rpms.utilities.EntityRegistry;
+import com.rpms.utilities.SerializationUtil;
 
 /**
  * Represents a medical appointment between a doctor and a patient.
@@ -20,10 +25,16 @@ public class Appointment implements Serializable {
     private String status;
     
     /** The doctor conducting the appointment */
-    private Doctor doctor;
+    private transient Doctor doctor;
     
     /** The patient attending the appointment */
-    private Patient patient;
+    private transient Patient patient;
+
+    /** ID of the doctor; links are stored as IDs and resolved when data is loaded */
+    private String doctorId;
+
+    /** ID of the patient; links are stored as IDs and resolved when data is loaded */
+    private String patientId;
 
     /** Serialization version identifier */
     private static final long serialVersionUID = 1L;
@@ -44,6 +55,22 @@ public class Appointment implements Serializable {
         setStatus("Pending");
     }
 
+    /**
+     * Recreates a stored appointment from its IDs.
+     * Used by {@link AppointmentCodec}; the doctor and patient are set by {@link #resolveReferences}.
+     *
+     * @param datetime Date and time of the appointment
+     * @param status Stored appointment status
+     * @param doctorId ID of the doctor
+     * @param patientId ID of the patient
+     */
+    Appointment(LocalDateTime datetime, String status, String doctorId, String patientId) {
+        this.datetime = datetime;
+        this.status = status;
+        this.doctorId = doctorId;
+        this.patientId = patientId;
+    }
+
     // ===== Getters =====
     
     /**
@@ -70,6 +97,18 @@ public class Appointment implements Serializable {
      */
     public Patient getPatient() { return patient; }
 
+    /**
+     * Gets the ID of the doctor conducting the appointment
+     * @return Doctor ID, also available before references are resolved
+     */
+    public String getDoctorId() { return doctor != null ? doctor.getId() : doctorId; }
+
+    /**
+     * Gets the ID of the patient attending the appointment
+     * @return Patient ID, also available before references are resolved
+     */
+    public String getPatientId() { return patient != null ? patient.getId() : patientId; }
+
     // ===== Setters =====
     
 
@@ -131,4 +170,61 @@ public class Appointment implements Serializable {
                 "\nDoctor : " + doctor.getName() +
                 "\nPatient : " + patient.getName();
     }
+
+    // ===== Serialization =====
+
+    /**
+     * Resolves the doctor and patient IDs read from disk to the registered instances
+     *
+     * @param registry Registry of the loaded users
+     * @return true if both the doctor and the patient are known, false otherwise
+     */
+    public boolean resolveReferences(EntityRegistry registry) {
+        Doctor registeredDoctor = registry.getDoctor(doctorId);
+        Patient registeredPatient = registry.getPatient(patientId);
+        if (registeredDoctor != null) {
+            doctor = registeredDoctor;
+        }
+        if (registeredPatient != null) {
+            patient = registeredPatient;
+        }
+        return doctor != null && patient != null;
+    }
+
+    /**
+     * Stores the doctor and patient as IDs instead of copying their objects into the stream
+     *
+     * @param out ObjectOutputStream to write to
+     * @throws IOException If an I/O error occurs
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        doctorId = doctor != null ? doctor.getId() : doctorId;
+        patientId = patient != null ? patient.getId() : patientId;
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Reads an appointment, including files written before links were stored as IDs
+     *
+     * @param in ObjectInputStream to read from
+     * @throws IOException If an I/O error occurs
+     * @throws ClassNotFoundException If class of a serialized object cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        datetime = (LocalDateTime) fields.get("datetime", null);
+        status = (String) fields.get("status", null);
+        doctorId = (String) fields.get("doctorId", null);
+        patientId = (String) fields.get("patientId", null);
+
+        // Older files contain full copies of the doctor and patient
+        doctor = SerializationUtil.readLegacyField(fields, "doctor");
+        patient = SerializationUtil.readLegacyField(fields, "patient");
+        if (doctor != null && doctorId == null) {
+            doctorId = doctor.getId();
+        }
+        if (patient != null && patientId == null) {
+            patientId = patient.getId();
+        }
+    }
 }
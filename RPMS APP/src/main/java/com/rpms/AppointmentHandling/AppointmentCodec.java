@@ -0,0 +1,81 @@
+package com.rpms.AppointmentHandling;
+
+import com.rpms.utilities.RecordCodec;
+import com.rpms.utilities.SerializationUtil;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.time.LocalDateTime;
+
+/**
+ * Compact binary encoding of {@link Appointment} records.
+ * The doctor and patient are stored as IDs and resolved after loading, like in the
+ * default serialized form.
+ * <p>
+ * Format version 1: timestamp, status code (or the status string if it is not a known status),
+ * doctor ID, patient ID.
+ */
+public class AppointmentCodec implements RecordCodec<Appointment> {
+
+    /** Shared instance; the codec is stateless */
+    public static final AppointmentCodec INSTANCE = new AppointmentCodec();
+
+    /** Current format version */
+    private static final int VERSION = 1;
+
+    /** Known statuses; the index is the code stored on disk */
+    private static final String[] STATUSES = {"Pending", "Approved", "Cancelled"};
+
+    /** Code written when the status is stored as a string */
+    private static final int OTHER_STATUS = 0xFF;
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public void write(DataOutput out, Appointment appointment) throws IOException {
+        SerializationUtil.writeDateTime(out, appointment.getDateTime());
+        int code = statusCode(appointment.getStatus());
+        out.writeByte(code);
+        if (code == OTHER_STATUS) {
+            SerializationUtil.writeString(out, appointment.getStatus());
+        }
+        SerializationUtil.writeString(out, appointment.getDoctorId());
+        SerializationUtil.writeString(out, appointment.getPatientId());
+    }
+
+    @Override
+    public Appointment read(DataInput in, int version) throws IOException {
+        LocalDateTime datetime = SerializationUtil.readDateTime(in);
+        int code = in.readUnsignedByte();
+        String status;
+        if (code < STATUSES.length) {
+            status = STATUSES[code];
+        } else if (code == OTHER_STATUS) {
+            status = SerializationUtil.readString(in);
+        } else {
+            throw new InvalidObjectException("Invalid appointment status code " + code);
+        }
+        String doctorId = SerializationUtil.readString(in);
+        String patientId = SerializationUtil.readString(in);
+        return new Appointment(datetime, status, doctorId, patientId);
+    }
+
+    /**
+     * Gets the code stored for a status
+     * @param status Appointment status
+     * @return Index into the known statuses, or OTHER_STATUS
+     */
+    private static int statusCode(String status) {
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i].equals(status)) {
+                return i;
+            }
+        }
+        return OTHER_STATUS;
+    }
+}
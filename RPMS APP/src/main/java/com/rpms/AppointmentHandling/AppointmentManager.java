@@ -6,12 +6,14 @@ import com.rpms.ChatVideoConsultation.VideoCall;
 import com.rpms.Users.Administrator;
 import com.rpms.Users.Doctor;
 import com.rpms.Users.Patient;
+import com.rpms.utilities.ChangeFeed;
 import com.rpms.utilities.DataManager;
 
 /**
  * Central manager for all appointments and video calls in the system.
  * Provides static methods to create, approve, and cancel appointments and video calls.
  * Maintains the central repository of all scheduled appointments and consultations.
+ * Changes of the repository are reported through {@link ChangeFeed}s, so open views can follow them.
  */
 public class AppointmentManager {
     /** Central repository of all appointments in the system */
@@ -20,6 +22,10 @@ public class AppointmentManager {
     /** Central repository of all video calls in the system */
     private static ArrayList<VideoCall> videoCalls = new ArrayList<>();
 
+    /** Changes of the appointments and video calls */
+    private static final ChangeFeed<Appointment> appointmentChanges = new ChangeFeed<>();
+    private static final ChangeFeed<VideoCall> videoCallChanges = new ChangeFeed<>();
+
     /**
      * Gets all appointments in the system.
      * 
@@ -38,6 +44,30 @@ public class AppointmentManager {
         return videoCalls;
     }
 
+    /**
+     * Gets the changes of the appointments: requests, status changes and removals
+     * @return Change feed of the appointments
+     */
+    public static ChangeFeed<Appointment> getAppointmentChanges() {
+        return appointmentChanges;
+    }
+
+    /**
+     * Gets the changes of the video calls: requests, approvals and cancellations
+     * @return Change feed of the video calls
+     */
+    public static ChangeFeed<VideoCall> getVideoCallChanges() {
+        return videoCallChanges;
+    }
+
+    /**
+     * Reports that the appointments and video calls were replaced, e.g. after loading data from disk
+     */
+    public static void reloaded() {
+        appointmentChanges.reloaded();
+        videoCallChanges.reloaded();
+    }
+
     /**
      * Adds a new appointment request to the system.
      * Sets initial status to "Pending" until approved by a doctor.
@@ -47,7 +77,8 @@ public class AppointmentManager {
     public static void requestAppointment(Appointment appointment) {
         appointments.add(appointment);
         System.out.println("Appointment added to queue. Waiting to be approved.");
-        DataManager.saveAllData(); // Auto-save
+        DataManager.recordAppointmentAdded(appointment); // Auto-save
+        appointmentChanges.added(appointment);
     }
 
     /**
@@ -93,7 +124,8 @@ public class AppointmentManager {
             appointment.setPatient(authoritativePatient);
         }
         
-        DataManager.saveAllData(); // Auto-save
+        DataManager.recordAppointmentStatus(appointment); // Auto-save
+        appointmentChanges.updated(appointment);
         System.out.println("Appointment approved for: " + appointment.getPatient().getName());
     }
 
@@ -106,7 +138,23 @@ public class AppointmentManager {
     public static void cancelAppointment(Appointment appointment) {
         appointment.setStatus("Cancelled");
         System.out.println("Appointment cancelled: " + appointment.getDateTime());
-        DataManager.saveAllData(); // Auto-save
+        DataManager.recordAppointmentStatus(appointment); // Auto-save
+        appointmentChanges.updated(appointment);
+    }
+
+    /**
+     * Removes an appointment from the system, e.g. when the patient withdraws the request
+     *
+     * @param appointment The appointment to remove
+     * @return true if it was removed, false if it was not in the system
+     */
+    public static boolean removeAppointment(Appointment appointment) {
+        if (!appointments.remove(appointment)) {
+            return false;
+        }
+        DataManager.recordAppointmentRemoved(appointment); // Auto-save
+        appointmentChanges.removed(appointment);
+        return true;
     }
 
     /**
@@ -118,7 +166,8 @@ public class AppointmentManager {
     public static void requestVideoCall(VideoCall videocall) {
         videoCalls.add(videocall);
         System.out.println("Video call requested for appointment: " + videocall.getStartTime() + " to " + videocall.getEndTime());
-        DataManager.saveAllData(); // Auto-save
+        DataManager.recordVideoCallAdded(videocall); // Auto-save
+        videoCallChanges.added(videocall);
     }
 
     /**
@@ -131,7 +180,24 @@ public class AppointmentManager {
         videoCalls.remove(videocall);
         videocall.setStatus("Cancelled");
         System.out.println("Video call cancelled for appointment: " + videocall.getStartTime() + " to " + videocall.getEndTime());
-        DataManager.saveAllData(); // Auto-save
+        DataManager.recordVideoCallRemoved(videocall); // Auto-save
+        videoCallChanges.removed(videocall);
+    }
+
+    /**
+     * Removes a video call from the system without changing its status, e.g. when the patient
+     * withdraws the request
+     *
+     * @param videoCall The video call to remove
+     * @return true if it was removed, false if it was not in the system
+     */
+    public static boolean removeVideoCall(VideoCall videoCall) {
+        if (!videoCalls.remove(videoCall)) {
+            return false;
+        }
+        DataManager.recordVideoCallRemoved(videoCall); // Auto-save
+        videoCallChanges.removed(videoCall);
+        return true;
     }
 
     /**
@@ -177,7 +243,8 @@ public class AppointmentManager {
             videocall.setPatient(authoritativePatient);
         }
 
-        DataManager.saveAllData(); // Auto-save
+        DataManager.recordVideoCallUpdated(videocall); // Auto-save
+        videoCallChanges.updated(videocall);
         System.out.println("Appointment approved for: " + videocall.getPatient().getName());
     } // Auto-save
 
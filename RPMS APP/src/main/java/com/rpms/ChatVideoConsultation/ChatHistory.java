@@ -1,5 +1,10 @@
 package com.rpms.ChatVideoConsultation;
 
+import com.rpms.utilities.SerializationUtil;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -16,8 +21,8 @@ public class ChatHistory implements Serializable {
     /** ID of the second user in this chat conversation */
     private String user2Id;
     
-    /** Collection of all messages exchanged between these users */
-    private ArrayList<ChatMessage> messages;
+    /** Collection of all messages exchanged between these users; written with {@link ChatMessageCodec} */
+    private transient ArrayList<ChatMessage> messages;
     
     /** Serialization version identifier */
     private static final long serialVersionUID = 1L;
@@ -82,4 +87,36 @@ public class ChatHistory implements Serializable {
         return (user1Id.equals(userId1) && user2Id.equals(userId2)) ||
                (user1Id.equals(userId2) && user2Id.equals(userId1));
     }
-}
\ No newline at end of file
+
+    // ===== Serialization =====
+
+    /**
+     * Writes the messages in the compact record format instead of as serialized objects
+     *
+     * @param out ObjectOutputStream to write to
+     * @throws IOException If an I/O error occurs
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        SerializationUtil.writeRecords(out, messages, ChatMessageCodec.INSTANCE);
+    }
+
+    /**
+     * Reads a chat history, including files written before messages used the compact record format
+     *
+     * @param in ObjectInputStream to read from
+     * @throws IOException If an I/O error occurs
+     * @throws ClassNotFoundException If class of a serialized object cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        user1Id = (String) fields.get("user1Id", null);
+        user2Id = (String) fields.get("user2Id", null);
+        ArrayList<ChatMessage> legacyMessages = SerializationUtil.readLegacyField(fields, "messages");
+        if (legacyMessages != null) {
+            messages = legacyMessages;
+        } else {
+            messages = SerializationUtil.readRecords(in, ChatMessageCodec.INSTANCE);
+        }
+    }
+}
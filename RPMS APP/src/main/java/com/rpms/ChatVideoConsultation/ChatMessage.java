@@ -45,6 +45,24 @@ public class ChatMessage implements Serializable {
         this.timestamp = LocalDateTime.now();
     }
 
+    /**
+     * Creates a chat message with an explicit timestamp.
+     * Used when restoring messages from the journal.
+     *
+     * @param senderId ID of the user sending the message
+     * @param senderName Name of the user sending the message
+     * @param receiverId ID of the user receiving the message
+     * @param content The text content of the message
+     * @param timestamp When the message was sent
+     */
+    public ChatMessage(String senderId, String senderName, String receiverId, String content, LocalDateTime timestamp) {
+        this.senderId = senderId;
+        this.senderName = senderName;
+        this.receiverId = receiverId;
+        this.content = content;
+        this.timestamp = timestamp;
+    }
+
     /**
      * Gets the ID of the sender
      * @return Sender's user ID
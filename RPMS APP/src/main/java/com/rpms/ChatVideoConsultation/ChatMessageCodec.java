@@ -0,0 +1,48 @@
+package com.rpms.ChatVideoConsultation;
+
+import com.rpms.utilities.RecordCodec;
+import com.rpms.utilities.SerializationUtil;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * Compact binary encoding of {@link ChatMessage} records for chat history files.
+ * Messages sent over the network still use default Java serialization.
+ * <p>
+ * Format version 1: timestamp, sender ID, sender name, receiver ID, content.
+ */
+public class ChatMessageCodec implements RecordCodec<ChatMessage> {
+
+    /** Shared instance; the codec is stateless */
+    public static final ChatMessageCodec INSTANCE = new ChatMessageCodec();
+
+    /** Current format version */
+    private static final int VERSION = 1;
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public void write(DataOutput out, ChatMessage message) throws IOException {
+        SerializationUtil.writeDateTime(out, message.getTimestamp());
+        SerializationUtil.writeString(out, message.getSenderId());
+        SerializationUtil.writeString(out, message.getSenderName());
+        SerializationUtil.writeString(out, message.getReceiverId());
+        SerializationUtil.writeString(out, message.getContent());
+    }
+
+    @Override
+    public ChatMessage read(DataInput in, int version) throws IOException {
+        LocalDateTime timestamp = SerializationUtil.readDateTime(in);
+        String senderId = SerializationUtil.readString(in);
+        String senderName = SerializationUtil.readString(in);
+        String receiverId = SerializationUtil.readString(in);
+        String content = SerializationUtil.readString(in);
+        return new ChatMessage(senderId, senderName, receiverId, content, timestamp);
+    }
+}
@@ -2,7 +2,12 @@ package com.rpms.ChatVideoConsultation;
 import com.rpms.Users.Doctor;
 import com.rpms.Users.Patient;
 import com.rpms.utilities.DateUtil;
+import com.rpms.utilities.EntityRegistry;
+import com.rpms.utilities.SerializationUtil;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
@@ -12,10 +17,16 @@ import java.time.LocalDateTime;
  */
 public class VideoCall implements Serializable {
     /** The doctor participating in the video call */
-    private Doctor doctor;
+    private transient Doctor doctor;
     
     /** The patient participating in the video call */
-    private Patient patient;
+    private transient Patient patient;
+
+    /** ID of the doctor; links are stored as IDs and resolved when data is loaded */
+    private String doctorId;
+
+    /** ID of the patient; links are stored as IDs and resolved when data is loaded */
+    private String patientId;
     
     /** URL link to the video conference (e.g., Google Meet) */
     private String meetingLink;
@@ -162,4 +173,61 @@ public class VideoCall implements Serializable {
     public void setLink(String link) {
         this.meetingLink = link;
     }
+
+    /**
+     * Resolves the doctor and patient IDs read from disk to the registered instances
+     *
+     * @param registry Registry of the loaded users
+     * @return true if both the doctor and the patient are known, false otherwise
+     */
+    public boolean resolveReferences(EntityRegistry registry) {
+        Doctor registeredDoctor = registry.getDoctor(doctorId);
+        Patient registeredPatient = registry.getPatient(patientId);
+        if (registeredDoctor != null) {
+            doctor = registeredDoctor;
+        }
+        if (registeredPatient != null) {
+            patient = registeredPatient;
+        }
+        return doctor != null && patient != null;
+    }
+
+    /**
+     * Stores the doctor and patient as IDs instead of copying their objects into the stream
+     *
+     * @param out ObjectOutputStream to write to
+     * @throws IOException If an I/O error occurs
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        doctorId = doctor != null ? doctor.getId() : doctorId;
+        patientId = patient != null ? patient.getId() : patientId;
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Reads a video call, including files written before links were stored as IDs
+     *
+     * @param in ObjectInputStream to read from
+     * @throws IOException If an I/O error occurs
+     * @throws ClassNotFoundException If class of a serialized object cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        meetingLink = (String) fields.get("meetingLink", null);
+        startTime = (LocalDateTime) fields.get("startTime", null);
+        endTime = (LocalDateTime) fields.get("endTime", null);
+        status = (String) fields.get("status", null);
+        doctorId = (String) fields.get("doctorId", null);
+        patientId = (String) fields.get("patientId", null);
+
+        // Older files contain full copies of the doctor and patient
+        doctor = SerializationUtil.readLegacyField(fields, "doctor");
+        patient = SerializationUtil.readLegacyField(fields, "patient");
+        if (doctor != null && doctorId == null) {
+            doctorId = doctor.getId();
+        }
+        if (patient != null && patientId == null) {
+            patientId = patient.getId();
+        }
+    }
 }
@@ -1,11 +1,16 @@
 package com.rpms.DoctorPatientInteraction;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 
 import com.rpms.Users.Doctor;
 import com.rpms.utilities.DateUtil;
+import com.rpms.utilities.EntityRegistry;
+import com.rpms.utilities.SerializationUtil;
 
 /**
  * Represents medical feedback provided by a doctor to a patient.
@@ -23,7 +28,10 @@ public class Feedback implements Serializable {
     private LocalDateTime datetime;// date of the feedback
     
     /** Doctor who provided the feedback */
-    private Doctor doctor;
+    private transient Doctor doctor;
+
+    /** ID of the doctor; stored instead of the Doctor object and resolved when data is loaded */
+    private String doctorId;
 
     /** Serialization version identifier */
     private static final long serialVersionUID = 1L;
@@ -96,4 +104,48 @@ public class Feedback implements Serializable {
         return "Comments: " + comments +
                 "\nDate & Time: " + DateUtil.format(datetime);
     }
+
+    /**
+     * Resolves the doctor ID read from disk to the registered doctor
+     * @param registry Registry of the loaded users
+     */
+    public void resolveReferences(EntityRegistry registry) {
+        Doctor registeredDoctor = registry.getDoctor(doctorId);
+        if (registeredDoctor != null) {
+            doctor = registeredDoctor;
+        }
+    }
+
+    /**
+     * Stores the doctor as an ID instead of copying the Doctor object into the stream
+     *
+     * @param out ObjectOutputStream to write to
+     * @throws IOException If an I/O error occurs
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        doctorId = doctor != null ? doctor.getId() : doctorId;
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Reads feedback, including files written before the doctor was stored as an ID
+     *
+     * @param in ObjectInputStream to read from
+     * @throws IOException If an I/O error occurs
+     * @throws ClassNotFoundException If class of a serialized object cannot be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        comments = (String) fields.get("comments", null);
+        prescriptions = (ArrayList<Prescription>) fields.get("prescriptions", null);
+        datetime = (LocalDateTime) fields.get("datetime", null);
+        doctorId = (String) fields.get("doctorId", null);
+
+        // Older files contain a full copy of the doctor
+        doctor = SerializationUtil.readLegacyField(fields, "doctor");
+        if (doctor != null && doctorId == null) {
+            doctorId = doctor.getId();
+        }
+    }
 }
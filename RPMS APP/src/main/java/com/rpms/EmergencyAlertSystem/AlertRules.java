@@ -0,0 +1,289 @@
+package com.rpms.EmergencyAlertSystem;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.rpms.HealthData.VitalStatistics.Channel;
+
+/**
+ * Configuration of the thresholds used to detect abnormal vital signs, per patient or per cohort.
+ * <p>
+ * Rules are read from a properties file (system property rpms.alerts.rulesFile, default
+ * data/alert_rules.properties) with three scopes, each refining the one before:
+ * <pre>
+ * # Normal ranges: &lt;scope&gt;.&lt;measurement&gt; = low..high (either end may be left out)
+ * default.oxygenLevel = 92..
+ * cohort.copd.oxygenLevel = 88..
+ * patient.pat1.cohort = copd
+ * patient.pat1.heartRate = 50..110
+ * # Trends: &lt;scope&gt;.trend.&lt;measurement&gt; = change per hour that counts as deterioration (0 for none)
+ * default.trend.oxygenLevel = -1
+ * # Compound rules: &lt;scope&gt;.rule.&lt;name&gt; = conditions joined with &amp; (empty to turn an inherited rule off)
+ * cohort.cardiac.rule.shock = heartRate &gt; 110 &amp; systolic &lt; 90
+ * </pre>
+ * Measurements are heartRate, oxygenLevel, systolic, diastolic and temperature. Without a file the
+ * ranges are heart rate 60-100 bpm, oxygen at least 90%, blood pressure 90-140/60-90 and temperature
+ * 36.1-37.2°C, and heart rate rising 10 bpm, oxygen falling 1%, systolic pressure falling 10 mmHg or
+ * temperature rising 0.5°C an hour is a deterioration (see {@link VitalTrendDetector}). Rules are compiled once per patient and cohort into {@link CompiledAlertRules}.
+ */
+public class AlertRules {
+
+    /** File holding the rules */
+    private static final String RULES_FILE = System.getProperty("rpms.alerts.rulesFile", "data/alert_rules.properties");
+
+    /** Normal ranges used when none are configured, by channel ordinal */
+    private static final double[] DEFAULT_LOWS = { 60, 90, 90, 60, 36.1 };
+    private static final double[] DEFAULT_HIGHS = { 100, Double.POSITIVE_INFINITY, 140, 90, 37.2 };
+
+    /** Deteriorating changes per hour used when none are configured, by channel ordinal */
+    private static final double[] DEFAULT_TREND_RATES = { 10, -1, -10, 0, 0.5 };
+
+    /** Format of a normal range */
+    private static final Pattern RANGE = Pattern.compile("\\s*([-+0-9.eE]*)\\s*\\.\\.\\s*([-+0-9.eE]*)\\s*");
+
+    /** Format of a condition of a compound rule */
+    private static final Pattern CONDITION = Pattern.compile("\\s*(\\w+)\\s*(<=|>=|<|>)\\s*([-+0-9.eE]+)\\s*");
+
+    /** The configured rules, or null until they are read */
+    private static Properties settings;
+
+    /** Number of times the rules were replaced, so users can tell when rules they copied are outdated */
+    private static volatile int version;
+
+    /** Compiled rules by scope ("default", "cohort.&lt;name&gt;" or "patient.&lt;id&gt;") */
+    private static final Map<String, CompiledAlertRules> compiled = new HashMap<>();
+
+    // ===== Access =====
+
+    /**
+     * Gets the rules that apply to patients without a cohort or own rules
+     * @return Compiled rules
+     */
+    public static synchronized CompiledAlertRules getDefaults() {
+        return compiled.computeIfAbsent("default", scope -> compile(null, null));
+    }
+
+    /**
+     * Gets the rules of a cohort
+     *
+     * @param cohort Name of the cohort
+     * @return Compiled rules
+     */
+    public static synchronized CompiledAlertRules forCohort(String cohort) {
+        return compiled.computeIfAbsent("cohort." + cohort, scope -> compile(cohort, null));
+    }
+
+    /**
+     * Gets the rules that apply to a patient: the defaults, refined by the patient's cohort and own rules
+     *
+     * @param patientId The patient's ID
+     * @return Compiled rules
+     */
+    public static synchronized CompiledAlertRules forPatient(String patientId) {
+        if (patientId == null) {
+            return getDefaults();
+        }
+        return compiled.computeIfAbsent("patient." + patientId,
+                scope -> compile(getCohort(patientId), patientId));
+    }
+
+    /**
+     * Gets the cohort a patient is assigned to
+     *
+     * @param patientId The patient's ID
+     * @return Name of the cohort, or null
+     */
+    public static synchronized String getCohort(String patientId) {
+        String cohort = settings().getProperty("patient." + patientId + ".cohort");
+        return cohort == null || cohort.isBlank() ? null : cohort.trim();
+    }
+
+    /**
+     * Gets the number of times the rules were replaced
+     * @return Version of the rules
+     */
+    static int getVersion() {
+        return version;
+    }
+
+    // ===== Configuration =====
+
+    /**
+     * Replaces the rules, e.g. with rules edited by an administrator.
+     * Abnormal readings found with the old rules are looked up again.
+     *
+     * @param rules Rules in the format of the rules file
+     */
+    public static void configure(Properties rules) {
+        synchronized (AlertRules.class) {
+            settings = new Properties();
+            settings.putAll(rules);
+            compiled.clear();
+            version++;
+        }
+        CriticalVitalsIndex.clear();
+    }
+
+    /**
+     * Reads the rules file again
+     */
+    public static void reload() {
+        synchronized (AlertRules.class) {
+            settings = null;
+            compiled.clear();
+            version++;
+        }
+        CriticalVitalsIndex.clear();
+    }
+
+    // ===== Internals =====
+
+    /**
+     * Gets the configured rules, reading the rules file if needed
+     */
+    private static Properties settings() {
+        if (settings == null) {
+            settings = new Properties();
+            File file = new File(RULES_FILE);
+            if (file.exists()) {
+                try (Reader reader = new FileReader(file)) {
+                    settings.load(reader);
+                    System.out.println("Alert rules loaded from: " + RULES_FILE);
+                } catch (IOException e) {
+                    System.err.println("Error reading alert rules: " + e.getMessage());
+                }
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * Compiles the default rules refined by a cohort's and a patient's rules
+     */
+    private static CompiledAlertRules compile(String cohort, String patientId) {
+        double[] lows = DEFAULT_LOWS.clone();
+        double[] highs = DEFAULT_HIGHS.clone();
+        double[] trendRates = DEFAULT_TREND_RATES.clone();
+        Map<String, CompiledAlertRules.CompoundRule> rules = new LinkedHashMap<>();
+        apply("default.", lows, highs, trendRates, rules);
+        if (cohort != null) {
+            apply("cohort." + cohort + ".", lows, highs, trendRates, rules);
+        }
+        if (patientId != null) {
+            apply("patient." + patientId + ".", lows, highs, trendRates, rules);
+        }
+        List<CompiledAlertRules.CompoundRule> active = new ArrayList<>();
+        for (CompiledAlertRules.CompoundRule rule : rules.values()) {
+            if (rule != null) {
+                active.add(rule);
+            }
+        }
+        return new CompiledAlertRules(lows, highs, trendRates, active);
+    }
+
+    /**
+     * Applies the ranges and rules of one scope
+     */
+    private static void apply(String prefix, double[] lows, double[] highs, double[] trendRates,
+                              Map<String, CompiledAlertRules.CompoundRule> rules) {
+        Properties config = settings();
+        for (Channel channel : Channel.values()) {
+            String value = config.getProperty(prefix + key(channel));
+            if (value == null) {
+                continue;
+            }
+            Matcher range = RANGE.matcher(value);
+            try {
+                if (!range.matches()) {
+                    throw new NumberFormatException(value);
+                }
+                lows[channel.ordinal()] = range.group(1).isEmpty()
+                        ? Double.NEGATIVE_INFINITY : Double.parseDouble(range.group(1));
+                highs[channel.ordinal()] = range.group(2).isEmpty()
+                        ? Double.POSITIVE_INFINITY : Double.parseDouble(range.group(2));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid alert range " + prefix + key(channel) + " = " + value);
+            }
+        }
+        for (Channel channel : Channel.values()) {
+            String value = config.getProperty(prefix + "trend." + key(channel));
+            if (value == null) {
+                continue;
+            }
+            try {
+                trendRates[channel.ordinal()] = value.isBlank() ? 0 : Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid alert trend " + prefix + "trend." + key(channel) + " = " + value);
+            }
+        }
+        String rulePrefix = prefix + "rule.";
+        for (String name : config.stringPropertyNames()) {
+            if (name.startsWith(rulePrefix)) {
+                String ruleName = name.substring(rulePrefix.length());
+                String text = config.getProperty(name).trim();
+                if (text.isEmpty()) {
+                    rules.put(ruleName, null);
+                } else {
+                    CompiledAlertRules.CompoundRule rule = parseRule(ruleName, text, name);
+                    if (rule != null) {
+                        rules.put(ruleName, rule);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses the conditions of a compound rule
+     *
+     * @return The rule, or null if it is invalid
+     */
+    private static CompiledAlertRules.CompoundRule parseRule(String name, String text, String property) {
+        CompiledAlertRules.CompoundRule rule = new CompiledAlertRules.CompoundRule(name, text);
+        for (String condition : text.split("&")) {
+            Matcher matcher = CONDITION.matcher(condition);
+            Channel channel = matcher.matches() ? channel(matcher.group(1)) : null;
+            if (channel == null) {
+                System.err.println("Invalid alert rule " + property + " = " + text);
+                return null;
+            }
+            try {
+                rule.addCondition(channel, matcher.group(2), Double.parseDouble(matcher.group(3)));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid alert rule " + property + " = " + text);
+                return null;
+            }
+        }
+        return rule;
+    }
+
+    /**
+     * Gets the name of a measurement in the rules file, e.g. heartRate
+     */
+    private static String key(Channel channel) {
+        StringBuilder key = new StringBuilder();
+        for (String word : channel.name().toLowerCase().split("_")) {
+            key.append(key.length() == 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+        }
+        return key.toString();
+    }
+
+    private static Channel channel(String key) {
+        for (Channel channel : Channel.values()) {
+            if (key(channel).equals(key)) {
+                return channel;
+            }
+        }
+        return null;
+    }
+}
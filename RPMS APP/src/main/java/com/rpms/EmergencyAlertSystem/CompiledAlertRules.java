@@ -0,0 +1,260 @@
+package com.rpms.EmergencyAlertSystem;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.rpms.HealthData.VitalSeries;
+import com.rpms.HealthData.VitalSign;
+import com.rpms.HealthData.VitalStatistics.Channel;
+
+/**
+ * Alert rules of a patient or cohort compiled into flat arrays for fast evaluation.
+ * <p>
+ * A reading is abnormal if a measurement is outside its normal range, or if it matches a compound
+ * rule, whose conditions must all hold (e.g. heart rate above 110 and systolic pressure below 90).
+ * Compiling turns the conditions of a compound rule into one open interval per measurement (conditions
+ * on the same measurement are intersected, measurements without one get an unbounded interval), so every
+ * range and rule is checked with the same fixed set of comparisons, combined with non-short-circuit
+ * operators instead of branches. Blood pressure is evaluated as stored, so a reading without numeric
+ * blood pressure (stored as 0) is below any lower bound. Instances are immutable and are created by
+ * {@link AlertRules}.
+ */
+public final class CompiledAlertRules {
+
+    /** The measurements, in the order of their columns */
+    private static final Channel[] CHANNELS = Channel.values();
+
+    /** Column indexes of the measurements */
+    private static final int HEART_RATE = Channel.HEART_RATE.ordinal();
+    private static final int OXYGEN_LEVEL = Channel.OXYGEN_LEVEL.ordinal();
+    private static final int SYSTOLIC = Channel.SYSTOLIC.ordinal();
+    private static final int DIASTOLIC = Channel.DIASTOLIC.ordinal();
+    private static final int TEMPERATURE = Channel.TEMPERATURE.ordinal();
+
+    /** Lowest normal value by channel, or negative infinity */
+    private final double[] lows;
+
+    /** Highest normal value by channel, or positive infinity */
+    private final double[] highs;
+
+    /** Change per hour of each channel that counts as deterioration, 0 if trends are not checked */
+    private final double[] trendRates;
+
+    /** Open intervals of the compound rules, one per channel and rule: rule * channels + channel */
+    private final double[] ruleLows;
+    private final double[] ruleHighs;
+
+    /** Names of the compound rules */
+    private final String[] ruleNames;
+
+    /** Text of the compound rules, for display */
+    private final String[] ruleTexts;
+
+    /**
+     * A compound rule while rules are being compiled
+     */
+    static final class CompoundRule {
+        final String name;
+        final String text;
+        final double[] lows = new double[CHANNELS.length];
+        final double[] highs = new double[CHANNELS.length];
+
+        CompoundRule(String name, String text) {
+            this.name = name;
+            this.text = text;
+            Arrays.fill(lows, Double.NEGATIVE_INFINITY);
+            Arrays.fill(highs, Double.POSITIVE_INFINITY);
+        }
+
+        /**
+         * Adds a condition comparing a measurement with a threshold
+         *
+         * @param channel The measurement
+         * @param operator One of &lt;, &lt;=, &gt;, &gt;=
+         * @param threshold The threshold
+         */
+        void addCondition(Channel channel, String operator, double threshold) {
+            int c = channel.ordinal();
+            switch (operator) {
+                case "<":
+                    highs[c] = Math.min(highs[c], threshold);
+                    break;
+                case "<=":
+                    highs[c] = Math.min(highs[c], Math.nextUp(threshold));
+                    break;
+                case ">":
+                    lows[c] = Math.max(lows[c], threshold);
+                    break;
+                case ">=":
+                    lows[c] = Math.max(lows[c], Math.nextDown(threshold));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operator " + operator);
+            }
+        }
+    }
+
+    /**
+     * Compiles normal ranges and compound rules
+     *
+     * @param lows Lowest normal value by channel ordinal
+     * @param highs Highest normal value by channel ordinal
+     * @param trendRates Deteriorating change per hour by channel ordinal, 0 for none
+     * @param rules Compound rules
+     */
+    CompiledAlertRules(double[] lows, double[] highs, double[] trendRates, List<CompoundRule> rules) {
+        this.lows = lows.clone();
+        this.highs = highs.clone();
+        this.trendRates = trendRates.clone();
+        ruleLows = new double[rules.size() * CHANNELS.length];
+        ruleHighs = new double[rules.size() * CHANNELS.length];
+        ruleNames = new String[rules.size()];
+        ruleTexts = new String[rules.size()];
+        for (int r = 0; r < rules.size(); r++) {
+            CompoundRule rule = rules.get(r);
+            System.arraycopy(rule.lows, 0, ruleLows, r * CHANNELS.length, CHANNELS.length);
+            System.arraycopy(rule.highs, 0, ruleHighs, r * CHANNELS.length, CHANNELS.length);
+            ruleNames[r] = rule.name;
+            ruleTexts[r] = rule.text;
+        }
+    }
+
+    // ===== Ranges =====
+
+    /**
+     * Gets the lowest normal value of a measurement
+     *
+     * @param channel The measurement
+     * @return Lower bound of the normal range, or negative infinity
+     */
+    public double getLow(Channel channel) {
+        return lows[channel.ordinal()];
+    }
+
+    /**
+     * Gets the highest normal value of a measurement
+     *
+     * @param channel The measurement
+     * @return Upper bound of the normal range, or positive infinity
+     */
+    public double getHigh(Channel channel) {
+        return highs[channel.ordinal()];
+    }
+
+    /**
+     * Checks whether a value is within the normal range of its measurement
+     *
+     * @param channel The measurement
+     * @param value The value
+     * @return true if the value is normal
+     */
+    public boolean isInRange(Channel channel, double value) {
+        int c = channel.ordinal();
+        return !(value < lows[c]) & !(value > highs[c]);
+    }
+
+    /**
+     * Gets the change per hour of a measurement that counts as deterioration, e.g. -1 for oxygen
+     * falling by one percentage point an hour (see {@link VitalTrendDetector})
+     *
+     * @param channel The measurement
+     * @return Change per hour, negative for falling values, or 0 if the trend is not checked
+     */
+    public double getTrendRate(Channel channel) {
+        return trendRates[channel.ordinal()];
+    }
+
+    /**
+     * Gets the names of the compound rules
+     * @return Rule names, in evaluation order
+     */
+    public List<String> getRuleNames() {
+        return Collections.unmodifiableList(Arrays.asList(ruleNames));
+    }
+
+    // ===== Evaluation =====
+
+    /**
+     * Checks whether a reading is abnormal
+     *
+     * @param vital The reading
+     * @return true if a measurement is out of range or a compound rule matches
+     */
+    public boolean isAbnormal(VitalSign vital) {
+        return isAbnormal(vital.getHeartRate(), vital.getOxygenLevel(), vital.getSystolic(),
+                vital.getDiastolic(), vital.getTemperature());
+    }
+
+    /**
+     * Checks whether measurements are abnormal
+     *
+     * @param heartRate Heart rate in beats per minute
+     * @param oxygenLevel Blood oxygen saturation level
+     * @param systolic Systolic blood pressure
+     * @param diastolic Diastolic blood pressure
+     * @param temperature Body temperature in Celsius
+     * @return true if a measurement is out of range or a compound rule matches
+     */
+    public boolean isAbnormal(double heartRate, double oxygenLevel, int systolic, int diastolic,
+                              double temperature) {
+        boolean abnormal = (heartRate < lows[HEART_RATE]) | (heartRate > highs[HEART_RATE])
+                | (oxygenLevel < lows[OXYGEN_LEVEL]) | (oxygenLevel > highs[OXYGEN_LEVEL])
+                | (systolic < lows[SYSTOLIC]) | (systolic > highs[SYSTOLIC])
+                | (diastolic < lows[DIASTOLIC]) | (diastolic > highs[DIASTOLIC])
+                | (temperature < lows[TEMPERATURE]) | (temperature > highs[TEMPERATURE]);
+        for (int base = 0; base < ruleLows.length; base += CHANNELS.length) {
+            abnormal |= (heartRate > ruleLows[base + HEART_RATE]) & (heartRate < ruleHighs[base + HEART_RATE])
+                    & (oxygenLevel > ruleLows[base + OXYGEN_LEVEL]) & (oxygenLevel < ruleHighs[base + OXYGEN_LEVEL])
+                    & (systolic > ruleLows[base + SYSTOLIC]) & (systolic < ruleHighs[base + SYSTOLIC])
+                    & (diastolic > ruleLows[base + DIASTOLIC]) & (diastolic < ruleHighs[base + DIASTOLIC])
+                    & (temperature > ruleLows[base + TEMPERATURE]) & (temperature < ruleHighs[base + TEMPERATURE]);
+        }
+        return abnormal;
+    }
+
+    /**
+     * Checks every reading of a series, e.g. a batch being imported
+     *
+     * @param series The readings
+     * @param abnormal Receives whether each reading is abnormal, by index; at least as long as the series
+     * @return Number of abnormal readings
+     */
+    public int evaluate(VitalSeries series, boolean[] abnormal) {
+        int count = 0;
+        for (int i = 0; i < series.size(); i++) {
+            boolean flag = isAbnormal(series.getHeartRate(i), series.getOxygenLevel(i), series.getSystolic(i),
+                    series.getDiastolic(i), series.getTemperature(i));
+            abnormal[i] = flag;
+            count += flag ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Describes the ranges, trends and rules
+     * @return Text with one entry per range, trend and rule
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int c = 0; c < CHANNELS.length; c++) {
+            if (lows[c] == Double.NEGATIVE_INFINITY && highs[c] == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            text.append(CHANNELS[c].getLabel()).append(": ")
+                .append(lows[c] == Double.NEGATIVE_INFINITY ? "" : lows[c]).append("..")
+                .append(highs[c] == Double.POSITIVE_INFINITY ? "" : highs[c]).append('\n');
+        }
+        for (int c = 0; c < CHANNELS.length; c++) {
+            if (trendRates[c] != 0) {
+                text.append(CHANNELS[c].getLabel()).append(" trend: ").append(trendRates[c])
+                    .append(' ').append(CHANNELS[c].getUnit()).append("/h\n");
+            }
+        }
+        for (int r = 0; r < ruleNames.length; r++) {
+            text.append(ruleNames[r]).append(": ").append(ruleTexts[r]).append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,293 @@
+package com.rpms.EmergencyAlertSystem;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.rpms.HealthData.VitalSeries;
+import com.rpms.HealthData.VitalSign;
+import com.rpms.Users.Doctor;
+import com.rpms.Users.Patient;
+import com.rpms.utilities.PatientStore;
+
+/**
+ * Index of the abnormal vital sign readings of every patient, kept up to date as readings are stored.
+ * <p>
+ * Each reading is checked against the patient's {@link AlertRules} once, when it is added
+ * (see {@link PatientStore}), and the abnormal ones are kept per patient, so a doctor's view of
+ * critical patients only reads the patients and readings it shows. A patient's history is scanned
+ * once, the first time the patient is looked up, and again only after it was replaced as a whole
+ * or the rules changed.
+ * Readings dropped from the raw history by retention are dropped from the index as well.
+ * <p>
+ * Listeners are told about every new abnormal reading, so views can update while they are open.
+ * All methods are thread-safe.
+ */
+public class CriticalVitalsIndex {
+
+    /** Abnormal readings by patient ID, in time order; patients not looked up yet have no entry */
+    private static final Map<String, VitalSeries> criticalByPatient = new HashMap<>();
+
+    /** Listeners called with the patient ID when an abnormal reading is added */
+    private static final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    /** Number of readings checked while scanning histories */
+    private static long scannedReadings;
+
+    // ===== Queries =====
+
+    /**
+     * Gets a patient's abnormal readings
+     *
+     * @param patientId The patient's ID
+     * @return The abnormal readings, oldest first
+     */
+    public static List<VitalSign> getCriticalVitals(String patientId) {
+        ensureIndexed(patientId);
+        synchronized (CriticalVitalsIndex.class) {
+            return new ArrayList<>(criticalByPatient.get(patientId).asList());
+        }
+    }
+
+    /**
+     * Gets the number of abnormal readings of a patient
+     *
+     * @param patientId The patient's ID
+     * @return Abnormal reading count
+     */
+    public static int getCriticalCount(String patientId) {
+        ensureIndexed(patientId);
+        synchronized (CriticalVitalsIndex.class) {
+            return criticalByPatient.get(patientId).size();
+        }
+    }
+
+    /**
+     * Gets the patients of a doctor that have abnormal readings, with those readings
+     *
+     * @param doctor The doctor
+     * @return Abnormal readings by patient, in the order of the doctor's patient list
+     */
+    public static Map<Patient, List<VitalSign>> getCriticalPatients(Doctor doctor) {
+        doctor.initializePatients();
+        List<Patient> patients = new ArrayList<>(doctor.getPatients());
+        for (Patient patient : patients) {
+            ensureIndexed(patient.getId());
+        }
+        Map<Patient, List<VitalSign>> critical = new LinkedHashMap<>();
+        synchronized (CriticalVitalsIndex.class) {
+            for (Patient patient : patients) {
+                VitalSeries readings = criticalByPatient.get(patient.getId());
+                if (readings != null && readings.size() > 0) {
+                    critical.put(patient, new ArrayList<>(readings.asList()));
+                }
+            }
+        }
+        return critical;
+    }
+
+    /**
+     * Gets the number of readings checked while scanning whole histories
+     * @return Scanned reading count
+     */
+    public static synchronized long getScannedReadings() {
+        return scannedReadings;
+    }
+
+    // ===== Listeners =====
+
+    /**
+     * Registers a listener for new abnormal readings.
+     * It is called on the thread that added the reading while the patient's history is locked,
+     * so it should only hand the work off, e.g. with Platform.runLater.
+     *
+     * @param listener Called with the patient's ID
+     */
+    public static void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener registered with {@link #addListener}
+     * @param listener The listener
+     */
+    public static void removeListener(Consumer<String> listener) {
+        listeners.remove(listener);
+    }
+
+    // ===== Updates =====
+
+    /**
+     * Records a reading added to a patient's history
+     *
+     * @param patientId The patient's ID
+     * @param vital The reading
+     */
+    public static void added(String patientId, VitalSign vital) {
+        if (!AlertRules.forPatient(patientId).isAbnormal(vital)) {
+            return;
+        }
+        synchronized (CriticalVitalsIndex.class) {
+            VitalSeries readings = criticalByPatient.get(patientId);
+            if (readings != null) {
+                readings.add(vital);
+            }
+        }
+        notifyListeners(patientId);
+    }
+
+    /**
+     * Records a batch of readings added to a patient's history
+     *
+     * @param patientId The patient's ID
+     * @param batch The readings
+     */
+    public static void addedAll(String patientId, VitalSeries batch) {
+        boolean[] flags = new boolean[batch.size()];
+        if (AlertRules.forPatient(patientId).evaluate(batch, flags) == 0) {
+            return;
+        }
+        VitalSeries abnormal = null;
+        for (int i = 0; i < batch.size(); i++) {
+            if (flags[i]) {
+                if (abnormal == null) {
+                    abnormal = new VitalSeries(patientId);
+                }
+                abnormal.add(batch.get(i));
+            }
+        }
+        if (abnormal == null) {
+            return;
+        }
+        synchronized (CriticalVitalsIndex.class) {
+            VitalSeries readings = criticalByPatient.get(patientId);
+            if (readings != null) {
+                readings.addAll(abnormal);
+            }
+        }
+        notifyListeners(patientId);
+    }
+
+    /**
+     * Records a reading removed from a patient's history
+     *
+     * @param patientId The patient's ID
+     * @param vital The reading
+     */
+    public static void removed(String patientId, VitalSign vital) {
+        if (!AlertRules.forPatient(patientId).isAbnormal(vital)) {
+            return;
+        }
+        synchronized (CriticalVitalsIndex.class) {
+            VitalSeries readings = criticalByPatient.get(patientId);
+            if (readings != null) {
+                readings.remove(vital);
+            }
+        }
+    }
+
+    /**
+     * Records the removal of the readings matching a filter from a patient's history
+     *
+     * @param patientId The patient's ID
+     * @param filter Selects the removed readings
+     */
+    public static synchronized void removedIf(String patientId, Predicate<VitalSign> filter) {
+        VitalSeries readings = criticalByPatient.get(patientId);
+        if (readings != null) {
+            readings.removeIf(filter);
+        }
+    }
+
+    /**
+     * Drops abnormal readings older than the oldest reading a patient's history still holds raw,
+     * after readings past their retention were compacted into aggregates
+     *
+     * @param patientId The patient's ID
+     * @param history The patient's readings
+     */
+    public static synchronized void retained(String patientId, VitalSeries history) {
+        VitalSeries readings = criticalByPatient.get(patientId);
+        if (readings == null) {
+            return;
+        }
+        int firstCritical = readings.upperBound(Long.MIN_VALUE);
+        if (firstCritical == readings.size()) {
+            return; // No timed readings
+        }
+        int first = history.upperBound(Long.MIN_VALUE);
+        LocalDateTime oldest = first < history.size() ? history.getDateTimeRecorded(first) : LocalDateTime.MAX;
+        if (readings.getDateTimeRecorded(firstCritical).isBefore(oldest)) {
+            readings.removeIf(v -> v.getDateTimeRecorded() != null && v.getDateTimeRecorded().isBefore(oldest));
+        }
+    }
+
+    /**
+     * Forgets a patient's abnormal readings, after the history was replaced as a whole;
+     * they are found again the next time the patient is looked up
+     *
+     * @param patientId The patient's ID
+     */
+    public static synchronized void invalidate(String patientId) {
+        criticalByPatient.remove(patientId);
+    }
+
+    /**
+     * Forgets the abnormal readings of all patients, e.g. before data is loaded from disk
+     */
+    public static synchronized void clear() {
+        criticalByPatient.clear();
+    }
+
+    // ===== Internals =====
+
+    /**
+     * Scans a patient's history if the patient was not looked up before.
+     * The history is locked before the index, in the same order as when readings are added.
+     */
+    private static void ensureIndexed(String patientId) {
+        synchronized (CriticalVitalsIndex.class) {
+            if (criticalByPatient.containsKey(patientId)) {
+                return;
+            }
+        }
+        CompiledAlertRules rules = AlertRules.forPatient(patientId);
+        PatientStore.query(patientId, history -> {
+            boolean[] flags = new boolean[history.size()];
+            rules.evaluate(history, flags);
+            index(patientId, history, flags);
+            return null;
+        });
+    }
+
+    /**
+     * Collects the abnormal readings of a whole history
+     *
+     * @param flags Whether each reading is abnormal
+     */
+    private static synchronized void index(String patientId, VitalSeries history, boolean[] flags) {
+        if (criticalByPatient.containsKey(patientId)) {
+            return;
+        }
+        VitalSeries readings = new VitalSeries(patientId);
+        for (int i = 0; i < history.size(); i++) {
+            if (flags[i]) {
+                readings.add(history.get(i));
+            }
+        }
+        scannedReadings += history.size();
+        criticalByPatient.put(patientId, readings);
+    }
+
+    private static void notifyListeners(String patientId) {
+        for (Consumer<String> listener : listeners) {
+            listener.accept(patientId);
+        }
+    }
+}
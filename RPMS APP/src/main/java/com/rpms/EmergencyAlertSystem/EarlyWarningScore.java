@@ -0,0 +1,176 @@
+package com.rpms.EmergencyAlertSystem;
+
+import java.time.LocalDateTime;
+
+import com.rpms.HealthData.VitalSign;
+
+/**
+ * Early-warning score of a vital sign reading, following the NEWS2 scoring of the measurements the
+ * system records: heart rate, oxygen saturation (scale 1), systolic blood pressure and temperature.
+ * Each measurement scores 0 to 3 points by how far it is from normal, and the points are added up.
+ * Respiration rate, consciousness and supplemental oxygen are not recorded, so they add nothing.
+ * <p>
+ * The clinical risk follows NEWS2: high from 7 points, medium from 5, low-medium if a single
+ * measurement scores 3, and low otherwise. Instances are immutable.
+ */
+public final class EarlyWarningScore implements Comparable<EarlyWarningScore> {
+
+    /** Total points */
+    private final int total;
+
+    /** Highest points of a single measurement */
+    private final int highestSingle;
+
+    /** Recording time of the scored reading, may be null */
+    private final LocalDateTime dateTimeRecorded;
+
+    private EarlyWarningScore(int total, int highestSingle, LocalDateTime dateTimeRecorded) {
+        this.total = total;
+        this.highestSingle = highestSingle;
+        this.dateTimeRecorded = dateTimeRecorded;
+    }
+
+    /**
+     * Scores a reading
+     *
+     * @param vital The reading
+     * @return The score
+     */
+    public static EarlyWarningScore of(VitalSign vital) {
+        return of(vital.getHeartRate(), vital.getOxygenLevel(), vital.getSystolic(), vital.getTemperature(),
+                vital.getDateTimeRecorded());
+    }
+
+    /**
+     * Scores measurements
+     *
+     * @param heartRate Heart rate in beats per minute
+     * @param oxygenLevel Blood oxygen saturation level
+     * @param systolic Systolic blood pressure, 0 if it was not recorded
+     * @param temperature Body temperature in Celsius
+     * @param dateTimeRecorded Recording time of the measurements, may be null
+     * @return The score
+     */
+    public static EarlyWarningScore of(double heartRate, double oxygenLevel, int systolic, double temperature,
+                                       LocalDateTime dateTimeRecorded) {
+        int pulse = heartRatePoints(heartRate);
+        int oxygen = oxygenPoints(oxygenLevel);
+        int pressure = systolic > 0 ? systolicPoints(systolic) : 0;
+        int fever = temperaturePoints(temperature);
+        return new EarlyWarningScore(pulse + oxygen + pressure + fever,
+                Math.max(Math.max(pulse, oxygen), Math.max(pressure, fever)), dateTimeRecorded);
+    }
+
+    // ===== Getters =====
+
+    /**
+     * Gets the total points
+     * @return Score from 0 to 12
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the highest points of a single measurement
+     * @return Points from 0 to 3
+     */
+    public int getHighestSingle() {
+        return highestSingle;
+    }
+
+    /**
+     * Gets the recording time of the scored reading
+     * @return Recording time, or null if unknown
+     */
+    public LocalDateTime getDateTimeRecorded() {
+        return dateTimeRecorded;
+    }
+
+    /**
+     * Gets the clinical risk indicated by the score
+     * @return "High", "Medium", "Low-medium" or "Low"
+     */
+    public String getRisk() {
+        if (total >= 7) {
+            return "High";
+        } else if (total >= 5) {
+            return "Medium";
+        } else if (highestSingle >= 3) {
+            return "Low-medium";
+        }
+        return "Low";
+    }
+
+    /**
+     * Orders scores by total points, then by the highest points of a single measurement
+     */
+    @Override
+    public int compareTo(EarlyWarningScore other) {
+        int order = Integer.compare(total, other.total);
+        return order != 0 ? order : Integer.compare(highestSingle, other.highestSingle);
+    }
+
+    /**
+     * Describes the score, e.g. "7 (High)"
+     * @return Description
+     */
+    @Override
+    public String toString() {
+        return total + " (" + getRisk() + ")";
+    }
+
+    // ===== Scoring =====
+
+    private static int heartRatePoints(double heartRate) {
+        if (heartRate <= 40) {
+            return 3;
+        } else if (heartRate <= 50) {
+            return 1;
+        } else if (heartRate <= 90) {
+            return 0;
+        } else if (heartRate <= 110) {
+            return 1;
+        } else if (heartRate <= 130) {
+            return 2;
+        }
+        return 3;
+    }
+
+    private static int oxygenPoints(double oxygenLevel) {
+        if (oxygenLevel <= 91) {
+            return 3;
+        } else if (oxygenLevel <= 93) {
+            return 2;
+        } else if (oxygenLevel <= 95) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private static int systolicPoints(int systolic) {
+        if (systolic <= 90) {
+            return 3;
+        } else if (systolic <= 100) {
+            return 2;
+        } else if (systolic <= 110) {
+            return 1;
+        } else if (systolic <= 219) {
+            return 0;
+        }
+        return 3;
+    }
+
+    private static int temperaturePoints(double temperature) {
+        if (temperature <= 35.0) {
+            return 3;
+        } else if (temperature <= 36.0) {
+            return 1;
+        } else if (temperature <= 38.0) {
+            return 0;
+        } else if (temperature <= 39.0) {
+            return 1;
+        }
+        return 2;
+    }
+}
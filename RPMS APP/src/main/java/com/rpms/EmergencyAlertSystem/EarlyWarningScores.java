@@ -0,0 +1,130 @@
+package com.rpms.EmergencyAlertSystem;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import com.rpms.HealthData.VitalSeries;
+import com.rpms.utilities.PatientStore;
+
+/**
+ * Current {@link EarlyWarningScore} of every patient: the score of the patient's most recent reading,
+ * kept up to date as readings are stored, so patient lists can be ranked by score without reading
+ * any history.
+ * <p>
+ * {@link PatientStore} reports every change of a history, and only the newest reading is scored again
+ * (the series is kept in time order), so an update costs the same whatever the length of the history.
+ * A patient's score is taken from the stored history the first time it is looked up.
+ * <p>
+ * Listeners are told when a patient's score changes, so views can re-rank while they are open.
+ * All methods are thread-safe.
+ */
+public class EarlyWarningScores {
+
+    /** Scores by patient ID; null for patients without readings, no entry for patients not looked up yet */
+    private static final Map<String, EarlyWarningScore> scores = new HashMap<>();
+
+    /** Listeners called with the patient ID when a score changes */
+    private static final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    // ===== Queries =====
+
+    /**
+     * Gets a patient's current score
+     *
+     * @param patientId The patient's ID
+     * @return Score of the most recent reading, or null if the patient has no readings
+     */
+    public static EarlyWarningScore getScore(String patientId) {
+        synchronized (EarlyWarningScores.class) {
+            if (scores.containsKey(patientId)) {
+                return scores.get(patientId);
+            }
+        }
+        return PatientStore.query(patientId, history -> {
+            EarlyWarningScore score = score(history);
+            synchronized (EarlyWarningScores.class) {
+                scores.putIfAbsent(patientId, score);
+                return scores.get(patientId);
+            }
+        });
+    }
+
+    // ===== Listeners =====
+
+    /**
+     * Registers a listener for score changes.
+     * It is called on the thread that changed the history while the history is locked,
+     * so it should only hand the work off, e.g. with Platform.runLater.
+     *
+     * @param listener Called with the patient's ID
+     */
+    public static void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener registered with {@link #addListener}
+     * @param listener The listener
+     */
+    public static void removeListener(Consumer<String> listener) {
+        listeners.remove(listener);
+    }
+
+    // ===== Updates =====
+
+    /**
+     * Scores the newest reading of a patient's history again after it changed.
+     * Listeners are only told if the points changed, not for every new reading.
+     *
+     * @param patientId The patient's ID
+     * @param history The patient's readings
+     */
+    public static void updated(String patientId, VitalSeries history) {
+        EarlyWarningScore score = score(history);
+        synchronized (EarlyWarningScores.class) {
+            boolean known = scores.containsKey(patientId);
+            EarlyWarningScore previous = scores.put(patientId, score);
+            if (known && (previous == null ? score == null : score != null && previous.compareTo(score) == 0)) {
+                return;
+            }
+        }
+        for (Consumer<String> listener : listeners) {
+            listener.accept(patientId);
+        }
+    }
+
+    /**
+     * Forgets a patient's score; it is taken from the stored history the next time it is looked up
+     *
+     * @param patientId The patient's ID
+     */
+    public static synchronized void invalidate(String patientId) {
+        scores.remove(patientId);
+    }
+
+    /**
+     * Forgets the scores of all patients, e.g. before data is loaded from disk
+     */
+    public static synchronized void clear() {
+        scores.clear();
+    }
+
+    // ===== Internals =====
+
+    /**
+     * Scores the newest reading of a history
+     *
+     * @return The score, or null if the history is empty
+     */
+    private static EarlyWarningScore score(VitalSeries history) {
+        int newest = history.size() - 1;
+        if (newest < 0) {
+            return null;
+        }
+        return EarlyWarningScore.of(history.getHeartRate(newest), history.getOxygenLevel(newest),
+                history.getSystolic(newest), history.getTemperature(newest), history.getDateTimeRecorded(newest));
+    }
+}
@@ -2,8 +2,11 @@ package com.rpms.EmergencyAlertSystem;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.List;
 
+import com.rpms.HealthData.VitalSeries;
 import com.rpms.HealthData.VitalSign;
+import com.rpms.utilities.DateUtil;
 import com.rpms.Users.Patient;
 
 /**
@@ -110,47 +113,140 @@ public class EmergencyAlert implements Serializable {
     
     /**
      * Checks if a vital sign reading is abnormal and sends alerts if necessary.
-     * This method evaluates the given vital sign against medical thresholds,
+     * This method evaluates the given vital sign against the patient's alert rules (see {@link AlertRules}),
      * and if abnormal, sends notifications to the patient's physician and emergency contacts.
+     * The reading is also added to the patient's trends, and a separate alert is sent if they show
+     * a deterioration (see {@link VitalTrendDetector}).
      * 
      * @param patient The patient whose vital sign is being checked
      * @param vital The vital sign to evaluate
-     * @return Alert message if abnormal, null if normal
+     * @return Alert messages if abnormal or deteriorating, one per line, null if normal
      */
     public static String checkVitalSigns(Patient patient, VitalSign vital) {
-        if (isVitalSignAbnormal(vital)) {
-            String alertMsg = "Emergency Alert: Abnormal vital signs detected for Patient "
+        String alertMsg = null;
+        if (AlertRules.forPatient(patient.getId()).isAbnormal(vital)) {
+            alertMsg = "Emergency Alert: Abnormal vital signs detected for Patient "
                     + patient.getName() + " (ID: " + patient.getId() + ")";
             NotificationService.sendAlert(alertMsg, patient);
-            return alertMsg;
         }
-        return null;
+        String trendMsg = sendDeteriorationAlert(patient, VitalTrendDetector.update(patient.getId(), vital));
+        if (trendMsg != null) {
+            alertMsg = alertMsg == null ? trendMsg : alertMsg + "\n" + trendMsg;
+        }
+        return alertMsg;
+    }
+
+    /**
+     * Checks a batch of imported vital signs against the patient's alert rules and sends a single
+     * alert if any are abnormal, instead of one notification per reading. The readings are also added
+     * to the patient's trends, with a single alert if they show deterioration.
+     *
+     * @param patient The patient whose vital signs are being checked
+     * @param readings The imported readings
+     * @return Number of abnormal readings, with the alert messages if any were sent
+     */
+    public static BatchResult checkVitalSeries(Patient patient, VitalSeries readings) {
+        String trendMsg = sendDeteriorationAlert(patient, VitalTrendDetector.updateAll(patient.getId(), readings));
+        boolean[] flags = new boolean[readings.size()];
+        int abnormal = AlertRules.forPatient(patient.getId()).evaluate(readings, flags);
+        if (abnormal == 0) {
+            return new BatchResult(0, null, trendMsg);
+        }
+        int latestAbnormal = flags.length - 1;
+        while (!flags[latestAbnormal]) {
+            latestAbnormal--;
+        }
+        String alertMsg = "Emergency Alert: " + abnormal + " abnormal vital sign readings detected for Patient "
+                + patient.getName() + " (ID: " + patient.getId() + "), latest recorded at "
+                + DateUtil.format(readings.getDateTimeRecorded(latestAbnormal));
+        NotificationService.sendAlert(alertMsg, patient);
+        return new BatchResult(abnormal, alertMsg, trendMsg);
+    }
+
+    /**
+     * Sends one alert for the deteriorations found in a patient's trends
+     *
+     * @param patient The patient
+     * @param deteriorations Deteriorations found, oldest first
+     * @return The alert message, or null if there were none
+     */
+    private static String sendDeteriorationAlert(Patient patient, List<VitalTrendDetector.Deterioration> deteriorations) {
+        if (deteriorations.isEmpty()) {
+            return null;
+        }
+        VitalTrendDetector.Deterioration latest = deteriorations.get(deteriorations.size() - 1);
+        String alertMsg = "Deterioration Alert: " + (deteriorations.size() == 1 ? latest
+                : deteriorations.size() + " worsening trends, latest " + latest)
+                + " for Patient " + patient.getName() + " (ID: " + patient.getId() + ") as of "
+                + DateUtil.format(latest.getDateTimeRecorded());
+        NotificationService.sendAlert(alertMsg, patient);
+        return alertMsg;
+    }
+
+    /**
+     * Result of checking a batch of vital signs
+     */
+    public static class BatchResult {
+        /** Number of abnormal readings */
+        private final int abnormalCount;
+
+        /** Alert message sent, or null */
+        private final String alertMessage;
+
+        /** Deterioration alert message sent, or null */
+        private final String deteriorationMessage;
+
+        BatchResult(int abnormalCount, String alertMessage, String deteriorationMessage) {
+            this.abnormalCount = abnormalCount;
+            this.alertMessage = alertMessage;
+            this.deteriorationMessage = deteriorationMessage;
+        }
+
+        /**
+         * Gets the number of abnormal readings
+         * @return Abnormal reading count
+         */
+        public int getAbnormalCount() { return abnormalCount; }
+
+        /**
+         * Gets the alert message that was sent
+         * @return Alert message, or null if all readings were normal
+         */
+        public String getAlertMessage() { return alertMessage; }
+
+        /**
+         * Gets the deterioration alert message that was sent
+         * @return Alert message, or null if the readings showed no deterioration
+         */
+        public String getDeteriorationMessage() { return deteriorationMessage; }
     }
 
     /**
      * Determines if a vital sign is outside normal medical ranges.
      * Evaluates heart rate, oxygen level, blood pressure, and temperature
-     * against established medical thresholds.
+     * against the default alert rules; patients may have their own (see {@link AlertRules}).
      * 
      * @param vital The vital sign to evaluate
      * @return true if any measurement is abnormal, false if all are normal
      */
     public static boolean isVitalSignAbnormal(VitalSign vital) {
-        // Heart rate outside normal range (60-100 bpm)
-        if (vital.getHeartRate() < 60 || vital.getHeartRate() > 100) return true;
-        
-        // Oxygen saturation below 90% (hypoxemia)
-        if (vital.getOxygenLevel() < 90) return true;
-
-        // Blood pressure outside normal range
-        String[] bpParts = vital.getBloodPressure().split("/");
-        int systolic = Integer.parseInt(bpParts[0]);
-        int diastolic = Integer.parseInt(bpParts[1]);
-        if (systolic < 90 || systolic > 140 || diastolic < 60 || diastolic > 90) return true;
-
-        // Temperature outside normal range (36.1-37.2°C)
-        if (vital.getTemperature() < 36.1 || vital.getTemperature() > 37.2) return true;
+        return isVitalSignAbnormal(vital.getHeartRate(), vital.getOxygenLevel(),
+                vital.getSystolic(), vital.getDiastolic(), vital.getTemperature());
+    }
 
-        return false; // all normal
+    /**
+     * Determines if measurements are outside normal medical ranges of the default alert rules,
+     * for scans that read measurements without creating VitalSign objects.
+     *
+     * @param heartRate Heart rate in beats per minute
+     * @param oxygenLevel Blood oxygen saturation level
+     * @param systolic Systolic blood pressure
+     * @param diastolic Diastolic blood pressure
+     * @param temperature Body temperature in Celsius
+     * @return true if any measurement is abnormal, false if all are normal
+     */
+    public static boolean isVitalSignAbnormal(double heartRate, double oxygenLevel, int systolic, int diastolic,
+                                              double temperature) {
+        return AlertRules.getDefaults().isAbnormal(heartRate, oxygenLevel, systolic, diastolic, temperature);
     }
 }
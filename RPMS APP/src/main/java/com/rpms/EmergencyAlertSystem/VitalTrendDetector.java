@@ -0,0 +1,358 @@
+package com.rpms.EmergencyAlertSystem;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.rpms.HealthData.VitalSeries;
+import com.rpms.HealthData.VitalSign;
+import com.rpms.HealthData.VitalStatistics.Channel;
+import com.rpms.HealthData.VitalStatistics.Window;
+import com.rpms.utilities.PatientStore;
+
+/**
+ * Detects slow deterioration of a patient's vital signs, such as oxygen drifting down by 1% an hour,
+ * which single-reading thresholds miss.
+ * <p>
+ * Every measurement's rate of change is estimated as each reading arrives, by a linear regression over
+ * the readings weighted by age (exponentially, with the time constant of the trend window). The weighted
+ * sums are shifted to the newest reading and decayed in constant time, so a patient needs the same few
+ * numbers whatever the length of the history, and a reading costs one exponential and a few arithmetic
+ * operations per measurement. A deterioration is reported when the rate reaches the patient's
+ * {@link CompiledAlertRules#getTrendRate trend rate} in its direction, once the window holds enough
+ * readings spread over enough time; it is reported again only after the rate fell below half of that.
+ * <p>
+ * A patient's estimates are started from the readings of the last few windows of the stored history, so
+ * trends carry over restarts. Readings without a time or older than the newest reading seen are skipped.
+ * The trend window can be configured with the system property rpms.alerts.trendWindow (default "2h").
+ * All methods are thread-safe.
+ */
+public class VitalTrendDetector {
+
+    /** The measurements, in the order of their estimates */
+    private static final Channel[] CHANNELS = Channel.values();
+
+    /** Time constant of the regression weights in milliseconds */
+    private static final long WINDOW_MILLIS = windowMillis();
+
+    /** Time constant of the regression weights in hours */
+    private static final double WINDOW_HOURS = WINDOW_MILLIS / 3_600_000.0;
+
+    /** Total weight of readings needed before a trend is reported */
+    private static final double MIN_WEIGHT = 4;
+
+    /** Weighted standard deviation of the reading times, in windows, needed before a trend is reported */
+    private static final double MIN_SPREAD = 0.25;
+
+    /** Number of windows of stored history the estimates are started from */
+    private static final int PRIME_WINDOWS = 5;
+
+    /** Gap after which older readings no longer count at all, in windows */
+    private static final double RESET_WINDOWS = 30;
+
+    /** Number of weighted sums per measurement: weight, time, time squared, value, time times value */
+    private static final int SUMS = 5;
+
+    /** Trend estimates by patient ID */
+    private static final Map<String, TrendState> states = new HashMap<>();
+
+    /** Number of readings processed */
+    private static final AtomicLong processedReadings = new AtomicLong();
+
+    /**
+     * A deterioration found in a patient's readings
+     */
+    public static final class Deterioration {
+        /** The deteriorating measurement */
+        private final Channel channel;
+
+        /** Estimated change per hour */
+        private final double ratePerHour;
+
+        /** Time of the reading that revealed the deterioration, in epoch milliseconds (UTC) */
+        private final long epochMillis;
+
+        Deterioration(Channel channel, double ratePerHour, long epochMillis) {
+            this.channel = channel;
+            this.ratePerHour = ratePerHour;
+            this.epochMillis = epochMillis;
+        }
+
+        /**
+         * Gets the deteriorating measurement
+         * @return The measurement
+         */
+        public Channel getChannel() { return channel; }
+
+        /**
+         * Gets the estimated change per hour
+         * @return Change per hour, negative for falling values
+         */
+        public double getRatePerHour() { return ratePerHour; }
+
+        /**
+         * Gets the time of the reading that revealed the deterioration
+         * @return Recording time
+         */
+        public LocalDateTime getDateTimeRecorded() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+        }
+
+        /**
+         * Describes the deterioration, e.g. "Oxygen Level falling 1.4 %/h"
+         * @return Description
+         */
+        @Override
+        public String toString() {
+            return String.format("%s %s %.1f %s/h", channel.getLabel(), ratePerHour < 0 ? "falling" : "rising",
+                    Math.abs(ratePerHour), channel.getUnit());
+        }
+    }
+
+    /**
+     * Trend estimates of one patient: per measurement, sums of the age-weighted readings,
+     * with times in hours relative to the newest reading
+     */
+    private static final class TrendState {
+        /** Weighted sums, measurement * SUMS + sum */
+        private final double[] sums = new double[CHANNELS.length * SUMS];
+
+        /** Whether a deterioration was reported for a measurement and its rate did not ease since */
+        private final boolean[] reported = new boolean[CHANNELS.length];
+
+        /** Time of the newest reading, or Long.MIN_VALUE before the first one */
+        private long newestMillis = Long.MIN_VALUE;
+
+        /** The patient's trend rates by channel ordinal, or null until they are looked up */
+        private double[] rates;
+
+        /** Version of the alert rules the trend rates were taken from */
+        private int rulesVersion;
+
+        /**
+         * Gets the patient's trend rates, looking them up again if the alert rules changed
+         */
+        double[] rates(String patientId) {
+            int version = AlertRules.getVersion();
+            if (rates == null || rulesVersion != version) {
+                CompiledAlertRules rules = AlertRules.forPatient(patientId);
+                rates = new double[CHANNELS.length];
+                for (Channel channel : CHANNELS) {
+                    rates[channel.ordinal()] = rules.getTrendRate(channel);
+                }
+                rulesVersion = version;
+            }
+            return rates;
+        }
+
+        /**
+         * Adds a reading to the estimates and checks them against the trend rates
+         *
+         * @param rates Deteriorating change per hour by channel ordinal, null to only add the reading
+         * @param found Deteriorations found so far, or null if there are none
+         * @return The deteriorations found so far, or null if there are none
+         */
+        List<Deterioration> add(long epochMillis, double heartRate, double oxygenLevel, int systolic, int diastolic,
+                    double temperature, double[] rates, List<Deterioration> found) {
+            if (epochMillis < newestMillis) {
+                return found;
+            }
+            if (newestMillis != Long.MIN_VALUE && epochMillis > newestMillis) {
+                advance((epochMillis - newestMillis) / 3_600_000.0);
+            }
+            newestMillis = epochMillis;
+            addValue(Channel.HEART_RATE.ordinal(), heartRate);
+            addValue(Channel.OXYGEN_LEVEL.ordinal(), oxygenLevel);
+            if (systolic > 0) {
+                addValue(Channel.SYSTOLIC.ordinal(), systolic);
+            }
+            if (diastolic > 0) {
+                addValue(Channel.DIASTOLIC.ordinal(), diastolic);
+            }
+            addValue(Channel.TEMPERATURE.ordinal(), temperature);
+            if (rates != null) {
+                for (int c = 0; c < CHANNELS.length; c++) {
+                    if (rates[c] != 0) {
+                        found = check(c, rates[c], found);
+                    }
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Moves the time origin forward to a newer reading and decays the weights
+         */
+        private void advance(double hours) {
+            if (hours > RESET_WINDOWS * WINDOW_HOURS) {
+                Arrays.fill(sums, 0);
+                return;
+            }
+            double decay = Math.exp(-hours / WINDOW_HOURS);
+            for (int base = 0; base < sums.length; base += SUMS) {
+                double weight = sums[base];
+                double time = sums[base + 1];
+                double value = sums[base + 3];
+                sums[base] = weight * decay;
+                sums[base + 1] = (time - hours * weight) * decay;
+                sums[base + 2] = (sums[base + 2] - 2 * hours * time + hours * hours * weight) * decay;
+                sums[base + 3] = value * decay;
+                sums[base + 4] = (sums[base + 4] - hours * value) * decay;
+            }
+        }
+
+        /**
+         * Adds a value at the time origin
+         */
+        private void addValue(int channel, double value) {
+            int base = channel * SUMS;
+            sums[base] += 1;
+            sums[base + 3] += value;
+        }
+
+        /**
+         * Reports a deterioration if a measurement's rate reached its trend rate
+         *
+         * @return The deteriorations found so far, or null if there are none
+         */
+        private List<Deterioration> check(int channel, double rate, List<Deterioration> found) {
+            int base = channel * SUMS;
+            double weight = sums[base];
+            if (weight < MIN_WEIGHT) {
+                return found;
+            }
+            double variance = weight * sums[base + 2] - sums[base + 1] * sums[base + 1];
+            double minSpread = MIN_SPREAD * WINDOW_HOURS * weight;
+            if (variance < minSpread * minSpread) {
+                return found;
+            }
+            double slope = (weight * sums[base + 4] - sums[base + 1] * sums[base + 3]) / variance;
+            double worsening = slope / rate;
+            if (worsening >= 1) {
+                if (!reported[channel]) {
+                    reported[channel] = true;
+                    if (found == null) {
+                        found = new ArrayList<>();
+                    }
+                    found.add(new Deterioration(CHANNELS[channel], slope, newestMillis));
+                }
+            } else if (worsening < 0.5) {
+                reported[channel] = false;
+            }
+            return found;
+        }
+    }
+
+    // ===== Detection =====
+
+    /**
+     * Adds a new reading to a patient's trends
+     *
+     * @param patientId The patient's ID
+     * @param vital The reading, already stored in the patient's history
+     * @return Deteriorations revealed by the reading, empty if there are none
+     */
+    public static List<Deterioration> update(String patientId, VitalSign vital) {
+        long epochMillis = VitalSeries.toEpochMillis(vital.getDateTimeRecorded());
+        if (epochMillis == Long.MIN_VALUE) {
+            return Collections.emptyList();
+        }
+        TrendState state = state(patientId, epochMillis);
+        List<Deterioration> found;
+        synchronized (state) {
+            found = state.add(epochMillis, vital.getHeartRate(), vital.getOxygenLevel(), vital.getSystolic(),
+                    vital.getDiastolic(), vital.getTemperature(), state.rates(patientId), null);
+        }
+        processedReadings.incrementAndGet();
+        return found == null ? Collections.emptyList() : found;
+    }
+
+    /**
+     * Adds a batch of new readings to a patient's trends, in time order
+     *
+     * @param patientId The patient's ID
+     * @param readings The readings, already stored in the patient's history
+     * @return Deteriorations revealed by the readings, oldest first, empty if there are none
+     */
+    public static List<Deterioration> updateAll(String patientId, VitalSeries readings) {
+        int first = readings.upperBound(Long.MIN_VALUE);
+        if (first == readings.size()) {
+            return Collections.emptyList();
+        }
+        TrendState state = state(patientId, readings.getEpochMillis(first));
+        List<Deterioration> found = null;
+        synchronized (state) {
+            double[] rates = state.rates(patientId);
+            for (int i = first; i < readings.size(); i++) {
+                found = state.add(readings.getEpochMillis(i), readings.getHeartRate(i), readings.getOxygenLevel(i),
+                        readings.getSystolic(i), readings.getDiastolic(i), readings.getTemperature(i), rates, found);
+            }
+        }
+        processedReadings.addAndGet(readings.size() - first);
+        return found == null ? Collections.emptyList() : found;
+    }
+
+    /**
+     * Forgets the trends of all patients, e.g. before data is loaded from disk;
+     * they are started again from the stored histories
+     */
+    public static synchronized void clear() {
+        states.clear();
+    }
+
+    /**
+     * Gets the number of readings added to trends
+     * @return Processed reading count
+     */
+    public static long getProcessedReadings() {
+        return processedReadings.get();
+    }
+
+    // ===== Internals =====
+
+    /**
+     * Gets a patient's trend estimates, starting them from the stored readings before the given time
+     * if the patient has none yet. The history is locked before the detector, as in the other indexes.
+     */
+    private static TrendState state(String patientId, long beforeMillis) {
+        synchronized (VitalTrendDetector.class) {
+            TrendState state = states.get(patientId);
+            if (state != null) {
+                return state;
+            }
+        }
+        TrendState primed = new TrendState();
+        PatientStore.query(patientId, history -> {
+            int from = history.upperBound(Math.max(Long.MIN_VALUE + 1, beforeMillis - PRIME_WINDOWS * WINDOW_MILLIS) - 1);
+            int to = history.upperBound(beforeMillis - 1);
+            for (int i = from; i < to; i++) {
+                primed.add(history.getEpochMillis(i), history.getHeartRate(i), history.getOxygenLevel(i),
+                        history.getSystolic(i), history.getDiastolic(i), history.getTemperature(i), null, null);
+            }
+            return null;
+        });
+        synchronized (VitalTrendDetector.class) {
+            return states.computeIfAbsent(patientId, id -> primed);
+        }
+    }
+
+    /**
+     * Reads the trend window from the system properties
+     */
+    private static long windowMillis() {
+        String setting = System.getProperty("rpms.alerts.trendWindow", "2h");
+        try {
+            return Window.parse(setting).getDuration().toMillis();
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring vital trend window: " + e.getMessage());
+            return 2 * 3_600_000L;
+        }
+    }
+}
@@ -1,16 +1,31 @@
 package com.rpms.GUI;
 
+import java.io.File;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
+import com.rpms.HealthData.VitalsBatchImporter;
+import com.rpms.HealthData.VitalsBatchReport;
 import com.rpms.Main;
 import com.rpms.Users.Administrator;
 import com.rpms.Users.Doctor;
 import com.rpms.Users.Patient;
+import com.rpms.utilities.BackgroundLoader;
+import com.rpms.utilities.ChangeFeed;
 import com.rpms.utilities.ChatManager;
+import com.rpms.utilities.DataManager;
+import com.rpms.utilities.SystemLogEntry;
+import com.rpms.utilities.SystemLogStore;
 
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Side;
 import javafx.scene.Scene;
@@ -18,10 +33,14 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonBar;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.PasswordField;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.Separator;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
@@ -38,10 +57,34 @@ import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 public class AdminDashboard extends Application {
 
+    /** Lists of the dashboard kept in sync with the registries */
+    private final List<RegistryBinding<?>> bindings = new ArrayList<>();
+
+    /** System log entries shown, following new entries */
+    private SystemLogList logList;
+
+    /** Choice of the log filter showing every actor */
+    private static final String ALL_ACTORS = "All actors";
+
+    /** Choice of the log filter showing every time */
+    private static final String ALL_TIME = "All time";
+
+    /** Time ranges the system log can be filtered to */
+    private static final Map<String, Duration> LOG_RANGES = new LinkedHashMap<>();
+
+    static {
+        LOG_RANGES.put(ALL_TIME, null);
+        LOG_RANGES.put("Last hour", Duration.ofHours(1));
+        LOG_RANGES.put("Last 24 hours", Duration.ofHours(24));
+        LOG_RANGES.put("Last 7 days", Duration.ofDays(7));
+    }
+
     @Override
     public void start(Stage primaryStage) {
         // title
@@ -78,6 +121,7 @@ public class AdminDashboard extends Application {
         Button logoutButton = new Button("Logout");
         logoutButton.getStyleClass().add("logout-button");
         logoutButton.setOnAction(e -> {
+            closeBindings();
             primaryStage.close(); // Close the current dashboard
             Main.logout(); // Call the logout method
         });
@@ -123,6 +167,35 @@ public class AdminDashboard extends Application {
         primaryStage.show();
     }
     
+    /**
+     * Creates a list kept in sync with a registry, for a table or combo box of this dashboard
+     *
+     * @param view Name of the list, unique within the dashboard
+     * @param feed Changes of the registry
+     * @param source Reads the registry
+     * @return The list
+     */
+    private <T> ObservableList<T> bind(String view, ChangeFeed<T> feed, Supplier<List<T>> source) {
+        RegistryBinding<T> binding = new RegistryBinding<>(
+                "admin:" + System.identityHashCode(this) + ":" + view, feed, element -> true, source);
+        bindings.add(binding);
+        return binding.getItems();
+    }
+
+    /**
+     * Stops following the registries and the system log when the dashboard is closed
+     */
+    private void closeBindings() {
+        for (RegistryBinding<?> binding : bindings) {
+            binding.close();
+        }
+        bindings.clear();
+        if (logList != null) {
+            logList.close();
+            logList = null;
+        }
+    }
+
     /**
      * Creates a graphic for a tab with an icon and text
      */
@@ -145,7 +218,7 @@ public class AdminDashboard extends Application {
         TableView<Doctor> table = new TableView<>();
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
         // set up the table columns
-        table.setItems(FXCollections.observableArrayList(Administrator.getDoctors()));
+        table.setItems(bind("doctors", Administrator.getDoctorChanges(), Administrator::getDoctors));
 
         // create columns for ID, name, and remove button
         TableColumn<Doctor, String> idCol = new TableColumn<>("ID");
@@ -169,7 +242,7 @@ public class AdminDashboard extends Application {
                 
                 updateBtn.setOnAction(e -> {
                     Doctor doctor = getTableView().getItems().get(getIndex());
-                    showUpdateDoctorDialog(doctor, table);
+                    showUpdateDoctorDialog(doctor);
                 });
                 
                 removeBtn.setOnAction(e -> {
@@ -183,7 +256,6 @@ public class AdminDashboard extends Application {
                         if (type == ButtonType.YES) {
                             Administrator.removeDoctor(doctor);
                             Administrator.addSystemLog("Removed doctor: " + doctor.getName());
-                            table.setItems(javafx.collections.FXCollections.observableArrayList(Administrator.getDoctors()));
                         }
                     });
                 });
@@ -244,7 +316,6 @@ public class AdminDashboard extends Application {
                     usernameField.getText(), passwordField.getText());
             Administrator.registerDoctor(doctor);
             Administrator.addSystemLog("Registered doctor: " + doctor.getName());
-            table.setItems(javafx.collections.FXCollections.observableArrayList(Administrator.getDoctors()));
             nameField.clear(); phoneField.clear(); emailField.clear(); usernameField.clear(); passwordField.clear();
         });
 
@@ -268,7 +339,7 @@ public class AdminDashboard extends Application {
         // Create table for patients
         TableView<Patient> table = new TableView<>();
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
-        table.setItems(FXCollections.observableArrayList(Administrator.getPatients()));
+        table.setItems(bind("patients", Administrator.getPatientChanges(), Administrator::getPatients));
 
         TableColumn<Patient, String> idCol = new TableColumn<>("ID");
         idCol.setCellValueFactory(new PropertyValueFactory<>("id"));
@@ -300,7 +371,7 @@ public class AdminDashboard extends Application {
                 
                 updateBtn.setOnAction(e -> {
                     Patient patient = getTableView().getItems().get(getIndex());
-                    showUpdatePatientDialog(patient, table);
+                    showUpdatePatientDialog(patient);
                 });
                 
                 removeBtn.setOnAction(e -> {
@@ -314,7 +385,6 @@ public class AdminDashboard extends Application {
                         if (type == ButtonType.YES) {
                             Administrator.removePatient(patient);
                             Administrator.addSystemLog("Removed patient: " + patient.getName());
-                            table.setItems(FXCollections.observableArrayList(Administrator.getPatients()));
                         }
                     });
                 });
@@ -354,7 +424,7 @@ public class AdminDashboard extends Application {
 
         ComboBox<Doctor> physicianComboBox = new ComboBox<>();
         physicianComboBox.setPromptText("Select Physician");
-        physicianComboBox.setItems(FXCollections.observableArrayList(Administrator.getDoctors()));
+        physicianComboBox.setItems(bind("physicians", Administrator.getDoctorChanges(), Administrator::getDoctors));
         
         form.add(new Label("Name:"), 0, 0);
         form.add(nameField, 1, 0);
@@ -402,7 +472,6 @@ public class AdminDashboard extends Application {
 
             Administrator.registerPatient(patient);
             Administrator.addSystemLog("Registered patient: " + patient.getName());
-            table.setItems(FXCollections.observableArrayList(Administrator.getPatients()));
             nameField.clear(); phoneField.clear(); emailField.clear(); usernameField.clear(); passwordField.clear();
             emergencyContactsField.clear(); physicianComboBox.getSelectionModel().clearSelection();
         });
@@ -428,7 +497,7 @@ public class AdminDashboard extends Application {
         TableView<Administrator> table = new TableView<>();
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
         // set up the table columns
-        table.setItems(FXCollections.observableArrayList(Administrator.getAdministrators()));
+        table.setItems(bind("admins", Administrator.getAdministratorChanges(), Administrator::getAdministrators));
 
         // create columns for ID, name, and action buttons
         TableColumn<Administrator, String> idCol = new TableColumn<>("ID");
@@ -452,7 +521,7 @@ public class AdminDashboard extends Application {
                 
                 updateBtn.setOnAction(e -> {
                     Administrator admin = getTableView().getItems().get(getIndex());
-                    showUpdateAdminDialog(admin, table);
+                    showUpdateAdminDialog(admin);
                 });
                 
                 removeBtn.setOnAction(e -> {
@@ -466,7 +535,6 @@ public class AdminDashboard extends Application {
                         if (type == ButtonType.YES) {
                             Administrator.removeAdministrator(admin);
                             Administrator.addSystemLog("Removed administrator: " + admin.getName());
-                            table.setItems(FXCollections.observableArrayList(Administrator.getAdministrators()));
                         }
                     });
                 });
@@ -527,7 +595,6 @@ public class AdminDashboard extends Application {
                     usernameField.getText(), passwordField.getText());
             Administrator.registerAdministrator(admin);
             Administrator.addSystemLog("Registered administrator: " + admin.getName());
-            table.setItems(FXCollections.observableArrayList(Administrator.getAdministrators()));
             nameField.clear(); phoneField.clear(); emailField.clear(); usernameField.clear(); passwordField.clear();
         });
 
@@ -558,15 +625,55 @@ public class AdminDashboard extends Application {
         Label logsLabel = new Label("System Logs");
         logsLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
         
-        TextArea logsArea = new TextArea();
-        logsArea.setEditable(false);
-        logsArea.setPrefHeight(200);
-        logsArea.setText(String.join("\n", Administrator.getSystemLogs()));
-        
-        Button refreshLogsButton = new Button("Refresh Logs");
-        refreshLogsButton.setOnAction(e -> {
-            logsArea.setText(String.join("\n", Administrator.getSystemLogs()));
+        // Only the rows on screen are read from the log; new entries appear as they are written
+        ListView<SystemLogEntry> logsView = new ListView<>();
+        logsView.setPrefHeight(200);
+        logsView.setCellFactory(lv -> new ListCell<SystemLogEntry>() {
+            @Override
+            protected void updateItem(SystemLogEntry entry, boolean empty) {
+                super.updateItem(entry, empty);
+                if (empty || entry == null) {
+                    setText(null);
+                    setStyle("");
+                } else {
+                    setText(entry.toString());
+                    setStyle(entry.getLevel() == SystemLogEntry.Level.INFO ? "" : "-fx-text-fill: #c0392b;");
+                }
+            }
+        });
+
+        ComboBox<String> logActorComboBox = new ComboBox<>();
+        logActorComboBox.getItems().add(ALL_ACTORS);
+        logActorComboBox.setValue(ALL_ACTORS);
+        ComboBox<String> logRangeComboBox = new ComboBox<>();
+        logRangeComboBox.getItems().addAll(LOG_RANGES.keySet());
+        logRangeComboBox.setValue(ALL_TIME);
+        CheckBox followLogsCheckBox = new CheckBox("Follow new entries");
+        followLogsCheckBox.setSelected(true);
+
+        Runnable showLogs = () -> showLogs(logsView, logActorComboBox.getValue(), logRangeComboBox.getValue(),
+                followLogsCheckBox);
+        logActorComboBox.setOnShowing(e -> {
+            // Actors appear as they write their first entry
+            String selected = logActorComboBox.getValue();
+            logActorComboBox.getItems().setAll(ALL_ACTORS);
+            logActorComboBox.getItems().addAll(SystemLogStore.getActors());
+            logActorComboBox.setValue(selected);
+        });
+        logActorComboBox.setOnAction(e -> showLogs.run());
+        logRangeComboBox.setOnAction(e -> showLogs.run());
+        followLogsCheckBox.setOnAction(e -> {
+            if (followLogsCheckBox.isSelected() && !logsView.getItems().isEmpty()) {
+                logsView.scrollTo(logsView.getItems().size() - 1);
+            }
         });
+        HBox logFilters = new HBox(10, new Label("Actor:"), logActorComboBox, new Label("Time:"), logRangeComboBox,
+                followLogsCheckBox);
+        logFilters.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
+
+        // The log is read in the background the first time it is shown
+        BackgroundLoader.load("admin:" + System.identityHashCode(this) + ":logs", SystemLogStore::size,
+                entries -> showLogs.run());
         
         // Chat management section
         Label chatLabel = new Label("Chat Management");
@@ -590,9 +697,6 @@ public class AdminDashboard extends Application {
                         alert.setHeaderText(null);
                         alert.setContentText("All chat histories have been cleared successfully.");
                         alert.showAndWait();
-                        
-                        // Refresh logs to show the action
-                        logsArea.setText(String.join("\n", Administrator.getSystemLogs()));
                     } else {
                         Alert alert = new Alert(Alert.AlertType.ERROR);
                         alert.setTitle("Error");
@@ -604,25 +708,92 @@ public class AdminDashboard extends Application {
             });
         });
         
+        // Batch vitals import section
+        Label importLabel = new Label("Vitals Import");
+        importLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
+
+        Label importHint = new Label("Import a folder with one CSV file per patient (named after the patient ID), "
+                + "or a combined CSV file whose first column is the patient ID.");
+        importHint.setWrapText(true);
+
+        ProgressBar importProgress = new ProgressBar(0);
+        importProgress.setMaxWidth(Double.MAX_VALUE);
+        importProgress.setVisible(false);
+        Label importStatus = new Label();
+
+        Button importFolderButton = new Button("Import Patient Folder...");
+        Button importFileButton = new Button("Import Combined File...");
+        importFolderButton.setOnAction(e -> {
+            DirectoryChooser chooser = new DirectoryChooser();
+            chooser.setTitle("Select Folder with Vitals CSV Files");
+            File dir = chooser.showDialog(systemPanel.getScene().getWindow());
+            if (dir != null) {
+                startVitalsImport(dir.getPath(), importProgress, importStatus,
+                        importFolderButton, importFileButton);
+            }
+        });
+        importFileButton.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Select Combined Vitals CSV File");
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV Files", "*.csv"));
+            File file = chooser.showOpenDialog(systemPanel.getScene().getWindow());
+            if (file != null) {
+                startVitalsImport(file.getPath(), importProgress, importStatus,
+                        importFolderButton, importFileButton);
+            }
+        });
+
         // Add all components to the system panel
         systemPanel.getChildren().addAll(
             systemTitle,
             new Separator(),
             logsLabel,
-            logsArea,
-            refreshLogsButton,
+            logFilters,
+            logsView,
             new Separator(),
             chatLabel,
-            clearAllChatsButton
+            clearAllChatsButton,
+            new Separator(),
+            importLabel,
+            importHint,
+            new HBox(10, importFolderButton, importFileButton),
+            importProgress,
+            importStatus
         );
         
         return systemPanel;
     }
 
+    /**
+     * Shows the system log entries matching a filter, following new entries
+     *
+     * @param logsView The view showing the entries
+     * @param actor Actor whose entries are shown, or {@link #ALL_ACTORS}
+     * @param range Time range shown, one of {@link #LOG_RANGES}
+     * @param follow Whether to scroll to new entries
+     */
+    private void showLogs(ListView<SystemLogEntry> logsView, String actor, String range, CheckBox follow) {
+        if (logList != null) {
+            logList.close();
+        }
+        Duration duration = LOG_RANGES.get(range);
+        long fromMillis = duration != null ? System.currentTimeMillis() - duration.toMillis() : Long.MIN_VALUE;
+        logList = new SystemLogList(ALL_ACTORS.equals(actor) ? null : actor, fromMillis, Long.MAX_VALUE);
+        logList.setOnAppended(() -> {
+            if (follow.isSelected()) {
+                logsView.scrollTo(logsView.getItems().size() - 1);
+            }
+        });
+        logsView.setItems(logList);
+        if (!logList.isEmpty()) {
+            logsView.scrollTo(logList.size() - 1);
+        }
+    }
+
     /**
      * Shows dialog to update doctor details
      */
-    private void showUpdateDoctorDialog(Doctor doctor, TableView<Doctor> table) {
+    private void showUpdateDoctorDialog(Doctor doctor) {
         Dialog<Void> dialog = new Dialog<>();
         dialog.setTitle("Update Doctor");
         dialog.setHeaderText("Update information for Dr. " + doctor.getName());
@@ -656,11 +827,12 @@ public class AdminDashboard extends Application {
                 doctor.setPhoneNumber(phoneField.getText());
                 doctor.setEmail(emailField.getText());
                 
-                // Refresh the table
-                table.refresh();
+                // Redraw the row in every open dashboard
+                Administrator.userUpdated(doctor);
                 
-                // Log the update
+                // Log and save the update
                 Administrator.addSystemLog("Updated doctor: " + doctor.getName());
+                DataManager.markUserChanged(doctor);
                 
                 showAlert("Doctor information updated successfully.");
             }
@@ -673,7 +845,7 @@ public class AdminDashboard extends Application {
     /**
      * Shows dialog to update patient details
      */
-    private void showUpdatePatientDialog(Patient patient, TableView<Patient> table) {
+    private void showUpdatePatientDialog(Patient patient) {
         Dialog<Void> dialog = new Dialog<>();
         dialog.setTitle("Update Patient");
         dialog.setHeaderText("Update information for patient " + patient.getName());
@@ -734,11 +906,12 @@ public class AdminDashboard extends Application {
                     patient.setPhysician(selectedDoctor);
                 }
                 
-                // Refresh the table
-                table.refresh();
+                // Redraw the row in every open dashboard
+                Administrator.userUpdated(patient);
                 
-                // Log the update
+                // Log and save the update
                 Administrator.addSystemLog("Updated patient: " + patient.getName());
+                DataManager.markUserChanged(patient);
                 
                 showAlert("Patient information updated successfully.");
             }
@@ -751,7 +924,7 @@ public class AdminDashboard extends Application {
     /**
      * Shows dialog to update administrator details
      */
-    private void showUpdateAdminDialog(Administrator admin, TableView<Administrator> table) {
+    private void showUpdateAdminDialog(Administrator admin) {
         Dialog<Void> dialog = new Dialog<>();
         dialog.setTitle("Update Administrator");
         dialog.setHeaderText("Update information for " + admin.getName());
@@ -785,11 +958,12 @@ public class AdminDashboard extends Application {
                 admin.setPhoneNumber(phoneField.getText());
                 admin.setEmail(emailField.getText());
                 
-                // Refresh the table
-                table.refresh();
+                // Redraw the row in every open dashboard
+                Administrator.userUpdated(admin);
                 
-                // Log the update
+                // Log and save the update
                 Administrator.addSystemLog("Updated administrator: " + admin.getName());
+                DataManager.markUserChanged(admin);
                 
                 showAlert("Administrator information updated successfully.");
             }
@@ -799,6 +973,55 @@ public class AdminDashboard extends Application {
         dialog.showAndWait();
     }
 
+    /**
+     * Runs a batch vitals import in the background and shows its progress
+     */
+    private void startVitalsImport(String path, ProgressBar progress, Label status,
+                                   Button... buttons) {
+        for (Button button : buttons) {
+            button.setDisable(true);
+        }
+        progress.setVisible(true);
+        progress.setProgress(0);
+        status.setText("Starting import...");
+
+        // The registry is only changed on this thread, so the import looks patients up in a copy
+        Map<String, Patient> patients = new HashMap<>();
+        for (Patient patient : Administrator.getPatients()) {
+            patients.put(patient.getId(), patient);
+        }
+
+        Thread importThread = new Thread(() -> {
+            VitalsBatchReport report = VitalsBatchImporter.importPath(path, patients, update -> {
+                double fraction = update.getProgress();
+                String text = update.getStatus();
+                Platform.runLater(() -> {
+                    progress.setProgress(fraction);
+                    status.setText(text);
+                });
+            });
+            Platform.runLater(() -> {
+                for (Button button : buttons) {
+                    button.setDisable(false);
+                }
+                progress.setProgress(1);
+                status.setText(report.getImportedCount() + " readings imported for "
+                        + report.getPatientReports().size() + " patients (" + report.getRowsPerSecond() + " rows/s)");
+
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setTitle("Vitals Import");
+                alert.setHeaderText(null);
+                TextArea summary = new TextArea(report.getSummary());
+                summary.setEditable(false);
+                summary.setWrapText(true);
+                alert.getDialogPane().setContent(summary);
+                alert.showAndWait();
+            });
+        }, "vitals-import");
+        importThread.setDaemon(true);
+        importThread.start();
+    }
+
     // Helper method to show alerts
     private void showAlert(String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
@@ -0,0 +1,220 @@
+package com.rpms.GUI;
+
+import java.time.Duration;
+
+/**
+ * Time window shown by the vitals charts, in epoch milliseconds (UTC).
+ * <p>
+ * The window can show the whole history, the last few hours or days, or be zoomed and panned
+ * freely within the history. When it shows the whole history or the most recent readings, it
+ * follows new readings: the window moves along as the history grows. Zooming or panning back
+ * in time stops following, until the window is panned back to the newest reading.
+ * <p>
+ * The charts fetch only the readings inside the window, so the cost of drawing does not depend on
+ * the length of the history. The viewport itself is a plain model; the listener set with
+ * {@link #setOnChange} is called whenever the window moves.
+ */
+public class ChartViewport {
+
+    /** Shortest window that can be zoomed to */
+    public static final long MIN_SPAN_MILLIS = Duration.ofMinutes(5).toMillis();
+
+    /** Window shown before any reading is known */
+    private static final long DEFAULT_SPAN_MILLIS = Duration.ofDays(1).toMillis();
+
+    /** Start and end of the window */
+    private long start;
+    private long end;
+
+    /** Times of the oldest and newest readings, or 0 if there are none */
+    private long firstMillis;
+    private long lastMillis;
+    private boolean hasData;
+
+    /** Whether the window moves along with new readings */
+    private boolean following = true;
+
+    /** Whether the window shows the whole history */
+    private boolean showingAll;
+
+    /** Called when the window moves */
+    private Runnable onChange;
+
+    /**
+     * Creates a viewport showing the last day up to a time
+     *
+     * @param nowMillis The current time in epoch milliseconds (UTC)
+     */
+    public ChartViewport(long nowMillis) {
+        end = nowMillis;
+        start = nowMillis - DEFAULT_SPAN_MILLIS;
+    }
+
+    // ===== Getters =====
+
+    /**
+     * Gets the start of the window
+     * @return Epoch milliseconds (UTC)
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the end of the window
+     * @return Epoch milliseconds (UTC)
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Gets the length of the window
+     * @return Milliseconds
+     */
+    public long getSpan() {
+        return end - start;
+    }
+
+    /**
+     * Checks whether the window moves along with new readings
+     * @return true if following the newest readings
+     */
+    public boolean isFollowing() {
+        return following;
+    }
+
+    /**
+     * Sets the listener called when the window moves
+     * @param onChange The listener, or null
+     */
+    public void setOnChange(Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    // ===== Data range =====
+
+    /**
+     * Sets the times of the oldest and newest readings, e.g. after a reading was added.
+     * A following window moves so its end stays at the newest reading.
+     *
+     * @param firstMillis Time of the oldest reading
+     * @param lastMillis Time of the newest reading
+     */
+    public void setDataRange(long firstMillis, long lastMillis) {
+        this.firstMillis = firstMillis;
+        this.lastMillis = Math.max(firstMillis, lastMillis);
+        hasData = true;
+        if (showingAll) {
+            showAll();
+        } else if (following) {
+            long span = getSpan();
+            move(this.lastMillis - span, this.lastMillis);
+        }
+    }
+
+    /**
+     * Forgets the times of the readings, e.g. when the history is empty
+     */
+    public void clearDataRange() {
+        hasData = false;
+    }
+
+    // ===== Navigation =====
+
+    /**
+     * Shows the whole history, following new readings
+     */
+    public void showAll() {
+        showingAll = true;
+        following = true;
+        if (hasData) {
+            long span = Math.max(MIN_SPAN_MILLIS, lastMillis - firstMillis);
+            move(lastMillis - span, lastMillis);
+        }
+    }
+
+    /**
+     * Shows the most recent readings, following new readings
+     *
+     * @param duration Length of the window
+     */
+    public void showLast(Duration duration) {
+        showingAll = false;
+        following = true;
+        long span = Math.max(MIN_SPAN_MILLIS, duration.toMillis());
+        long to = hasData ? lastMillis : end;
+        move(to - span, to);
+    }
+
+    /**
+     * Zooms in or out around a time, keeping that time at the same place in the window
+     *
+     * @param factor Factor of the new length of the window, below 1 to zoom in
+     * @param centerMillis The time to zoom around
+     */
+    public void zoom(double factor, long centerMillis) {
+        long span = getSpan();
+        long newSpan = Math.max(MIN_SPAN_MILLIS, Math.round(span * factor));
+        if (hasData) {
+            // Zooming out stops at the whole history, or at the current window if that is longer
+            newSpan = Math.min(newSpan, Math.max(span, Math.max(MIN_SPAN_MILLIS, lastMillis - firstMillis)));
+        }
+        if (newSpan == span) {
+            return;
+        }
+        centerMillis = Math.max(start, Math.min(end, centerMillis));
+        double position = (double) (centerMillis - start) / span;
+        long newStart = centerMillis - Math.round(newSpan * position);
+        showingAll = false;
+        clampAndMove(newStart, newSpan);
+        following = !hasData || end >= lastMillis;
+    }
+
+    /**
+     * Moves the window by a part of its length
+     *
+     * @param fraction Part of the length to move, negative to move back in time
+     */
+    public void pan(double fraction) {
+        panBy(Math.round(getSpan() * fraction));
+    }
+
+    /**
+     * Moves the window by a time
+     *
+     * @param millis Milliseconds to move, negative to move back in time
+     */
+    public void panBy(long millis) {
+        if (millis == 0) {
+            return;
+        }
+        showingAll = false;
+        clampAndMove(start + millis, getSpan());
+        following = !hasData || end >= lastMillis;
+    }
+
+    // ===== Internals =====
+
+    /**
+     * Keeps a window within the history and moves to it
+     */
+    private void clampAndMove(long newStart, long span) {
+        if (hasData) {
+            newStart = Math.min(newStart, lastMillis - span);
+            newStart = Math.max(newStart, Math.min(firstMillis, lastMillis - span));
+        }
+        move(newStart, newStart + span);
+    }
+
+    private void move(long newStart, long newEnd) {
+        if (newStart == start && newEnd == end) {
+            return;
+        }
+        start = newStart;
+        end = newEnd;
+        if (onChange != null) {
+            onChange.run();
+        }
+    }
+}
@@ -3,12 +3,17 @@ package com.rpms.GUI;
 import java.io.File;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import com.rpms.AppointmentHandling.Appointment;
 import com.rpms.ChatVideoConsultation.VideoCall;
 import com.rpms.DoctorPatientInteraction.Feedback;
 import com.rpms.DoctorPatientInteraction.Prescription;
+import com.rpms.EmergencyAlertSystem.CriticalVitalsIndex;
 import com.rpms.HealthData.VitalSign;
 import com.rpms.Main;
 import com.rpms.Reports.ReportGenerator;
@@ -54,6 +59,13 @@ public class DoctorDashboard {
     /** Flag to track if reminders have been shown during this session */
     private boolean remindersShown = false; // for keeping track of alerts
 
+    /** Labels showing the number of critical readings, by patient ID */
+    private final Map<String, Label> criticalLabels = new HashMap<>();
+
+    /** Updates the critical reading labels when new abnormal readings arrive */
+    private final Consumer<String> criticalListener =
+            patientId -> Platform.runLater(() -> updateCriticalLabel(patientId));
+
     /**
      * Creates a new doctor dashboard for the specified doctor.
      * 
@@ -128,6 +140,10 @@ public class DoctorDashboard {
             patientBox.setPadding(new Insets(10));
             patientBox.setStyle("-fx-border-color: #ccc; -fx-border-radius: 5;");
             Label nameLabel = new Label(patient.toString());
+            Label criticalLabel = new Label();
+            criticalLabel.setStyle("-fx-text-fill: #c62828; -fx-font-weight: bold;");
+            criticalLabels.put(patient.getId(), criticalLabel);
+            updateCriticalLabel(patient.getId());
 
             Button viewVitalsBtn = new Button("View Vitals");
             viewVitalsBtn.setOnAction(e -> showVitalsPopup(patient));
@@ -147,7 +163,7 @@ public class DoctorDashboard {
             feedbackBtn.setOnAction(e -> showFeedbackDialog(patient));
 
             Button graphBtn = new Button("View Vitals Graph");
-            graphBtn.setOnAction(e -> patient.getVitals().generateVitalsGraph(new Stage()));
+            graphBtn.setOnAction(e -> VitalsGraph.show(patient.getVitals(), new Stage()));
             
             // Add new chat button
             Button chatBtn = new Button("Chat");
@@ -156,13 +172,14 @@ public class DoctorDashboard {
                 chatWindow.show();
             });
 
-            patientBox.getChildren().addAll(nameLabel, viewVitalsBtn, graphBtn, downloadReportBtn, feedbackBtn, chatBtn);
+            patientBox.getChildren().addAll(nameLabel, criticalLabel, viewVitalsBtn, graphBtn, downloadReportBtn, feedbackBtn, chatBtn);
             patientContainer.getChildren().add(patientBox);
         }
 
         if (doctor.getPatients().isEmpty()) {
             patientContainer.getChildren().add(new Label("No patients assigned."));
         }
+        CriticalVitalsIndex.addListener(criticalListener);
 
         ScrollPane patientScroll = new ScrollPane(patientContainer);
         patientScroll.setFitToWidth(true);
@@ -349,6 +366,7 @@ public class DoctorDashboard {
         Button logoutButton = new Button("Logout");
         logoutButton.getStyleClass().add("logout-button");
         logoutButton.setOnAction(e -> {
+            CriticalVitalsIndex.removeListener(criticalListener);
             stage.close(); // Close the current dashboard
             Main.logout(); // Call the logout method
         });
@@ -389,6 +407,19 @@ public class DoctorDashboard {
         stage.show();
     }
 
+    /**
+     * Shows the number of critical readings of a patient next to the patient's name
+     *
+     * @param patientId The patient's ID
+     */
+    private void updateCriticalLabel(String patientId) {
+        Label label = criticalLabels.get(patientId);
+        if (label != null) {
+            int count = CriticalVitalsIndex.getCriticalCount(patientId);
+            label.setText(count == 0 ? "" : "⚠ " + count + " critical");
+        }
+    }
+
     /**
      * Displays a popup window showing all vital signs for a patient.
      * 
@@ -400,7 +431,7 @@ public class DoctorDashboard {
         alert.setHeaderText("Vitals History");
 
         StringBuilder vitalsText = new StringBuilder();
-        ArrayList<VitalSign> vitals = patient.getVitals().getVitals();
+        List<VitalSign> vitals = patient.getVitals().getVitals();
 
         System.out.println("DEBUG: Attempting to show vitals for patient: " + patient.getName());
         System.out.println("DEBUG: Vitals list size: " + (vitals != null ? vitals.size() : "null"));
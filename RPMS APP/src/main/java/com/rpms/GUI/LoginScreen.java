@@ -8,6 +8,8 @@ import com.rpms.Users.Doctor;
 import com.rpms.Users.Patient;
 import com.rpms.Users.User;
 import com.rpms.utilities.DataManager;
+import com.rpms.utilities.SystemLogEntry;
+import com.rpms.utilities.SystemLogStore;
 
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -152,11 +154,13 @@ public class LoginScreen extends Application {
             if (user == null) {
                 showAlert("Invalid username or password.");
                 // Log the failed login attempt
-                Administrator.addSystemLog("Failed login attempt for username '" + enteredUsername + "' with role '" + selectedRole + "'.");
+                Administrator.addSystemLog(SystemLogEntry.Level.WARNING, enteredUsername,
+                        "Failed login attempt for username '" + enteredUsername + "' with role '" + selectedRole + "'.");
                 return;
             }
             else{
-                // Log the successful login
+                // Log the successful login; the user's actions are logged on their behalf from now on
+                SystemLogStore.setSessionActor(user.getUsername());
                 Administrator.addSystemLog("Successful login for username '" + enteredUsername + "' with role '" + selectedRole + "'.");
             }
 
@@ -189,6 +193,7 @@ public class LoginScreen extends Application {
         }
 
         primaryStage.show();
+        DataManager.reportLoginScreenShown();
     }
     
     /**
@@ -328,7 +333,7 @@ public void init() throws Exception {
     @Override
     public void stop() throws Exception {
         System.out.println("Application is closing. Saving all data...");
-        DataManager.saveAllData();
+        DataManager.flush();
         System.out.println("Data saved successfully.");
         super.stop();
     }
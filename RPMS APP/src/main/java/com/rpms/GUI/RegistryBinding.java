@@ -0,0 +1,159 @@
+package com.rpms.GUI;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.rpms.utilities.BackgroundLoader;
+import com.rpms.utilities.ChangeFeed;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * List of a view kept in sync with a registry through its {@link ChangeFeed}.
+ * <p>
+ * The list is copied from the registry once and filtered in the background (see {@link BackgroundLoader}). After that,
+ * each reported change is applied to the list: an added element is appended, a removed one is removed,
+ * and an updated one is replaced in place, so the view only redraws the rows that changed. The list
+ * may show only some elements, e.g. a doctor's pending appointments; an update that makes an element
+ * match or stop matching the filter adds or removes it. Only reloads read the registry again.
+ * <p>
+ * Changes made on other threads are applied on the Application Thread. The binding must be created
+ * and closed on the Application Thread.
+ *
+ * @param <T> Type of the elements
+ */
+public class RegistryBinding<T> {
+
+    /** Key of the binding's loads */
+    private final String key;
+
+    /** Changes of the registry */
+    private final ChangeFeed<T> feed;
+
+    /** Selects the elements shown */
+    private final Predicate<T> filter;
+
+    /** Copies the elements of the registry */
+    private final Supplier<List<T>> source;
+
+    /** The elements shown */
+    private final ObservableList<T> items = FXCollections.observableArrayList();
+
+    /** Applies the changes on the Application Thread */
+    private final Consumer<ChangeFeed.Change<T>> listener = change -> {
+        if (Platform.isFxApplicationThread()) {
+            apply(change);
+        } else {
+            Platform.runLater(() -> apply(change));
+        }
+    };
+
+    /** Whether the binding was closed */
+    private boolean closed;
+
+    /**
+     * Elements read from the registry, with the number of changes reported before they were read
+     */
+    private static final class Snapshot<T> {
+        private final long version;
+        private final List<T> elements;
+
+        Snapshot(long version, List<T> elements) {
+            this.version = version;
+            this.elements = elements;
+        }
+    }
+
+    /**
+     * Binds a list to a registry and starts reading it
+     *
+     * @param key Identifies the view, e.g. "doctor:doc1:pendingAppointments"
+     * @param feed Changes of the registry
+     * @param filter Selects the elements shown; called on loader threads as well
+     * @param source Copies the elements of the registry; called on the Application Thread
+     */
+    public RegistryBinding(String key, ChangeFeed<T> feed, Predicate<T> filter, Supplier<List<T>> source) {
+        this.key = key;
+        this.feed = feed;
+        this.filter = filter;
+        this.source = source;
+        feed.addListener(listener);
+        reload();
+    }
+
+    /**
+     * Gets the list kept in sync, to be shown by a view
+     * @return The elements shown
+     */
+    public ObservableList<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Stops following the registry, e.g. when the window is closed
+     */
+    public void close() {
+        closed = true;
+        feed.removeListener(listener);
+    }
+
+    /**
+     * Copies the registry again and filters the copy in the background.
+     * If it changed while the copy was filtered, it is read once more, since some of the changes may be missing.
+     */
+    public void reload() {
+        long version = feed.getVersion();
+        List<T> elements = new ArrayList<>(source.get());
+        BackgroundLoader.load(key, () -> new Snapshot<>(version,
+                elements.stream().filter(filter).collect(Collectors.toList())), snapshot -> {
+            if (closed) {
+                return;
+            }
+            items.setAll(snapshot.elements);
+            if (snapshot.version != feed.getVersion()) {
+                reload();
+            }
+        });
+    }
+
+    /**
+     * Applies a change of the registry to the list
+     */
+    private void apply(ChangeFeed.Change<T> change) {
+        if (closed) {
+            return;
+        }
+        T element = change.getElement();
+        switch (change.getType()) {
+            case ADDED:
+                if (filter.test(element) && !items.contains(element)) {
+                    items.add(element);
+                }
+                break;
+            case REMOVED:
+                items.remove(element);
+                break;
+            case UPDATED:
+                int index = items.indexOf(element);
+                if (!filter.test(element)) {
+                    if (index >= 0) {
+                        items.remove(index);
+                    }
+                } else if (index >= 0) {
+                    items.set(index, element); // Redraws the row
+                } else {
+                    items.add(element);
+                }
+                break;
+            default:
+                reload();
+                break;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.rpms.GUI;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import com.rpms.utilities.ChangeFeed;
+import com.rpms.utilities.SystemLogEntry;
+import com.rpms.utilities.SystemLogStore;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+/**
+ * Entries of the {@link SystemLogStore} shown by a ListView, optionally only those of one actor or
+ * from a time range.
+ * <p>
+ * The list holds no entries itself: it knows the positions of the first and last matching entries,
+ * found by binary search in the store's index, and reads an entry only when the ListView asks for
+ * it, i.e. for the rows on screen. New entries are appended to the list, and entries the store
+ * dropped are removed from its start, in one change per burst of log entries.
+ * <p>
+ * The list must be used on the Application Thread.
+ */
+public class SystemLogList extends ObservableListBase<SystemLogEntry> {
+
+    /** Actor whose entries are shown, or null for all */
+    private final String actor;
+
+    /** Oldest and newest time shown, in epoch milliseconds */
+    private final long fromMillis;
+    private final long toMillis;
+
+    /** Positions of the first entry shown and after the last one */
+    private long start;
+    private long end;
+
+    /** Clears of the store seen so far */
+    private long resets;
+
+    /** Whether the list is already due to be updated */
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+
+    /** Updates the list after a burst of log entries */
+    private final Consumer<ChangeFeed.Change<SystemLogEntry>> listener = change -> {
+        if (refreshPending.compareAndSet(false, true)) {
+            Platform.runLater(this::refresh);
+        }
+    };
+
+    /** Called after new entries were appended to the list */
+    private Runnable onAppended;
+
+    /** Whether the list stopped following the store */
+    private boolean closed;
+
+    /**
+     * Creates a list of log entries and starts following the store
+     *
+     * @param actor Only show this actor's entries, or null for all
+     * @param fromMillis Oldest time shown in epoch milliseconds, or Long.MIN_VALUE
+     * @param toMillis Show entries before this time in epoch milliseconds, or Long.MAX_VALUE
+     */
+    public SystemLogList(String actor, long fromMillis, long toMillis) {
+        this.actor = actor;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        SystemLogStore.getChanges().addListener(listener);
+        resets = SystemLogStore.getResetCount();
+        start = SystemLogStore.lowerBound(actor, fromMillis);
+        end = Math.max(start, SystemLogStore.lowerBound(actor, toMillis));
+    }
+
+    /**
+     * Sets the listener called after new entries were appended, e.g. to scroll to them
+     * @param onAppended The listener, or null
+     */
+    public void setOnAppended(Runnable onAppended) {
+        this.onAppended = onAppended;
+    }
+
+    /**
+     * Stops following the store, e.g. when the filter changed or the window was closed
+     */
+    public void close() {
+        closed = true;
+        SystemLogStore.getChanges().removeListener(listener);
+    }
+
+    @Override
+    public SystemLogEntry get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        // Null if the store dropped the entry since the last update
+        return SystemLogStore.entryAt(actor, start + index);
+    }
+
+    @Override
+    public int size() {
+        return (int) (end - start);
+    }
+
+    /**
+     * Finds the entries shown again and reports what changed
+     */
+    private void refresh() {
+        refreshPending.set(false);
+        if (closed) {
+            return;
+        }
+        long resetCount = SystemLogStore.getResetCount();
+        long newStart = SystemLogStore.lowerBound(actor, fromMillis);
+        long newEnd = Math.max(newStart, SystemLogStore.lowerBound(actor, toMillis));
+        if (newStart == start && newEnd == end && resetCount == resets) {
+            return;
+        }
+
+        int oldSize = size();
+        boolean appended = newEnd > end;
+        beginChange();
+        if (resetCount != resets || newStart >= end) {
+            // Nothing shown is left; show the entries found instead
+            resets = resetCount;
+            start = newStart;
+            end = newEnd;
+            if (oldSize > 0) {
+                nextRemove(0, Collections.nCopies(oldSize, null));
+            }
+            if (size() > 0) {
+                nextAdd(0, size());
+            }
+        } else {
+            if (newStart > start) {
+                // The store dropped the oldest entries
+                nextRemove(0, Collections.nCopies((int) (newStart - start), null));
+                start = newStart;
+            }
+            int keptSize = size();
+            end = newEnd;
+            if (size() > keptSize) {
+                nextAdd(keptSize, size());
+            }
+        }
+        endChange();
+
+        if (appended && onAppended != null) {
+            onAppended.run();
+        }
+    }
+}
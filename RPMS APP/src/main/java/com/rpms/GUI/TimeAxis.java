@@ -0,0 +1,133 @@
+package com.rpms.GUI;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.scene.chart.ValueAxis;
+
+/**
+ * Chart axis of recording times, as epoch milliseconds (UTC) like the times of a
+ * {@link com.rpms.HealthData.VitalSeries}.
+ * <p>
+ * Unlike a category axis of formatted dates, it needs no string or category per reading and
+ * can show any time window: the range is set with {@link #setRange}, and tick marks fall on
+ * round units (minutes, hours, days) fitting the width of the window, labelled with as much
+ * of the date as the window needs.
+ */
+public class TimeAxis extends ValueAxis<Number> {
+
+    /** Minutes, hours and days in milliseconds */
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    /** Tick units to choose from, shortest first */
+    private static final long[] TICK_UNITS = {
+        MINUTE, 5 * MINUTE, 15 * MINUTE, 30 * MINUTE, HOUR, 3 * HOUR, 6 * HOUR, 12 * HOUR,
+        DAY, 2 * DAY, 7 * DAY, 14 * DAY, 30 * DAY, 90 * DAY, 180 * DAY, 365 * DAY
+    };
+
+    /** Number of ticks aimed for across the axis */
+    private static final int TARGET_TICKS = 8;
+
+    /** Label formats by length of the window */
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+    private static final DateTimeFormatter DAY_TIME_FORMAT = DateTimeFormatter.ofPattern("MM-dd HH:mm");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    /** Time between ticks for the current range, in milliseconds */
+    private long tickUnit = HOUR;
+
+    /** Format of the tick labels for the current range */
+    private DateTimeFormatter labelFormat = TIME_FORMAT;
+
+    /**
+     * Creates a time axis showing the last day
+     */
+    public TimeAxis() {
+        setAutoRanging(false);
+        setMinorTickVisible(false);
+        setAnimated(false);
+        long now = LocalDateTime.now().toInstant(ZoneOffset.UTC).toEpochMilli();
+        setRange(now - DAY, now);
+    }
+
+    /**
+     * Shows a time window
+     *
+     * @param fromMillis Start of the window in epoch milliseconds (UTC)
+     * @param toMillis End of the window in epoch milliseconds (UTC), after the start
+     */
+    public void setRange(long fromMillis, long toMillis) {
+        long span = Math.max(1, toMillis - fromMillis);
+        long unit = TICK_UNITS[TICK_UNITS.length - 1];
+        for (long candidate : TICK_UNITS) {
+            if (candidate * TARGET_TICKS >= span) {
+                unit = candidate;
+                break;
+            }
+        }
+        tickUnit = unit;
+        labelFormat = span <= DAY ? TIME_FORMAT : span <= 14 * DAY ? DAY_TIME_FORMAT : DATE_FORMAT;
+        setLowerBound(fromMillis);
+        setUpperBound(fromMillis + span);
+    }
+
+    /**
+     * Formats a time as a tick label
+     *
+     * @param epochMillis Epoch milliseconds (UTC)
+     * @return Label text
+     */
+    public String format(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC).format(labelFormat);
+    }
+
+    // ===== Axis =====
+
+    /**
+     * The range is the lower and upper bound; it is always set with {@link #setRange(long, long)}
+     */
+    @Override
+    protected Object getRange() {
+        return new double[] {getLowerBound(), getUpperBound()};
+    }
+
+    @Override
+    protected void setRange(Object range, boolean animate) {
+        double[] bounds = (double[]) range;
+        setLowerBound(bounds[0]);
+        setUpperBound(bounds[1]);
+        currentLowerBound.set(bounds[0]);
+    }
+
+    /**
+     * Places the ticks on multiples of the tick unit, e.g. on the hour, rather than counting from the
+     * start of the window
+     */
+    @Override
+    protected List<Number> calculateTickValues(double length, Object range) {
+        double[] bounds = (double[]) range;
+        long lower = (long) Math.ceil(bounds[0]);
+        long upper = (long) Math.floor(bounds[1]);
+        List<Number> ticks = new ArrayList<>();
+        for (long tick = Math.floorDiv(lower + tickUnit - 1, tickUnit) * tickUnit; tick <= upper; tick += tickUnit) {
+            ticks.add(tick);
+        }
+        return ticks;
+    }
+
+    @Override
+    protected List<Number> calculateMinorTickMarks() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    protected String getTickMarkLabel(Number value) {
+        return format(value.longValue());
+    }
+}
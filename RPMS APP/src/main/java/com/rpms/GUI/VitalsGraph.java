@@ -0,0 +1,80 @@
+package com.rpms.GUI;
+
+import com.rpms.HealthData.VitalDownsampler;
+import com.rpms.HealthData.VitalStatistics;
+import com.rpms.HealthData.VitalsDatabase;
+
+import javafx.scene.Scene;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+/**
+ * Window showing a patient's vital signs over the whole history.
+ * Each line is downsampled to {@link #GRAPH_POINTS} points, whatever the length of the history.
+ */
+public class VitalsGraph {
+
+    /** Number of points of each line of the graph */
+    private static final int GRAPH_POINTS = 200;
+
+    /** Shortest time range of the graph, for histories of a single reading */
+    private static final long MINUTE_MILLIS = 60_000L;
+
+    /**
+     * Generates and displays a graphical visualization of vital signs over time.
+     * Creates a line chart showing trends in heart rate, oxygen levels, and temperature
+     * over the whole history, on a time axis.
+     *
+     * @param vitals The patient's vitals database
+     * @param stage JavaFX stage to display the visualization
+     */
+    public static void show(VitalsDatabase vitals, Stage stage) {
+        long[] timeRange = vitals.getTimeRange();
+        if (timeRange == null) {
+            System.out.println("No vitals to display.");
+            return;
+        }
+
+        // Common X-axis (DateTime)
+        final TimeAxis xAxis = new TimeAxis();
+        xAxis.setLabel("DateTime");
+        xAxis.setRange(timeRange[0], Math.max(timeRange[1], timeRange[0] + MINUTE_MILLIS));
+
+        // Y-axis for values
+        final NumberAxis yAxis = new NumberAxis();
+        yAxis.setLabel("Value");
+
+        // LineChart
+        final LineChart<Number, Number> lineChart = new LineChart<>(xAxis, yAxis);
+        lineChart.setTitle("Vital Signs Over Time");
+
+        // Data series
+        lineChart.getData().add(series(vitals, "Heart Rate (bpm)", VitalStatistics.Channel.HEART_RATE, timeRange));
+        lineChart.getData().add(series(vitals, "Oxygen Level (%)", VitalStatistics.Channel.OXYGEN_LEVEL, timeRange));
+        lineChart.getData().add(series(vitals, "Temperature (°C)", VitalStatistics.Channel.TEMPERATURE, timeRange));
+
+        // Show chart
+        VBox vbox = new VBox(lineChart);
+        Scene scene = new Scene(vbox, 800, 600);
+        stage.setTitle("Patient Vital Signs Visualization");
+        stage.setScene(scene);
+        stage.show();
+    }
+
+    /**
+     * Creates a chart line of a measurement over a time range
+     */
+    private static XYChart.Series<Number, Number> series(VitalsDatabase vitals, String name,
+            VitalStatistics.Channel channel, long[] timeRange) {
+        XYChart.Series<Number, Number> series = new XYChart.Series<>();
+        series.setName(name);
+        VitalDownsampler.Points points = vitals.downsample(channel, timeRange[0], timeRange[1], GRAPH_POINTS);
+        for (int i = 0; i < points.size(); i++) {
+            series.getData().add(new XYChart.Data<>(points.getEpochMillis(i), points.getValue(i)));
+        }
+        return series;
+    }
+}
@@ -0,0 +1,185 @@
+package com.rpms.GUI;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import com.rpms.HealthData.VitalSeries;
+import com.rpms.HealthData.VitalSign;
+import com.rpms.HealthData.VitalsDatabase;
+import com.rpms.utilities.ChangeFeed;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+/**
+ * The readings of a patient shown by a ListView, oldest first.
+ * <p>
+ * The list holds no copy of the history: it reads the readings in pages of {@link #PAGE_SIZE}
+ * when the ListView asks for them, i.e. around the rows on screen, and keeps the last few pages.
+ * Changes of the readings are reported for the positions they affect only: an added reading or a
+ * batch inserts from its recording time on, and readings dropped past their retention are removed
+ * from the start, in one change per burst of changes.
+ * <p>
+ * The list must be used on the Application Thread.
+ */
+public class VitalsList extends ObservableListBase<VitalSign> {
+
+    /** Number of readings read at once */
+    private static final int PAGE_SIZE = 256;
+
+    /** Number of pages kept */
+    private static final int CACHED_PAGES = 8;
+
+    /** Marks a change whose first position is unknown, so the whole list is reported as changed */
+    private static final long WHOLE_LIST = Long.MIN_VALUE;
+
+    /** The readings shown */
+    private final VitalsDatabase vitals;
+
+    /** Pages read so far by first position, least recently used first */
+    private final Map<Integer, List<VitalSign>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<VitalSign>> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+
+    /** Number of readings shown */
+    private int size;
+
+    /** Readings the series had dropped past their retention when the list was last updated */
+    private long dropped;
+
+    /** Earliest recording time changed since the last update in epoch milliseconds, or WHOLE_LIST; guarded by this */
+    private long changedFrom = Long.MAX_VALUE;
+
+    /** Whether the list is already due to be updated */
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+
+    /** Notes the changed time and updates the list after a burst of changes */
+    private final Consumer<ChangeFeed.Change<VitalSign>> listener = change -> {
+        VitalSign element = change.getElement();
+        long from = element == null || element.getDateTimeRecorded() == null
+                ? WHOLE_LIST : VitalSeries.toEpochMillis(element.getDateTimeRecorded());
+        synchronized (this) {
+            changedFrom = Math.min(changedFrom, from);
+        }
+        if (refreshPending.compareAndSet(false, true)) {
+            Platform.runLater(this::refresh);
+        }
+    };
+
+    /** Whether the list stopped following the readings */
+    private boolean closed;
+
+    /**
+     * Creates a list of a patient's readings and starts following them
+     * @param vitals The patient's vitals database
+     */
+    public VitalsList(VitalsDatabase vitals) {
+        this.vitals = vitals;
+        vitals.getChanges().addListener(listener);
+        vitals.query(series -> {
+            size = series.size();
+            dropped = series.getDroppedReadings();
+            return null;
+        });
+    }
+
+    /**
+     * Stops following the readings, e.g. when another patient is shown or the window was closed
+     */
+    public void close() {
+        closed = true;
+        vitals.getChanges().removeListener(listener);
+    }
+
+    @Override
+    public VitalSign get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        int first = index - index % PAGE_SIZE;
+        List<VitalSign> page = pages.get(first);
+        if (page == null) {
+            page = vitals.query(series -> {
+                int from = Math.min(first, series.size());
+                return series.copyRange(from, Math.min(first + PAGE_SIZE, series.size()));
+            });
+            pages.put(first, page);
+        }
+        // Null if the readings shrank since the last update
+        return index - first < page.size() ? page.get(index - first) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the positions that changed since the last update and reports them
+     */
+    private void refresh() {
+        refreshPending.set(false);
+        if (closed) {
+            return;
+        }
+        // Read while the readings cannot change, so no change is counted twice or missed
+        long[] state = vitals.query(series -> {
+            long from;
+            synchronized (this) {
+                from = changedFrom;
+                changedFrom = Long.MAX_VALUE;
+            }
+            return new long[] {
+                    from,
+                    series.upperBound(Long.MIN_VALUE), // Readings without a time, after which dropped readings were
+                    series.size(),
+                    series.getDroppedReadings(),
+                    from == WHOLE_LIST || from == Long.MAX_VALUE ? series.size() : series.upperBound(from - 1)};
+        });
+        long from = state[0];
+        int untimed = (int) state[1];
+        int newSize = (int) state[2];
+        long droppedNow = state[3] - dropped;
+        int keptPrefix = (int) state[4];
+        dropped = state[3];
+
+        // Changes among the dropped readings cannot be told apart from the drop
+        boolean whole = from == WHOLE_LIST || droppedNow < 0 || droppedNow > size - untimed
+                || (droppedNow > 0 && keptPrefix <= untimed);
+        int oldSize = size;
+        pages.clear();
+        beginChange();
+        if (whole) {
+            size = newSize;
+            if (oldSize > 0) {
+                nextRemove(0, Collections.nCopies(oldSize, null));
+            }
+            if (newSize > 0) {
+                nextAdd(0, newSize);
+            }
+        } else {
+            if (droppedNow > 0) {
+                // The oldest timed readings were dropped past their retention
+                nextRemove(untimed, Collections.nCopies((int) droppedNow, null));
+            }
+            int oldTail = Math.max(0, oldSize - (int) droppedNow - keptPrefix);
+            int newTail = newSize - keptPrefix;
+            size = newSize;
+            if (oldTail > 0 && newTail > 0) {
+                nextReplace(keptPrefix, newSize, Collections.nCopies(oldTail, null));
+            } else if (newTail > 0) {
+                nextAdd(keptPrefix, newSize);
+            } else if (oldTail > 0) {
+                nextRemove(keptPrefix, Collections.nCopies(oldTail, null));
+            }
+        }
+        endChange();
+    }
+}
@@ -0,0 +1,606 @@
+package com.rpms.HealthData;
+
+import com.rpms.utilities.SerializationUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Compressed encoding of a block of vital sign readings, in the style of the Gorilla time series format.
+ * <p>
+ * Readings are taken at fairly regular intervals and change slowly, so each reading is stored
+ * relative to the one before it in a bit stream:
+ * <ul>
+ *   <li>the timestamp as the change of the interval between readings (delta of delta), which is
+ *       zero for evenly spaced readings and takes a single bit,</li>
+ *   <li>heart rate, oxygen level and temperature as the XOR of their bits with the previous value,
+ *       storing only the bits that differ (a single bit for an unchanged value),</li>
+ *   <li>systolic and diastolic pressure as the difference from the previous value.</li>
+ * </ul>
+ * The rare extras (sub-millisecond times, blood pressure text that is not in canonical form,
+ * readings recorded under another patient ID) are listed by index before the bit stream.
+ * The encoding is lossless.
+ * <p>
+ * A block is decoded in one pass with a {@link Cursor} or an iterator, without materializing
+ * the readings, or into a {@link VitalSeries}. The bit coding is shared with the aggregates
+ * of a series ({@link VitalRollups}).
+ */
+public final class CompressedVitalBlock {
+
+    /** Timestamp of a reading without a date, as stored in a series */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private CompressedVitalBlock() {
+    }
+
+    // ===== Encoding =====
+
+    /**
+     * Encodes all readings of a series
+     *
+     * @param series The readings
+     * @return The compressed block
+     */
+    public static byte[] encode(VitalSeries series) {
+        int count = series.size();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + count * 4);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(count);
+            writeExtras(out, series);
+
+            BitWriter bits = new BitWriter(count * 4 + 16);
+            XorState heartRate = new XorState();
+            XorState oxygenLevel = new XorState();
+            XorState temperature = new XorState();
+            long previousTime = 0;
+            long previousDelta = 0;
+            int previousSystolic = 0;
+            int previousDiastolic = 0;
+            for (int i = 0; i < count; i++) {
+                long time = series.getEpochMillis(i);
+                long delta = time - previousTime;
+                writeSigned(bits, delta - previousDelta);
+                previousTime = time;
+                previousDelta = delta;
+
+                heartRate.write(bits, series.getHeartRate(i));
+                oxygenLevel.write(bits, series.getOxygenLevel(i));
+                temperature.write(bits, series.getTemperature(i));
+
+                int systolic = series.getSystolic(i);
+                int diastolic = series.getDiastolic(i);
+                writeSigned(bits, systolic - previousSystolic);
+                writeSigned(bits, diastolic - previousDiastolic);
+                previousSystolic = systolic;
+                previousDiastolic = diastolic;
+            }
+            byte[] stream = bits.toByteArray();
+            out.writeInt(stream.length);
+            out.write(stream);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode vital signs in memory", e); // Not thrown by byte arrays
+        }
+    }
+
+    /**
+     * Writes the extras of the readings that have them, by index
+     */
+    private static void writeExtras(DataOutputStream out, VitalSeries series) throws IOException {
+        int count = series.size();
+        int nanos = 0;
+        int texts = 0;
+        int ids = 0;
+        for (int i = 0; i < count; i++) {
+            nanos += series.getSubMillisNanos(i) != 0 ? 1 : 0;
+            texts += series.getPressureText(i) != null ? 1 : 0;
+            ids += isForeign(series, i) ? 1 : 0;
+        }
+        out.writeInt(nanos);
+        for (int i = 0; i < count && nanos > 0; i++) {
+            if (series.getSubMillisNanos(i) != 0) {
+                out.writeInt(i);
+                out.writeInt(series.getSubMillisNanos(i));
+            }
+        }
+        out.writeInt(texts);
+        for (int i = 0; i < count && texts > 0; i++) {
+            if (series.getPressureText(i) != null) {
+                out.writeInt(i);
+                SerializationUtil.writeString(out, series.getPressureText(i));
+            }
+        }
+        out.writeInt(ids);
+        for (int i = 0; i < count && ids > 0; i++) {
+            if (isForeign(series, i)) {
+                out.writeInt(i);
+                SerializationUtil.writeString(out, series.getReadingPatientId(i));
+            }
+        }
+    }
+
+    /**
+     * Checks whether a reading was recorded under another ID than the series owner's
+     */
+    private static boolean isForeign(VitalSeries series, int index) {
+        String id = series.getReadingPatientId(index);
+        return id == null ? series.getPatientId() != null : !id.equals(series.getPatientId());
+    }
+
+    // ===== Decoding =====
+
+    /**
+     * Decodes a block into a series
+     *
+     * @param block The compressed block
+     * @param patientId ID of the patient the readings belong to
+     * @return The readings, in the order they were encoded
+     * @throws IOException If the block is invalid
+     */
+    public static VitalSeries decode(byte[] block, String patientId) throws IOException {
+        Cursor cursor = cursor(block);
+        VitalSeries series = new VitalSeries(patientId, cursor.size());
+        while (cursor.next()) {
+            series.append(cursor.time, cursor.nanos, cursor.heartRate, cursor.oxygenLevel,
+                    cursor.systolic, cursor.diastolic, cursor.temperature);
+            if (cursor.pressureText != null) {
+                series.setPressureText(cursor.index, cursor.pressureText);
+            }
+            if (cursor.foreign) {
+                series.setReadingPatientId(cursor.index, cursor.readingPatientId);
+            }
+        }
+        cursor.checkComplete();
+        return series;
+    }
+
+    /**
+     * Opens a cursor streaming through the readings of a block
+     *
+     * @param block The compressed block
+     * @return Cursor positioned before the first reading
+     * @throws IOException If the block is invalid
+     */
+    public static Cursor cursor(byte[] block) throws IOException {
+        return new Cursor(block);
+    }
+
+    /**
+     * Streams through the readings of a block as VitalSign objects, created as they are reached
+     *
+     * @param block The compressed block
+     * @param patientId ID of the patient the readings belong to
+     * @return Iterator over the readings
+     * @throws IOException If the block is invalid
+     */
+    public static Iterator<VitalSign> iterator(byte[] block, String patientId) throws IOException {
+        Cursor cursor = cursor(block);
+        return new Iterator<>() {
+            private boolean ready;
+            private boolean more;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) {
+                    more = cursor.next();
+                    ready = true;
+                }
+                return more;
+            }
+
+            @Override
+            public VitalSign next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return cursor.toVitalSign(patientId);
+            }
+        };
+    }
+
+    /**
+     * Reads position by position through the readings of a block.
+     * The getters return the values of the current reading.
+     */
+    public static final class Cursor {
+        private final int count;
+        private final BitReader bits;
+        private final int[] nanosIndexes;
+        private final int[] nanosValues;
+        private final int[] textIndexes;
+        private final String[] texts;
+        private final int[] idIndexes;
+        private final String[] ids;
+        private int nextNanos;
+        private int nextText;
+        private int nextId;
+
+        private final XorState heartRateState = new XorState();
+        private final XorState oxygenLevelState = new XorState();
+        private final XorState temperatureState = new XorState();
+        private long previousDelta;
+
+        private int index = -1;
+        private long time;
+        private int nanos;
+        private double heartRate;
+        private double oxygenLevel;
+        private double temperature;
+        private int systolic;
+        private int diastolic;
+        private String pressureText;
+        private boolean foreign;
+        private String readingPatientId;
+
+        private Cursor(byte[] block) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(block));
+            count = in.readInt();
+            int nanosCount = readCount(in, count);
+            nanosIndexes = new int[nanosCount];
+            nanosValues = new int[nanosCount];
+            for (int i = 0; i < nanosCount; i++) {
+                nanosIndexes[i] = in.readInt();
+                nanosValues[i] = in.readInt();
+            }
+            int textCount = readCount(in, count);
+            textIndexes = new int[textCount];
+            texts = new String[textCount];
+            for (int i = 0; i < textCount; i++) {
+                textIndexes[i] = in.readInt();
+                texts[i] = SerializationUtil.readString(in);
+            }
+            int idCount = readCount(in, count);
+            idIndexes = new int[idCount];
+            ids = new String[idCount];
+            for (int i = 0; i < idCount; i++) {
+                idIndexes[i] = in.readInt();
+                ids[i] = SerializationUtil.readString(in);
+            }
+            int length = in.readInt();
+            if (length < 0 || length > in.available()) {
+                throw new InvalidObjectException("Invalid compressed vital signs length " + length);
+            }
+            int offset = block.length - in.available();
+            bits = new BitReader(block, offset, offset + length);
+        }
+
+        /**
+         * Gets the number of readings in the block
+         * @return Reading count
+         */
+        public int size() { return count; }
+
+        /**
+         * Moves to the next reading
+         * @return true if there is one, false at the end of the block
+         */
+        public boolean next() {
+            if (index + 1 >= count) {
+                index = count;
+                return false;
+            }
+            index++;
+            long delta = previousDelta + readSigned(bits);
+            time += delta;
+            previousDelta = delta;
+            heartRate = heartRateState.read(bits);
+            oxygenLevel = oxygenLevelState.read(bits);
+            temperature = temperatureState.read(bits);
+            systolic += (int) readSigned(bits);
+            diastolic += (int) readSigned(bits);
+
+            nanos = 0;
+            if (nextNanos < nanosIndexes.length && nanosIndexes[nextNanos] == index) {
+                nanos = nanosValues[nextNanos++];
+            }
+            pressureText = null;
+            if (nextText < textIndexes.length && textIndexes[nextText] == index) {
+                pressureText = texts[nextText++];
+            }
+            foreign = false;
+            readingPatientId = null;
+            if (nextId < idIndexes.length && idIndexes[nextId] == index) {
+                foreign = true;
+                readingPatientId = ids[nextId++];
+            }
+            return true;
+        }
+
+        /**
+         * Gets the index of the current reading
+         * @return Index
+         */
+        public int getIndex() { return index; }
+
+        /**
+         * Checks whether the current reading has a recording time
+         * @return true if the time is known
+         */
+        public boolean hasTime() { return time != NO_TIME; }
+
+        /**
+         * Gets the recording time of the current reading as epoch milliseconds (UTC)
+         * @return Epoch milliseconds
+         */
+        public long getEpochMillis() { return time; }
+
+        /**
+         * Gets the heart rate of the current reading
+         * @return Heart rate in beats per minute
+         */
+        public double getHeartRate() { return heartRate; }
+
+        /**
+         * Gets the oxygen level of the current reading
+         * @return Oxygen level in percent
+         */
+        public double getOxygenLevel() { return oxygenLevel; }
+
+        /**
+         * Gets the temperature of the current reading
+         * @return Temperature in degrees Celsius
+         */
+        public double getTemperature() { return temperature; }
+
+        /**
+         * Gets the systolic blood pressure of the current reading
+         * @return Systolic pressure
+         */
+        public int getSystolic() { return systolic; }
+
+        /**
+         * Gets the diastolic blood pressure of the current reading
+         * @return Diastolic pressure
+         */
+        public int getDiastolic() { return diastolic; }
+
+        /**
+         * Creates a VitalSign for the current reading
+         *
+         * @param patientId ID of the patient the readings belong to
+         * @return The reading
+         */
+        public VitalSign toVitalSign(String patientId) {
+            LocalDateTime recorded = null;
+            if (time != NO_TIME) {
+                recorded = LocalDateTime.ofEpochSecond(Math.floorDiv(time, 1000L),
+                        (int) Math.floorMod(time, 1000L) * 1_000_000 + nanos, ZoneOffset.UTC);
+            }
+            return VitalSign.restore(foreign ? readingPatientId : patientId, heartRate, oxygenLevel,
+                    systolic, diastolic, pressureText, temperature, recorded);
+        }
+
+        /**
+         * Checks that the whole block was read without running past its end
+         */
+        private void checkComplete() throws InvalidObjectException {
+            if (bits.isOverrun()) {
+                throw new InvalidObjectException("Compressed vital signs are truncated");
+            }
+        }
+
+        private static int readCount(DataInputStream in, int max) throws IOException {
+            int count = in.readInt();
+            if (count < 0 || count > max) {
+                throw new InvalidObjectException("Invalid compressed vital signs count " + count);
+            }
+            return count;
+        }
+    }
+
+    // ===== Bit Encoding =====
+
+    /**
+     * Writes a signed difference: a single 0 bit for zero, otherwise a prefix of 1 bits selecting
+     * a width of 7, 14, 24 or 64 bits
+     */
+    static void writeSigned(BitWriter out, long value) {
+        if (value == 0) {
+            out.write(0, 1);
+        } else if (value >= -64 && value < 64) {
+            out.write(0b10, 2);
+            out.write(value, 7);
+        } else if (value >= -8192 && value < 8192) {
+            out.write(0b110, 3);
+            out.write(value, 14);
+        } else if (value >= -(1 << 23) && value < (1 << 23)) {
+            out.write(0b1110, 4);
+            out.write(value, 24);
+        } else {
+            out.write(0b1111, 4);
+            out.write(value, 64);
+        }
+    }
+
+    /**
+     * Reads a signed difference written by {@link #writeSigned}
+     */
+    static long readSigned(BitReader in) {
+        if (in.read(1) == 0) {
+            return 0;
+        }
+        if (in.read(1) == 0) {
+            return signExtend(in.read(7), 7);
+        }
+        if (in.read(1) == 0) {
+            return signExtend(in.read(14), 14);
+        }
+        if (in.read(1) == 0) {
+            return signExtend(in.read(24), 24);
+        }
+        return in.read(64);
+    }
+
+    private static long signExtend(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    /**
+     * XOR compression state of one measurement: the previous value and the window of
+     * meaningful bits last written
+     */
+    static final class XorState {
+        private long previous;
+        private int leading = -1;
+        private int trailing;
+
+        void write(BitWriter out, double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.write(0, 1);
+                return;
+            }
+            int newLeading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int newTrailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= 0 && newLeading >= leading && newTrailing >= trailing) {
+                // The changed bits fit in the previous window
+                out.write(0b10, 2);
+                out.write(xor >>> trailing, 64 - leading - trailing);
+            } else {
+                int significant = 64 - newLeading - newTrailing;
+                out.write(0b11, 2);
+                out.write(newLeading, 5);
+                out.write(significant - 1, 6);
+                out.write(xor >>> newTrailing, significant);
+                leading = newLeading;
+                trailing = newTrailing;
+            }
+        }
+
+        double read(BitReader in) {
+            if (in.read(1) != 0) {
+                long xor;
+                if (in.read(1) == 0) {
+                    xor = in.read(64 - leading - trailing) << trailing;
+                } else {
+                    leading = (int) in.read(5);
+                    int significant = (int) in.read(6) + 1;
+                    trailing = 64 - leading - significant;
+                    xor = in.read(significant) << trailing;
+                }
+                previous ^= xor;
+            }
+            return Double.longBitsToDouble(previous);
+        }
+    }
+
+    /**
+     * Appends bits to a growable byte array, most significant bit first
+     */
+    static final class BitWriter {
+        private byte[] bytes;
+        private int length;
+        private long buffer;
+        private int bufferBits;
+
+        BitWriter(int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        /**
+         * Writes the lowest bits of a value
+         * @param bits Number of bits, 1 to 64
+         */
+        void write(long value, int bits) {
+            if (bits > 32) {
+                writePiece(value >>> 32, bits - 32);
+                writePiece(value, 32);
+            } else {
+                writePiece(value, bits);
+            }
+        }
+
+        private void writePiece(long value, int bits) {
+            buffer = (buffer << bits) | (value & ((1L << bits) - 1));
+            bufferBits += bits;
+            while (bufferBits >= 8) {
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, length + (length >> 1));
+                }
+                bufferBits -= 8;
+                bytes[length++] = (byte) (buffer >>> bufferBits);
+            }
+        }
+
+        byte[] toByteArray() {
+            if (bufferBits > 0) {
+                writePiece(0, 8 - bufferBits);
+            }
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+
+    /**
+     * Reads bits from a byte array, most significant bit first, through a 64-bit cache
+     */
+    static final class BitReader {
+        private final byte[] bytes;
+        private final int end;
+        private int position;
+        private long cache;
+        private int cacheBits;
+        private int paddingBits;
+        private boolean overrun;
+
+        BitReader(byte[] bytes, int start, int end) {
+            this.bytes = bytes;
+            this.position = start;
+            this.end = end;
+        }
+
+        /**
+         * Reads a number of bits
+         * @param bits Number of bits, 1 to 64
+         */
+        long read(int bits) {
+            if (bits > 32) {
+                long high = readPiece(bits - 32);
+                return (high << 32) | readPiece(32);
+            }
+            return readPiece(bits);
+        }
+
+        private long readPiece(int bits) {
+            if (cacheBits < bits) {
+                refill();
+            }
+            if (cacheBits - paddingBits < bits) {
+                overrun = true;
+            }
+            cacheBits -= bits;
+            return (cache >>> cacheBits) & ((1L << bits) - 1);
+        }
+
+        private void refill() {
+            while (cacheBits <= 56) {
+                int next;
+                if (position < end) {
+                    next = bytes[position++] & 0xFF;
+                } else {
+                    next = 0; // Past the end of a truncated block
+                    paddingBits += 8;
+                }
+                cache = (cache << 8) | next;
+                cacheBits += 8;
+            }
+        }
+
+        boolean isOverrun() {
+            return overrun;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.rpms.HealthData;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import com.rpms.HealthData.VitalStatistics.Channel;
+
+/**
+ * Picks the readings of a measurement to draw in a chart, at most a given number, so that charts
+ * stay fast whatever the length of the history.
+ * <p>
+ * Readings are chosen with Largest-Triangle-Three-Buckets (LTTB): the first and last readings are
+ * always kept, the others are split into equal buckets, and from each bucket the reading forming the
+ * largest triangle with the reading chosen before and the mean of the next bucket is kept. This keeps
+ * peaks and dips that averaging would flatten. It reads the columns of the series directly, in two passes
+ * over the range, without creating VitalSign objects. Readings without a time are not charted, nor are readings
+ * without numeric blood pressure in the blood pressure charts.
+ */
+public class VitalDownsampler {
+
+    /** Timestamp of a reading without a date, as stored in a series */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    /**
+     * Readings chosen for a chart, oldest first
+     */
+    public static final class Points {
+        /** Recording times in epoch milliseconds (UTC) */
+        private final long[] times;
+
+        /** Values of the measurement */
+        private final double[] values;
+
+        /** Number of points */
+        private final int size;
+
+        /** Number of readings the points were chosen from */
+        private final int sourceSize;
+
+        Points(long[] times, double[] values, int size, int sourceSize) {
+            this.times = times;
+            this.values = values;
+            this.size = size;
+            this.sourceSize = sourceSize;
+        }
+
+        /**
+         * Gets the number of points
+         * @return Point count
+         */
+        public int size() { return size; }
+
+        /**
+         * Gets the number of readings the points were chosen from
+         * @return Reading count
+         */
+        public int getSourceSize() { return sourceSize; }
+
+        /**
+         * Checks whether readings were left out
+         * @return true if there are fewer points than readings
+         */
+        public boolean isDownsampled() { return size < sourceSize; }
+
+        /**
+         * Gets the recording time of a point
+         * @param index Index of the point
+         * @return Epoch milliseconds (UTC)
+         */
+        public long getEpochMillis(int index) {
+            checkIndex(index);
+            return times[index];
+        }
+
+        /**
+         * Gets the recording time of a point
+         * @param index Index of the point
+         * @return Recording time
+         */
+        public LocalDateTime getDateTime(int index) {
+            checkIndex(index);
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(times[index]), ZoneOffset.UTC);
+        }
+
+        /**
+         * Gets the value of a point
+         * @param index Index of the point
+         * @return Value of the measurement
+         */
+        public double getValue(int index) {
+            checkIndex(index);
+            return values[index];
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            }
+        }
+    }
+
+    /**
+     * Chooses the readings of a measurement in an index range to chart
+     *
+     * @param series The readings
+     * @param channel The measurement
+     * @param from Index of the first reading
+     * @param to Index after the last reading
+     * @param maxPoints Maximum number of points, at least 3
+     * @return The chosen readings, oldest first
+     */
+    public static Points lttb(VitalSeries series, Channel channel, int from, int to, int maxPoints) {
+        if (maxPoints < 3) {
+            throw new IllegalArgumentException("At least 3 points are needed: " + maxPoints);
+        }
+        from = Math.max(from, series.upperBound(NO_TIME));
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            count += isCharted(series, channel, i) ? 1 : 0;
+        }
+        if (count <= maxPoints) {
+            return all(series, channel, from, to, count);
+        }
+
+        long[] times = new long[maxPoints];
+        double[] values = new double[maxPoints];
+        int first = next(series, channel, from, to);
+        int last = previous(series, channel, from, to);
+        long origin = series.getEpochMillis(first);
+        times[0] = origin;
+        values[0] = value(series, channel, first);
+        int size = 1;
+
+        // Buckets split the readings between the first and last one
+        double bucketSize = (double) (last - first - 1) / (maxPoints - 2);
+        int chosen = first;
+        int buckets = maxPoints - 2;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = boundary(first, last, bucketSize, buckets, bucket);
+            int end = boundary(first, last, bucketSize, buckets, bucket + 1);
+
+            // Mean of the next bucket, or the last reading after the last bucket
+            int nextStart = end;
+            int nextEnd = bucket + 1 < buckets ? boundary(first, last, bucketSize, buckets, bucket + 2) : last + 1;
+            double meanX = 0;
+            double meanY = 0;
+            int meanCount = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                if (isCharted(series, channel, i)) {
+                    meanX += series.getEpochMillis(i) - origin;
+                    meanY += value(series, channel, i);
+                    meanCount++;
+                }
+            }
+            if (meanCount == 0) {
+                meanX = series.getEpochMillis(last) - origin;
+                meanY = value(series, channel, last);
+            } else {
+                meanX /= meanCount;
+                meanY /= meanCount;
+            }
+
+            // Reading of this bucket forming the largest triangle
+            double chosenX = series.getEpochMillis(chosen) - origin;
+            double chosenY = value(series, channel, chosen);
+            double largest = -1;
+            int best = -1;
+            for (int i = start; i < end; i++) {
+                if (!isCharted(series, channel, i)) {
+                    continue;
+                }
+                double x = series.getEpochMillis(i) - origin;
+                double y = value(series, channel, i);
+                double area = Math.abs((chosenX - meanX) * (y - chosenY) - (chosenX - x) * (meanY - chosenY));
+                if (area > largest) {
+                    largest = area;
+                    best = i;
+                }
+            }
+            if (best >= 0) {
+                times[size] = series.getEpochMillis(best);
+                values[size] = value(series, channel, best);
+                size++;
+                chosen = best;
+            }
+        }
+        times[size] = series.getEpochMillis(last);
+        values[size] = value(series, channel, last);
+        size++;
+        return new Points(times, values, size, count);
+    }
+
+    /**
+     * Gets the index of the first reading of a bucket; the buckets end at the last reading
+     */
+    private static int boundary(int first, int last, double bucketSize, int buckets, int bucket) {
+        return bucket >= buckets ? last : first + 1 + (int) (bucket * bucketSize);
+    }
+
+    /**
+     * Takes every charted reading of a range
+     */
+    private static Points all(VitalSeries series, Channel channel, int from, int to, int count) {
+        long[] times = new long[count];
+        double[] values = new double[count];
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            if (isCharted(series, channel, i)) {
+                times[size] = series.getEpochMillis(i);
+                values[size] = value(series, channel, i);
+                size++;
+            }
+        }
+        return new Points(times, values, size, count);
+    }
+
+    /**
+     * Checks whether a reading has a value to chart
+     */
+    private static boolean isCharted(VitalSeries series, Channel channel, int index) {
+        switch (channel) {
+            case SYSTOLIC:
+            case DIASTOLIC:
+                return series.getSystolic(index) > 0 && series.getDiastolic(index) > 0;
+            default:
+                return true;
+        }
+    }
+
+    private static double value(VitalSeries series, Channel channel, int index) {
+        switch (channel) {
+            case HEART_RATE:
+                return series.getHeartRate(index);
+            case OXYGEN_LEVEL:
+                return series.getOxygenLevel(index);
+            case SYSTOLIC:
+                return series.getSystolic(index);
+            case DIASTOLIC:
+                return series.getDiastolic(index);
+            default:
+                return series.getTemperature(index);
+        }
+    }
+
+    private static int next(VitalSeries series, Channel channel, int from, int to) {
+        while (from < to && !isCharted(series, channel, from)) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int previous(VitalSeries series, Channel channel, int from, int to) {
+        int index = to - 1;
+        while (index > from && !isCharted(series, channel, index)) {
+            index--;
+        }
+        return index;
+    }
+}
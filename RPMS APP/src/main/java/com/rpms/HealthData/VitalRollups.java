@@ -0,0 +1,942 @@
+package com.rpms.HealthData;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Downsampled history of a patient's vital signs: the count, sum, minimum and maximum of every
+ * measurement per minute, per hour and per day.
+ * <p>
+ * The aggregates are kept up to date as readings are added to and removed from a {@link VitalSeries}
+ * and allow old history to be kept at a coarser resolution only. Raw readings are kept for a retention
+ * period ending at the most recent reading, minute aggregates for a longer period, hour aggregates for
+ * longer still and day aggregates for good. Retention horizons fall on whole days (UTC), so a day is
+ * either covered by a level completely or not at all. Readings added after their retention period
+ * ended only go into the aggregates. Totals of the dropped raw readings are kept, so all-time
+ * statistics stay exact.
+ * <p>
+ * {@link #aggregate} answers a query from the coarsest level whose buckets divide the requested
+ * resolution, and falls back to the next coarser level for the part of the range a level no longer covers.
+ * <p>
+ * Retention can be configured with the system properties rpms.vitals.rawRetentionDays (default 180),
+ * rpms.vitals.minuteRetentionDays (default 365) and rpms.vitals.hourRetentionDays (default 1825);
+ * 0 keeps a level for good. A level is never dropped before a finer one, and raw readings are kept
+ * at least as long as the longest statistics window (see {@link VitalStatistics#getWindows()}).
+ * The aggregates are not thread-safe; they are only used together with their series.
+ */
+public class VitalRollups {
+
+    /** Minutes, hours and days in milliseconds */
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    /** Timestamp of a reading without a date, as stored in a series */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    /** The measurements, in the order of their columns */
+    private static final VitalStatistics.Channel[] CHANNELS = VitalStatistics.Channel.values();
+
+    /** Bucket sizes of the levels: raw readings, minutes, hours and days */
+    private static final long[] LEVEL_SIZES = { 1, MINUTE, HOUR, DAY };
+
+    /** Level of the raw readings */
+    private static final int RAW = 0;
+
+    /** Level of the day aggregates, which are never dropped */
+    private static final int DAYS = 3;
+
+    /** Retention of raw readings in milliseconds; 0 keeps them for good */
+    private static final long RAW_RETENTION = retention("rpms.vitals.rawRetentionDays", 180, longestWindow());
+
+    /** Retention of minute aggregates in milliseconds; 0 keeps them for good */
+    private static final long MINUTE_RETENTION = retention("rpms.vitals.minuteRetentionDays", 365, RAW_RETENTION);
+
+    /** Retention of hour aggregates in milliseconds; 0 keeps them for good */
+    private static final long HOUR_RETENTION = retention("rpms.vitals.hourRetentionDays", 1825, MINUTE_RETENTION);
+
+    /**
+     * Aggregate of the readings recorded in a time interval
+     */
+    public static final class Aggregate {
+        private final long start;
+        private final long end;
+        private final int count;
+        private final int pressureCount;
+        private final double[] means;
+        private final double[] mins;
+        private final double[] maxs;
+
+        Aggregate(long start, long end, int count, int pressureCount, double[] means, double[] mins, double[] maxs) {
+            this.start = start;
+            this.end = end;
+            this.count = count;
+            this.pressureCount = pressureCount;
+            this.means = means;
+            this.mins = mins;
+            this.maxs = maxs;
+        }
+
+        /**
+         * Gets the start of the interval
+         * @return Start (inclusive)
+         */
+        public LocalDateTime getStart() { return toDateTime(start); }
+
+        /**
+         * Gets the end of the interval
+         * @return End (exclusive)
+         */
+        public LocalDateTime getEnd() { return toDateTime(end); }
+
+        /**
+         * Gets the length of the interval; it is shorter than the requested resolution where a
+         * retention horizon cuts it, and longer where only coarser aggregates are left
+         * @return Length
+         */
+        public Duration getLength() { return Duration.ofMillis(end - start); }
+
+        /**
+         * Gets the number of readings in the interval
+         * @return Reading count
+         */
+        public int getCount() { return count; }
+
+        /**
+         * Gets the number of readings in the interval that have a measurement
+         * @param channel The measurement
+         * @return Reading count
+         */
+        public int getCount(VitalStatistics.Channel channel) {
+            return isPressure(channel.ordinal()) ? pressureCount : count;
+        }
+
+        /**
+         * Gets the mean of a measurement
+         * @param channel The measurement
+         * @return Mean, or NaN if no reading has the measurement
+         */
+        public double getMean(VitalStatistics.Channel channel) { return means[channel.ordinal()]; }
+
+        /**
+         * Gets the lowest value of a measurement
+         * @param channel The measurement
+         * @return Minimum, or NaN if no reading has the measurement
+         */
+        public double getMin(VitalStatistics.Channel channel) { return mins[channel.ordinal()]; }
+
+        /**
+         * Gets the highest value of a measurement
+         * @param channel The measurement
+         * @return Maximum, or NaN if no reading has the measurement
+         */
+        public double getMax(VitalStatistics.Channel channel) { return maxs[channel.ordinal()]; }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(getStart()).append(" - ").append(getEnd()).append(": ").append(count).append(" readings");
+            for (VitalStatistics.Channel channel : CHANNELS) {
+                if (getCount(channel) > 0) {
+                    text.append(String.format(", %s %.1f (%.1f-%.1f)", channel.getLabel(),
+                            getMean(channel), getMin(channel), getMax(channel)));
+                }
+            }
+            return text.toString();
+        }
+    }
+
+    /** Aggregates per minute, covering the readings from minuteHorizon on */
+    private final Tier minutes = new Tier(MINUTE);
+
+    /** Aggregates per hour, covering the readings from hourHorizon on */
+    private final Tier hours = new Tier(HOUR);
+
+    /** Aggregates per day, covering all readings with a time */
+    private final Tier days = new Tier(DAY);
+
+    /** Raw readings recorded before this time were dropped; NO_TIME while all are kept */
+    private long rawHorizon = NO_TIME;
+
+    /** Minute aggregates before this time were dropped; NO_TIME while all are kept */
+    private long minuteHorizon = NO_TIME;
+
+    /** Hour aggregates before this time were dropped; NO_TIME while all are kept */
+    private long hourHorizon = NO_TIME;
+
+    /** Number of dropped raw readings by channel */
+    private final long[] compactedCounts = new long[CHANNELS.length];
+
+    /** Mean of the dropped raw readings by channel */
+    private final double[] compactedMeans = new double[CHANNELS.length];
+
+    /** Sum of the squared deviations from the mean of the dropped raw readings by channel */
+    private final double[] compactedSquares = new double[CHANNELS.length];
+
+    /** Lowest value of the dropped raw readings by channel, NaN if none */
+    private final double[] compactedMins = new double[CHANNELS.length];
+
+    /** Highest value of the dropped raw readings by channel, NaN if none */
+    private final double[] compactedMaxs = new double[CHANNELS.length];
+
+    /** Values of the reading being added, by channel */
+    private final double[] values = new double[CHANNELS.length];
+
+    /**
+     * Creates empty aggregates
+     */
+    private VitalRollups() {
+        Arrays.fill(compactedMins, Double.NaN);
+        Arrays.fill(compactedMaxs, Double.NaN);
+    }
+
+    /**
+     * Computes the aggregates of the readings in a series
+     * @param series The readings
+     * @return The aggregates
+     */
+    static VitalRollups build(VitalSeries series) {
+        VitalRollups rollups = new VitalRollups();
+        for (int i = series.upperBound(NO_TIME); i < series.size(); i++) {
+            VitalStatistics.readValues(series, i, rollups.values);
+            rollups.add(series.getEpochMillis(i), rollups.values);
+        }
+        return rollups;
+    }
+
+    // ===== Updates =====
+
+    /**
+     * Adds a reading to the aggregates
+     *
+     * @param vital The reading
+     * @return true if the reading is older than the raw retention, so only the aggregates keep it
+     */
+    boolean added(VitalSign vital) {
+        long time = VitalSeries.toEpochMillis(vital.getDateTimeRecorded());
+        if (time == NO_TIME) {
+            return false;
+        }
+        VitalStatistics.readValues(vital, values);
+        add(time, values);
+        if (time < rawHorizon) {
+            compact(values);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a reading of a series to the aggregates
+     *
+     * @param series The series holding the reading
+     * @param index Index of the reading
+     */
+    void added(VitalSeries series, int index) {
+        if (series.hasTime(index)) {
+            VitalStatistics.readValues(series, index, values);
+            add(series.getEpochMillis(index), values);
+        }
+    }
+
+    /**
+     * Checks whether a reading recorded at a time is older than the raw retention
+     *
+     * @param time Recording time as epoch milliseconds
+     * @return true if only the aggregates keep such a reading
+     */
+    boolean isCompacted(long time) {
+        return time != NO_TIME && time < rawHorizon;
+    }
+
+    /**
+     * Recomputes the aggregates of a time range from the raw readings, e.g. after readings were removed
+     *
+     * @param series The raw readings
+     * @param from Start of the range (inclusive); must be a whole day not before the raw retention horizon
+     * @param to End of the range (exclusive); must be a whole day, or Long.MAX_VALUE
+     */
+    void rebuild(VitalSeries series, long from, long to) {
+        Tier rebuiltMinutes = new Tier(MINUTE);
+        Tier rebuiltHours = new Tier(HOUR);
+        Tier rebuiltDays = new Tier(DAY);
+        for (int i = series.upperBound(from - 1), last = series.upperBound(to - 1); i < last; i++) {
+            VitalStatistics.readValues(series, i, values);
+            long time = series.getEpochMillis(i);
+            rebuiltMinutes.add(time, values);
+            rebuiltHours.add(time, values);
+            rebuiltDays.add(time, values);
+        }
+        minutes.replace(from, to, rebuiltMinutes);
+        hours.replace(from, to, rebuiltHours);
+        days.replace(from, to, rebuiltDays);
+    }
+
+    /**
+     * Moves the retention horizons forward to follow the most recent reading and drops the
+     * aggregates past their retention. Raw readings before the raw horizon are dropped by the series.
+     *
+     * @param latest Time of the most recent reading
+     * @return true if any aggregates were dropped, false otherwise
+     */
+    boolean retain(long latest) {
+        rawHorizon = Math.max(rawHorizon, horizon(latest, RAW_RETENTION));
+        boolean dropped = false;
+        long minute = horizon(latest, MINUTE_RETENTION);
+        if (minute > minuteHorizon) {
+            minuteHorizon = minute;
+            dropped = minutes.dropBefore(minute);
+        }
+        long hour = horizon(latest, HOUR_RETENTION);
+        if (hour > hourHorizon) {
+            hourHorizon = hour;
+            dropped |= hours.dropBefore(hour);
+        }
+        return dropped;
+    }
+
+    /**
+     * Adds raw readings that are dropped from a series to the compacted totals
+     *
+     * @param series The raw readings
+     * @param from Index of the first dropped reading
+     * @param to Index after the last dropped reading
+     */
+    void compacted(VitalSeries series, int from, int to) {
+        for (int i = from; i < to; i++) {
+            VitalStatistics.readValues(series, i, values);
+            compact(values);
+        }
+    }
+
+    /**
+     * Gets the raw retention horizon
+     * @return Raw readings recorded before this time were dropped; Long.MIN_VALUE while all are kept
+     */
+    long getRawHorizon() {
+        return rawHorizon;
+    }
+
+    /**
+     * Gets the number of raw readings dropped so far
+     * @return Dropped reading count
+     */
+    long getCompactedReadings() {
+        return compactedCounts[VitalStatistics.Channel.HEART_RATE.ordinal()];
+    }
+
+    /**
+     * Gets the number of dropped raw readings that have a measurement
+     * @param channel The measurement
+     * @return Reading count
+     */
+    long getCompactedCount(VitalStatistics.Channel channel) { return compactedCounts[channel.ordinal()]; }
+
+    /**
+     * Gets the mean of a measurement over the dropped raw readings
+     * @param channel The measurement
+     * @return Mean
+     */
+    double getCompactedMean(VitalStatistics.Channel channel) { return compactedMeans[channel.ordinal()]; }
+
+    /**
+     * Gets the sum of the squared deviations from the mean of a measurement over the dropped raw readings
+     * @param channel The measurement
+     * @return Sum of squares
+     */
+    double getCompactedSquares(VitalStatistics.Channel channel) { return compactedSquares[channel.ordinal()]; }
+
+    /**
+     * Gets the lowest value of a measurement over the dropped raw readings
+     * @param channel The measurement
+     * @return Minimum, or NaN if none
+     */
+    double getCompactedMin(VitalStatistics.Channel channel) { return compactedMins[channel.ordinal()]; }
+
+    /**
+     * Gets the highest value of a measurement over the dropped raw readings
+     * @param channel The measurement
+     * @return Maximum, or NaN if none
+     */
+    double getCompactedMax(VitalStatistics.Channel channel) { return compactedMaxs[channel.ordinal()]; }
+
+    // ===== Queries =====
+
+    /**
+     * Aggregates the readings of a time range at a resolution.
+     * The range is widened to whole intervals of the resolution, aligned to the epoch (UTC).
+     * Each part of the range is read from the coarsest level whose buckets divide the resolution and
+     * still cover that part; where only a coarser level is left, its whole buckets overlapping the
+     * range are returned as they are.
+     * Intervals without readings are left out.
+     *
+     * @param series The raw readings
+     * @param from Start of the range as epoch milliseconds (inclusive)
+     * @param to End of the range as epoch milliseconds (inclusive)
+     * @param resolution Length of the intervals in milliseconds
+     * @return The aggregates, oldest first
+     */
+    List<Aggregate> aggregate(VitalSeries series, long from, long to, long resolution) {
+        List<Aggregate> aggregates = new ArrayList<>();
+        if (days.length == 0) {
+            return aggregates;
+        }
+        // Clamp to the history first, so aligning the range cannot overflow
+        long first = Math.max(from, days.starts[0]);
+        long last = Math.min(to, days.starts[days.length - 1] + DAY - 1);
+        if (first > last) {
+            return aggregates;
+        }
+        long start = Math.floorDiv(first, resolution) * resolution;
+        long end = (Math.floorDiv(last, resolution) + 1) * resolution;
+
+        int preferred = RAW;
+        for (int level = 1; level <= DAYS; level++) {
+            if (resolution % LEVEL_SIZES[level] == 0) {
+                preferred = level;
+            }
+        }
+        AggregateBuilder builder = new AggregateBuilder(aggregates);
+        for (int level = DAYS; level >= preferred; level--) {
+            long segmentStart = Math.max(start, levelHorizon(level));
+            long segmentEnd = level == preferred ? end : Math.min(end, levelHorizon(level - 1));
+            if (segmentStart >= segmentEnd) {
+                continue;
+            }
+            // Intervals are only cut at the horizons, which fall on whole days like the buckets of every level
+            long size = LEVEL_SIZES[level];
+            builder.begin(resolution % size == 0 ? resolution : size, levelHorizon(level),
+                    level == preferred ? Long.MAX_VALUE : levelHorizon(level - 1));
+            if (level == RAW) {
+                for (int i = series.upperBound(segmentStart - 1), stop = series.upperBound(segmentEnd - 1); i < stop; i++) {
+                    VitalStatistics.readValues(series, i, values);
+                    builder.addReading(series.getEpochMillis(i), values);
+                }
+            } else {
+                Tier tier = tier(level);
+                int i = tier.lowerBound(Math.floorDiv(segmentStart, size) * size);
+                for (int stop = tier.lowerBound(segmentEnd); i < stop; i++) {
+                    builder.addBucket(tier, i);
+                }
+            }
+        }
+        builder.flush();
+        return aggregates;
+    }
+
+    /**
+     * Gets the number of buckets kept per level
+     * @return Minute, hour and day bucket counts
+     */
+    int[] getBucketCounts() {
+        return new int[] { minutes.length, hours.length, days.length };
+    }
+
+    // ===== Serialization =====
+
+    /**
+     * Writes the aggregates
+     *
+     * @param out Output to write to
+     * @param compressed Whether the buckets are written with the bit coding of {@link CompressedVitalBlock}
+     * @throws IOException If an I/O error occurs
+     */
+    void write(DataOutput out, boolean compressed) throws IOException {
+        out.writeLong(rawHorizon);
+        out.writeLong(minuteHorizon);
+        out.writeLong(hourHorizon);
+        for (int c = 0; c < CHANNELS.length; c++) {
+            out.writeLong(compactedCounts[c]);
+            out.writeDouble(compactedMeans[c]);
+            out.writeDouble(compactedSquares[c]);
+            out.writeDouble(compactedMins[c]);
+            out.writeDouble(compactedMaxs[c]);
+        }
+        minutes.write(out, compressed);
+        hours.write(out, compressed);
+        days.write(out, compressed);
+    }
+
+    /**
+     * Reads aggregates written by {@link #write}
+     *
+     * @param in Input to read from
+     * @param compressed Whether the buckets were written compressed
+     * @return The aggregates
+     * @throws IOException If an I/O error occurs or the data is invalid
+     */
+    static VitalRollups read(DataInput in, boolean compressed) throws IOException {
+        VitalRollups rollups = new VitalRollups();
+        rollups.rawHorizon = in.readLong();
+        rollups.minuteHorizon = in.readLong();
+        rollups.hourHorizon = in.readLong();
+        for (int c = 0; c < CHANNELS.length; c++) {
+            rollups.compactedCounts[c] = in.readLong();
+            rollups.compactedMeans[c] = in.readDouble();
+            rollups.compactedSquares[c] = in.readDouble();
+            rollups.compactedMins[c] = in.readDouble();
+            rollups.compactedMaxs[c] = in.readDouble();
+        }
+        rollups.minutes.read(in, compressed);
+        rollups.hours.read(in, compressed);
+        rollups.days.read(in, compressed);
+        return rollups;
+    }
+
+    // ===== Internals =====
+
+    /**
+     * Adds a reading to every level that still covers its time
+     */
+    private void add(long time, double[] values) {
+        if (time >= minuteHorizon) {
+            minutes.add(time, values);
+        }
+        if (time >= hourHorizon) {
+            hours.add(time, values);
+        }
+        days.add(time, values);
+    }
+
+    /**
+     * Adds a dropped raw reading to the compacted totals, updating mean and squares as in Welford's method
+     */
+    private void compact(double[] values) {
+        for (int c = 0; c < CHANNELS.length; c++) {
+            double value = values[c];
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            long count = ++compactedCounts[c];
+            double delta = value - compactedMeans[c];
+            compactedMeans[c] += delta / count;
+            compactedSquares[c] += delta * (value - compactedMeans[c]);
+            compactedMins[c] = count == 1 ? value : Math.min(compactedMins[c], value);
+            compactedMaxs[c] = count == 1 ? value : Math.max(compactedMaxs[c], value);
+        }
+    }
+
+    /**
+     * Gets the aggregates of a level
+     */
+    private Tier tier(int level) {
+        return level == 1 ? minutes : level == 2 ? hours : days;
+    }
+
+    /**
+     * Gets the time from which a level covers the readings
+     */
+    private long levelHorizon(int level) {
+        switch (level) {
+            case RAW: return rawHorizon;
+            case 1: return minuteHorizon;
+            case 2: return hourHorizon;
+            default: return NO_TIME;
+        }
+    }
+
+    /**
+     * Gets the start of the day a retention period before the most recent reading
+     */
+    private static long horizon(long latest, long retention) {
+        return retention == 0 ? NO_TIME : Math.floorDiv(latest - retention, DAY) * DAY;
+    }
+
+    /**
+     * Reads a retention period in days
+     *
+     * @param property Name of the system property
+     * @param defaultDays Retention if the property is not set
+     * @param minimum Retention of the next finer level, or 0 if that level is kept for good
+     */
+    private static long retention(String property, long defaultDays, long minimum) {
+        long days = Long.getLong(property, defaultDays);
+        if (days <= 0 || minimum == 0 || days > Long.MAX_VALUE / (4 * DAY)) {
+            return 0;
+        }
+        if (days * DAY < minimum) {
+            System.err.println(property + " is shorter than the retention it builds on; using "
+                    + minimum / DAY + " days");
+        }
+        return Math.max(days * DAY, minimum);
+    }
+
+    /**
+     * Gets the length of the longest statistics window, at least a day
+     */
+    private static long longestWindow() {
+        long longest = DAY;
+        for (VitalStatistics.Window window : VitalStatistics.getWindows()) {
+            if (!window.isAllTime()) {
+                longest = Math.max(longest, window.getDuration().toMillis());
+            }
+        }
+        return Math.floorDiv(longest + DAY - 1, DAY) * DAY;
+    }
+
+    private static boolean isPressure(int channel) {
+        return channel == VitalStatistics.Channel.SYSTOLIC.ordinal()
+                || channel == VitalStatistics.Channel.DIASTOLIC.ordinal();
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000L),
+                (int) Math.floorMod(epochMillis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Aggregates of one level in columns, one bucket per interval that holds readings, ordered by time.
+     * Minimum and maximum are stored as floats to keep a bucket small.
+     */
+    private static class Tier {
+        /** Length of a bucket in milliseconds */
+        private final long size;
+
+        /** Number of buckets */
+        private int length;
+
+        private long[] starts = new long[0];
+        private int[] counts = new int[0];
+        private int[] pressureCounts = new int[0];
+        private final double[][] sums = new double[CHANNELS.length][0];
+        private final float[][] mins = new float[CHANNELS.length][0];
+        private final float[][] maxs = new float[CHANNELS.length][0];
+
+        Tier(long size) {
+            this.size = size;
+        }
+
+        /**
+         * Finds the first bucket starting at or after a time
+         */
+        int lowerBound(long time) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Adds a reading to its bucket, creating the bucket if needed
+         */
+        void add(long time, double[] values) {
+            long start = Math.floorDiv(time, size) * size;
+            int index = length - 1;
+            if (length == 0 || starts[index] != start) {
+                index = length == 0 || starts[length - 1] < start ? length : lowerBound(start);
+                if (index == length || starts[index] != start) {
+                    insert(index, start);
+                }
+            }
+            counts[index]++;
+            if (!Double.isNaN(values[VitalStatistics.Channel.SYSTOLIC.ordinal()])) {
+                pressureCounts[index]++;
+            }
+            for (int c = 0; c < CHANNELS.length; c++) {
+                double value = values[c];
+                if (!Double.isNaN(value)) {
+                    sums[c][index] += value;
+                    mins[c][index] = Math.min(mins[c][index], (float) value);
+                    maxs[c][index] = Math.max(maxs[c][index], (float) value);
+                }
+            }
+        }
+
+        /**
+         * Replaces the buckets of a time range with the buckets of another tier
+         */
+        void replace(long from, long to, Tier block) {
+            int first = lowerBound(from);
+            int last = lowerBound(to);
+            int newLength = length - (last - first) + block.length;
+            ensureCapacity(newLength);
+            copy(this, last, this, first + block.length, length - last);
+            copy(block, 0, this, first, block.length);
+            length = newLength;
+        }
+
+        /**
+         * Drops the buckets starting before a time
+         * @return true if any bucket was dropped
+         */
+        boolean dropBefore(long time) {
+            int dropped = lowerBound(time);
+            if (dropped == 0) {
+                return false;
+            }
+            copy(this, dropped, this, 0, length - dropped);
+            length -= dropped;
+            if (length < starts.length / 2) {
+                resize(length + (length >> 1));
+            }
+            return true;
+        }
+
+        private void insert(int index, long start) {
+            ensureCapacity(length + 1);
+            copy(this, index, this, index + 1, length - index);
+            starts[index] = start;
+            counts[index] = 0;
+            pressureCounts[index] = 0;
+            for (int c = 0; c < CHANNELS.length; c++) {
+                sums[c][index] = 0;
+                mins[c][index] = Float.POSITIVE_INFINITY;
+                maxs[c][index] = Float.NEGATIVE_INFINITY;
+            }
+            length++;
+        }
+
+        private static void copy(Tier source, int from, Tier target, int to, int count) {
+            System.arraycopy(source.starts, from, target.starts, to, count);
+            System.arraycopy(source.counts, from, target.counts, to, count);
+            System.arraycopy(source.pressureCounts, from, target.pressureCounts, to, count);
+            for (int c = 0; c < CHANNELS.length; c++) {
+                System.arraycopy(source.sums[c], from, target.sums[c], to, count);
+                System.arraycopy(source.mins[c], from, target.mins[c], to, count);
+                System.arraycopy(source.maxs[c], from, target.maxs[c], to, count);
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > starts.length) {
+                resize(Math.max(capacity, Math.max(16, starts.length + (starts.length >> 1))));
+            }
+        }
+
+        private void resize(int capacity) {
+            starts = Arrays.copyOf(starts, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            pressureCounts = Arrays.copyOf(pressureCounts, capacity);
+            for (int c = 0; c < CHANNELS.length; c++) {
+                sums[c] = Arrays.copyOf(sums[c], capacity);
+                mins[c] = Arrays.copyOf(mins[c], capacity);
+                maxs[c] = Arrays.copyOf(maxs[c], capacity);
+            }
+        }
+
+        void write(DataOutput out, boolean compressed) throws IOException {
+            out.writeInt(length);
+            if (compressed) {
+                writeCompressed(out);
+                return;
+            }
+            for (int i = 0; i < length; i++) {
+                out.writeLong(starts[i]);
+                out.writeInt(counts[i]);
+                out.writeInt(pressureCounts[i]);
+                for (int c = 0; c < CHANNELS.length; c++) {
+                    out.writeDouble(sums[c][i]);
+                    out.writeFloat(mins[c][i]);
+                    out.writeFloat(maxs[c][i]);
+                }
+            }
+        }
+
+        void read(DataInput in, boolean compressed) throws IOException {
+            int count = in.readInt();
+            if (count < 0) {
+                throw new InvalidObjectException("Invalid vital aggregate count " + count);
+            }
+            resize(count);
+            if (compressed) {
+                readCompressed(in, count);
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                starts[i] = in.readLong();
+                counts[i] = in.readInt();
+                pressureCounts[i] = in.readInt();
+                for (int c = 0; c < CHANNELS.length; c++) {
+                    sums[c][i] = in.readDouble();
+                    mins[c][i] = in.readFloat();
+                    maxs[c][i] = in.readFloat();
+                }
+            }
+            length = count;
+        }
+
+        /**
+         * Writes the buckets as a bit stream: bucket numbers as the change of the gap between buckets,
+         * counts as differences and the sums, minimums and maximums as XOR with the previous bucket
+         */
+        private void writeCompressed(DataOutput out) throws IOException {
+            CompressedVitalBlock.BitWriter bits = new CompressedVitalBlock.BitWriter(length * 16 + 16);
+            CompressedVitalBlock.XorState[] states = newStates();
+            long previousBucket = 0;
+            long previousGap = 0;
+            int previousCount = 0;
+            int previousPressureCount = 0;
+            for (int i = 0; i < length; i++) {
+                long bucket = starts[i] / size;
+                long gap = bucket - previousBucket;
+                CompressedVitalBlock.writeSigned(bits, gap - previousGap);
+                previousBucket = bucket;
+                previousGap = gap;
+                CompressedVitalBlock.writeSigned(bits, counts[i] - previousCount);
+                CompressedVitalBlock.writeSigned(bits, pressureCounts[i] - previousPressureCount);
+                previousCount = counts[i];
+                previousPressureCount = pressureCounts[i];
+                for (int c = 0; c < CHANNELS.length; c++) {
+                    states[3 * c].write(bits, sums[c][i]);
+                    states[3 * c + 1].write(bits, mins[c][i]);
+                    states[3 * c + 2].write(bits, maxs[c][i]);
+                }
+            }
+            byte[] stream = bits.toByteArray();
+            out.writeInt(stream.length);
+            out.write(stream);
+        }
+
+        /**
+         * Reads buckets written by {@link #writeCompressed}
+         */
+        private void readCompressed(DataInput in, int count) throws IOException {
+            int byteLength = in.readInt();
+            if (byteLength < 0) {
+                throw new InvalidObjectException("Invalid compressed vital aggregates length " + byteLength);
+            }
+            byte[] stream = new byte[byteLength];
+            in.readFully(stream);
+            CompressedVitalBlock.BitReader bits = new CompressedVitalBlock.BitReader(stream, 0, byteLength);
+            CompressedVitalBlock.XorState[] states = newStates();
+            long bucket = 0;
+            long gap = 0;
+            for (int i = 0; i < count; i++) {
+                gap += CompressedVitalBlock.readSigned(bits);
+                bucket += gap;
+                starts[i] = bucket * size;
+                counts[i] = (i > 0 ? counts[i - 1] : 0) + (int) CompressedVitalBlock.readSigned(bits);
+                pressureCounts[i] = (i > 0 ? pressureCounts[i - 1] : 0) + (int) CompressedVitalBlock.readSigned(bits);
+                for (int c = 0; c < CHANNELS.length; c++) {
+                    sums[c][i] = states[3 * c].read(bits);
+                    mins[c][i] = (float) states[3 * c + 1].read(bits);
+                    maxs[c][i] = (float) states[3 * c + 2].read(bits);
+                }
+            }
+            if (bits.isOverrun()) {
+                throw new InvalidObjectException("Compressed vital aggregates are truncated");
+            }
+            length = count;
+        }
+
+        private static CompressedVitalBlock.XorState[] newStates() {
+            CompressedVitalBlock.XorState[] states = new CompressedVitalBlock.XorState[3 * CHANNELS.length];
+            for (int i = 0; i < states.length; i++) {
+                states[i] = new CompressedVitalBlock.XorState();
+            }
+            return states;
+        }
+    }
+
+    /**
+     * Collects readings and buckets into the aggregates of a query.
+     * Intervals are aligned to their length and cut at the retention horizons of the level being read.
+     */
+    private static class AggregateBuilder {
+        private final List<Aggregate> aggregates;
+        private long length;
+        private long segmentStart;
+        private long segmentEnd;
+        private long current = NO_TIME;
+        private int count;
+        private int pressureCount;
+        private final double[] sums = new double[CHANNELS.length];
+        private final double[] mins = new double[CHANNELS.length];
+        private final double[] maxs = new double[CHANNELS.length];
+
+        AggregateBuilder(List<Aggregate> aggregates) {
+            this.aggregates = aggregates;
+        }
+
+        /**
+         * Starts a part of the range read from one level, covering the readings between two horizons
+         */
+        void begin(long length, long segmentStart, long segmentEnd) {
+            flush();
+            this.length = length;
+            this.segmentStart = segmentStart;
+            this.segmentEnd = segmentEnd;
+        }
+
+        void addReading(long time, double[] values) {
+            select(time);
+            count++;
+            if (!Double.isNaN(values[VitalStatistics.Channel.SYSTOLIC.ordinal()])) {
+                pressureCount++;
+            }
+            for (int c = 0; c < CHANNELS.length; c++) {
+                double value = values[c];
+                if (!Double.isNaN(value)) {
+                    sums[c] += value;
+                    mins[c] = Math.min(mins[c], value);
+                    maxs[c] = Math.max(maxs[c], value);
+                }
+            }
+        }
+
+        void addBucket(Tier tier, int index) {
+            select(tier.starts[index]);
+            count += tier.counts[index];
+            pressureCount += tier.pressureCounts[index];
+            for (int c = 0; c < CHANNELS.length; c++) {
+                sums[c] += tier.sums[c][index];
+                mins[c] = Math.min(mins[c], tier.mins[c][index]);
+                maxs[c] = Math.max(maxs[c], tier.maxs[c][index]);
+            }
+        }
+
+        /**
+         * Moves to the interval holding a time, finishing the previous one
+         */
+        private void select(long time) {
+            long start = Math.floorDiv(time, length) * length;
+            if (start != current) {
+                flush();
+                current = start;
+                Arrays.fill(sums, 0);
+                Arrays.fill(mins, Double.POSITIVE_INFINITY);
+                Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+            }
+        }
+
+        /**
+         * Finishes the current interval
+         */
+        void flush() {
+            if (current == NO_TIME) {
+                return;
+            }
+            if (count > 0) {
+                double[] means = new double[CHANNELS.length];
+                double[] lows = new double[CHANNELS.length];
+                double[] highs = new double[CHANNELS.length];
+                for (int c = 0; c < CHANNELS.length; c++) {
+                    int channelCount = isPressure(c) ? pressureCount : count;
+                    means[c] = channelCount > 0 ? sums[c] / channelCount : Double.NaN;
+                    lows[c] = channelCount > 0 ? mins[c] : Double.NaN;
+                    highs[c] = channelCount > 0 ? maxs[c] : Double.NaN;
+                }
+                aggregates.add(new Aggregate(Math.max(current, segmentStart), Math.min(current + length, segmentEnd),
+                        count, pressureCount, means, lows, highs));
+            }
+            current = NO_TIME;
+            count = 0;
+            pressureCount = 0;
+        }
+    }
+}
@@ -0,0 +1,995 @@
+package com.rpms.HealthData;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+/**
+ * Columnar storage of a patient's vital signs.
+ * Each measurement is kept in its own growable primitive array (timestamps as epoch milliseconds,
+ * heart rate, oxygen level and temperature as doubles, blood pressure as systolic and diastolic
+ * shorts), so a reading takes about 36 bytes instead of the 200+ bytes of a VitalSign object graph,
+ * and scans over one measurement read contiguous memory.
+ * <p>
+ * Readings are kept ordered by recording time, oldest first, so time ranges are found by
+ * binary search. Readings without a recording time sort before all others; readings with
+ * the same time keep the order they were added in.
+ * <p>
+ * {@link #asList()} offers the readings as VitalSign objects, which are created when they are
+ * accessed and are not stored.
+ * <p>
+ * Once its {@link VitalRollups} were requested, a series keeps them up to date as readings are added
+ * and removed, and {@link #compact()} drops raw readings past their retention period.
+ */
+public class VitalSeries {
+
+    /** Capacity of the arrays when the first reading is added */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Timestamp stored for a reading without a date */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    /** A day in milliseconds */
+    private static final long DAY = 86_400_000L;
+
+    /** ID of the patient the readings belong to, or null */
+    private final String patientId;
+
+    /** Number of readings */
+    private int size;
+
+    /** Recording times as epoch milliseconds (UTC) */
+    private long[] times = new long[0];
+
+    /** Nanoseconds below the millisecond; only allocated once a reading has them */
+    private int[] subMillisNanos;
+
+    /** Heart rates in beats per minute */
+    private double[] heartRates = new double[0];
+
+    /** Oxygen levels in percent */
+    private double[] oxygenLevels = new double[0];
+
+    /** Temperatures in degrees Celsius */
+    private double[] temperatures = new double[0];
+
+    /** Systolic blood pressures */
+    private short[] systolics = new short[0];
+
+    /** Diastolic blood pressures */
+    private short[] diastolics = new short[0];
+
+    /** Blood pressures not in canonical "systolic/diastolic" form, kept verbatim; only allocated when needed */
+    private String[] pressureTexts;
+
+    /** Patient IDs of readings recorded under another ID than the owner's; only allocated when needed */
+    private String[] readingPatientIds;
+
+    /** Minute, hour and day aggregates of the readings; null until they are requested */
+    private VitalRollups rollups;
+
+    /** Number of times readings past their retention were dropped */
+    private long compactions;
+
+    /** Number of readings dropped past their retention since the series was created */
+    private long droppedReadings;
+
+    /**
+     * Creates an empty series
+     * @param patientId ID of the patient the readings belong to, may be null
+     */
+    public VitalSeries(String patientId) {
+        this.patientId = patientId;
+    }
+
+    /**
+     * Creates an empty series with room for a number of readings
+     *
+     * @param patientId ID of the patient the readings belong to, may be null
+     * @param capacity Expected number of readings
+     */
+    VitalSeries(String patientId, int capacity) {
+        this(patientId);
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Creates a series holding the given readings
+     *
+     * @param patientId ID of the patient the readings belong to, may be null
+     * @param vitals The readings
+     */
+    public VitalSeries(String patientId, List<VitalSign> vitals) {
+        this(patientId);
+        ensureCapacity(vitals.size());
+        for (VitalSign vital : vitals) {
+            append(vital);
+        }
+        sortByTime();
+    }
+
+    // ===== Size =====
+
+    /**
+     * Gets the number of readings
+     * @return Reading count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the ID of the patient the readings belong to
+     * @return Patient ID, may be null
+     */
+    public String getPatientId() {
+        return patientId;
+    }
+
+    // ===== Column Access =====
+
+    /**
+     * Gets the recording time of a reading as epoch milliseconds (UTC)
+     * @param index Index of the reading
+     * @return Epoch milliseconds
+     */
+    public long getEpochMillis(int index) {
+        checkIndex(index);
+        return times[index];
+    }
+
+    /**
+     * Checks whether a reading has a recording time
+     * @param index Index of the reading
+     * @return true if the time is known, false otherwise
+     */
+    public boolean hasTime(int index) {
+        checkIndex(index);
+        return times[index] != NO_TIME;
+    }
+
+    /**
+     * Gets the nanoseconds of a reading's recording time below the millisecond
+     * @param index Index of the reading
+     * @return Nanoseconds (0-999999)
+     */
+    public int getSubMillisNanos(int index) {
+        checkIndex(index);
+        return subMillisNanos != null ? subMillisNanos[index] : 0;
+    }
+
+    /**
+     * Gets the recording time of a reading
+     * @param index Index of the reading
+     * @return Date and time the reading was recorded
+     */
+    public LocalDateTime getDateTimeRecorded(int index) {
+        checkIndex(index);
+        long millis = times[index];
+        if (millis == NO_TIME) {
+            return null;
+        }
+        int nanos = (int) Math.floorMod(millis, 1000L) * 1_000_000
+                + (subMillisNanos != null ? subMillisNanos[index] : 0);
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), nanos, ZoneOffset.UTC);
+    }
+
+    /**
+     * Gets the heart rate of a reading
+     * @param index Index of the reading
+     * @return Heart rate in beats per minute
+     */
+    public double getHeartRate(int index) {
+        checkIndex(index);
+        return heartRates[index];
+    }
+
+    /**
+     * Gets the oxygen level of a reading
+     * @param index Index of the reading
+     * @return Oxygen level in percent
+     */
+    public double getOxygenLevel(int index) {
+        checkIndex(index);
+        return oxygenLevels[index];
+    }
+
+    /**
+     * Gets the temperature of a reading
+     * @param index Index of the reading
+     * @return Temperature in degrees Celsius
+     */
+    public double getTemperature(int index) {
+        checkIndex(index);
+        return temperatures[index];
+    }
+
+    /**
+     * Gets the systolic blood pressure of a reading
+     * @param index Index of the reading
+     * @return Systolic pressure
+     */
+    public int getSystolic(int index) {
+        checkIndex(index);
+        return systolics[index];
+    }
+
+    /**
+     * Gets the diastolic blood pressure of a reading
+     * @param index Index of the reading
+     * @return Diastolic pressure
+     */
+    public int getDiastolic(int index) {
+        checkIndex(index);
+        return diastolics[index];
+    }
+
+    /**
+     * Gets the blood pressure of a reading as it was recorded
+     * @param index Index of the reading
+     * @return Blood pressure in systolic/diastolic format
+     */
+    public String getBloodPressure(int index) {
+        checkIndex(index);
+        if (pressureTexts != null && pressureTexts[index] != null) {
+            return pressureTexts[index];
+        }
+        return systolics[index] + "/" + diastolics[index];
+    }
+
+    /**
+     * Gets the patient ID a reading was recorded under
+     * @param index Index of the reading
+     * @return Patient ID of the reading
+     */
+    public String getReadingPatientId(int index) {
+        checkIndex(index);
+        if (readingPatientIds != null && readingPatientIds[index] != null) {
+            return readingPatientIds[index];
+        }
+        return patientId;
+    }
+
+    // ===== Readings =====
+
+    /**
+     * Gets a reading as a VitalSign object.
+     * A new object is created on every call; changing it does not change the series.
+     *
+     * @param index Index of the reading
+     * @return The reading
+     */
+    public VitalSign get(int index) {
+        return VitalSign.restore(getReadingPatientId(index), getHeartRate(index), getOxygenLevel(index),
+                systolics[index], diastolics[index], getPressureText(index),
+                getTemperature(index), getDateTimeRecorded(index));
+    }
+
+    /**
+     * Gets a read-only view of the readings as VitalSign objects, created when accessed
+     * @return List view of this series
+     */
+    public List<VitalSign> asList() {
+        return new ReadingList();
+    }
+
+    /**
+     * Adds a reading at its place in time order.
+     * Readings recorded after all others are appended; an older reading is inserted by
+     * shifting only the newer readings after it. A reading older than the raw retention
+     * only goes into the aggregates.
+     *
+     * @param vital The reading to add
+     */
+    public void add(VitalSign vital) {
+        if (rollups != null && rollups.added(vital)) {
+            return;
+        }
+        LocalDateTime recorded = vital.getDateTimeRecorded();
+        int index = size;
+        if (size > 0 && compareTime(size - 1, recorded) > 0) {
+            index = upperBound(recorded);
+        }
+        ensureCapacity(size + 1);
+        if (index < size) {
+            int moved = size - index;
+            System.arraycopy(times, index, times, index + 1, moved);
+            System.arraycopy(heartRates, index, heartRates, index + 1, moved);
+            System.arraycopy(oxygenLevels, index, oxygenLevels, index + 1, moved);
+            System.arraycopy(temperatures, index, temperatures, index + 1, moved);
+            System.arraycopy(systolics, index, systolics, index + 1, moved);
+            System.arraycopy(diastolics, index, diastolics, index + 1, moved);
+            if (subMillisNanos != null) {
+                System.arraycopy(subMillisNanos, index, subMillisNanos, index + 1, moved);
+                subMillisNanos[index] = 0;
+            }
+            if (pressureTexts != null) {
+                System.arraycopy(pressureTexts, index, pressureTexts, index + 1, moved);
+                pressureTexts[index] = null;
+            }
+            if (readingPatientIds != null) {
+                System.arraycopy(readingPatientIds, index, readingPatientIds, index + 1, moved);
+                readingPatientIds[index] = null;
+            }
+        }
+        size++;
+        set(index, vital);
+    }
+
+    /**
+     * Appends a reading without keeping the time order; used for bulk loading before {@link #sortByTime()}
+     * @param vital The reading to add
+     */
+    void append(VitalSign vital) {
+        ensureCapacity(size + 1);
+        set(size++, vital);
+    }
+
+    /**
+     * Appends an already validated reading of the owning patient without keeping the time order;
+     * used by imports, which add many readings without creating a VitalSign for each
+     *
+     * @param epochMillis Recording time as epoch milliseconds (UTC)
+     * @param nanos Nanoseconds below the millisecond
+     * @param heartRate Heart rate in beats per minute
+     * @param oxygenLevel Oxygen level in percent
+     * @param systolic Systolic blood pressure
+     * @param diastolic Diastolic blood pressure
+     * @param temperature Temperature in degrees Celsius
+     */
+    void append(long epochMillis, int nanos, double heartRate, double oxygenLevel,
+                int systolic, int diastolic, double temperature) {
+        ensureCapacity(size + 1);
+        int index = size++;
+        times[index] = epochMillis;
+        if (nanos != 0) {
+            if (subMillisNanos == null) {
+                subMillisNanos = new int[times.length];
+            }
+            subMillisNanos[index] = nanos;
+        }
+        heartRates[index] = heartRate;
+        oxygenLevels[index] = oxygenLevel;
+        temperatures[index] = temperature;
+        systolics[index] = (short) systolic;
+        diastolics[index] = (short) diastolic;
+    }
+
+    /**
+     * Sets the blood pressure text of an appended reading that is not in canonical form
+     *
+     * @param index Index of the reading
+     * @param text The recorded text
+     */
+    void setPressureText(int index, String text) {
+        checkIndex(index);
+        if (pressureTexts == null) {
+            pressureTexts = new String[times.length];
+        }
+        pressureTexts[index] = text;
+    }
+
+    /**
+     * Sets the patient ID of an appended reading that was recorded under another ID than the series owner's
+     *
+     * @param index Index of the reading
+     * @param readingPatientId Patient ID of the reading
+     */
+    void setReadingPatientId(int index, String readingPatientId) {
+        checkIndex(index);
+        if (readingPatientIds == null) {
+            readingPatientIds = new String[times.length];
+        }
+        readingPatientIds[index] = readingPatientId;
+    }
+
+    /**
+     * Adds all readings of another series in one step, keeping the time order.
+     * The new readings are copied in bulk; if they overlap the existing ones in time,
+     * the two ordered runs are merged in linear time.
+     *
+     * @param other The readings to add
+     */
+    public void addAll(VitalSeries other) {
+        if (rollups != null) {
+            int firstTimed = other.upperBound(NO_TIME);
+            if (firstTimed < other.size && rollups.isCompacted(other.times[firstTimed])) {
+                other = withoutCompacted(other);
+            }
+        }
+        int count = other.size;
+        if (count == 0) {
+            return;
+        }
+        ensureCapacity(size + count);
+        int start = size;
+        System.arraycopy(other.times, 0, times, start, count);
+        System.arraycopy(other.heartRates, 0, heartRates, start, count);
+        System.arraycopy(other.oxygenLevels, 0, oxygenLevels, start, count);
+        System.arraycopy(other.temperatures, 0, temperatures, start, count);
+        System.arraycopy(other.systolics, 0, systolics, start, count);
+        System.arraycopy(other.diastolics, 0, diastolics, start, count);
+        size += count;
+        boolean plain = other.subMillisNanos == null && other.pressureTexts == null
+                && other.readingPatientIds == null && Objects.equals(other.patientId, patientId);
+        for (int i = 0; i < count && !plain; i++) {
+            if (other.subMillisNanos != null && other.subMillisNanos[i] != 0) {
+                if (subMillisNanos == null) {
+                    subMillisNanos = new int[times.length];
+                }
+                subMillisNanos[start + i] = other.subMillisNanos[i];
+            }
+            if (other.pressureTexts != null && other.pressureTexts[i] != null) {
+                if (pressureTexts == null) {
+                    pressureTexts = new String[times.length];
+                }
+                pressureTexts[start + i] = other.pressureTexts[i];
+            }
+            String readingPatientId = other.getReadingPatientId(i);
+            if (!Objects.equals(readingPatientId, patientId)) {
+                if (readingPatientIds == null) {
+                    readingPatientIds = new String[times.length];
+                }
+                readingPatientIds[start + i] = readingPatientId;
+            }
+        }
+        if (start > 0 && compare(start - 1, start) > 0) {
+            int firstTimed = start;
+            while (firstTimed < size && times[firstTimed] == NO_TIME) {
+                firstTimed++;
+            }
+            long rebuildFrom = firstTimed < size ? Math.floorDiv(times[firstTimed], DAY) * DAY : Long.MAX_VALUE;
+            // Both runs are in order, so a merge is enough
+            int[] order = new int[size];
+            int left = 0;
+            int right = start;
+            for (int i = 0; i < size; i++) {
+                if (right == size || (left < start && compare(left, right) <= 0)) {
+                    order[i] = left++;
+                } else {
+                    order[i] = right++;
+                }
+            }
+            reorder(order);
+            if (rollups != null && rebuildFrom != Long.MAX_VALUE) {
+                rollups.rebuild(this, rebuildFrom, Long.MAX_VALUE);
+            }
+        } else if (rollups != null) {
+            for (int i = start; i < size; i++) {
+                rollups.added(this, i);
+            }
+        }
+    }
+
+    /**
+     * Adds the readings of a batch that are older than the raw retention to the aggregates only
+     *
+     * @param batch The readings to add, in time order
+     * @return The remaining readings
+     */
+    private VitalSeries withoutCompacted(VitalSeries batch) {
+        VitalSeries recent = new VitalSeries(batch.patientId);
+        for (int i = 0; i < batch.size; i++) {
+            VitalSign vital = batch.get(i);
+            if (!rollups.isCompacted(batch.times[i]) || !rollups.added(vital)) {
+                recent.append(vital);
+            }
+        }
+        return recent;
+    }
+
+    /**
+     * Sorts the readings by recording time, keeping the order of readings with the same time.
+     * Does nothing if the readings are already in order.
+     */
+    void sortByTime() {
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) {
+            sorted = compare(i - 1, i) <= 0;
+        }
+        if (sorted) {
+            return;
+        }
+        Integer[] sortedIndexes = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            sortedIndexes[i] = i;
+        }
+        Arrays.sort(sortedIndexes, this::compare);
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = sortedIndexes[i];
+        }
+        reorder(order);
+    }
+
+    /**
+     * Rearranges the readings
+     * @param order For each new position, the current index of the reading to put there
+     */
+    private void reorder(int[] order) {
+        long[] sortedTimes = new long[times.length];
+        double[] sortedHeartRates = new double[times.length];
+        double[] sortedOxygenLevels = new double[times.length];
+        double[] sortedTemperatures = new double[times.length];
+        short[] sortedSystolics = new short[times.length];
+        short[] sortedDiastolics = new short[times.length];
+        int[] sortedNanos = subMillisNanos != null ? new int[times.length] : null;
+        String[] sortedTexts = pressureTexts != null ? new String[times.length] : null;
+        String[] sortedIds = readingPatientIds != null ? new String[times.length] : null;
+        for (int i = 0; i < size; i++) {
+            int from = order[i];
+            sortedTimes[i] = times[from];
+            sortedHeartRates[i] = heartRates[from];
+            sortedOxygenLevels[i] = oxygenLevels[from];
+            sortedTemperatures[i] = temperatures[from];
+            sortedSystolics[i] = systolics[from];
+            sortedDiastolics[i] = diastolics[from];
+            if (sortedNanos != null) {
+                sortedNanos[i] = subMillisNanos[from];
+            }
+            if (sortedTexts != null) {
+                sortedTexts[i] = pressureTexts[from];
+            }
+            if (sortedIds != null) {
+                sortedIds[i] = readingPatientIds[from];
+            }
+        }
+        times = sortedTimes;
+        heartRates = sortedHeartRates;
+        oxygenLevels = sortedOxygenLevels;
+        temperatures = sortedTemperatures;
+        systolics = sortedSystolics;
+        diastolics = sortedDiastolics;
+        subMillisNanos = sortedNanos;
+        pressureTexts = sortedTexts;
+        readingPatientIds = sortedIds;
+    }
+
+    /**
+     * Removes the reading at an index
+     * @param index Index of the reading
+     */
+    public void remove(int index) {
+        checkIndex(index);
+        long time = times[index];
+        removeRange(index, index + 1);
+        if (rollups != null && time != NO_TIME) {
+            rebuildRollups(time, time);
+        }
+    }
+
+    /**
+     * Removes the first reading with the same values as the given one
+     *
+     * @param vital The reading to remove
+     * @return true if a reading was removed, false otherwise
+     */
+    public boolean remove(VitalSign vital) {
+        for (int i = 0; i < size; i++) {
+            if (matches(i, vital)) {
+                remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all readings matching a filter
+     *
+     * @param filter Selects the readings to remove
+     * @return true if any reading was removed, false otherwise
+     */
+    public boolean removeIf(Predicate<VitalSign> filter) {
+        int kept = 0;
+        long oldestRemoved = NO_TIME;
+        long newestRemoved = NO_TIME;
+        for (int i = 0; i < size; i++) {
+            if (!filter.test(get(i))) {
+                move(i, kept++);
+            } else if (times[i] != NO_TIME) {
+                oldestRemoved = oldestRemoved == NO_TIME ? times[i] : oldestRemoved;
+                newestRemoved = times[i];
+            }
+        }
+        if (kept == size) {
+            return false;
+        }
+        clearFrom(kept);
+        if (rollups != null && oldestRemoved != NO_TIME) {
+            rebuildRollups(oldestRemoved, newestRemoved);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a reading has the same values as the given one
+     *
+     * @param index Index of the reading
+     * @param vital The reading to compare with
+     * @return true if all values are equal, false otherwise
+     */
+    public boolean matches(int index, VitalSign vital) {
+        return heartRates[index] == vital.getHeartRate()
+                && oxygenLevels[index] == vital.getOxygenLevel()
+                && temperatures[index] == vital.getTemperature()
+                && systolics[index] == vital.getSystolic()
+                && diastolics[index] == vital.getDiastolic()
+                && Objects.equals(getPressureText(index), vital.getBloodPressureText())
+                && Objects.equals(getDateTimeRecorded(index), vital.getDateTimeRecorded())
+                && Objects.equals(getReadingPatientId(index), vital.getUserId());
+    }
+
+    /**
+     * Shrinks the arrays to the number of readings
+     */
+    public void trimToSize() {
+        resize(size);
+    }
+
+    // ===== Rollups and Retention =====
+
+    /**
+     * Applies the retention periods of {@link VitalRollups}, counted back from the most recent reading.
+     * Raw readings recorded before the raw retention horizon are added to the totals of the aggregates
+     * and dropped, and aggregates past their own retention are dropped. The aggregates are computed
+     * first if they were not requested yet. Readings without a recording time are always kept.
+     *
+     * @return true if anything was dropped, false otherwise
+     */
+    public boolean compact() {
+        if (size == 0 || times[size - 1] == NO_TIME) {
+            return false;
+        }
+        VitalRollups rollups = getRollups();
+        boolean dropped = rollups.retain(times[size - 1]);
+        long horizon = rollups.getRawHorizon();
+        if (horizon == NO_TIME) {
+            return dropped;
+        }
+        int from = upperBound(NO_TIME);
+        int to = upperBound(horizon - 1);
+        if (to > from) {
+            rollups.compacted(this, from, to);
+            removeRange(from, to);
+            if (size < times.length / 2) {
+                resize(size + (size >> 1));
+            }
+            compactions++;
+            droppedReadings += to - from;
+            dropped = true;
+        }
+        return dropped;
+    }
+
+    /**
+     * Gets the minute, hour and day aggregates of the readings, computing them if needed.
+     * From then on they are kept up to date as readings are added and removed.
+     * @return The aggregates
+     */
+    VitalRollups getRollups() {
+        if (rollups == null) {
+            rollups = VitalRollups.build(this);
+        }
+        return rollups;
+    }
+
+    /**
+     * Gets the aggregates of the readings if they were requested before
+     * @return The aggregates, or null
+     */
+    VitalRollups getRollupsIfBuilt() {
+        return rollups;
+    }
+
+    /**
+     * Sets aggregates read together with the readings
+     * @param rollups The aggregates
+     */
+    void setRollups(VitalRollups rollups) {
+        this.rollups = rollups;
+    }
+
+    /**
+     * Gets the number of times readings past their retention were dropped from this series,
+     * so derived state can tell that readings disappeared
+     * @return Compaction count
+     */
+    long getCompactions() {
+        return compactions;
+    }
+
+    /**
+     * Gets the number of raw readings dropped past their retention since this series was created.
+     * They are always the oldest readings with a recording time, right after the readings without one,
+     * so a view that knows the count from before can tell which of its positions disappeared.
+     * @return Dropped reading count
+     */
+    public long getDroppedReadings() {
+        return droppedReadings;
+    }
+
+    /**
+     * Recomputes the aggregates of the days between two times from the readings
+     */
+    private void rebuildRollups(long oldest, long newest) {
+        rollups.rebuild(this, Math.floorDiv(oldest, DAY) * DAY, (Math.floorDiv(newest, DAY) + 1) * DAY);
+    }
+
+    // ===== Time Queries =====
+
+    /**
+     * Finds the first reading recorded at or after a time
+     *
+     * @param time The time to search for
+     * @return Index of the reading, or size() if all readings are older
+     */
+    public int lowerBound(LocalDateTime time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareTime(mid, time) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first reading recorded after a time
+     *
+     * @param time The time to search for
+     * @return Index of the reading, or size() if no reading is newer
+     */
+    public int upperBound(LocalDateTime time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareTime(mid, time) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first reading recorded after a millisecond
+     *
+     * @param epochMillis The time in epoch milliseconds (UTC)
+     * @return Index of the reading, or size() if no reading is newer
+     */
+    public int upperBound(long epochMillis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= epochMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Converts a recording time to the epoch milliseconds stored in a series
+     *
+     * @param dateTime The recording time, may be null
+     * @return Epoch milliseconds (UTC), or Long.MIN_VALUE for a missing time
+     */
+    public static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime == null ? NO_TIME : dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Copies readings into a list of VitalSign objects
+     *
+     * @param from Index of the first reading
+     * @param to Index after the last reading
+     * @return The readings, oldest first
+     */
+    public List<VitalSign> copyRange(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range " + from + ".." + to + " out of bounds for length " + size);
+        }
+        List<VitalSign> readings = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            readings.add(get(i));
+        }
+        return readings;
+    }
+
+    // ===== Internals =====
+
+    /**
+     * Gets the blood pressure text of a reading as recorded when it is not in canonical form
+     *
+     * @param index Index of the reading
+     * @return The recorded text, or null if it equals systolic + "/" + diastolic
+     */
+    String getPressureText(int index) {
+        checkIndex(index);
+        return pressureTexts != null ? pressureTexts[index] : null;
+    }
+
+    /**
+     * Stores a reading at an index
+     */
+    private void set(int index, VitalSign vital) {
+        setTime(index, vital.getDateTimeRecorded());
+        heartRates[index] = vital.getHeartRate();
+        oxygenLevels[index] = vital.getOxygenLevel();
+        temperatures[index] = vital.getTemperature();
+        systolics[index] = (short) vital.getSystolic();
+        diastolics[index] = (short) vital.getDiastolic();
+        if (vital.getBloodPressureText() != null) {
+            if (pressureTexts == null) {
+                pressureTexts = new String[times.length];
+            }
+            pressureTexts[index] = vital.getBloodPressureText();
+        }
+        if (!Objects.equals(vital.getUserId(), patientId)) {
+            if (readingPatientIds == null) {
+                readingPatientIds = new String[times.length];
+            }
+            readingPatientIds[index] = vital.getUserId();
+        }
+    }
+
+    private void setTime(int index, LocalDateTime dateTime) {
+        if (dateTime == null) {
+            times[index] = NO_TIME;
+            return;
+        }
+        times[index] = dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+        int nanos = dateTime.getNano() % 1_000_000;
+        if (nanos != 0) {
+            if (subMillisNanos == null) {
+                subMillisNanos = new int[times.length];
+            }
+            subMillisNanos[index] = nanos;
+        }
+    }
+
+    /**
+     * Compares the recording times of two readings
+     */
+    private int compare(int first, int second) {
+        int result = Long.compare(times[first], times[second]);
+        if (result == 0 && subMillisNanos != null) {
+            result = Integer.compare(subMillisNanos[first], subMillisNanos[second]);
+        }
+        return result;
+    }
+
+    /**
+     * Compares the recording time of a reading with a time; a missing time is older than any other
+     */
+    private int compareTime(int index, LocalDateTime time) {
+        if (time == null) {
+            return times[index] == NO_TIME ? 0 : 1;
+        }
+        long millis = time.toInstant(ZoneOffset.UTC).toEpochMilli();
+        int result = Long.compare(times[index], millis);
+        if (result == 0) {
+            int nanos = subMillisNanos != null ? subMillisNanos[index] : 0;
+            result = Integer.compare(nanos, time.getNano() % 1_000_000);
+        }
+        return result;
+    }
+
+    private void move(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        times[to] = times[from];
+        heartRates[to] = heartRates[from];
+        oxygenLevels[to] = oxygenLevels[from];
+        temperatures[to] = temperatures[from];
+        systolics[to] = systolics[from];
+        diastolics[to] = diastolics[from];
+        if (subMillisNanos != null) {
+            subMillisNanos[to] = subMillisNanos[from];
+        }
+        if (pressureTexts != null) {
+            pressureTexts[to] = pressureTexts[from];
+        }
+        if (readingPatientIds != null) {
+            readingPatientIds[to] = readingPatientIds[from];
+        }
+    }
+
+    private void removeRange(int from, int to) {
+        int moved = size - to;
+        System.arraycopy(times, to, times, from, moved);
+        System.arraycopy(heartRates, to, heartRates, from, moved);
+        System.arraycopy(oxygenLevels, to, oxygenLevels, from, moved);
+        System.arraycopy(temperatures, to, temperatures, from, moved);
+        System.arraycopy(systolics, to, systolics, from, moved);
+        System.arraycopy(diastolics, to, diastolics, from, moved);
+        if (subMillisNanos != null) {
+            System.arraycopy(subMillisNanos, to, subMillisNanos, from, moved);
+        }
+        if (pressureTexts != null) {
+            System.arraycopy(pressureTexts, to, pressureTexts, from, moved);
+        }
+        if (readingPatientIds != null) {
+            System.arraycopy(readingPatientIds, to, readingPatientIds, from, moved);
+        }
+        clearFrom(size - (to - from));
+    }
+
+    /**
+     * Drops all readings from an index on
+     */
+    private void clearFrom(int newSize) {
+        if (subMillisNanos != null) {
+            Arrays.fill(subMillisNanos, newSize, size, 0);
+        }
+        if (pressureTexts != null) {
+            Arrays.fill(pressureTexts, newSize, size, null);
+        }
+        if (readingPatientIds != null) {
+            Arrays.fill(readingPatientIds, newSize, size, null);
+        }
+        size = newSize;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > times.length) {
+            resize(Math.max(capacity, Math.max(INITIAL_CAPACITY, times.length + (times.length >> 1))));
+        }
+    }
+
+    private void resize(int capacity) {
+        times = Arrays.copyOf(times, capacity);
+        heartRates = Arrays.copyOf(heartRates, capacity);
+        oxygenLevels = Arrays.copyOf(oxygenLevels, capacity);
+        temperatures = Arrays.copyOf(temperatures, capacity);
+        systolics = Arrays.copyOf(systolics, capacity);
+        diastolics = Arrays.copyOf(diastolics, capacity);
+        if (subMillisNanos != null) {
+            subMillisNanos = Arrays.copyOf(subMillisNanos, capacity);
+        }
+        if (pressureTexts != null) {
+            pressureTexts = Arrays.copyOf(pressureTexts, capacity);
+        }
+        if (readingPatientIds != null) {
+            readingPatientIds = Arrays.copyOf(readingPatientIds, capacity);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+    }
+
+    /**
+     * Read-only list view creating a VitalSign for each accessed reading
+     */
+    private class ReadingList extends AbstractList<VitalSign> implements RandomAccess {
+        @Override
+        public VitalSign get(int index) {
+            return VitalSeries.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
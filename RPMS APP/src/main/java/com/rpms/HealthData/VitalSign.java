@@ -2,13 +2,17 @@ package com.rpms.HealthData;
 
 import com.rpms.utilities.DateUtil;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.Objects;
 
 /**
  * Represents a single vital sign record for a patient.
  * Contains measurements of various health indicators along with the timestamp when they were recorded.
  * All vital signs are validated to ensure they fall within medically acceptable ranges.
+ * Blood pressure is parsed once when it is set and kept as systolic and diastolic values.
  */
 public class VitalSign implements Serializable {
     // Basic vital sign measurements
@@ -21,7 +25,16 @@ public class VitalSign implements Serializable {
     /** Blood oxygen saturation level (percentage) */
     private double oxygenLevel;
     
-    /** Blood pressure in systolic/diastolic format (e.g., "120/80") */
+    /** Systolic blood pressure in mmHg, 0 if the recorded blood pressure could not be read */
+    private int systolic;
+
+    /** Diastolic blood pressure in mmHg, 0 if the recorded blood pressure could not be read */
+    private int diastolic;
+
+    /**
+     * Blood pressure text as recorded, only kept when it is not in canonical "systolic/diastolic" form.
+     * Streams written by older versions hold every blood pressure here and are parsed in readObject.
+     */
     private String bloodPressure;
     
     /** Body temperature in Celsius */
@@ -33,6 +46,12 @@ public class VitalSign implements Serializable {
     /** Serialization version identifier */
     private static final long serialVersionUID = 1L;
 
+    // Validation messages
+    private static final String HEART_RATE_ERROR = "Invalid heart rate. It must be between 30 and 200 bpm.";
+    private static final String OXYGEN_LEVEL_ERROR = "Invalid oxygen level. It must be between 0 and 100 percent.";
+    private static final String BLOOD_PRESSURE_ERROR = "Invalid blood pressure. Systolic must be between 60 and 250, and diastolic must be between 30 and 150.";
+    private static final String TEMPERATURE_ERROR = "Invalid temperature. It must be between 35.0 and 42.0 degrees Celsius.";
+
     /**
      * Constructor to initialize a vital sign with all parameters.
      * Includes validation for each measurement.
@@ -53,6 +72,27 @@ public class VitalSign implements Serializable {
         setDateRecorded(dateTimeRecorded);
     }
 
+    /**
+     * Constructor taking the blood pressure as already parsed values.
+     * Includes validation for each measurement.
+     * 
+     * @param patientID ID of the patient this vital sign belongs to
+     * @param heartRate Heart rate in beats per minute
+     * @param oxygenLevel Blood oxygen saturation level (0-100%)
+     * @param systolic Systolic blood pressure
+     * @param diastolic Diastolic blood pressure
+     * @param temperature Body temperature in Celsius
+     * @param dateTimeRecorded Date and time when these measurements were taken
+     */
+    public VitalSign(String patientID, double heartRate, double oxygenLevel, int systolic, int diastolic, double temperature, LocalDateTime dateTimeRecorded) {
+        this.patientID = patientID;
+        setHeartRate(heartRate);
+        setOxygenLevel(oxygenLevel);
+        setBloodPressure(systolic, diastolic);
+        setTemperature(temperature);
+        setDateRecorded(dateTimeRecorded);
+    }
+
     /**
      * Alternative constructor for when patient ID is not specified.
      * Used when uploading vitals directly from CSV files.
@@ -67,6 +107,58 @@ public class VitalSign implements Serializable {
         this("n/a", heartRate, oxygenLevel, bloodPressure, temperature, dateTimeRecorded);
     }
 
+    /**
+     * Constructor used when restoring stored readings, which were validated when first recorded
+     */
+    private VitalSign(String patientID) {
+        this.patientID = patientID;
+    }
+
+    /**
+     * Recreates a stored vital sign without validating it again.
+     * Used by {@link VitalSignCodec}, so readings saved by older versions with other limits still load.
+     *
+     * @param patientID ID of the patient this vital sign belongs to
+     * @param heartRate Heart rate in beats per minute
+     * @param oxygenLevel Blood oxygen saturation level (0-100%)
+     * @param bloodPressure Blood pressure in systolic/diastolic format
+     * @param temperature Body temperature in Celsius
+     * @param dateTimeRecorded Date and time when these measurements were taken
+     * @return The restored vital sign
+     */
+    static VitalSign restore(String patientID, double heartRate, double oxygenLevel, String bloodPressure,
+                             double temperature, LocalDateTime dateTimeRecorded) {
+        VitalSign vital = restore(patientID, heartRate, oxygenLevel, 0, 0, null, temperature, dateTimeRecorded);
+        vital.readBloodPressure(bloodPressure);
+        return vital;
+    }
+
+    /**
+     * Recreates a stored vital sign from already parsed blood pressure values, without validating it again
+     *
+     * @param patientID ID of the patient this vital sign belongs to
+     * @param heartRate Heart rate in beats per minute
+     * @param oxygenLevel Blood oxygen saturation level (0-100%)
+     * @param systolic Systolic blood pressure
+     * @param diastolic Diastolic blood pressure
+     * @param bloodPressureText Blood pressure as recorded if not in canonical form, otherwise null
+     * @param temperature Body temperature in Celsius
+     * @param dateTimeRecorded Date and time when these measurements were taken
+     * @return The restored vital sign
+     */
+    static VitalSign restore(String patientID, double heartRate, double oxygenLevel, int systolic, int diastolic,
+                             String bloodPressureText, double temperature, LocalDateTime dateTimeRecorded) {
+        VitalSign vital = new VitalSign(patientID);
+        vital.heartRate = heartRate;
+        vital.oxygenLevel = oxygenLevel;
+        vital.systolic = systolic;
+        vital.diastolic = diastolic;
+        vital.bloodPressure = bloodPressureText;
+        vital.temperature = temperature;
+        vital.dateTimeRecorded = dateTimeRecorded;
+        return vital;
+    }
+
     // ===== Getters =====
     
     /**
@@ -91,7 +183,48 @@ public class VitalSign implements Serializable {
      * Gets the blood pressure measurement
      * @return Blood pressure in systolic/diastolic format (e.g., "120/80")
      */
-    public String getBloodPressure() { return bloodPressure; }
+    public String getBloodPressure() {
+        return bloodPressure != null ? bloodPressure : systolic + "/" + diastolic;
+    }
+
+    /**
+     * Gets the systolic blood pressure
+     * @return Systolic pressure in mmHg, or 0 if the recorded blood pressure could not be read
+     */
+    public int getSystolic() { return systolic; }
+
+    /**
+     * Gets the diastolic blood pressure
+     * @return Diastolic pressure in mmHg, or 0 if the recorded blood pressure could not be read
+     */
+    public int getDiastolic() { return diastolic; }
+
+    /**
+     * Checks whether the blood pressure values could be read.
+     * Only readings stored by older versions may have an unreadable blood pressure.
+     * @return true if systolic and diastolic values are available, false otherwise
+     */
+    public boolean hasBloodPressureValues() { return systolic > 0 && diastolic > 0; }
+
+    /**
+     * Gets the blood pressure text as recorded when it is not in canonical form
+     * @return The recorded text, or null if it equals systolic + "/" + diastolic
+     */
+    String getBloodPressureText() { return bloodPressure; }
+
+    /**
+     * Checks whether another object holds the same reading: the same patient, recording time and values.
+     * Readings read from a database are created on access, so the same reading may be held by several objects.
+     * @param other The reading to compare with
+     * @return true if all values are equal, false otherwise
+     */
+    public boolean isSameReading(VitalSign other) {
+        return other != null && heartRate == other.heartRate && oxygenLevel == other.oxygenLevel
+                && temperature == other.temperature && systolic == other.systolic && diastolic == other.diastolic
+                && Objects.equals(bloodPressure, other.bloodPressure)
+                && Objects.equals(dateTimeRecorded, other.dateTimeRecorded)
+                && Objects.equals(patientID, other.patientID);
+    }
     
     /**
      * Gets the body temperature
@@ -113,8 +246,8 @@ public class VitalSign implements Serializable {
      * @throws IllegalArgumentException if value is outside valid range
      */
     public void setHeartRate(double heartRate) {
-        if (heartRate < 30 || heartRate > 200) {
-            throw new IllegalArgumentException("Invalid heart rate. It must be between 30 and 200 bpm.");
+        if (!isValidHeartRate(heartRate)) {
+            throw new IllegalArgumentException(HEART_RATE_ERROR);
         }
         this.heartRate = heartRate;
     }
@@ -125,8 +258,8 @@ public class VitalSign implements Serializable {
      * @throws IllegalArgumentException if value is outside valid range
      */
     public void setOxygenLevel(double oxygenLevel) {
-        if (oxygenLevel < 0 || oxygenLevel > 100) {
-            throw new IllegalArgumentException("Invalid oxygen level. It must be between 0 and 100 percent.");
+        if (!isValidOxygenLevel(oxygenLevel)) {
+            throw new IllegalArgumentException(OXYGEN_LEVEL_ERROR);
         }
         this.oxygenLevel = oxygenLevel;
     }
@@ -137,23 +270,37 @@ public class VitalSign implements Serializable {
      * @throws IllegalArgumentException if format or values are invalid
      */
     public void setBloodPressure(String bloodPressure) {
-        String[] bpParts = bloodPressure.split("/");
-        if (bpParts.length != 2) {
+        int slash = bloodPressure.indexOf('/');
+        if (slash < 0 || bloodPressure.indexOf('/', slash + 1) >= 0) {
             throw new IllegalArgumentException("Invalid blood pressure format. It must be in the form 'systolic/diastolic'.");
         }
 
+        int systolic;
+        int diastolic;
         try {
-            int systolic = Integer.parseInt(bpParts[0]);
-            int diastolic = Integer.parseInt(bpParts[1]);
-
-            if (systolic < 60 || systolic > 250 || diastolic < 30 || diastolic > 150) {
-                throw new IllegalArgumentException("Invalid blood pressure. Systolic must be between 60 and 250, and diastolic must be between 30 and 150.");
-            }
+            systolic = Integer.parseInt(bloodPressure.substring(0, slash));
+            diastolic = Integer.parseInt(bloodPressure.substring(slash + 1));
         } catch (NumberFormatException e) {
             throw new IllegalArgumentException("Invalid blood pressure values. Please provide numeric values.");
         }
 
-        this.bloodPressure = bloodPressure;
+        setBloodPressure(systolic, diastolic);
+        this.bloodPressure = isCanonical(bloodPressure, systolic, diastolic) ? null : bloodPressure;
+    }
+
+    /**
+     * Sets the blood pressure from its values with validation
+     * @param systolic Systolic pressure (must be between 60-250)
+     * @param diastolic Diastolic pressure (must be between 30-150)
+     * @throws IllegalArgumentException if values are outside valid range
+     */
+    public void setBloodPressure(int systolic, int diastolic) {
+        if (!isValidBloodPressure(systolic, diastolic)) {
+            throw new IllegalArgumentException(BLOOD_PRESSURE_ERROR);
+        }
+        this.systolic = systolic;
+        this.diastolic = diastolic;
+        this.bloodPressure = null;
     }
 
     /**
@@ -162,8 +309,8 @@ public class VitalSign implements Serializable {
      * @throws IllegalArgumentException if value is outside valid range
      */
     public void setTemperature(double temperature) {
-        if (temperature < 35.0 || temperature > 42.0) {
-            throw new IllegalArgumentException("Invalid temperature. It must be between 35.0 and 42.0 degrees Celsius.");
+        if (!isValidTemperature(temperature)) {
+            throw new IllegalArgumentException(TEMPERATURE_ERROR);
         }
         this.temperature = temperature;
     }
@@ -180,6 +327,101 @@ public class VitalSign implements Serializable {
         this.dateTimeRecorded = dateTimeRecorded;
     }
 
+    // ===== Validation =====
+
+    /**
+     * Checks measurements against the limits enforced by the setters, without throwing.
+     * Used to validate large imports where most rows are expected to be valid.
+     *
+     * @param heartRate Heart rate in beats per minute
+     * @param oxygenLevel Blood oxygen saturation level
+     * @param systolic Systolic blood pressure
+     * @param diastolic Diastolic blood pressure
+     * @param temperature Body temperature in Celsius
+     * @return The message of the first invalid measurement, or null if all are valid
+     */
+    public static String validate(double heartRate, double oxygenLevel, int systolic, int diastolic, double temperature) {
+        if (!isValidHeartRate(heartRate)) {
+            return HEART_RATE_ERROR;
+        }
+        if (!isValidOxygenLevel(oxygenLevel)) {
+            return OXYGEN_LEVEL_ERROR;
+        }
+        if (!isValidBloodPressure(systolic, diastolic)) {
+            return BLOOD_PRESSURE_ERROR;
+        }
+        if (!isValidTemperature(temperature)) {
+            return TEMPERATURE_ERROR;
+        }
+        return null;
+    }
+
+    private static boolean isValidHeartRate(double heartRate) {
+        return heartRate >= 30 && heartRate <= 200;
+    }
+
+    private static boolean isValidOxygenLevel(double oxygenLevel) {
+        return oxygenLevel >= 0 && oxygenLevel <= 100;
+    }
+
+    private static boolean isValidBloodPressure(int systolic, int diastolic) {
+        return systolic >= 60 && systolic <= 250 && diastolic >= 30 && diastolic <= 150;
+    }
+
+    private static boolean isValidTemperature(double temperature) {
+        return temperature >= 35.0 && temperature <= 42.0;
+    }
+
+    // ===== Blood Pressure Parsing =====
+
+    /**
+     * Reads a stored blood pressure text without validating it.
+     * Values that cannot be read are stored as 0 and the text is kept.
+     */
+    private void readBloodPressure(String text) {
+        systolic = 0;
+        diastolic = 0;
+        bloodPressure = text;
+        if (text == null) {
+            return;
+        }
+        int slash = text.indexOf('/');
+        if (slash < 0) {
+            return;
+        }
+        try {
+            int parsedSystolic = Integer.parseInt(text.substring(0, slash).trim());
+            int parsedDiastolic = Integer.parseInt(text.substring(slash + 1).trim());
+            systolic = parsedSystolic;
+            diastolic = parsedDiastolic;
+            if (isCanonical(text, systolic, diastolic)) {
+                bloodPressure = null;
+            }
+        } catch (NumberFormatException e) {
+            // Keep the text only
+        }
+    }
+
+    /**
+     * Checks whether a blood pressure text is exactly what its values would be written as.
+     * The values must also fit in a short, as used by {@link VitalSeries} and {@link VitalSignCodec}.
+     */
+    private static boolean isCanonical(String text, int systolic, int diastolic) {
+        return systolic >= 0 && systolic <= Short.MAX_VALUE
+                && diastolic >= 0 && diastolic <= Short.MAX_VALUE
+                && text.equals(systolic + "/" + diastolic);
+    }
+
+    /**
+     * Restores a vital sign, parsing the blood pressure of streams written by older versions
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (bloodPressure != null && systolic == 0 && diastolic == 0) {
+            readBloodPressure(bloodPressure);
+        }
+    }
+
     /**
      * Generates a formatted string representation of this vital sign
      * @return Formatted string with all vital sign measurements
@@ -0,0 +1,179 @@
+package com.rpms.HealthData;
+
+import com.rpms.utilities.RecordCodec;
+import com.rpms.utilities.SerializationUtil;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.time.LocalDateTime;
+
+/**
+ * Compact binary encoding of {@link VitalSign} records.
+ * Stores the timestamp as epoch milliseconds, the measurements as primitive doubles and
+ * the blood pressure as two packed shorts instead of a string, so a reading takes about
+ * 40 bytes instead of the few hundred written by default Java serialization.
+ * <p>
+ * Format version 1: flags byte, timestamp, heart rate, oxygen level, temperature,
+ * systolic and diastolic shorts (or the blood pressure string if it is not in canonical form),
+ * patient ID.
+ * <p>
+ * A {@link VitalSeries} can be written and read in the same block format as a list of records,
+ * without holding a VitalSign object per reading. Series blocks of version 2 are followed by the
+ * minute, hour and day aggregates of the series ({@link VitalRollups}), if it has them.
+ * Series blocks of version 3 hold the readings as one {@link CompressedVitalBlock} instead of
+ * a record each, which takes a few bytes per reading, and the aggregates in the same bit coding; set the system property
+ * {@code rpms.vitals.compress} to {@code false} to write version 2 blocks instead.
+ */
+public class VitalSignCodec implements RecordCodec<VitalSign> {
+
+    /** Shared instance; the codec is stateless */
+    public static final VitalSignCodec INSTANCE = new VitalSignCodec();
+
+    /** Current format version */
+    private static final int VERSION = 1;
+
+    /** Format version of series blocks, whose records are followed by the aggregates */
+    private static final int ROLLUPS_VERSION = 2;
+
+    /** Format version of series blocks holding the readings compressed */
+    private static final int COMPRESSED_VERSION = 3;
+
+    /** Whether series are written compressed */
+    private static final boolean COMPRESS =
+            !"false".equalsIgnoreCase(System.getProperty("rpms.vitals.compress"));
+
+    /** Flag set when the blood pressure is stored as two shorts */
+    private static final int FLAG_PACKED_BP = 1;
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public void write(DataOutput out, VitalSign vital) throws IOException {
+        boolean packed = vital.getBloodPressureText() == null;
+        out.writeByte(packed ? FLAG_PACKED_BP : 0);
+        SerializationUtil.writeDateTime(out, vital.getDateTimeRecorded());
+        out.writeDouble(vital.getHeartRate());
+        out.writeDouble(vital.getOxygenLevel());
+        out.writeDouble(vital.getTemperature());
+        if (packed) {
+            out.writeShort(vital.getSystolic());
+            out.writeShort(vital.getDiastolic());
+        } else {
+            SerializationUtil.writeString(out, vital.getBloodPressureText());
+        }
+        SerializationUtil.writeString(out, vital.getUserId());
+    }
+
+    @Override
+    public VitalSign read(DataInput in, int version) throws IOException {
+        int flags = in.readUnsignedByte();
+        if ((flags & ~FLAG_PACKED_BP) != 0) {
+            throw new InvalidObjectException("Invalid vital sign flags " + flags);
+        }
+        LocalDateTime recorded = SerializationUtil.readDateTime(in);
+        double heartRate = in.readDouble();
+        double oxygenLevel = in.readDouble();
+        double temperature = in.readDouble();
+        if ((flags & FLAG_PACKED_BP) != 0) {
+            int systolic = in.readShort();
+            int diastolic = in.readShort();
+            String patientID = SerializationUtil.readString(in);
+            return VitalSign.restore(patientID, heartRate, oxygenLevel, systolic, diastolic, null,
+                    temperature, recorded);
+        }
+        String bloodPressure = SerializationUtil.readString(in);
+        String patientID = SerializationUtil.readString(in);
+        return VitalSign.restore(patientID, heartRate, oxygenLevel, bloodPressure, temperature, recorded);
+    }
+
+    /**
+     * Writes a series as a compressed block, or as a block of records in the format of
+     * SerializationUtil.writeRecords if compression is turned off, followed by its aggregates
+     *
+     * @param out Output to write to
+     * @param series The readings to write
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeSeries(DataOutput out, VitalSeries series) throws IOException {
+        int count = series.size();
+        out.writeByte(COMPRESS ? COMPRESSED_VERSION : ROLLUPS_VERSION);
+        out.writeInt(count);
+        if (COMPRESS) {
+            byte[] block = CompressedVitalBlock.encode(series);
+            out.writeInt(block.length);
+            out.write(block);
+        }
+        for (int i = 0; i < count && !COMPRESS; i++) {
+            String text = series.getPressureText(i);
+            boolean packed = text == null;
+            out.writeByte(packed ? FLAG_PACKED_BP : 0);
+            if (series.hasTime(i)) {
+                SerializationUtil.writeDateTime(out, series.getEpochMillis(i), series.getSubMillisNanos(i));
+            } else {
+                SerializationUtil.writeDateTime(out, null);
+            }
+            out.writeDouble(series.getHeartRate(i));
+            out.writeDouble(series.getOxygenLevel(i));
+            out.writeDouble(series.getTemperature(i));
+            if (packed) {
+                out.writeShort(series.getSystolic(i));
+                out.writeShort(series.getDiastolic(i));
+            } else {
+                SerializationUtil.writeString(out, text);
+            }
+            SerializationUtil.writeString(out, series.getReadingPatientId(i));
+        }
+        VitalRollups rollups = series.getRollupsIfBuilt();
+        out.writeBoolean(rollups != null);
+        if (rollups != null) {
+            rollups.write(out, COMPRESS);
+        }
+    }
+
+    /**
+     * Reads a block of records or a compressed block, as written by SerializationUtil.writeRecords
+     * or writeSeries, into a series
+     *
+     * @param in Input to read from
+     * @param patientId ID of the patient the readings belong to
+     * @return The readings
+     * @throws IOException If an I/O error occurs or the data is invalid
+     */
+    public VitalSeries readSeries(DataInput in, String patientId) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version > COMPRESSED_VERSION) {
+            throw new InvalidObjectException("Unsupported record format version " + version + " for VitalSignCodec");
+        }
+        int count = in.readInt();
+        VitalSeries series;
+        if (version >= COMPRESSED_VERSION) {
+            int length = in.readInt();
+            if (length < 0) {
+                throw new InvalidObjectException("Invalid compressed vital signs length " + length);
+            }
+            byte[] block = new byte[length];
+            in.readFully(block);
+            series = CompressedVitalBlock.decode(block, patientId);
+            if (series.size() != count) {
+                throw new InvalidObjectException("Compressed vital signs hold " + series.size()
+                        + " readings instead of " + count);
+            }
+        } else {
+            series = new VitalSeries(patientId);
+            for (int i = 0; i < count; i++) {
+                series.append(read(in, version));
+            }
+        }
+        series.sortByTime();
+        series.trimToSize();
+        if (version >= ROLLUPS_VERSION && in.readBoolean()) {
+            series.setRollups(VitalRollups.read(in, version >= COMPRESSED_VERSION));
+        }
+        return series;
+    }
+}
@@ -0,0 +1,827 @@
+package com.rpms.HealthData;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rolling statistics of a patient's vital signs: count, minimum, maximum, mean, standard deviation
+ * and exponentially weighted mean (EWMA) of every measurement over a set of time windows.
+ * <p>
+ * The windows end at the most recent reading rather than the current time, so histories that were
+ * imported or recorded in the past still get meaningful figures. Running sums are updated in
+ * constant time as readings are added and removed. When a newer reading moves the windows forward,
+ * the readings leaving a window are found by binary search and subtracted, so every reading enters
+ * and leaves each window once. Minimum and maximum are kept in monotonic queues.
+ * Changes that cannot be applied incrementally (removing the newest reading, batch imports, or the
+ * extremes after an out-of-order or removed reading) are recomputed from the readings on the next query.
+ * <p>
+ * The windows can be configured with the system property rpms.vitals.statsWindows, a comma-separated
+ * list of durations in minutes, hours or days (default "1h,24h,7d"). An all-time window is always kept;
+ * it includes the totals of readings dropped after their retention period (see {@link VitalRollups}).
+ * The statistics are not thread-safe; {@link VitalsDatabase} only uses them while holding its lock.
+ */
+public class VitalStatistics {
+
+    /** Timestamp of a reading without a date, as stored in a series */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    /** Time constant of the EWMA in the all-time window */
+    private static final long ALL_TIME_EWMA_MILLIS = 86_400_000L;
+
+    /** EWMA weights are rescaled once the newest reading is this many time constants past their reference */
+    private static final double MAX_WEIGHT_EXPONENT = 30;
+
+    /**
+     * A measurement taken with every vital sign reading
+     */
+    public enum Channel {
+        HEART_RATE("Heart Rate", "bpm"),
+        OXYGEN_LEVEL("Oxygen Level", "%"),
+        SYSTOLIC("Systolic Pressure", "mmHg"),
+        DIASTOLIC("Diastolic Pressure", "mmHg"),
+        TEMPERATURE("Temperature", "°C");
+
+        /** Display name */
+        private final String label;
+
+        /** Unit of the values */
+        private final String unit;
+
+        Channel(String label, String unit) {
+            this.label = label;
+            this.unit = unit;
+        }
+
+        /**
+         * Gets the display name of the measurement
+         * @return Name
+         */
+        public String getLabel() { return label; }
+
+        /**
+         * Gets the unit of the values
+         * @return Unit
+         */
+        public String getUnit() { return unit; }
+    }
+
+    /**
+     * A time window ending at the most recent reading
+     */
+    public static final class Window {
+        /** Minutes, hours and days in milliseconds */
+        private static final long MINUTE = 60_000L;
+        private static final long HOUR = 60 * MINUTE;
+        private static final long DAY = 24 * HOUR;
+
+        /** The whole history */
+        public static final Window ALL_TIME = new Window("all time", 0);
+
+        /** Display name */
+        private final String label;
+
+        /** Length in milliseconds, 0 for the whole history */
+        private final long millis;
+
+        private Window(String label, long millis) {
+            this.label = label;
+            this.millis = millis;
+        }
+
+        /**
+         * Gets the window of the given length
+         * @param duration Length of the window, at least one millisecond
+         * @return The window
+         */
+        public static Window of(Duration duration) {
+            long millis = duration.toMillis();
+            if (millis <= 0) {
+                throw new IllegalArgumentException("Window must be at least one millisecond: " + duration);
+            }
+            String label;
+            if (millis % DAY == 0 && millis > DAY) {
+                label = millis / DAY + "d";
+            } else if (millis % HOUR == 0) {
+                label = millis / HOUR + "h";
+            } else if (millis % MINUTE == 0) {
+                label = millis / MINUTE + "m";
+            } else {
+                label = millis + "ms";
+            }
+            return new Window(label, millis);
+        }
+
+        /**
+         * Parses a window length such as "30m", "1h", "24h" or "7d"
+         * @param text The length
+         * @return The window
+         * @throws IllegalArgumentException If the text is not a length in minutes, hours or days
+         */
+        public static Window parse(String text) {
+            String trimmed = text.trim().toLowerCase();
+            if (trimmed.length() < 2) {
+                throw new IllegalArgumentException("Invalid window: " + text);
+            }
+            long unit;
+            switch (trimmed.charAt(trimmed.length() - 1)) {
+                case 'm': unit = MINUTE; break;
+                case 'h': unit = HOUR; break;
+                case 'd': unit = DAY; break;
+                default: throw new IllegalArgumentException("Invalid window unit: " + text);
+            }
+            try {
+                return of(Duration.ofMillis(Math.multiplyExact(Long.parseLong(trimmed.substring(0, trimmed.length() - 1)), unit)));
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw new IllegalArgumentException("Invalid window: " + text);
+            }
+        }
+
+        /**
+         * Gets the display name of the window, e.g. "24h"
+         * @return Name
+         */
+        public String getLabel() { return label; }
+
+        /**
+         * Gets the length of the window
+         * @return Length, or null for the whole history
+         */
+        public Duration getDuration() { return millis > 0 ? Duration.ofMillis(millis) : null; }
+
+        /**
+         * Checks whether the window covers the whole history
+         * @return true for the all-time window
+         */
+        public boolean isAllTime() { return millis == 0; }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Window && ((Window) other).millis == millis;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(millis);
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Statistics of one measurement in one window
+     */
+    public static final class Summary {
+        /** Summary of a window without readings */
+        public static final Summary EMPTY = new Summary(0, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+
+        private final long count;
+        private final double min;
+        private final double max;
+        private final double mean;
+        private final double standardDeviation;
+        private final double ewma;
+
+        Summary(long count, double min, double max, double mean, double standardDeviation, double ewma) {
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.standardDeviation = standardDeviation;
+            this.ewma = ewma;
+        }
+
+        /**
+         * Gets the number of readings in the window that have this measurement
+         * @return Reading count
+         */
+        public long getCount() { return count; }
+
+        /**
+         * Checks whether the window holds no readings with this measurement
+         * @return true if there are none; all other figures are NaN then
+         */
+        public boolean isEmpty() { return count == 0; }
+
+        /**
+         * Gets the lowest value
+         * @return Minimum
+         */
+        public double getMin() { return min; }
+
+        /**
+         * Gets the highest value
+         * @return Maximum
+         */
+        public double getMax() { return max; }
+
+        /**
+         * Gets the arithmetic mean
+         * @return Mean
+         */
+        public double getMean() { return mean; }
+
+        /**
+         * Gets the (population) standard deviation
+         * @return Standard deviation
+         */
+        public double getStandardDeviation() { return standardDeviation; }
+
+        /**
+         * Gets the exponentially weighted mean. A reading's weight decays by a factor e over the
+         * length of the window (one day for the all-time window) before the most recent reading.
+         * @return EWMA
+         */
+        public double getEwma() { return ewma; }
+
+        @Override
+        public String toString() {
+            if (count == 0) {
+                return "no readings";
+            }
+            return String.format("mean %.1f, min %.1f, max %.1f, sd %.1f, ewma %.1f (%d readings)",
+                    mean, min, max, standardDeviation, ewma, count);
+        }
+    }
+
+    /** The measurements, in the order of their values */
+    private static final Channel[] CHANNELS = Channel.values();
+
+    /** Windows kept for every patient, ending with the all-time window */
+    private static final List<Window> WINDOWS = configuredWindows();
+
+    /** State of each window, in the order of WINDOWS */
+    private final WindowState[] windows;
+
+    /** Whether the state reflects the readings; otherwise it is rebuilt on the next query */
+    private boolean built;
+
+    /** Time of the most recent reading, or NO_TIME */
+    private long latest = NO_TIME;
+
+    /** Number of times readings were dropped from the series when the state was built */
+    private long compactions;
+
+    /** Values of the reading being added or removed, by channel */
+    private final double[] values = new double[Channel.values().length];
+
+    /**
+     * Creates statistics that are computed from the readings on the first query
+     */
+    VitalStatistics() {
+        windows = new WindowState[WINDOWS.size()];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new WindowState(WINDOWS.get(i));
+        }
+    }
+
+    /**
+     * Gets the windows kept for every patient
+     * @return Windows, shortest first, ending with the all-time window
+     */
+    public static List<Window> getWindows() {
+        return WINDOWS;
+    }
+
+    // ===== Updates =====
+
+    /**
+     * Updates the statistics after a reading was added to the series
+     *
+     * @param series The readings, including the new one
+     * @param vital The reading that was added
+     */
+    void added(VitalSeries series, VitalSign vital) {
+        if (!built || compactions != series.getCompactions()) {
+            built = false; // Readings that were in the windows may have been dropped
+            return;
+        }
+        long time = VitalSeries.toEpochMillis(vital.getDateTimeRecorded());
+        boolean newest = time != NO_TIME && (latest == NO_TIME || time >= latest);
+        if (newest) {
+            advance(series, time);
+        }
+        readValues(vital);
+        for (WindowState state : windows) {
+            if (state.contains(time)) {
+                state.add(time, values, newest);
+            }
+        }
+    }
+
+    /**
+     * Updates the statistics after a reading was removed from the series
+     * @param vital The reading that was removed
+     */
+    void removed(VitalSign vital) {
+        if (!built) {
+            return;
+        }
+        long time = VitalSeries.toEpochMillis(vital.getDateTimeRecorded());
+        if (time == NO_TIME || time >= latest) {
+            built = false; // The windows may move back
+            return;
+        }
+        readValues(vital);
+        for (WindowState state : windows) {
+            if (state.contains(time)) {
+                state.subtract(time, values);
+                state.extremesValid = false;
+            }
+        }
+    }
+
+    /**
+     * Marks the statistics for recomputation, e.g. after a batch of readings was added
+     */
+    void invalidate() {
+        built = false;
+    }
+
+    // ===== Queries =====
+
+    /**
+     * Gets the statistics of a measurement in a window.
+     * Windows that are not kept are computed from the readings in the window.
+     *
+     * @param series The readings
+     * @param channel The measurement
+     * @param window The window
+     * @return The statistics
+     */
+    Summary summarize(VitalSeries series, Channel channel, Window window) {
+        if (!built || compactions != series.getCompactions()) {
+            build(series);
+        }
+        WindowState state = null;
+        for (WindowState candidate : windows) {
+            if (candidate.window.equals(window)) {
+                state = candidate;
+            }
+        }
+        if (state == null) {
+            state = new WindowState(window);
+            state.build(series, latest);
+        } else if (!state.extremesValid) {
+            state.rebuildExtremes(series);
+        }
+        return state.channels[channel.ordinal()].summarize();
+    }
+
+    // ===== Internals =====
+
+    /**
+     * Computes the statistics of every window from the readings
+     */
+    private void build(VitalSeries series) {
+        int last = series.size() - 1;
+        latest = last >= 0 && series.hasTime(last) ? series.getEpochMillis(last) : NO_TIME;
+        for (WindowState state : windows) {
+            state.build(series, latest);
+        }
+        compactions = series.getCompactions();
+        built = true;
+    }
+
+    /**
+     * Moves the windows forward to end at a newer reading, subtracting the readings that leave them
+     */
+    private void advance(VitalSeries series, long time) {
+        for (WindowState state : windows) {
+            if (!state.window.isAllTime()) {
+                long start = time - state.window.millis;
+                if (start > state.start) {
+                    int from = series.upperBound(state.start);
+                    int to = series.upperBound(start);
+                    for (int i = from; i < to; i++) {
+                        readValues(series, i);
+                        state.subtract(series.getEpochMillis(i), values);
+                    }
+                    state.expire(start);
+                    state.start = start;
+                }
+            }
+            state.rebase(time);
+        }
+        latest = time;
+    }
+
+    /**
+     * Reads the measurements of a reading into the value buffer; missing blood pressure is NaN
+     */
+    private void readValues(VitalSign vital) {
+        readValues(vital, values);
+    }
+
+    /**
+     * Reads the measurements of a reading; missing blood pressure is NaN
+     *
+     * @param vital The reading
+     * @param values Receives the values by channel
+     */
+    static void readValues(VitalSign vital, double[] values) {
+        boolean pressure = vital.hasBloodPressureValues();
+        values[Channel.HEART_RATE.ordinal()] = vital.getHeartRate();
+        values[Channel.OXYGEN_LEVEL.ordinal()] = vital.getOxygenLevel();
+        values[Channel.SYSTOLIC.ordinal()] = pressure ? vital.getSystolic() : Double.NaN;
+        values[Channel.DIASTOLIC.ordinal()] = pressure ? vital.getDiastolic() : Double.NaN;
+        values[Channel.TEMPERATURE.ordinal()] = vital.getTemperature();
+    }
+
+    /**
+     * Reads the measurements of a reading in a series into the value buffer
+     */
+    private void readValues(VitalSeries series, int index) {
+        readValues(series, index, values);
+    }
+
+    /**
+     * Reads the measurements of a reading in a series; missing blood pressure is NaN
+     *
+     * @param series The readings
+     * @param index Index of the reading
+     * @param values Receives the values by channel
+     */
+    static void readValues(VitalSeries series, int index, double[] values) {
+        int systolic = series.getSystolic(index);
+        int diastolic = series.getDiastolic(index);
+        boolean pressure = systolic > 0 && diastolic > 0;
+        values[Channel.HEART_RATE.ordinal()] = series.getHeartRate(index);
+        values[Channel.OXYGEN_LEVEL.ordinal()] = series.getOxygenLevel(index);
+        values[Channel.SYSTOLIC.ordinal()] = pressure ? systolic : Double.NaN;
+        values[Channel.DIASTOLIC.ordinal()] = pressure ? diastolic : Double.NaN;
+        values[Channel.TEMPERATURE.ordinal()] = series.getTemperature(index);
+    }
+
+    /**
+     * Reads the configured windows
+     */
+    private static List<Window> configuredWindows() {
+        List<Window> windows = new ArrayList<>();
+        String setting = System.getProperty("rpms.vitals.statsWindows", "1h,24h,7d");
+        for (String text : setting.split(",")) {
+            if (text.isBlank()) {
+                continue;
+            }
+            try {
+                Window window = Window.parse(text);
+                if (!windows.contains(window)) {
+                    windows.add(window);
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println("Ignoring vital statistics window: " + e.getMessage());
+            }
+        }
+        windows.sort((first, second) -> Long.compare(first.millis, second.millis));
+        windows.add(Window.ALL_TIME);
+        return Collections.unmodifiableList(windows);
+    }
+
+    /**
+     * Running statistics of every measurement in one window
+     */
+    private static class WindowState {
+        /** The window */
+        private final Window window;
+
+        /** Time constant of the EWMA in milliseconds */
+        private final double timeConstant;
+
+        /** Readings recorded after this time are in the window; NO_TIME for the all-time window */
+        private long start = NO_TIME;
+
+        /** Time at which a reading has an EWMA weight of 1 */
+        private long reference;
+
+        /** Whether the minimum and maximum queues reflect the readings in the window */
+        private boolean extremesValid = true;
+
+        /** Statistics by channel */
+        private final Accumulator[] channels = new Accumulator[Channel.values().length];
+
+        WindowState(Window window) {
+            this.window = window;
+            this.timeConstant = window.isAllTime() ? ALL_TIME_EWMA_MILLIS : window.millis;
+            for (int i = 0; i < channels.length; i++) {
+                channels[i] = new Accumulator();
+            }
+        }
+
+        /**
+         * Checks whether a reading recorded at a time is in the window
+         */
+        boolean contains(long time) {
+            return window.isAllTime() || time > start;
+        }
+
+        /**
+         * Computes the window ending at the most recent reading from the readings
+         */
+        void build(VitalSeries series, long latest) {
+            for (Accumulator channel : channels) {
+                channel.clear();
+            }
+            start = window.isAllTime() || latest == NO_TIME ? NO_TIME : latest - window.millis;
+            reference = latest == NO_TIME ? 0 : latest;
+            if (window.isAllTime()) {
+                addCompacted(series);
+            }
+            double[] values = new double[channels.length];
+            for (int i = window.isAllTime() ? 0 : series.upperBound(start); i < series.size(); i++) {
+                readValues(series, i, values);
+                add(series.getEpochMillis(i), values, true);
+            }
+            extremesValid = true;
+        }
+
+        /**
+         * Adds the totals of the readings dropped from the series. Their EWMA weight is left out,
+         * as they are older than the retention period and their weight is negligible.
+         */
+        void addCompacted(VitalSeries series) {
+            VitalRollups rollups = series.getRollupsIfBuilt();
+            if (rollups == null) {
+                return;
+            }
+            for (int c = 0; c < channels.length; c++) {
+                Channel channel = CHANNELS[c];
+                channels[c].merge(rollups.getCompactedCount(channel), rollups.getCompactedMean(channel),
+                        rollups.getCompactedSquares(channel));
+                pushCompactedExtremes(rollups, c);
+            }
+        }
+
+        /**
+         * Adds the extremes of the readings dropped from the series to the queues of a channel
+         */
+        private void pushCompactedExtremes(VitalRollups rollups, int c) {
+            Channel channel = CHANNELS[c];
+            if (rollups.getCompactedCount(channel) > 0) {
+                channels[c].minimum.push(NO_TIME, rollups.getCompactedMin(channel));
+                channels[c].maximum.push(NO_TIME, rollups.getCompactedMax(channel));
+            }
+        }
+
+        /**
+         * Adds a reading
+         *
+         * @param pushExtremes false if the reading is older than the newest one, so the queues of a
+         *                     sliding window cannot take it
+         */
+        void add(long time, double[] values, boolean pushExtremes) {
+            double weight = weight(time);
+            for (int i = 0; i < channels.length; i++) {
+                if (!Double.isNaN(values[i])) {
+                    channels[i].add(values[i], weight);
+                    if (pushExtremes || window.isAllTime()) {
+                        channels[i].minimum.push(time, values[i]);
+                        channels[i].maximum.push(time, values[i]);
+                    }
+                }
+            }
+            if (!pushExtremes && !window.isAllTime()) {
+                extremesValid = false;
+            }
+        }
+
+        /**
+         * Subtracts a reading that left the window or was removed
+         */
+        void subtract(long time, double[] values) {
+            double weight = weight(time);
+            for (int i = 0; i < channels.length; i++) {
+                if (!Double.isNaN(values[i])) {
+                    channels[i].subtract(values[i], weight);
+                }
+            }
+        }
+
+        /**
+         * Drops readings recorded up to a time from the minimum and maximum queues
+         */
+        void expire(long time) {
+            for (Accumulator channel : channels) {
+                channel.minimum.expire(time);
+                channel.maximum.expire(time);
+            }
+        }
+
+        /**
+         * Moves the EWMA reference to a newer reading before the weights grow too large
+         */
+        void rebase(long time) {
+            if ((time - reference) / timeConstant > MAX_WEIGHT_EXPONENT) {
+                double factor = Math.exp(-(time - reference) / timeConstant);
+                for (Accumulator channel : channels) {
+                    channel.rescale(factor);
+                }
+                reference = time;
+            }
+        }
+
+        /**
+         * Refills the minimum and maximum queues from the readings in the window
+         */
+        void rebuildExtremes(VitalSeries series) {
+            for (Accumulator channel : channels) {
+                channel.minimum.clear();
+                channel.maximum.clear();
+            }
+            VitalRollups rollups = series.getRollupsIfBuilt();
+            if (window.isAllTime() && rollups != null) {
+                for (int c = 0; c < channels.length; c++) {
+                    pushCompactedExtremes(rollups, c);
+                }
+            }
+            double[] values = new double[channels.length];
+            for (int i = window.isAllTime() ? 0 : series.upperBound(start); i < series.size(); i++) {
+                readValues(series, i, values);
+                long time = series.getEpochMillis(i);
+                for (int c = 0; c < channels.length; c++) {
+                    if (!Double.isNaN(values[c])) {
+                        channels[c].minimum.push(time, values[c]);
+                        channels[c].maximum.push(time, values[c]);
+                    }
+                }
+            }
+            extremesValid = true;
+        }
+
+        /**
+         * Gets the EWMA weight of a reading; readings without a time have none
+         */
+        private double weight(long time) {
+            return time == NO_TIME ? 0 : Math.exp((time - reference) / timeConstant);
+        }
+    }
+
+    /**
+     * Running sums of one measurement in one window.
+     * Values are summed relative to the first value, which keeps the variance accurate.
+     */
+    private static class Accumulator {
+        private long count;
+        private double shift;
+        private double sum;
+        private double sumOfSquares;
+        private double weightedSum;
+        private double weights;
+        private final MonotonicQueue minimum = new MonotonicQueue(true);
+        private final MonotonicQueue maximum = new MonotonicQueue(false);
+
+        void add(double value, double weight) {
+            if (count == 0) {
+                clearSums();
+                shift = value;
+            }
+            count++;
+            double delta = value - shift;
+            sum += delta;
+            sumOfSquares += delta * delta;
+            weightedSum += weight * delta;
+            weights += weight;
+        }
+
+        /**
+         * Adds the totals of a group of values without weight
+         *
+         * @param count Number of values
+         * @param mean Mean of the values
+         * @param squares Sum of the squared deviations from the mean
+         */
+        void merge(long count, double mean, double squares) {
+            if (count == 0) {
+                return;
+            }
+            if (this.count == 0) {
+                clearSums();
+                shift = mean;
+            }
+            this.count += count;
+            double delta = mean - shift;
+            sum += count * delta;
+            sumOfSquares += squares + count * delta * delta;
+        }
+
+        void subtract(double value, double weight) {
+            count--;
+            if (count <= 0) {
+                clearSums();
+                return;
+            }
+            double delta = value - shift;
+            sum -= delta;
+            sumOfSquares -= delta * delta;
+            weightedSum -= weight * delta;
+            weights -= weight;
+        }
+
+        void rescale(double factor) {
+            weightedSum *= factor;
+            weights *= factor;
+        }
+
+        void clear() {
+            clearSums();
+            minimum.clear();
+            maximum.clear();
+        }
+
+        private void clearSums() {
+            count = 0;
+            sum = 0;
+            sumOfSquares = 0;
+            weightedSum = 0;
+            weights = 0;
+        }
+
+        Summary summarize() {
+            if (count == 0) {
+                return Summary.EMPTY;
+            }
+            double meanDelta = sum / count;
+            double variance = Math.max(0, sumOfSquares / count - meanDelta * meanDelta);
+            double mean = shift + meanDelta;
+            double ewma = weights > 0 ? shift + weightedSum / weights : mean;
+            return new Summary(count, minimum.peek(), maximum.peek(), mean, Math.sqrt(variance), ewma);
+        }
+    }
+
+    /**
+     * Queue of readings in time order whose front holds the minimum (or maximum) of the readings
+     * in a sliding window. Readings that can never become the extreme are dropped when added.
+     */
+    private static class MonotonicQueue {
+        /** true to track the minimum, false for the maximum */
+        private final boolean minimum;
+
+        private long[] times = new long[8];
+        private double[] values = new double[8];
+        private int head;
+        private int size;
+
+        MonotonicQueue(boolean minimum) {
+            this.minimum = minimum;
+        }
+
+        /**
+         * Adds a reading newer than all readings in the queue
+         */
+        void push(long time, double value) {
+            while (size > 0) {
+                double last = values[(head + size - 1) & (values.length - 1)];
+                if (minimum ? last < value : last > value) {
+                    break;
+                }
+                size--;
+            }
+            if (size == values.length) {
+                grow();
+            }
+            int tail = (head + size) & (values.length - 1);
+            times[tail] = time;
+            values[tail] = value;
+            size++;
+        }
+
+        /**
+         * Drops the readings recorded up to a time
+         */
+        void expire(long time) {
+            while (size > 0 && times[head] <= time) {
+                head = (head + 1) & (values.length - 1);
+                size--;
+            }
+        }
+
+        /**
+         * Gets the extreme value
+         * @return The minimum or maximum, or NaN if the queue is empty
+         */
+        double peek() {
+            return size > 0 ? values[head] : Double.NaN;
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        private void grow() {
+            long[] newTimes = new long[times.length * 2];
+            double[] newValues = new double[values.length * 2];
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) & (values.length - 1);
+                newTimes[i] = times[index];
+                newValues[i] = values[index];
+            }
+            times = newTimes;
+            values = newValues;
+            head = 0;
+        }
+    }
+}
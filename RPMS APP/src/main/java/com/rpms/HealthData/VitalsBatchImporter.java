@@ -0,0 +1,336 @@
+package com.rpms.HealthData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+import com.rpms.Users.Administrator;
+import com.rpms.Users.Patient;
+import com.rpms.utilities.DataManager;
+
+/**
+ * Imports vital signs for many patients at once, e.g. to backfill a whole ward.
+ * The source is either a directory holding one CSV file per patient, named after the patient ID
+ * (e.g. P001.csv), or a combined CSV file whose first column is the patient ID
+ * (patient ID, heart rate, oxygen level, blood pressure, temperature, date and time).
+ * <p>
+ * The work runs on a ForkJoinPool. Files are split into ranges of whole lines that are parsed in
+ * parallel and merged back in file order, so the readings of each patient keep their order.
+ * The readings of each patient are then added to the patient's history in one batch and checked
+ * for alerts, patients in parallel, and all changed histories are written once at the end.
+ * <p>
+ * The patients are looked up in a map of patient IDs taken on the JavaFX Application Thread,
+ * since the patient registry is only changed there.
+ * <p>
+ * The number of worker threads can be configured with the system property rpms.import.parallelism
+ * (default: number of processors).
+ */
+public class VitalsBatchImporter {
+
+    /** Number of worker threads */
+    private static final int PARALLELISM = Integer.getInteger("rpms.import.parallelism",
+            Runtime.getRuntime().availableProcessors());
+
+    /** Size of the file ranges parsed by one task */
+    private static final long RANGE_SIZE = 8 << 20;
+
+    /** File name suffix of the CSV files read from a directory */
+    private static final String CSV_SUFFIX = ".csv";
+
+    /**
+     * A file to read
+     */
+    private static class Source {
+        /** Path of the file */
+        private final String filePath;
+
+        /** ID of the patient the rows belong to, or null if the first column holds the patient ID */
+        private final String patientId;
+
+        Source(String filePath, String patientId) {
+            this.filePath = filePath;
+            this.patientId = patientId;
+        }
+    }
+
+    /**
+     * Readings parsed from a part of a file
+     */
+    private static class Chunk {
+        /** Row counts and rejected rows */
+        private final VitalsImportReport report;
+
+        /** Accepted readings by patient ID */
+        private final Map<String, VitalSeries> readings;
+
+        /** Number of lines in the part */
+        private long lineCount;
+
+        Chunk(VitalsCsvImporter importer) {
+            this.report = importer.getReport();
+            this.readings = importer.getPatientReadings();
+            this.lineCount = importer.getLineCount();
+        }
+
+        /**
+         * Adds the following part of the same file
+         */
+        Chunk append(Chunk next) {
+            report.append(next.report, lineCount);
+            for (Map.Entry<String, VitalSeries> entry : next.readings.entrySet()) {
+                VitalSeries readings = this.readings.get(entry.getKey());
+                if (readings == null) {
+                    this.readings.put(entry.getKey(), entry.getValue());
+                } else {
+                    readings.addAll(entry.getValue());
+                }
+            }
+            lineCount += next.lineCount;
+            return this;
+        }
+    }
+
+    /**
+     * Parses a run of line ranges of a file, splitting it until a task covers a single range
+     */
+    private static class ParseTask extends RecursiveTask<Chunk> {
+        private static final long serialVersionUID = 1L;
+
+        private final Source source;
+        private final long[] bounds;
+        private final int first;
+        private final int last;
+        private final VitalsBatchReport batch;
+        private final Consumer<VitalsBatchReport> listener;
+
+        ParseTask(Source source, long[] bounds, int first, int last,
+                  VitalsBatchReport batch, Consumer<VitalsBatchReport> listener) {
+            this.source = source;
+            this.bounds = bounds;
+            this.first = first;
+            this.last = last;
+            this.batch = batch;
+            this.listener = listener;
+        }
+
+        @Override
+        protected Chunk compute() {
+            if (last - first == 1) {
+                VitalsCsvImporter importer = VitalsCsvImporter.readRange(source.filePath, source.patientId,
+                        bounds[first], bounds[last]);
+                batch.addParsed(bounds[last] - bounds[first], importer.getReport().getRowCount());
+                listener.accept(batch);
+                return new Chunk(importer);
+            }
+            int middle = (first + last) >>> 1;
+            ParseTask left = new ParseTask(source, bounds, first, middle, batch, listener);
+            ParseTask right = new ParseTask(source, bounds, middle, last, batch, listener);
+            left.fork();
+            Chunk tail = right.compute();
+            return left.join().append(tail);
+        }
+    }
+
+    /**
+     * Adds the readings of one patient to the patient's history
+     */
+    private static class IngestTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Patient patient;
+        private final VitalsImportReport report;
+        private final VitalsBatchReport batch;
+        private final Consumer<VitalsBatchReport> listener;
+
+        IngestTask(Patient patient, VitalsImportReport report,
+                   VitalsBatchReport batch, Consumer<VitalsBatchReport> listener) {
+            this.patient = patient;
+            this.report = report;
+            this.batch = batch;
+            this.listener = listener;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                patient.addImportedVitals(report);
+                batch.addPatient(report);
+            } catch (RuntimeException e) {
+                System.err.println("Error importing vitals for patient " + patient.getId() + ": " + e);
+                batch.addFailedPatient(patient.getId(), String.valueOf(e.getMessage()));
+            }
+            listener.accept(batch);
+        }
+    }
+
+    // ===== Import =====
+
+    /**
+     * Imports a directory of per-patient CSV files or a combined CSV file
+     *
+     * @param path Directory or combined file
+     * @param patients Patients by ID, copied from the registry on the Application Thread
+     * @param listener Called from worker threads as the import progresses
+     * @return Report of the import
+     */
+    public static VitalsBatchReport importPath(String path, Map<String, Patient> patients,
+                                               Consumer<VitalsBatchReport> listener) {
+        return new File(path).isDirectory()
+                ? importDirectory(path, patients, listener)
+                : importCombinedFile(path, patients, listener);
+    }
+
+    /**
+     * Imports a directory holding one CSV file per patient, named after the patient ID
+     *
+     * @param dirPath The directory
+     * @param patients Patients by ID, copied from the registry on the Application Thread
+     * @param listener Called from worker threads as the import progresses
+     * @return Report of the import
+     */
+    public static VitalsBatchReport importDirectory(String dirPath, Map<String, Patient> patients,
+                                                    Consumer<VitalsBatchReport> listener) {
+        List<Source> sources = new ArrayList<>();
+        File[] files = new File(dirPath).listFiles((dir, name) -> name.toLowerCase().endsWith(CSV_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                sources.add(new Source(file.getPath(), name.substring(0, name.length() - CSV_SUFFIX.length())));
+            }
+        }
+        VitalsBatchReport report = run(dirPath, sources, patients, listener);
+        if (files == null) {
+            report.setError("Cannot read directory " + dirPath);
+        }
+        return report;
+    }
+
+    /**
+     * Imports a combined CSV file whose first column is the patient ID
+     *
+     * @param filePath The file
+     * @param patients Patients by ID, copied from the registry on the Application Thread
+     * @param listener Called from worker threads as the import progresses
+     * @return Report of the import
+     */
+    public static VitalsBatchReport importCombinedFile(String filePath, Map<String, Patient> patients,
+                                                       Consumer<VitalsBatchReport> listener) {
+        List<Source> sources = new ArrayList<>();
+        sources.add(new Source(filePath, null));
+        return run(filePath, sources, patients, listener);
+    }
+
+    /**
+     * Parses the files, adds the readings to the patients' histories and saves them
+     */
+    private static VitalsBatchReport run(String path, List<Source> sources, Map<String, Patient> patients,
+                                         Consumer<VitalsBatchReport> listener) {
+        long totalBytes = 0;
+        for (Source source : sources) {
+            totalBytes += new File(source.filePath).length();
+        }
+
+        VitalsBatchReport batch = new VitalsBatchReport(path, totalBytes);
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        try {
+            Map<String, VitalSeries> readings = pool.invoke(parseAll(sources, batch, listener));
+            pool.invoke(ingestAll(path, readings, patients, batch, listener));
+        } finally {
+            pool.shutdown();
+        }
+
+        boolean saved = batch.getPatientReports().isEmpty() || DataManager.saveAllPatientsNow();
+        if (!saved) {
+            DataManager.requestSave(); // Retry with the next checkpoint
+        }
+        batch.finish(saved);
+        listener.accept(batch);
+
+        System.out.println("Batch vitals import from " + path + ": " + batch.getImportedCount() + " readings for "
+                + batch.getPatientReports().size() + " patients, " + batch.getRejectedCount() + " rows rejected, "
+                + batch.getRowsPerSecond() + " rows/s");
+        Administrator.addSystemLog("Batch vitals import from " + path + ": " + batch.getImportedCount()
+                + " readings for " + batch.getPatientReports().size() + " patients");
+        return batch;
+    }
+
+    /**
+     * Creates the task parsing all files.
+     * Each file is split into ranges parsed in parallel; the readings of files that could not be
+     * read completely are dropped, like in a single-file import.
+     */
+    private static RecursiveTask<Map<String, VitalSeries>> parseAll(List<Source> sources, VitalsBatchReport batch,
+                                                                  Consumer<VitalsBatchReport> listener) {
+        return new RecursiveTask<>() {
+            @Override
+            protected Map<String, VitalSeries> compute() {
+                List<ParseTask> tasks = new ArrayList<>();
+                for (Source source : sources) {
+                    try {
+                        long[] bounds = VitalsCsvImporter.splitLines(source.filePath, RANGE_SIZE);
+                        tasks.add(new ParseTask(source, bounds, 0, bounds.length - 1, batch, listener));
+                    } catch (IOException e) {
+                        System.err.println("Error reading CSV file: " + e.getMessage());
+                        VitalsImportReport failed = new VitalsImportReport(source.filePath, null);
+                        failed.setError(e.getMessage());
+                        batch.addFile(failed);
+                    }
+                }
+                ForkJoinTask.invokeAll(tasks);
+
+                Map<String, VitalSeries> readings = new LinkedHashMap<>();
+                for (ParseTask task : tasks) {
+                    Chunk chunk = task.join();
+                    batch.addFile(chunk.report);
+                    if (chunk.report.getError() != null) {
+                        continue;
+                    }
+                    for (Map.Entry<String, VitalSeries> entry : chunk.readings.entrySet()) {
+                        VitalSeries patientReadings = readings.get(entry.getKey());
+                        if (patientReadings == null) {
+                            readings.put(entry.getKey(), entry.getValue());
+                        } else {
+                            patientReadings.addAll(entry.getValue());
+                        }
+                    }
+                }
+                return readings;
+            }
+        };
+    }
+
+    /**
+     * Creates the task adding the readings of every registered patient to their history
+     */
+    private static RecursiveAction ingestAll(String path, Map<String, VitalSeries> readings,
+                                             Map<String, Patient> patients, VitalsBatchReport batch,
+                                             Consumer<VitalsBatchReport> listener) {
+        return new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<IngestTask> tasks = new ArrayList<>();
+                for (Map.Entry<String, VitalSeries> entry : readings.entrySet()) {
+                    Patient patient = patients.get(entry.getKey());
+                    VitalSeries patientReadings = entry.getValue();
+                    if (patient == null) {
+                        batch.addUnknownPatient(entry.getKey(), patientReadings.size());
+                        continue;
+                    }
+                    VitalsImportReport report = new VitalsImportReport(path, patientReadings);
+                    report.countRows(patientReadings.size());
+                    tasks.add(new IngestTask(patient, report, batch, listener));
+                }
+                batch.setPatientCount(tasks.size());
+                ForkJoinTask.invokeAll(tasks);
+            }
+        };
+    }
+}
@@ -0,0 +1,357 @@
+package com.rpms.HealthData;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Progress and result of a batch import of vital signs for many patients.
+ * Collects the reports of the files that were read and of the patients whose readings were
+ * imported. The report is updated by the worker threads of the import while it runs, so all
+ * methods are synchronized.
+ */
+public class VitalsBatchReport {
+
+    /** Maximum number of problems (rejected rows, unknown patients, failed files) listed in the summary */
+    private static final int MAX_SUMMARY_DETAILS = 20;
+
+    /** Directory or combined file that is imported */
+    private final String path;
+
+    /** Total size of the files to read in bytes */
+    private final long totalBytes;
+
+    /** Start of the import */
+    private final long startNanos = System.nanoTime();
+
+    /** Number of bytes parsed so far */
+    private long parsedBytes;
+
+    /** Number of data rows parsed so far */
+    private long rowCount;
+
+    /** Number of patients whose readings are being imported, known once all files were parsed */
+    private int patientCount;
+
+    /** Reports of the files read, with the row counts and rejected rows */
+    private final List<VitalsImportReport> fileReports = new ArrayList<>();
+
+    /** Reports of the patients whose readings were imported */
+    private final List<VitalsImportReport> patientReports = new ArrayList<>();
+
+    /** IDs in the files that do not belong to a registered patient */
+    private final List<String> unknownPatients = new ArrayList<>();
+
+    /** Number of readings skipped because the patient is not registered */
+    private long unknownPatientReadings;
+
+    /** Patients whose readings could not be imported, with the reason */
+    private final List<String> failedPatients = new ArrayList<>();
+
+    /** Error that stopped the import, or null */
+    private String error;
+
+    /** Whether the import is complete */
+    private boolean finished;
+
+    /** Whether the imported readings were written to disk */
+    private boolean saved;
+
+    /** Time taken by the import in milliseconds, once finished */
+    private long elapsedMillis;
+
+    /**
+     * Creates an empty report
+     *
+     * @param path Directory or combined file that is imported
+     * @param totalBytes Total size of the files to read in bytes
+     */
+    VitalsBatchReport(String path, long totalBytes) {
+        this.path = path;
+        this.totalBytes = totalBytes;
+    }
+
+    // ===== Getters =====
+
+    /**
+     * Gets the directory or combined file that is imported
+     * @return Path
+     */
+    public String getPath() { return path; }
+
+    /**
+     * Gets the number of files read
+     * @return File count
+     */
+    public synchronized int getFileCount() { return fileReports.size(); }
+
+    /**
+     * Gets the number of data rows read so far
+     * @return Row count
+     */
+    public synchronized long getRowCount() { return rowCount; }
+
+    /**
+     * Gets the number of rows that could not be imported
+     * @return Rejected row count
+     */
+    public synchronized long getRejectedCount() {
+        long rejected = 0;
+        for (VitalsImportReport file : fileReports) {
+            rejected += file.getRejectedCount();
+        }
+        return rejected;
+    }
+
+    /**
+     * Gets the number of readings added to patients' histories so far
+     * @return Imported reading count
+     */
+    public synchronized long getImportedCount() {
+        long imported = 0;
+        for (VitalsImportReport patient : patientReports) {
+            imported += patient.getAcceptedCount();
+        }
+        return imported;
+    }
+
+    /**
+     * Gets the reports of the files read
+     * @return File reports; their readings were handed on to the patient reports
+     */
+    public synchronized List<VitalsImportReport> getFileReports() {
+        return Collections.unmodifiableList(new ArrayList<>(fileReports));
+    }
+
+    /**
+     * Gets the reports of the patients whose readings were imported
+     * @return Patient reports with the abnormal readings and alerts
+     */
+    public synchronized List<VitalsImportReport> getPatientReports() {
+        return Collections.unmodifiableList(new ArrayList<>(patientReports));
+    }
+
+    /**
+     * Gets the IDs in the files that do not belong to a registered patient
+     * @return Unknown patient IDs
+     */
+    public synchronized List<String> getUnknownPatients() {
+        return Collections.unmodifiableList(new ArrayList<>(unknownPatients));
+    }
+
+    /**
+     * Gets the error that stopped the import
+     * @return Error message, or null
+     */
+    public synchronized String getError() { return error; }
+
+    /**
+     * Checks whether the import is complete
+     * @return true if finished, false while it runs
+     */
+    public synchronized boolean isFinished() { return finished; }
+
+    /**
+     * Checks whether the imported readings were written to disk
+     * @return true if saved, false otherwise
+     */
+    public synchronized boolean isSaved() { return saved; }
+
+    /**
+     * Gets the time taken by the import so far
+     * @return Duration in milliseconds
+     */
+    public synchronized long getElapsedMillis() {
+        return finished ? elapsedMillis : (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Gets the parsing throughput
+     * @return Rows read per second
+     */
+    public synchronized long getRowsPerSecond() {
+        long millis = Math.max(getElapsedMillis(), 1);
+        return rowCount * 1000 / millis;
+    }
+
+    /**
+     * Gets how much of the import is done. Reading the files and adding the readings to the
+     * patients' histories count as half each.
+     * @return Fraction between 0 and 1
+     */
+    public synchronized double getProgress() {
+        if (finished) {
+            return 1;
+        }
+        double parsed = totalBytes > 0 ? (double) parsedBytes / totalBytes : 1;
+        double imported = patientCount > 0 ? (double) patientReports.size() / patientCount : 0;
+        return (parsed + imported) / 2;
+    }
+
+    /**
+     * Generates a one-line progress description
+     * @return Status text
+     */
+    public synchronized String getStatus() {
+        if (patientCount == 0) {
+            return "Reading files: " + parsedBytes / 1024 + " of " + totalBytes / 1024 + " KB, "
+                    + rowCount + " rows (" + getRowsPerSecond() + " rows/s)";
+        }
+        return "Importing patients: " + patientReports.size() + " of " + patientCount
+                + ", " + getImportedCount() + " readings";
+    }
+
+    // ===== Recording =====
+
+    /**
+     * Records a parsed range of a file
+     *
+     * @param bytes Size of the range
+     * @param rows Number of data rows in the range
+     */
+    synchronized void addParsed(long bytes, long rows) {
+        parsedBytes += bytes;
+        rowCount += rows;
+    }
+
+    /**
+     * Records a file that was read completely
+     * @param file Report of the file
+     */
+    synchronized void addFile(VitalsImportReport file) {
+        fileReports.add(file);
+    }
+
+    /**
+     * Records the number of patients whose readings are imported
+     * @param patientCount Patient count
+     */
+    synchronized void setPatientCount(int patientCount) {
+        this.patientCount = patientCount;
+    }
+
+    /**
+     * Records a patient whose readings were imported
+     * @param patient Report of the patient's readings
+     */
+    synchronized void addPatient(VitalsImportReport patient) {
+        patientReports.add(patient);
+    }
+
+    /**
+     * Records an ID that does not belong to a registered patient
+     *
+     * @param patientId The ID
+     * @param readings Number of readings skipped
+     */
+    synchronized void addUnknownPatient(String patientId, long readings) {
+        unknownPatients.add(patientId);
+        unknownPatientReadings += readings;
+    }
+
+    /**
+     * Records a patient whose readings could not be imported
+     *
+     * @param patientId The patient's ID
+     * @param reason Why the readings could not be imported
+     */
+    synchronized void addFailedPatient(String patientId, String reason) {
+        failedPatients.add(patientId + ": " + reason);
+        patientCount--;
+    }
+
+    /**
+     * Records the error that stopped the import
+     * @param error Error message
+     */
+    synchronized void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * Records that the import is complete
+     * @param saved true if the imported readings were written to disk
+     */
+    synchronized void finish(boolean saved) {
+        this.elapsedMillis = getElapsedMillis();
+        this.saved = saved;
+        this.finished = true;
+    }
+
+    /**
+     * Generates a summary for display
+     * @return Summary text
+     */
+    public synchronized String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append("Imported ").append(getImportedCount()).append(" readings for ")
+               .append(patientReports.size()).append(" patients from ").append(fileReports.size())
+               .append(fileReports.size() == 1 ? " file" : " files").append(" in ").append(getElapsedMillis())
+               .append(" ms (").append(rowCount).append(" rows, ").append(getRowsPerSecond()).append(" rows/s).");
+
+        int details = 0;
+        long rejected = getRejectedCount();
+        if (rejected > 0) {
+            summary.append("\nRejected ").append(rejected).append(" rows:");
+            for (VitalsImportReport file : fileReports) {
+                for (VitalsImportReport.RejectedRow row : file.getRejectedRows()) {
+                    if (details == MAX_SUMMARY_DETAILS) {
+                        break;
+                    }
+                    details++;
+                    summary.append("\n  ").append(fileName(file.getFilePath())).append(":")
+                           .append(row.getLineNumber()).append(": ").append(row.getReason());
+                }
+            }
+            if (rejected > details) {
+                summary.append("\n  ...");
+            }
+        }
+        for (VitalsImportReport file : fileReports) {
+            if (file.getError() != null) {
+                summary.append("\nSkipped ").append(fileName(file.getFilePath())).append(": ").append(file.getError());
+            }
+        }
+        if (!unknownPatients.isEmpty()) {
+            summary.append("\nSkipped ").append(unknownPatientReadings).append(" readings of unknown patients: ")
+                   .append(String.join(", ", unknownPatients.subList(0, Math.min(unknownPatients.size(), MAX_SUMMARY_DETAILS))));
+            if (unknownPatients.size() > MAX_SUMMARY_DETAILS) {
+                summary.append(", ...");
+            }
+        }
+        for (String failed : failedPatients) {
+            summary.append("\nFailed: ").append(failed);
+        }
+
+        int abnormal = 0;
+        int alerted = 0;
+        for (VitalsImportReport patient : patientReports) {
+            abnormal += patient.getAbnormalCount();
+            alerted += patient.getAlerts().isEmpty() ? 0 : 1;
+        }
+        if (abnormal > 0) {
+            summary.append("\n").append(abnormal).append(" readings are outside normal ranges; alerts were sent for ")
+                   .append(alerted).append(alerted == 1 ? " patient." : " patients.");
+        }
+        if (error != null) {
+            summary.append("\nImport stopped: ").append(error);
+        }
+        if (finished && !saved && !patientReports.isEmpty()) {
+            summary.append("\nThe readings could not be saved yet; they will be saved with the next checkpoint.");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Gets the file name of a path
+     */
+    private static String fileName(String filePath) {
+        return new File(filePath).getName();
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+}
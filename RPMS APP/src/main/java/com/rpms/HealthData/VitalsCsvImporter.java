@@ -0,0 +1,650 @@
+package com.rpms.HealthData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads vital signs from CSV device exports in bulk.
+ * The file is memory-mapped in windows and every row is decoded directly from the mapped bytes:
+ * numbers, the "sys/dia" pair and ISO timestamps are parsed in place, validated without throwing
+ * exceptions, and accepted rows go straight into a {@link VitalSeries}. No strings or other objects
+ * are created per row (only for the few rejected rows kept in the report), so large exports are
+ * imported quickly and with little memory.
+ * <p>
+ * Expected columns: heart rate, oxygen level, blood pressure (systolic/diastolic),
+ * temperature, date and time (ISO format, e.g. 2025-04-26T10:30). Extra columns are ignored.
+ * A first line that is not a valid row is treated as a header.
+ * <p>
+ * The columns accept what the row-by-row import accepted (see {@link VitalsImportReport} for the
+ * grammar): the common forms are parsed in place, and a column that is not in a common form is
+ * parsed again with the old String-based rules before the row is rejected.
+ * <p>
+ * Combined files holding several patients start every row with the patient ID; see
+ * {@link VitalsBatchImporter}, which also reads large files in parallel byte ranges.
+ */
+public class VitalsCsvImporter {
+
+    /** Size of the file region mapped at a time */
+    private static final int WINDOW_SIZE = 64 << 20;
+
+    /** Longest rejected row text kept in the report */
+    private static final int MAX_REJECTED_LINE_LENGTH = 200;
+
+    /** Number of columns a row needs */
+    private static final int COLUMN_COUNT = 5;
+
+    /** Milliseconds per day */
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    /** Report being filled */
+    private final VitalsImportReport report;
+
+    /** ID of the patient all rows belong to, or null if the first column holds the patient ID */
+    private final String patientId;
+
+    /** Accepted rows by patient ID, in the order the patients first appear */
+    private final Map<String, VitalSeries> patientReadings = new LinkedHashMap<>();
+
+    /** Offset of the first byte to read */
+    private final long from;
+
+    /** Offset after the last byte to read, or -1 to read to the end of the file */
+    private final long to;
+
+    /** Number of lines read, including blank lines and the header */
+    private long lineCount;
+
+    /** Column start offsets of the current row */
+    private final int[] starts = new int[COLUMN_COUNT + 1];
+
+    /** Column end offsets of the current row */
+    private final int[] ends = new int[COLUMN_COUNT + 1];
+
+    /** Series receiving the rows of the patient last read */
+    private VitalSeries current;
+
+    /** ID of the patient last read, as bytes */
+    private byte[] currentId = new byte[0];
+
+    // Fields of the current row, set by parseRow
+    private double heartRate;
+    private double oxygenLevel;
+    private int systolic;
+    private int diastolic;
+    private double temperature;
+    private long epochMillis;
+    private int nanos;
+
+    private VitalsCsvImporter(String filePath, String patientId, long from, long to) {
+        this.patientId = patientId;
+        this.from = from;
+        this.to = to;
+        if (patientId != null) {
+            current = new VitalSeries(patientId);
+            patientReadings.put(patientId, current);
+        }
+        this.report = new VitalsImportReport(filePath, current);
+    }
+
+    /**
+     * Reads the vital signs of a patient from a CSV file.
+     * The accepted readings are returned in the report and are not added to any patient.
+     *
+     * @param patientId ID of the patient the readings belong to
+     * @param filePath Path to the CSV file
+     * @return Report with the accepted readings and the rejected rows
+     */
+    public static VitalsImportReport readFile(String patientId, String filePath) {
+        VitalsCsvImporter importer = new VitalsCsvImporter(filePath, patientId, 0, -1);
+        importer.read();
+        importer.current.trimToSize();
+        return importer.report;
+    }
+
+    /**
+     * Reads the rows in a byte range of a CSV file.
+     * Line numbers in the report are counted from the start of the range.
+     *
+     * @param filePath Path to the CSV file
+     * @param patientId ID of the patient the rows belong to, or null if the first column holds the patient ID
+     * @param from Offset of the first line of the range
+     * @param to Offset after the last line of the range
+     * @return The importer holding the report and the readings by patient
+     */
+    static VitalsCsvImporter readRange(String filePath, String patientId, long from, long to) {
+        VitalsCsvImporter importer = new VitalsCsvImporter(filePath, patientId, from, to);
+        importer.read();
+        return importer;
+    }
+
+    /**
+     * Splits a file into ranges of whole lines of about the given size
+     *
+     * @param filePath Path to the CSV file
+     * @param rangeSize Approximate size of a range in bytes
+     * @return Range boundaries: the first is 0, the last is the file size
+     * @throws IOException If the file cannot be read
+     */
+    static long[] splitLines(String filePath, long rangeSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long[] bounds = new long[(int) (fileSize / rangeSize) + 2];
+            int count = 1;
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long position = rangeSize;
+            while (position < fileSize) {
+                // Move the boundary to the start of the next line
+                long lineStart = -1;
+                long offset = position;
+                while (lineStart < 0 && offset < fileSize) {
+                    buffer.clear();
+                    int read = channel.read(buffer, offset);
+                    for (int i = 0; i < read && lineStart < 0; i++) {
+                        if (buffer.get(i) == '\n') {
+                            lineStart = offset + i + 1;
+                        }
+                    }
+                    offset += Math.max(read, 0);
+                }
+                if (lineStart < 0 || lineStart >= fileSize) {
+                    break;
+                }
+                bounds[count++] = lineStart;
+                position = lineStart + rangeSize;
+            }
+            bounds[count++] = fileSize;
+            return Arrays.copyOf(bounds, count);
+        }
+    }
+
+    /**
+     * Gets the report of the rows read
+     * @return Report counting the rows; its readings are only set for single-patient files
+     */
+    VitalsImportReport getReport() {
+        return report;
+    }
+
+    /**
+     * Gets the accepted readings by patient ID
+     * @return Readings in time order, by patient in the order the patients first appear
+     */
+    Map<String, VitalSeries> getPatientReadings() {
+        return patientReadings;
+    }
+
+    /**
+     * Gets the number of lines read, including blank lines and the header
+     * @return Line count
+     */
+    long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Maps the file window by window and parses every row.
+     * Each window ends after its last complete line; the next window starts right after it.
+     */
+    private void read() {
+        try (FileChannel channel = FileChannel.open(Paths.get(report.getFilePath()), StandardOpenOption.READ)) {
+            long fileSize = to < 0 ? channel.size() : Math.min(to, channel.size());
+            long position = from;
+            while (position < fileSize) {
+                int length = (int) Math.min(WINDOW_SIZE, fileSize - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == fileSize;
+                int limit = length;
+                if (!last) {
+                    while (limit > 0 && window.get(limit - 1) != '\n') {
+                        limit--;
+                    }
+                    if (limit == 0) {
+                        report.setError("Line " + (lineCount + 1) + " is too long");
+                        break;
+                    }
+                }
+                int lineStart = position == 0 ? skipByteOrderMark(window, length) : 0;
+                while (lineStart < limit) {
+                    int lineEnd = lineStart;
+                    while (lineEnd < limit && window.get(lineEnd) != '\n') {
+                        lineEnd++;
+                    }
+                    lineCount++;
+                    parseLine(window, lineStart, lineEnd, lineCount);
+                    lineStart = lineEnd + 1;
+                }
+                position += limit;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading CSV file: " + e.getMessage());
+            report.setError(e.getMessage());
+        }
+        for (VitalSeries readings : patientReadings.values()) {
+            readings.sortByTime();
+        }
+    }
+
+    /**
+     * Parses one line and adds the reading or records the rejection
+     */
+    private void parseLine(ByteBuffer bytes, int start, int end, long lineNumber) {
+        if (end > start && bytes.get(end - 1) == '\r') {
+            end--;
+        }
+        if (isBlank(bytes, start, end)) {
+            return;
+        }
+        String error = parseRow(bytes, start, end);
+        if (error != null && lineNumber == 1 && from == 0) {
+            return; // Header
+        }
+        report.countRow();
+        if (error != null) {
+            report.reject(lineNumber, error, text(bytes, start, Math.min(end, start + MAX_REJECTED_LINE_LENGTH)));
+        } else {
+            current.append(epochMillis, nanos, heartRate, oxygenLevel, systolic, diastolic, temperature);
+        }
+    }
+
+    // ===== Row Parsing =====
+
+    /**
+     * Parses and validates a row into the row fields
+     * @return Why the row is invalid, or null if it is valid
+     */
+    private String parseRow(ByteBuffer line, int lineStart, int lineEnd) {
+        int first = patientId == null ? 1 : 0;
+        int columnCount = COLUMN_COUNT + first;
+        int columns = 0;
+        int start = lineStart;
+        while (columns < columnCount) {
+            int comma = indexOf(line, ',', start, lineEnd);
+            int end = comma < 0 ? lineEnd : comma;
+            starts[columns] = start;
+            ends[columns] = end;
+            columns++;
+            if (comma < 0) {
+                break;
+            }
+            start = comma + 1;
+        }
+        if (columns < columnCount) {
+            return "Expected " + columnCount + " columns but found " + columns;
+        }
+
+        heartRate = parseNumber(line, starts[first], ends[first]);
+        oxygenLevel = parseNumber(line, starts[first + 1], ends[first + 1]);
+        temperature = parseNumber(line, starts[first + 3], ends[first + 3]);
+        if (Double.isNaN(heartRate) || Double.isNaN(oxygenLevel) || Double.isNaN(temperature)) {
+            return "Invalid numeric value";
+        }
+        if (!parseBloodPressure(line, starts[first + 2], ends[first + 2])) {
+            return "Invalid blood pressure format. It must be in the form 'systolic/diastolic'.";
+        }
+        if (!parseDateTime(line, starts[first + 4], ends[first + 4])) {
+            return "Invalid date and time. It must be in the form yyyy-MM-ddTHH:mm[:ss]";
+        }
+        String error = VitalSign.validate(heartRate, oxygenLevel, systolic, diastolic, temperature);
+        if (error == null && first == 1 && !selectPatient(line, starts[0], ends[0])) {
+            return "Missing patient ID";
+        }
+        return error;
+    }
+
+    /**
+     * Selects the series of the patient whose ID is in a column.
+     * Rows of a patient usually follow each other, so the ID is only decoded when it changes.
+     *
+     * @return false if the column is empty
+     */
+    private boolean selectPatient(ByteBuffer line, int start, int end) {
+        while (start < end && line.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && line.get(end - 1) == ' ') {
+            end--;
+        }
+        if (start == end) {
+            return false;
+        }
+        boolean same = end - start == currentId.length;
+        for (int i = 0; same && i < currentId.length; i++) {
+            same = line.get(start + i) == currentId[i];
+        }
+        if (!same) {
+            currentId = new byte[end - start];
+            line.get(start, currentId);
+            current = patientReadings.computeIfAbsent(new String(currentId, StandardCharsets.UTF_8), VitalSeries::new);
+        }
+        return true;
+    }
+
+    /**
+     * Parses a number column. Plain decimals are parsed in place; other forms the way the row-by-row
+     * import did, with Double.parseDouble on the column (e.g. "36.5d" or "3.65e1").
+     * @return The number, or NaN if the column is not a number
+     */
+    private static double parseNumber(ByteBuffer line, int start, int end) {
+        double value = parseDecimal(line, start, end);
+        if (!Double.isNaN(value)) {
+            return value;
+        }
+        try {
+            return Double.parseDouble(text(line, start, end));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Parses a blood pressure column into systolic and diastolic.
+     * The column is trimmed, but not the numbers around the slash, so "120/ 80" is rejected like before;
+     * forms other than digits/digits are parsed the way the row-by-row import did.
+     */
+    private boolean parseBloodPressure(ByteBuffer line, int start, int end) {
+        while (start < end && (line.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (line.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        int slash = indexOf(line, '/', start, end);
+        if (slash >= 0) {
+            systolic = parseInteger(line, start, slash);
+            diastolic = parseInteger(line, slash + 1, end);
+            if (systolic >= 0 && diastolic >= 0) {
+                return true;
+            }
+        }
+        String[] parts = text(line, start, end).split("/");
+        if (parts.length != 2) {
+            return false;
+        }
+        try {
+            systolic = Integer.parseInt(parts[0]);
+            diastolic = Integer.parseInt(parts[1]);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses a date and time column in ISO format (yyyy-MM-ddTHH:mm[:ss[.fraction]]).
+     * Forms other than these are parsed the way the row-by-row import did, with LocalDateTime.parse.
+     */
+    private boolean parseDateTime(ByteBuffer line, int start, int end) {
+        if (parseIsoDateTime(line, start, end)) {
+            return true;
+        }
+        try {
+            LocalDateTime dateTime = LocalDateTime.parse(text(line, start, end).trim());
+            epochMillis = VitalSeries.toEpochMillis(dateTime);
+            nanos = dateTime.getNano() % 1_000_000;
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses a date and time column in the common ISO forms in place
+     */
+    private boolean parseIsoDateTime(ByteBuffer line, int start, int end) {
+        while (start < end && line.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && line.get(end - 1) == ' ') {
+            end--;
+        }
+        int length = end - start;
+        if (length < 16 || line.get(start + 4) != '-' || line.get(start + 7) != '-'
+                || line.get(start + 10) != 'T' || line.get(start + 13) != ':') {
+            return false;
+        }
+        int year = digits(line, start, 4);
+        int month = digits(line, start + 5, 2);
+        int day = digits(line, start + 8, 2);
+        int hour = digits(line, start + 11, 2);
+        int minute = digits(line, start + 14, 2);
+        int second = 0;
+        int nanoOfSecond = 0;
+        if (length > 16) {
+            if (length < 19 || line.get(start + 16) != ':') {
+                return false;
+            }
+            second = digits(line, start + 17, 2);
+            if (length > 19) {
+                int fractionDigits = length - 20;
+                if (line.get(start + 19) != '.' || fractionDigits < 1 || fractionDigits > 9) {
+                    return false;
+                }
+                nanoOfSecond = digits(line, start + 20, fractionDigits);
+                if (nanoOfSecond < 0) {
+                    return false;
+                }
+                for (int i = fractionDigits; i < 9; i++) {
+                    nanoOfSecond *= 10;
+                }
+            }
+        }
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return false;
+        }
+        long secondOfDay = hour * 3600L + minute * 60L + second;
+        epochMillis = epochDay(year, month, day) * MILLIS_PER_DAY + secondOfDay * 1000L + nanoOfSecond / 1_000_000;
+        nanos = nanoOfSecond % 1_000_000;
+        return true;
+    }
+
+    /**
+     * Parses a decimal number such as "36.6" or "-1.5" without throwing
+     * @return The number, or NaN if the text is not a plain decimal number
+     */
+    static double parseDecimal(ByteBuffer text, int start, int end) {
+        while (start < end && text.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && text.get(end - 1) == ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (start < end && (text.get(start) == '-' || text.get(start) == '+')) {
+            negative = text.get(start) == '-';
+            start++;
+        }
+        long mantissa = 0;
+        int digitCount = 0;
+        int fractionDigits = -1;
+        for (int i = start; i < end; i++) {
+            int c = text.get(i);
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (digitCount == 15) {
+                    return slowParse(text, start, end, negative);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    digitCount++;
+                }
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (c == 'e' || c == 'E') {
+                return slowParse(text, start, end, negative);
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (end == start || (end - start == 1 && fractionDigits == 0)) {
+            return Double.NaN; // No digits
+        }
+        if (fractionDigits > 22) {
+            return slowParse(text, start, end, negative);
+        }
+        // Both values are exact doubles, so the division is correctly rounded like Double.parseDouble
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /** Exact powers of ten as doubles */
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Parses a number with too many digits for the fast path, or with an exponent, using Double.parseDouble.
+     * The text is checked first, so parseDouble cannot throw.
+     */
+    private static double slowParse(ByteBuffer text, int start, int end, boolean negative) {
+        int i = start;
+        int mantissaDigits = 0;
+        while (i < end && text.get(i) >= '0' && text.get(i) <= '9') {
+            i++;
+            mantissaDigits++;
+        }
+        if (i < end && text.get(i) == '.') {
+            i++;
+            while (i < end && text.get(i) >= '0' && text.get(i) <= '9') {
+                i++;
+                mantissaDigits++;
+            }
+        }
+        if (mantissaDigits == 0) {
+            return Double.NaN;
+        }
+        if (i < end && (text.get(i) == 'e' || text.get(i) == 'E')) {
+            i++;
+            if (i < end && (text.get(i) == '+' || text.get(i) == '-')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < end && text.get(i) >= '0' && text.get(i) <= '9') {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return Double.NaN;
+            }
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+        double value = Double.parseDouble(text(text, start, end));
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a non-negative integer without throwing; spaces are not skipped
+     * @return The number, or -1 if the text is not a number of at most 9 digits
+     */
+    static int parseInteger(ByteBuffer text, int start, int end) {
+        if (start < end && text.get(start) == '+') {
+            start++;
+        }
+        return end - start > 9 ? -1 : digits(text, start, end - start);
+    }
+
+    /**
+     * Reads a fixed number of decimal digits
+     * @return The value, or -1 if a character is not a digit
+     */
+    private static int digits(ByteBuffer text, int start, int count) {
+        if (count == 0) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int c = text.get(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Finds a byte between two offsets
+     * @return Offset of the byte, or -1 if it does not occur
+     */
+    private static int indexOf(ByteBuffer bytes, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether a line holds only spaces and tabs
+     */
+    private static boolean isBlank(ByteBuffer bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = bytes.get(i);
+            if (b != ' ' && b != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the offset after a UTF-8 byte order mark at the start of the file, if there is one
+     */
+    private static int skipByteOrderMark(ByteBuffer bytes, int length) {
+        boolean bom = length >= 3 && (bytes.get(0) & 0xFF) == 0xEF
+                && (bytes.get(1) & 0xFF) == 0xBB && (bytes.get(2) & 0xFF) == 0xBF;
+        return bom ? 3 : 0;
+    }
+
+    /**
+     * Decodes bytes as text; only used for rejected rows and rare number formats
+     */
+    private static String text(ByteBuffer bytes, int start, int end) {
+        byte[] copy = new byte[end - start];
+        bytes.get(start, copy);
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the number of days in a month
+     */
+    private static int lengthOfMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Gets the number of days from 1970-01-01 to a date (proleptic Gregorian calendar)
+     */
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+}
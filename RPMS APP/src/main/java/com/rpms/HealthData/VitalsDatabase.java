@@ -1,23 +1,61 @@
 package com.rpms.HealthData;
 
+import com.rpms.utilities.ChangeFeed;
+import com.rpms.utilities.PatientStore;
+import com.rpms.utilities.SerializationUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import javafx.scene.Scene;
-import javafx.scene.chart.*;
-import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
-import java.time.format.DateTimeFormatter;
-
 /**
  * Manages a collection of vital signs for a patient.
- * Provides functionality for storing, retrieving, and visualizing vital sign data.
+ * Provides functionality for storing and retrieving vital sign data; the graph is drawn by the GUI (VitalsGraph).
  * Implements Serializable to allow persistence of vital sign records.
+ * The vital signs of a patient are kept in the patient's shard of the {@link PatientStore},
+ * so only the patient ID is serialized with the patient. In memory they are stored in a
+ * columnar {@link VitalSeries}, ordered by recording time, so the latest reading and time
+ * ranges are found by binary search. Rolling statistics of the readings are kept up to date
+ * as readings are added and removed (see {@link VitalStatistics}).
+ * <p>
+ * Minute, hour and day aggregates of the readings are kept alongside them, and raw readings past
+ * their retention period are only kept in the aggregates (see {@link VitalRollups}).
+ * {@link #aggregate} reads a time range at a given resolution from the cheapest level that has it.
+ * <p>
+ * Added and removed readings are reported through {@link #getChanges()}, so every open view of the
+ * patient's readings can follow them; batch changes are reported as a reload.
  */
 public class VitalsDatabase implements Serializable {
-    /** Collection of all vital signs for a patient */
-    private ArrayList<VitalSign> vitals = new ArrayList<>();
+    /** ID of the patient whose vital signs are stored, or null for a database not attached to a patient */
+    private String patientId;
+
+    /**
+     * Vital signs of a database not attached to a patient, and vital signs read from
+     * files written before they were sharded, until the database is attached
+     */
+    private transient VitalSeries vitals;
+
+    /** Rolling statistics of the vital signs; created on the first statistics query */
+    private transient VitalStatistics statistics;
+
+    /** Changes of the vital signs; created when first requested */
+    private transient ChangeFeed<VitalSign> changes;
     
     /** Serialization version identifier */
     private static final long serialVersionUID = 1L;
@@ -26,6 +64,21 @@ public class VitalsDatabase implements Serializable {
     private transient Scene scene;
     private transient Stage stage;
 
+    /**
+     * Creates a database that is not attached to a patient and keeps its vital signs in memory
+     */
+    public VitalsDatabase() {
+        this.vitals = new VitalSeries(null);
+    }
+
+    /**
+     * Creates the database of a patient, backed by the patient's shard
+     * @param patientId ID of the patient
+     */
+    public VitalsDatabase(String patientId) {
+        this.patientId = patientId;
+    }
+
     // ===== Getters and Setters for UI Components =====
     
     /**
@@ -63,101 +116,405 @@ public class VitalsDatabase implements Serializable {
     // ===== Vital Signs Collection Management =====
     
     /**
-     * Gets all vital signs in this database
-     * @return ArrayList of vital sign objects
+     * Attaches this database to its patient after the patient was read from disk.
+     * Vital signs read from an older file are handed over to the patient's shard.
+     *
+     * @param patientId ID of the patient
      */
-    public ArrayList<VitalSign> getVitals() {
+    public synchronized void attach(String patientId) {
+        this.patientId = patientId;
+        if (vitals != null) {
+            PatientStore.adopt(patientId, vitals.asList());
+            vitals = null;
+        }
+        statistics = null;
+    }
+
+    /**
+     * Gets all vital signs in this database, oldest first, reading them from the patient's shard if needed.
+     * The list is a read-only view whose VitalSign objects are created when accessed; each access reads
+     * the readings while they cannot be changed, so the view holds no copy of the history.
+     * Readings may be added or dropped between two accesses; use {@link #range}, {@link #copyVitals()}
+     * or a {@link #latest()} query for a consistent set, and addVital and removeVital to change the vital signs.
+     * @return List of vital sign objects
+     */
+    public List<VitalSign> getVitals() {
+        return new VitalsView();
+    }
+
+    /**
+     * Copies all vital signs in this database, oldest first, while they cannot be changed.
+     * The copy may be read on any thread.
+     * @return List of vital sign objects owned by the caller
+     */
+    public List<VitalSign> copyVitals() {
+        return query(series -> series.copyRange(0, series.size()));
+    }
+
+    /**
+     * Gets the vital signs of a database not attached to a patient; attached databases keep
+     * their vital signs in the PatientStore, which only hands them out to locked queries
+     */
+    private VitalSeries unattachedSeries() {
         if (vitals == null) {
-            vitals = new ArrayList<>();
+            vitals = new VitalSeries(null);
         }
         return vitals;
     }
 
     /**
-     * Adds a new vital sign to the database
-     * @param vital VitalSign to add
+     * Read-only view of the vital signs that reads each reading under the store lock
      */
-    public void addVital(VitalSign vital) {
-        vitals.add(vital);
-        System.out.println("Vital sign added to database.");
+    private class VitalsView extends AbstractList<VitalSign> implements RandomAccess {
+        @Override
+        public VitalSign get(int index) {
+            return query(series -> series.get(index));
+        }
+
+        @Override
+        public int size() {
+            return query(VitalSeries::size);
+        }
     }
-    
+
+    // ===== Time Queries =====
+
     /**
-     * Removes a vital sign from the database
-     * @param vital VitalSign to remove
+     * Gets the most recently recorded vital sign
+     * @return The latest vital sign, or null if there are none
      */
-    public void removeVital(VitalSign vital) {
-        vitals.remove(vital);
-        System.out.println("Vital sign removed from database.");
+    public VitalSign latest() {
+        return query(series -> series.size() > 0 ? series.get(series.size() - 1) : null);
     }
 
     /**
-     * Generates and displays a graphical visualization of vital signs over time.
-     * Creates a line chart showing trends in heart rate, oxygen levels, and temperature.
-     * 
-     * @param stage JavaFX stage to display the visualization
+     * Gets the vital signs recorded in a time range, e.g. the last 24 hours
+     *
+     * @param from Start of the range (inclusive)
+     * @param to End of the range (inclusive)
+     * @return The vital signs in the range, oldest first
+     */
+    public List<VitalSign> range(LocalDateTime from, LocalDateTime to) {
+        return query(series -> {
+            int start = series.lowerBound(from);
+            return series.copyRange(start, Math.max(start, series.upperBound(to)));
+        });
+    }
+
+    /**
+     * Gets the vital signs recorded just before a time, for paging back through the history.
+     * Pass the time of the oldest reading of a page to get the previous page.
+     *
+     * @param time Only readings recorded before this time are returned
+     * @param limit Maximum number of readings
+     * @return Up to limit readings, oldest first
+     */
+    public List<VitalSign> before(LocalDateTime time, int limit) {
+        return query(series -> {
+            int end = series.lowerBound(time);
+            return series.copyRange(Math.max(0, end - limit), end);
+        });
+    }
+
+    /**
+     * Gets the vital signs recorded just after a time, for paging forward through the history.
+     * Pass the time of the newest reading of a page to get the next page.
+     *
+     * @param time Only readings recorded after this time are returned
+     * @param limit Maximum number of readings
+     * @return Up to limit readings, oldest first
+     */
+    public List<VitalSign> after(LocalDateTime time, int limit) {
+        return query(series -> {
+            int start = series.upperBound(time);
+            return series.copyRange(start, Math.min(series.size(), start + limit));
+        });
+    }
+
+    // ===== Aggregates =====
+
+    /**
+     * Gets aggregates of the vital signs recorded in a time range at a resolution, e.g. hourly means
+     * for a chart of the last month. Each part of the range is read from the coarsest aggregates
+     * whose intervals divide the resolution; parts older than the retention of those aggregates
+     * are read from coarser ones, so some intervals may be longer than requested.
+     *
+     * @param from Start of the range (inclusive), or null for the start of the history
+     * @param to End of the range (inclusive), or null for the end of the history
+     * @param resolution Length of the intervals, at least one millisecond
+     * @return The aggregates of the intervals holding readings, oldest first
      */
-    public void generateVitalsGraph(Stage stage) {
-        if (vitals.isEmpty()) {
-            System.out.println("No vitals to display.");
-            return;
+    public List<VitalRollups.Aggregate> aggregate(LocalDateTime from, LocalDateTime to, Duration resolution) {
+        long millis = resolution.toMillis();
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Resolution must be at least one millisecond: " + resolution);
         }
+        long start = from == null ? Long.MIN_VALUE : VitalSeries.toEpochMillis(from);
+        long end = to == null ? Long.MAX_VALUE : VitalSeries.toEpochMillis(to);
+        return query(series -> series.getRollups().aggregate(series, start, end, millis));
+    }
 
-        // Common X-axis (DateTime)
-        final CategoryAxis xAxis = new CategoryAxis();
-        xAxis.setLabel("DateTime");
+    /**
+     * Gets the readings of a measurement to chart in a time range, at most a given number
+     * (see {@link VitalDownsampler}), e.g. one per few pixels of the chart's width
+     *
+     * @param channel The measurement
+     * @param from Start of the range (inclusive), or null for the start of the history
+     * @param to End of the range (inclusive), or null for the end of the history
+     * @param maxPoints Maximum number of points, at least 3
+     * @return The chosen readings, oldest first
+     */
+    public VitalDownsampler.Points downsample(VitalStatistics.Channel channel, LocalDateTime from, LocalDateTime to,
+                                              int maxPoints) {
+        return query(series -> {
+            int start = from == null ? 0 : series.lowerBound(from);
+            int end = to == null ? series.size() : series.upperBound(to);
+            return VitalDownsampler.lttb(series, channel, start, Math.max(start, end), maxPoints);
+        });
+    }
 
-        // Y-axis for values
-        final NumberAxis yAxis = new NumberAxis();
-        yAxis.setLabel("Value");
+    /**
+     * Gets the readings of a measurement to chart in a time window, e.g. the window of a zoomed chart.
+     * The readings just outside the window are included, so the line runs to both edges of the chart.
+     *
+     * @param channel The measurement
+     * @param fromMillis Start of the window in epoch milliseconds (UTC)
+     * @param toMillis End of the window in epoch milliseconds (UTC)
+     * @param maxPoints Maximum number of points, at least 3
+     * @return The chosen readings, oldest first
+     */
+    public VitalDownsampler.Points downsample(VitalStatistics.Channel channel, long fromMillis, long toMillis,
+                                              int maxPoints) {
+        return query(series -> {
+            int first = series.upperBound(Long.MIN_VALUE);
+            int start = Math.max(first, series.upperBound(fromMillis - 1) - 1);
+            int end = Math.min(series.size(), series.upperBound(toMillis) + 1);
+            return VitalDownsampler.lttb(series, channel, start, Math.max(start, end), maxPoints);
+        });
+    }
 
-        // LineChart
-        final LineChart<String, Number> lineChart = new LineChart<>(xAxis, yAxis);
-        lineChart.setTitle("Vital Signs Over Time");
+    /**
+     * Gets the recording times of the oldest and newest readings, e.g. to limit zooming and panning of a chart
+     *
+     * @return The oldest and newest times in epoch milliseconds (UTC), or null if no reading has a time
+     */
+    public long[] getTimeRange() {
+        return query(series -> {
+            int first = series.upperBound(Long.MIN_VALUE);
+            int size = series.size();
+            return first < size ? new long[] {series.getEpochMillis(first), series.getEpochMillis(size - 1)} : null;
+        });
+    }
 
-        // Data series
-        XYChart.Series<String, Number> heartRateSeries = new XYChart.Series<>();
-        heartRateSeries.setName("Heart Rate (bpm)");
+    /**
+     * Gets the time before which raw readings were dropped after their retention period
+     * @return The raw retention horizon, or null if no readings were dropped
+     */
+    public LocalDateTime getCompactedBefore() {
+        return query(series -> {
+            VitalRollups rollups = series.getRollupsIfBuilt();
+            if (rollups == null || rollups.getCompactedReadings() == 0) {
+                return null;
+            }
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(rollups.getRawHorizon(), 1000L), 0, ZoneOffset.UTC);
+        });
+    }
 
-        XYChart.Series<String, Number> oxygenLevelSeries = new XYChart.Series<>();
-        oxygenLevelSeries.setName("Oxygen Level (%)");
+    /**
+     * Checks whether a reading recorded at a time would only be kept in the aggregates,
+     * because it is older than the retention period of raw readings
+     *
+     * @param time Recording time
+     * @return true if such a reading is only aggregated, false otherwise
+     */
+    public boolean isCompacted(LocalDateTime time) {
+        return time != null && query(series -> {
+            VitalRollups rollups = series.getRollupsIfBuilt();
+            return rollups != null && rollups.isCompacted(VitalSeries.toEpochMillis(time));
+        });
+    }
+
+    // ===== Statistics =====
 
-        XYChart.Series<String, Number> temperatureSeries = new XYChart.Series<>();
-        temperatureSeries.setName("Temperature (°C)");
+    /**
+     * Gets the statistics of a measurement over a window ending at the most recent reading.
+     * The windows of {@link VitalStatistics#getWindows()} are kept up to date without scanning
+     * the history; other windows are computed from the readings they contain.
+     *
+     * @param channel The measurement
+     * @param window The window
+     * @return Count, minimum, maximum, mean, standard deviation and EWMA of the measurement
+     */
+    public VitalStatistics.Summary getStatistics(VitalStatistics.Channel channel, VitalStatistics.Window window) {
+        return query(series -> statistics().summarize(series, channel, window));
+    }
+
+    /**
+     * Gets the statistics of all measurements over a window ending at the most recent reading
+     *
+     * @param window The window
+     * @return Statistics by measurement
+     */
+    public Map<VitalStatistics.Channel, VitalStatistics.Summary> getStatistics(VitalStatistics.Window window) {
+        return query(series -> {
+            Map<VitalStatistics.Channel, VitalStatistics.Summary> summaries = new EnumMap<>(VitalStatistics.Channel.class);
+            for (VitalStatistics.Channel channel : VitalStatistics.Channel.values()) {
+                summaries.put(channel, statistics().summarize(series, channel, window));
+            }
+            return summaries;
+        });
+    }
 
-        // Formatter for timestamps
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM HH:mm");
+    /**
+     * Gets the rolling statistics, creating them if needed
+     */
+    private synchronized VitalStatistics statistics() {
+        if (statistics == null) {
+            statistics = new VitalStatistics();
+        }
+        return statistics;
+    }
 
-        for (VitalSign vital : vitals) {
-            String time = vital.getDateTimeRecorded().format(formatter);
-            heartRateSeries.getData().add(new XYChart.Data<>(time, vital.getHeartRate()));
-            oxygenLevelSeries.getData().add(new XYChart.Data<>(time, vital.getOxygenLevel()));
-            temperatureSeries.getData().add(new XYChart.Data<>(time, vital.getTemperature()));
+    /**
+     * Runs a query on the vital signs while they cannot be changed, e.g. to read a page of a long list
+     *
+     * @param query Reads from the vital signs; must not keep a reference to the series
+     * @return The query result
+     */
+    public synchronized <T> T query(Function<VitalSeries, T> query) {
+        if (patientId == null) {
+            return query.apply(unattachedSeries());
         }
+        return PatientStore.query(patientId, query);
+    }
 
-        lineChart.getData().add(heartRateSeries);
-        lineChart.getData().add(oxygenLevelSeries);
-        lineChart.getData().add(temperatureSeries);
+    // ===== Vital Signs Changes =====
 
-        // Show chart
-        VBox vbox = new VBox(lineChart);
-        Scene scene = new Scene(vbox, 800, 600);
-        stage.setTitle("Patient Vital Signs Visualization");
-        stage.setScene(scene);
-        stage.show();
+    /**
+     * Gets the changes of the vital signs: readings added or removed one at a time, and reloads
+     * for batch changes
+     * @return Change feed of the vital signs
+     */
+    public synchronized ChangeFeed<VitalSign> getChanges() {
+        if (changes == null) {
+            changes = new ChangeFeed<>();
+        }
+        return changes;
     }
 
+    /**
+     * Adds a new vital sign to the database
+     * @param vital VitalSign to add
+     */
+    public synchronized void addVital(VitalSign vital) {
+        // The statistics are updated in the same step, so no query sees the reading without them
+        Consumer<VitalSeries> added = series -> {
+            if (statistics != null) {
+                statistics.added(series, vital);
+            }
+        };
+        if (patientId == null) {
+            VitalSeries series = unattachedSeries();
+            series.add(vital);
+            added.accept(series);
+        } else {
+            PatientStore.addVital(patientId, vital, added);
+        }
+        if (changes != null) {
+            changes.added(vital);
+        }
+        System.out.println("Vital sign added to database.");
+    }
     
+    /**
+     * Adds a batch of vital signs in one step, e.g. from a bulk import
+     * @param batch The vital signs to add
+     */
+    public synchronized void addVitals(VitalSeries batch) {
+        if (patientId == null) {
+            unattachedSeries().addAll(batch);
+        } else {
+            PatientStore.addVitals(patientId, batch);
+        }
+        if (statistics != null) {
+            statistics.invalidate();
+        }
+        if (changes != null && batch.size() > 0) {
+            changes.reloaded(batch.get(0)); // The batch is in time order, older readings are unchanged
+        }
+        System.out.println(batch.size() + " vital signs added to database.");
+    }
+    
+    /**
+     * Removes a vital sign from the database.
+     * Vital signs are compared by value, since the objects handed out are created on access.
+     * @param vital VitalSign to remove
+     */
+    public synchronized void removeVital(VitalSign vital) {
+        Consumer<VitalSeries> update = series -> {
+            if (statistics != null) {
+                statistics.removed(vital);
+            }
+        };
+        boolean removed;
+        if (patientId == null) {
+            removed = unattachedSeries().remove(vital);
+            if (removed) {
+                update.accept(unattachedSeries());
+            }
+        } else {
+            removed = PatientStore.removeVital(patientId, vital, update);
+        }
+        if (removed && changes != null) {
+            changes.removed(vital);
+        }
+        System.out.println("Vital sign removed from database.");
+    }
+
+    /**
+     * Removes all vital signs matching a filter
+     * @param filter Selects the vital signs to remove
+     * @return true if any vital sign was removed, false otherwise
+     */
+    public synchronized boolean removeVitalsIf(Predicate<VitalSign> filter) {
+        boolean removed = patientId == null ? unattachedSeries().removeIf(filter) : PatientStore.removeVitals(patientId, filter);
+        if (removed && statistics != null) {
+            statistics.invalidate();
+        }
+        if (removed && changes != null) {
+            changes.reloaded();
+        }
+        return removed;
+    }
+
+    // ===== Serialization =====
+
     /**
      * Custom deserialization method to handle transient fields
-     * Initializes UI components after deserialization
+     * Reads vital signs stored inline by older versions, which are moved to the patient's shard
+     * when the database is attached, and initializes UI components after deserialization
      * 
      * @param in ObjectInputStream to read from
      * @throws IOException If an I/O error occurs
      * @throws ClassNotFoundException If class of a serialized object cannot be found
      */
-    private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
-        in.defaultReadObject();
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.patientId = (String) fields.get("patientId", null);
+
+        ArrayList<VitalSign> legacyVitals = SerializationUtil.readLegacyField(fields, "vitals");
+        byte[] encodedVitals = SerializationUtil.readLegacyField(fields, "encodedVitals");
+        if (legacyVitals != null) {
+            this.vitals = new VitalSeries(null, legacyVitals);
+        } else if (encodedVitals != null) {
+            try (DataInputStream encoded = new DataInputStream(new ByteArrayInputStream(encodedVitals))) {
+                this.vitals = VitalSignCodec.INSTANCE.readSeries(encoded, null);
+            }
+        } else if (fields.getObjectStreamClass().getFields().length == 0) {
+            // Records written directly into the stream
+            this.vitals = VitalSignCodec.INSTANCE.readSeries(in, null);
+            SerializationUtil.markLegacyFormatRead();
+        }
         // Initialize transient fields
         this.scene = null;
         this.stage = null;
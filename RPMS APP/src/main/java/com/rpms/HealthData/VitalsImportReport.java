@@ -0,0 +1,341 @@
+package com.rpms.HealthData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a bulk import of vital signs from a CSV file.
+ * Counts the accepted and rejected rows, keeps the details of the first rejected rows
+ * and the alerts raised for the imported readings.
+ * <p>
+ * Rows are accepted with the grammar of the row-by-row import:
+ * <ul>
+ *   <li>Columns are separated by commas; blank lines are skipped, and columns after the fifth are ignored.</li>
+ *   <li>Heart rate, oxygen level and temperature are anything Double.parseDouble accepts once the column
+ *       is trimmed, e.g. "72", "+72", ".5", "36.5d" or "3.65e1", except "NaN".</li>
+ *   <li>Blood pressure is the trimmed column split at its slash into exactly two parts, each anything
+ *       Integer.parseInt accepts; spaces inside the column, as in "120/ 80", are rejected.</li>
+ *   <li>The date and time is anything LocalDateTime.parse accepts once the column is trimmed,
+ *       i.e. yyyy-MM-ddTHH:mm[:ss[.fraction]], including a "." without fraction digits.</li>
+ *   <li>The values must be in the ranges of {@link VitalSign#validate}.</li>
+ * </ul>
+ * Unlike the row-by-row import, the first line is only skipped as a header if it is not a valid row,
+ * and "NaN" is no longer accepted as a number.
+ */
+public class VitalsImportReport {
+
+    /** Maximum number of rejected rows whose details are kept */
+    public static final int MAX_REJECTED_DETAILS = 100;
+
+    /**
+     * A row that could not be imported
+     */
+    public static class RejectedRow {
+        /** Line number in the file, starting at 1 */
+        private final long lineNumber;
+
+        /** Why the row was rejected */
+        private final String reason;
+
+        /** The row as read from the file */
+        private final String line;
+
+        RejectedRow(long lineNumber, String reason, String line) {
+            this.lineNumber = lineNumber;
+            this.reason = reason;
+            this.line = line;
+        }
+
+        /**
+         * Gets the line number of the row
+         * @return Line number, starting at 1
+         */
+        public long getLineNumber() { return lineNumber; }
+
+        /**
+         * Gets why the row was rejected
+         * @return Reason text
+         */
+        public String getReason() { return reason; }
+
+        /**
+         * Gets the row as read from the file
+         * @return Row text
+         */
+        public String getLine() { return line; }
+
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + ": " + reason + " (" + line + ")";
+        }
+    }
+
+    /** Path of the imported file */
+    private final String filePath;
+
+    /** The accepted readings; released once they were added to the patient's history */
+    private VitalSeries readings;
+
+    /** Number of data rows read, not counting the header or blank lines */
+    private long rowCount;
+
+    /** Number of rows rejected */
+    private long rejectedCount;
+
+    /** Details of the first rejected rows */
+    private final List<RejectedRow> rejectedRows = new ArrayList<>();
+
+    /** Number of imported readings outside normal ranges */
+    private int abnormalCount;
+
+    /** Alert messages raised for the imported readings */
+    private final List<String> alerts = new ArrayList<>();
+
+    /** Error that stopped the import, or null */
+    private String error;
+
+    /** Whether the accepted readings were added to the patient's history */
+    private boolean imported;
+
+    /** Whether the imported readings were written to disk */
+    private boolean saved;
+
+    /** Time taken by the import in milliseconds */
+    private long elapsedMillis;
+
+    /**
+     * Creates an empty report
+     *
+     * @param filePath Path of the imported file
+     * @param readings Series receiving the accepted readings
+     */
+    VitalsImportReport(String filePath, VitalSeries readings) {
+        this.filePath = filePath;
+        this.readings = readings;
+    }
+
+    // ===== Getters =====
+
+    /**
+     * Gets the path of the imported file
+     * @return File path
+     */
+    public String getFilePath() { return filePath; }
+
+    /**
+     * Gets the accepted readings
+     * @return The readings, or null once they were added to the patient's history
+     */
+    public VitalSeries getReadings() { return readings; }
+
+    /**
+     * Gets the number of data rows read
+     * @return Row count
+     */
+    public long getRowCount() { return rowCount; }
+
+    /**
+     * Gets the number of rows that passed validation
+     * @return Accepted row count
+     */
+    public long getAcceptedCount() { return rowCount - rejectedCount; }
+
+    /**
+     * Gets the number of rows that could not be imported
+     * @return Rejected row count
+     */
+    public long getRejectedCount() { return rejectedCount; }
+
+    /**
+     * Gets the details of the first rejected rows, at most {@link #MAX_REJECTED_DETAILS}
+     * @return Rejected rows in file order
+     */
+    public List<RejectedRow> getRejectedRows() { return Collections.unmodifiableList(rejectedRows); }
+
+    /**
+     * Gets the number of imported readings outside normal ranges
+     * @return Abnormal reading count
+     */
+    public int getAbnormalCount() { return abnormalCount; }
+
+    /**
+     * Gets the alert messages raised for the imported readings
+     * @return Alert messages
+     */
+    public List<String> getAlerts() { return Collections.unmodifiableList(alerts); }
+
+    /**
+     * Gets the error that stopped the import
+     * @return Error message, or null if the file was read completely
+     */
+    public String getError() { return error; }
+
+    /**
+     * Checks whether the accepted readings were added to the patient's history.
+     * Nothing is added when the file could not be read completely.
+     * @return true if imported, false otherwise
+     */
+    public boolean isImported() { return imported; }
+
+    /**
+     * Checks whether the imported readings were written to disk
+     * @return true if saved, false otherwise
+     */
+    public boolean isSaved() { return saved; }
+
+    /**
+     * Gets the time taken by the import
+     * @return Duration in milliseconds
+     */
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    // ===== Recording =====
+
+    /**
+     * Counts a data row that was read
+     */
+    void countRow() {
+        rowCount++;
+    }
+
+    /**
+     * Counts data rows that were read and accepted elsewhere, e.g. rows of a combined file
+     * @param count Number of rows
+     */
+    void countRows(long count) {
+        rowCount += count;
+    }
+
+    /**
+     * Records a rejected row
+     *
+     * @param lineNumber Line number in the file
+     * @param reason Why the row was rejected
+     * @param line The row text
+     */
+    void reject(long lineNumber, String reason, String line) {
+        rejectedCount++;
+        if (rejectedRows.size() < MAX_REJECTED_DETAILS) {
+            rejectedRows.add(new RejectedRow(lineNumber, reason, line));
+        }
+    }
+
+    /**
+     * Records the error that stopped the import
+     * @param error Error message
+     */
+    void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * Adds the counts, rejected rows and error of a report on a later part of the same file
+     *
+     * @param next Report on the following lines
+     * @param lineOffset Number of lines before the part covered by the other report
+     */
+    void append(VitalsImportReport next, long lineOffset) {
+        rowCount += next.rowCount;
+        rejectedCount += next.rejectedCount;
+        for (RejectedRow row : next.rejectedRows) {
+            if (rejectedRows.size() >= MAX_REJECTED_DETAILS) {
+                break;
+            }
+            rejectedRows.add(new RejectedRow(row.lineNumber + lineOffset, row.reason, row.line));
+        }
+        if (error == null && next.error != null) {
+            error = next.error;
+        }
+    }
+
+    /**
+     * Records the result of evaluating the imported readings for alerts
+     *
+     * @param abnormalCount Number of abnormal readings
+     * @param alert Alert message, or null if none was raised
+     */
+    public void setAlertResult(int abnormalCount, String alert) {
+        this.abnormalCount = abnormalCount;
+        if (alert != null) {
+            alerts.add(alert);
+        }
+    }
+
+    /**
+     * Records another alert raised for the imported readings, e.g. a deterioration of the patient's trends
+     * @param alert Alert message
+     */
+    public void addAlert(String alert) {
+        alerts.add(alert);
+    }
+
+    /**
+     * Records that the readings were added to the patient's history and releases them
+     */
+    public void setImported() {
+        this.imported = true;
+        this.readings = null;
+    }
+
+    /**
+     * Records whether the imported readings were written to disk
+     * @param saved true if the readings were written to disk
+     */
+    public void setSaved(boolean saved) {
+        this.saved = saved;
+    }
+
+    /**
+     * Drops the accepted readings without importing them
+     */
+    public void discard() {
+        this.readings = null;
+    }
+
+    /**
+     * Records the time taken by the import
+     * @param elapsedMillis Duration in milliseconds
+     */
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Generates a short summary for display
+     * @return Summary text
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        if (imported) {
+            summary.append("Imported ").append(getAcceptedCount()).append(" of ").append(rowCount)
+                   .append(" rows in ").append(elapsedMillis).append(" ms.");
+        } else {
+            summary.append("No readings were imported.");
+        }
+        if (rejectedCount > 0) {
+            summary.append("\nRejected ").append(rejectedCount).append(" rows:");
+            for (RejectedRow row : rejectedRows) {
+                summary.append("\n  ").append(row.getLineNumber()).append(": ").append(row.getReason());
+            }
+            if (rejectedCount > rejectedRows.size()) {
+                summary.append("\n  ...");
+            }
+        }
+        if (abnormalCount > 0) {
+            summary.append("\n").append(abnormalCount).append(" readings are outside normal ranges.");
+        }
+        if (error != null) {
+            summary.append("\nImport stopped: ").append(error);
+        }
+        if (imported && getAcceptedCount() > 0 && !saved) {
+            summary.append("\nThe readings could not be saved yet; they will be saved with the next checkpoint.");
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+}
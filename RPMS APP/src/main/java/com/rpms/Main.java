@@ -15,6 +15,7 @@ import com.rpms.controllers.DoctorDashboardController;
 import com.rpms.controllers.PatientDashboardController;
 import com.rpms.utilities.ChatManager;
 import com.rpms.utilities.DataManager;
+import com.rpms.utilities.SystemLogStore;
 
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -139,7 +140,7 @@ public class Main extends Application {
             // Handle window close to save data
             stage.setOnCloseRequest(e -> {
                 try {
-                    DataManager.saveAllData();
+                    DataManager.flush();
                 } catch (Exception ex) {
                     System.err.println("Error saving data on close: " + ex.getMessage());
                 }
@@ -211,7 +212,7 @@ public class Main extends Application {
             dashboardStage.setOnCloseRequest(event -> {
                 try {
                     System.out.println("Saving data before closing...");
-                    DataManager.saveAllData();
+                    DataManager.flush();
                 } catch (Exception e) {
                     System.err.println("Error saving data: " + e.getMessage());
                 }
@@ -338,9 +339,10 @@ public class Main extends Application {
      * Logs out the current user and shows the login screen
      */
     public static void logout() {
-        // Save data before logout
+        SystemLogStore.setSessionActor(null);
+        // Save data before logout, waiting for pending background saves
         try {
-            DataManager.saveAllData();
+            DataManager.flush();
         } catch (Exception e) {
             System.err.println("Error saving data during logout: " + e.getMessage());
         }
@@ -5,6 +5,9 @@ import com.rpms.DoctorPatientInteraction.*;
 import com.rpms.Users.*;
 import com.rpms.ChatVideoConsultation.VideoCall;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Service for managing various types of reminders for users.
  * Handles appointment reminders, medication reminders, and video call reminders.
@@ -48,8 +51,20 @@ public class ReminderService {
      * @return String containing all upcoming appointment information
      */
     public String getAppointmentReminders() {
+        return getAppointmentReminders(AppointmentManager.getAppointments());
+    }
+
+    /**
+     * Gets the upcoming approved appointments for the user among the given ones,
+     * e.g. a copy of the appointments taken on the JavaFX Application Thread.
+     * Also sends SMS and email notifications with the appointment details.
+     * 
+     * @param appointments Appointments to look through
+     * @return String containing all upcoming appointment information
+     */
+    public String getAppointmentReminders(List<Appointment> appointments) {
         StringBuilder sb = new StringBuilder();
-        for (Appointment appointment : AppointmentManager.getAppointments()) {
+        for (Appointment appointment : appointments) {
             if ((appointment.getPatient().equals(user) || appointment.getDoctor().equals(user)) 
                 && appointment.getStatus().equals("Approved")) {
                 // Only include future appointments
@@ -80,11 +95,24 @@ public class ReminderService {
         // Early return if the user is not a patient
         if (!(user instanceof Patient patient)) return "";
 
+        return getMedicationReminders(getPrescriptions(patient));
+    }
+
+    /**
+     * Gets medication reminders for the given prescriptions, e.g. those of
+     * {@link #getPrescriptions(Patient)} taken on the JavaFX Application Thread.
+     * Also sends SMS and email notifications with the medication details.
+     * 
+     * @param prescriptions Prescriptions of the patient
+     * @return String containing all medication information
+     */
+    public String getMedicationReminders(List<Prescription> prescriptions) {
+        // Early return if the user is not a patient
+        if (!(user instanceof Patient)) return "";
+
         StringBuilder sb = new StringBuilder();
-        for (Feedback fb : patient.getFeedbacks()) {
-            for (Prescription prescription : fb.getPrescriptions()) {
-                sb.append(prescription).append("\n");
-            }
+        for (Prescription prescription : prescriptions) {
+            sb.append(prescription).append("\n");
         }
         
         // Only send notifications if there are medications to remind about
@@ -104,8 +132,20 @@ public class ReminderService {
      * @return String containing all approved video calls information
      */
     public String getApprovedVideoCalls() {
+        return getApprovedVideoCalls(AppointmentManager.getVideoCalls());
+    }
+
+    /**
+     * Gets the upcoming approved video calls for the user among the given ones,
+     * e.g. a copy of the video calls taken on the JavaFX Application Thread.
+     * Also sends SMS and email notifications with the video call details.
+     * 
+     * @param videoCalls Video calls to look through
+     * @return String containing all approved video calls information
+     */
+    public String getApprovedVideoCalls(List<VideoCall> videoCalls) {
         StringBuilder sb = new StringBuilder();
-        for (VideoCall videoCall : AppointmentManager.getVideoCalls()) {
+        for (VideoCall videoCall : videoCalls) {
             if ((videoCall.getPatient().equals(user) || videoCall.getDoctor().equals(user)) 
                     && videoCall.getStatus().equals("Approved")) {
                 // Only include upcoming video calls
@@ -124,4 +164,18 @@ public class ReminderService {
         
         return sb.toString();
     }
+
+    /**
+     * Copies the prescriptions of all feedback given to a patient
+     * 
+     * @param patient The patient
+     * @return The prescriptions, in the order they were given
+     */
+    public static List<Prescription> getPrescriptions(Patient patient) {
+        List<Prescription> prescriptions = new ArrayList<>();
+        for (Feedback fb : patient.getFeedbacks()) {
+            prescriptions.addAll(fb.getPrescriptions());
+        }
+        return prescriptions;
+    }
 }
@@ -2,13 +2,19 @@ package com.rpms.Reports;
 
 import com.rpms.DoctorPatientInteraction.Feedback;
 import com.rpms.DoctorPatientInteraction.Prescription;
+import com.rpms.HealthData.VitalRollups;
 import com.rpms.HealthData.VitalSign;
+import com.rpms.HealthData.VitalStatistics;
+import com.rpms.HealthData.VitalsDatabase;
 import com.rpms.Users.Patient;
 import com.rpms.Users.Doctor;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
 import java.io.File;
 
 /**
@@ -22,7 +28,8 @@ public class ReportGenerator {
      * The report includes:
      * - Patient information
      * - Doctor information
-     * - Vital signs history
+     * - Vital signs summary (rolling statistics per window)
+     * - Vital signs history (daily aggregates for readings past their retention)
      * - Medical feedback
      * - Prescriptions
      * 
@@ -43,9 +50,14 @@ public class ReportGenerator {
                 writer.write("Contact: " + doctor.getEmail() + "\n\n");
             }
 
-            // Vitals
-            writer.write("Vitals History:\n");
-            ArrayList<VitalSign> vitals = patient.getVitals().getVitals();
+            // Vitals summary, from the statistics kept by the vitals database
+            writer.write("Vitals Summary:\n");
+            writeVitalsSummary(writer, patient.getVitals());
+
+            // Vitals; readings past their retention are only kept as aggregates
+            writer.write("\nVitals History:\n");
+            writeCompactedHistory(writer, patient.getVitals());
+            List<VitalSign> vitals = patient.getVitals().getVitals();
             for (VitalSign v : vitals) {
                 writer.write(v.toString() + "\n");
             }
@@ -69,4 +81,46 @@ public class ReportGenerator {
             System.err.println("Failed to generate report: " + e.getMessage());
         }
     }
+
+    /**
+     * Writes a line per day for the readings that are only kept as aggregates
+     *
+     * @param writer The report being written
+     * @param vitals The patient's vitals database
+     * @throws IOException If writing fails
+     */
+    private static void writeCompactedHistory(FileWriter writer, VitalsDatabase vitals) throws IOException {
+        LocalDateTime compactedBefore = vitals.getCompactedBefore();
+        if (compactedBefore == null) {
+            return;
+        }
+        writer.write("  Daily averages before " + compactedBefore.toLocalDate() + ":\n");
+        for (VitalRollups.Aggregate day : vitals.aggregate(null, compactedBefore.minusNanos(1), Duration.ofDays(1))) {
+            writer.write(String.format("    %s: Heart Rate %.1f bpm, Oxygen %.1f%%, BP %.0f/%.0f, Temperature %.1f°C (%d readings)%n",
+                    day.getStart().toLocalDate(),
+                    day.getMean(VitalStatistics.Channel.HEART_RATE),
+                    day.getMean(VitalStatistics.Channel.OXYGEN_LEVEL),
+                    day.getMean(VitalStatistics.Channel.SYSTOLIC),
+                    day.getMean(VitalStatistics.Channel.DIASTOLIC),
+                    day.getMean(VitalStatistics.Channel.TEMPERATURE),
+                    day.getCount()));
+        }
+    }
+
+    /**
+     * Writes the statistics of each measurement for every window ending at the latest reading
+     *
+     * @param writer The report being written
+     * @param vitals The patient's vitals database
+     * @throws IOException If writing fails
+     */
+    private static void writeVitalsSummary(FileWriter writer, VitalsDatabase vitals) throws IOException {
+        for (VitalStatistics.Window window : VitalStatistics.getWindows()) {
+            writer.write(window.isAllTime() ? "  All time:\n" : "  Last " + window.getLabel() + ":\n");
+            for (VitalStatistics.Channel channel : VitalStatistics.Channel.values()) {
+                VitalStatistics.Summary summary = vitals.getStatistics(channel, window);
+                writer.write("    " + channel.getLabel() + " (" + channel.getUnit() + "): " + summary + "\n");
+            }
+        }
+    }
 }
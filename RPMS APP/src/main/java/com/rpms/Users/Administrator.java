@@ -2,12 +2,16 @@ package com.rpms.Users;
 
 import java.util.ArrayList;
 
+import com.rpms.utilities.ChangeFeed;
 import com.rpms.utilities.DataManager;
+import com.rpms.utilities.SystemLogEntry;
+import com.rpms.utilities.SystemLogStore;
 
 /**
  * Administrator class representing a system administrator in the healthcare system.
  * Extends the User class with administrator-specific functionality.
  * Contains static lists of all users in the system.
+ * Changes of the lists are reported through {@link ChangeFeed}s, so open views can follow them.
  */
 public class Administrator extends User {
     /** Static list of all doctors in the system */
@@ -22,8 +26,10 @@ public class Administrator extends User {
     /** Serialization version identifier */
     private static final long serialVersionUID = 1L;
 
-    /** Static list of system logs */
-    private static ArrayList<String> systemLogs = new ArrayList<>();
+    /** Changes of the lists of doctors, patients and administrators */
+    private static final ChangeFeed<Doctor> doctorChanges = new ChangeFeed<>();
+    private static final ChangeFeed<Patient> patientChanges = new ChangeFeed<>();
+    private static final ChangeFeed<Administrator> adminChanges = new ChangeFeed<>();
 
     /**
      * Constructor to initialize a new Administrator with all required fields
@@ -93,31 +99,54 @@ public class Administrator extends User {
     }
     
     /**
-     * Gets the list of all system logs
-     * @return ArrayList of system log entries
+     * Gets the changes of the list of doctors
+     * @return Change feed of the doctors
      */
-    public static ArrayList<String> getSystemLogs() { return systemLogs; }
+    public static ChangeFeed<Doctor> getDoctorChanges() { return doctorChanges; }
+
+    /**
+     * Gets the changes of the list of patients
+     * @return Change feed of the patients
+     */
+    public static ChangeFeed<Patient> getPatientChanges() { return patientChanges; }
+
+    /**
+     * Gets the changes of the list of administrators
+     * @return Change feed of the administrators
+     */
+    public static ChangeFeed<Administrator> getAdministratorChanges() { return adminChanges; }
 
     //------------------------------
     // Log Management Methods
     //------------------------------
     
     /**
-     * Adds a new log entry to the system logs
+     * Adds a new log entry to the system logs, on behalf of the user logged in
      * @param log Log entry text
      */
     public static void addSystemLog(String log) {
-        systemLogs.add(log);
+        // Logs are appended without reading the log first
+        SystemLogStore.append(SystemLogEntry.Level.INFO, null, log);
+    }
+
+    /**
+     * Adds a new log entry to the system logs
+     * @param level Importance of the entry
+     * @param actor User name of whoever caused the entry, or null for the user logged in
+     * @param log Log entry text
+     */
+    public static void addSystemLog(SystemLogEntry.Level level, String actor, String log) {
+        SystemLogStore.append(level, actor, log);
     }
     
     /**
      * Clears all system logs
      */
     public static void clearSystemLogs() {
-        systemLogs.clear();
+        SystemLogStore.clear();
         System.out.println("System logs cleared.");
         // Adding the log to the system logs
-        systemLogs.add("System logs cleared.");
+        addSystemLog("System logs cleared.");
     }
 
     //------------------------------
@@ -130,10 +159,11 @@ public class Administrator extends User {
      */
     public static void registerDoctor(Doctor doctor) {
         doctors.add(doctor);
+        doctorChanges.added(doctor);
         // Adding the doctor to the system logs
-        systemLogs.add("Doctor " + doctor.getName() + " registered.");
+        addSystemLog("Doctor " + doctor.getName() + " registered.");
         System.out.println("Doctor " + doctor.getName() + " registered.");
-        DataManager.saveAllData(); // Auto-save
+        DataManager.recordUserRegistered(doctor); // Auto-save
     }
     
     /**
@@ -142,10 +172,11 @@ public class Administrator extends User {
      */
     public static void registerPatient(Patient patient) {
         patients.add(patient);
+        patientChanges.added(patient);
         // Adding the patient to the system logs
-        systemLogs.add("Patient " + patient.getName() + " registered.");
+        addSystemLog("Patient " + patient.getName() + " registered.");
         System.out.println("Patient " + patient.getName() + " registered.");
-        DataManager.saveAllData(); // Auto-save
+        DataManager.recordUserRegistered(patient); // Auto-save
     }
     
     /**
@@ -154,10 +185,11 @@ public class Administrator extends User {
      */
     public static void registerAdministrator(Administrator admin) {
         admins.add(admin);
+        adminChanges.added(admin);
         System.out.println("Admin " + admin.getName() + " added to the system.");
         // Adding the admin to the system logs
-        systemLogs.add("Admin " + admin.getName() + " added to the system.");
-        DataManager.saveAllData(); // Auto-save
+        addSystemLog("Admin " + admin.getName() + " added to the system.");
+        DataManager.recordUserRegistered(admin); // Auto-save
     }
 
     //------------------------------
@@ -170,10 +202,11 @@ public class Administrator extends User {
      */
     public static void removeDoctor(Doctor doctor) {
         if (doctors.remove(doctor)) {
+            doctorChanges.removed(doctor);
             System.out.println("Doctor " + doctor.getName() + " removed from the system.");
             // Adding the doctor to the system logs
-            systemLogs.add("Doctor " + doctor.getName() + " removed from the system.");
-            DataManager.saveAllData(); // Auto-save
+            addSystemLog("Doctor " + doctor.getName() + " removed from the system.");
+            DataManager.recordUserRemoved(doctor); // Auto-save
         } else {
             System.out.println("Doctor not found.");
         }
@@ -185,10 +218,11 @@ public class Administrator extends User {
      */
     public static void removePatient(Patient patient) {
         if (patients.remove(patient)) {
+            patientChanges.removed(patient);
             System.out.println("Patient " + patient.getName() + " removed from the system.");
             // Adding the patient to the system logs
-            systemLogs.add("Patient " + patient.getName() + " removed from the system.");
-            DataManager.saveAllData(); // Auto-save
+            addSystemLog("Patient " + patient.getName() + " removed from the system.");
+            DataManager.recordUserRemoved(patient); // Auto-save
         } else {
             System.out.println("Patient not found.");
         }
@@ -200,10 +234,11 @@ public class Administrator extends User {
      */
     public static void removeAdministrator(Administrator admin) {
         if (admins.remove(admin)) {
+            adminChanges.removed(admin);
             System.out.println("Admin " + admin.getName() + " removed from the system.");
             // Adding the admin to the system logs
-            systemLogs.add("Admin " + admin.getName() + " removed from the system.");
-            DataManager.saveAllData(); // Auto-save
+            addSystemLog("Admin " + admin.getName() + " removed from the system.");
+            DataManager.recordUserRemoved(admin); // Auto-save
         } else {
             System.out.println("Admin not found.");
         }
@@ -211,14 +246,17 @@ public class Administrator extends User {
     
     public static void clearPatients() {
     patients.clear();
+    patientChanges.reloaded();
 }
 
 public static void clearDoctors() {
     doctors.clear();
+    doctorChanges.reloaded();
 }
 
 public static void clearAdministrators() {
     admins.clear();
+    adminChanges.reloaded();
 }
     /**
      * Clear all users from the system (for testing/debugging purposes)
@@ -227,6 +265,34 @@ public static void clearAdministrators() {
         patients.clear();
         doctors.clear();
         admins.clear();
+        usersReloaded();
         System.out.println("All users cleared from system");
     }
+
+    //------------------------------
+    // Change Reporting Methods
+    //------------------------------
+
+    /**
+     * Reports that a user's details were edited, so views showing the user redraw it
+     * @param user The edited user
+     */
+    public static void userUpdated(User user) {
+        if (user instanceof Doctor doctor) {
+            doctorChanges.updated(doctor);
+        } else if (user instanceof Patient patient) {
+            patientChanges.updated(patient);
+        } else if (user instanceof Administrator admin) {
+            adminChanges.updated(admin);
+        }
+    }
+
+    /**
+     * Reports that the lists of users were replaced, e.g. after loading data from disk
+     */
+    public static void usersReloaded() {
+        doctorChanges.reloaded();
+        patientChanges.reloaded();
+        adminChanges.reloaded();
+    }
 }
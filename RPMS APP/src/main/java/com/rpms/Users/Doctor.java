@@ -3,13 +3,17 @@ package com.rpms.Users;
 // Required imports
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import com.rpms.AppointmentHandling.Appointment;
 import com.rpms.AppointmentHandling.AppointmentManager;
 import com.rpms.ChatVideoConsultation.VideoCall;
+import com.rpms.EmergencyAlertSystem.CriticalVitalsIndex;
 import com.rpms.EmergencyAlertSystem.EmergencyAlert;
 import com.rpms.HealthData.VitalSign;
 import com.rpms.utilities.DataManager;
+import com.rpms.utilities.EntityRegistry;
+import com.rpms.utilities.SerializationUtil;
 
 /**
  * Doctor class representing a medical professional in the healthcare system.
@@ -17,7 +21,10 @@ import com.rpms.utilities.DataManager;
  */
 public class Doctor extends User {
     /** List of patients assigned to this doctor */
-    private ArrayList<Patient> patients;
+    private transient ArrayList<Patient> patients;
+
+    /** IDs of the assigned patients; stored instead of the Patient objects and resolved when data is loaded */
+    private ArrayList<String> patientIds;
 
     /** Serialization version identifier */
     private static final long serialVersionUID = 1L;
@@ -77,7 +84,7 @@ public class Doctor extends User {
         patients.add(patient);
         System.out.println("Patient " + patient.getName() + " added to Dr. " + getName() + "'s list.");
         DataManager.saveDoctor(this); // Auto-save
-        DataManager.saveAllData(); // Auto-save all data
+        DataManager.recordDoctorAddedPatient(this, patient); // Auto-save all data
     }
 
 
@@ -85,18 +92,17 @@ public class Doctor extends User {
 
     
     /**
-     * Detects patients with critical vital signs
+     * Detects patients with critical vital signs.
+     * Reads the abnormal readings kept by the {@link CriticalVitalsIndex} instead of checking every reading.
      * @return A formatted string with information about patients with critical vitals
      */
     public String patientCriticalVitalDetection() {
         StringBuilder criticalPatients = new StringBuilder();
-        for (Patient p : patients) {
-            for (VitalSign v : p.getVitals().getVitals()) {
-                if (EmergencyAlert.isVitalSignAbnormal(v)) {
-                    criticalPatients.append("Patient: ").append(p.getName())
-                                   .append(" has critical vitals: \n")
-                                   .append(v).append("\n");
-                }
+        for (Map.Entry<Patient, List<VitalSign>> entry : CriticalVitalsIndex.getCriticalPatients(this).entrySet()) {
+            for (VitalSign v : entry.getValue()) {
+                criticalPatients.append("Patient: ").append(entry.getKey().getName())
+                               .append(" has critical vitals: \n")
+                               .append(v).append("\n");
             }
         }
         return criticalPatients.toString();
@@ -206,18 +212,59 @@ public class Doctor extends User {
     }
 
     /**
-     * Special handling for deserialization to ensure proper object reconstruction
-     * 
-     * @param in The ObjectInputStream to read from
+     * Resolves the patient IDs read from disk to the registered patients
+     * @param registry Registry of the loaded users
+     */
+    public void resolveReferences(EntityRegistry registry) {
+        ArrayList<Patient> resolved = new ArrayList<>();
+        for (String patientId : patientIds) {
+            Patient patient = registry.getPatient(patientId);
+            if (patient != null) {
+                resolved.add(patient);
+            }
+        }
+        patients = resolved;
+    }
+
+    /**
+     * Stores the patient list as IDs instead of copying the Patient objects into the stream
+     *
+     * @param out ObjectOutputStream to write to
+     * @throws java.io.IOException If an I/O error occurs
+     */
+    private void writeObject(java.io.ObjectOutputStream out) throws java.io.IOException {
+        ArrayList<String> ids = new ArrayList<>();
+        for (Patient patient : patients) {
+            ids.add(patient.getId());
+        }
+        patientIds = ids;
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Reads a doctor, including files written before patients were stored as IDs
+     *
+     * @param in ObjectInputStream to read from
+     * @throws java.io.IOException If an I/O error occurs
+     * @throws ClassNotFoundException If class of a serialized object cannot be found
      */
+    @SuppressWarnings("unchecked")
     private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
-        // Call default deserialization
-        in.defaultReadObject();
-        
+        java.io.ObjectInputStream.GetField fields = in.readFields();
+        patientIds = (ArrayList<String>) fields.get("patientIds", null);
+
+        // Older files contain full copies of the patients
+        patients = SerializationUtil.readLegacyField(fields, "patients");
+
         // Ensure patients list is never null after deserialization
         if (patients == null) {
             patients = new ArrayList<>();
-            System.out.println("Fixed null patients collection during deserialization for doctor: " + getName());
+        }
+        if (patientIds == null) {
+            patientIds = new ArrayList<>();
+            for (Patient patient : patients) {
+                patientIds.add(patient.getId());
+            }
         }
     }
     
@@ -1,20 +1,23 @@
 package com.rpms.Users;
 
 // Required imports
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
 
 import com.rpms.AppointmentHandling.Appointment;
 import com.rpms.AppointmentHandling.AppointmentManager;
 import com.rpms.ChatVideoConsultation.VideoCall;
 import com.rpms.DoctorPatientInteraction.Feedback;
 import com.rpms.EmergencyAlertSystem.EmergencyAlert;
+import com.rpms.HealthData.VitalSeries;
 import com.rpms.HealthData.VitalSign;
+import com.rpms.HealthData.VitalsCsvImporter;
 import com.rpms.HealthData.VitalsDatabase;
+import com.rpms.HealthData.VitalsImportReport;
 import com.rpms.utilities.DataManager;
+import com.rpms.utilities.EntityRegistry;
+import com.rpms.utilities.SerializationUtil;
 
 /**
  * Patient class representing a patient in the healthcare system.
@@ -24,14 +27,17 @@ public class Patient extends User {
     /** Database to store the vital signs of the patient */
     private  VitalsDatabase vitalsDatabase;
     
-    /** List to store previous feedback given by doctors */
-    private final ArrayList<Feedback> feedbacks;
+    /** List to store previous feedback given by doctors (not final so it can be restored in readObject) */
+    private ArrayList<Feedback> feedbacks;
     
     /** List of emergency contact numbers for this patient */
     private ArrayList<String> emergencyContacts;
     
     /** Primary physician assigned to this patient */
-    private Doctor physician;
+    private transient Doctor physician;
+
+    /** ID of the physician; stored instead of the Doctor object and resolved when data is loaded */
+    private String physicianId;
     
     /** List to store emergency alerts for this patient */
     private ArrayList<EmergencyAlert> emergencyAlerts;
@@ -55,7 +61,7 @@ public class Patient extends User {
                   ArrayList<String> emergencyContacts, Doctor physician) {
         super(id, name, phoneNumber, email, username, password);
         // Initialize the vitals database and feedback list
-        this.vitalsDatabase = new VitalsDatabase();
+        this.vitalsDatabase = new VitalsDatabase(id);
         this.feedbacks = new ArrayList<>();
         // New ArrayList for emergency contacts for each patient
         this.emergencyContacts = emergencyContacts;
@@ -108,7 +114,7 @@ public class Patient extends User {
     public ArrayList<Feedback> getFeedbacks() {
         return feedbacks;
     }
-    // No setter for feedbacks as it's final
+    // No setter for feedbacks as the list itself is never replaced
     
     /**
      * Gets the list of emergency contacts for this patient
@@ -150,6 +156,7 @@ public class Patient extends User {
         if (!emergencyContacts.contains(contact)) {
             emergencyContacts.add(contact);
             System.out.println("Emergency contact added for patient: " + getName());
+            DataManager.markUserChanged(this); // Auto-save
         } else {
             System.out.println("This contact already exists for patient: " + getName());
         }
@@ -162,6 +169,7 @@ public class Patient extends User {
     public void removeEmergencyContact(String contact) {
         if (emergencyContacts.remove(contact)) {
             System.out.println("Emergency contact removed for patient: " + getName());
+            DataManager.markUserChanged(this); // Auto-save
         } else {
             System.out.println("Contact not found for patient: " + getName());
         }
@@ -217,64 +225,65 @@ public class Patient extends User {
         String alertMsg = EmergencyAlert.checkVitalSigns(this, vital);
         
         DataManager.savePatient(this); // Auto-save
-        DataManager.saveAllData(); // Auto-save all data
+        DataManager.recordVitalAdded(this, vital); // Auto-save all data
         
         return alertMsg;
     }
     
     /**
-     * Uploads multiple vital signs from a CSV file
+     * Uploads multiple vital signs from a CSV file in one batch.
+     * Rows are streamed and validated, the accepted readings are added to the vitals database
+     * at once, checked for alerts together and saved once at the end.
+     * Nothing is added if the file cannot be read completely.
+     *
      * @param filePath Path to the CSV file
-     * @return ArrayList of alert messages for critical vitals
+     * @return Report of the accepted and rejected rows and the alerts raised
      */
-    public ArrayList<String> uploadVitalsFromCSV(String filePath) {
-        ArrayList<String> alerts = new ArrayList<>();
-
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-
-            // Skip header line if present
-            if ((line = br.readLine()) != null) {
-                // Skip header
+    public VitalsImportReport uploadVitalsFromCSV(String filePath) {
+        long start = System.nanoTime();
+        VitalsImportReport report = VitalsCsvImporter.readFile(getId(), filePath);
+        if (report.getError() != null) {
+            report.discard();
+        } else if (addImportedVitals(report)) {
+            boolean saved = DataManager.savePatientNow(this);
+            if (!saved) {
+                DataManager.savePatient(this); // Retry in the background
             }
+            report.setSaved(saved);
+        } else {
+            report.setSaved(true);
+        }
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
 
-            // Process each line in the CSV file
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length < 5) {
-                    System.out.println("Invalid data format: " + line);
-                    continue;
-                }
-
-                try {
-                    double heartRate = Double.parseDouble(data[0].trim());
-                    double oxygenLevel = Double.parseDouble(data[1].trim());
-                    String bloodPressure = data[2].trim();
-                    double temperature = Double.parseDouble(data[3].trim());
-                    LocalDateTime dateTimeRecorded = LocalDateTime.parse(data[4].trim());
+        System.out.println("Vitals uploaded from CSV for patient: " + getName() + " - "
+                + report.getAcceptedCount() + " accepted, " + report.getRejectedCount() + " rejected");
+        return report;
+    }
+    
+    /**
+     * Adds the accepted readings of a CSV import to this patient's records in one batch and
+     * checks them for alerts. The readings are not saved; the caller writes them once the
+     * import is done.
+     *
+     * @param report Import report holding the accepted readings
+     * @return true if any reading was added, false otherwise
+     */
+    public boolean addImportedVitals(VitalsImportReport report) {
+        VitalSeries readings = report.getReadings();
+        boolean added = readings != null && readings.size() > 0;
+        if (added) {
+            vitalsDatabase.addVitals(readings);
 
-                    VitalSign vital = new VitalSign(this.getId(), heartRate, oxygenLevel, bloodPressure, 
-                                                  temperature, dateTimeRecorded);
-                    String alert = uploadVitalSign(vital);
-                    if (!alert.isEmpty()) {
-                        alerts.add(alert);
-                    }
-                } catch (NumberFormatException e) {
-                    System.out.println("Error parsing numeric values: " + line);
-                } catch (Exception e) {
-                    System.out.println("Error processing line: " + line + " - " + e.getMessage());
-                }
+            EmergencyAlert.BatchResult alerts = EmergencyAlert.checkVitalSeries(this, readings);
+            report.setAlertResult(alerts.getAbnormalCount(), alerts.getAlertMessage());
+            if (alerts.getDeteriorationMessage() != null) {
+                report.addAlert(alerts.getDeteriorationMessage());
             }
-        } catch (IOException e) {
-            System.out.println("Error reading CSV file: " + e.getMessage());
         }
-
-        System.out.println("Vitals uploaded from CSV for patient: " + getName());
-        DataManager.savePatient(this); // Auto-save
-        DataManager.saveAllData(); // Auto-save all data
-        return alerts;
+        report.setImported();
+        return added;
     }
-    
+
     /**
      * Removes a vital sign from this patient's records
      * @param vitalSign VitalSign to remove
@@ -282,14 +291,14 @@ public class Patient extends User {
     public void removeVital(VitalSign vitalSign) {
         vitalsDatabase.removeVital(vitalSign);
         DataManager.savePatient(this); // Auto-save
-        DataManager.saveAllData(); // Auto-save all data
+        DataManager.recordVitalRemoved(this, vitalSign); // Auto-save all data
     }
     
     /**
      * Gets all previous vital signs for this patient
-     * @return ArrayList of VitalSign objects
+     * @return List of VitalSign objects
      */
-    public ArrayList<VitalSign> viewPreviousVitals() {
+    public List<VitalSign> viewPreviousVitals() {
         return vitalsDatabase.getVitals();
     }
 
@@ -303,7 +312,7 @@ public class Patient extends User {
         feedbacks.add(feedback);
         System.out.println("Feedback added for patient: " + getName());
         DataManager.savePatient(this); // Auto-save
-        DataManager.saveAllData(); // Auto-save all data
+        DataManager.markUserChanged(this); // Auto-save all data
     }
 
     
@@ -350,10 +359,7 @@ public class Patient extends User {
      * @return true if successfully cancelled, false otherwise
      */
     public boolean cancelAppointment(Appointment appt) {
-        if (appt.getPatient().equals(this)) {
-            return AppointmentManager.getAppointments().remove(appt);
-        }
-        return false;
+        return appt.getPatient().equals(this) && AppointmentManager.removeAppointment(appt);
     }
 
     // ===== Video Call Methods =====
@@ -386,10 +392,7 @@ public class Patient extends User {
      * @return true if successfully cancelled, false otherwise
      */
     public boolean cancelVideoCall(VideoCall videoCall) {
-        if (videoCall.getPatient().equals(this)) {
-            return AppointmentManager.getVideoCalls().remove(videoCall);
-        }
-        return false;
+        return videoCall.getPatient().equals(this) && AppointmentManager.removeVideoCall(videoCall);
     }
 
     // ===== Object Overrides =====
@@ -407,4 +410,60 @@ public class Patient extends User {
         Patient other = (Patient) obj;
         return this.getId().equals(other.getId());
     }
+
+    // ===== Serialization =====
+
+    /**
+     * Resolves the physician and feedback doctor IDs read from disk to the registered doctors
+     * @param registry Registry of the loaded users
+     */
+    public void resolveReferences(EntityRegistry registry) {
+        Doctor registeredPhysician = registry.getDoctor(physicianId);
+        if (registeredPhysician != null) {
+            physician = registeredPhysician;
+        }
+        for (Feedback feedback : feedbacks) {
+            feedback.resolveReferences(registry);
+        }
+    }
+
+    /**
+     * Stores the physician as an ID instead of copying the Doctor object into the stream
+     *
+     * @param out ObjectOutputStream to write to
+     * @throws IOException If an I/O error occurs
+     */
+    private void writeObject(java.io.ObjectOutputStream out) throws IOException {
+        physicianId = physician != null ? physician.getId() : physicianId;
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Reads a patient, including files written before the physician was stored as an ID
+     *
+     * @param in ObjectInputStream to read from
+     * @throws IOException If an I/O error occurs
+     * @throws ClassNotFoundException If class of a serialized object cannot be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
+        java.io.ObjectInputStream.GetField fields = in.readFields();
+        vitalsDatabase = (VitalsDatabase) fields.get("vitalsDatabase", null);
+        if (vitalsDatabase != null) {
+            vitalsDatabase.attach(getId());
+        }
+        feedbacks = (ArrayList<Feedback>) fields.get("feedbacks", null);
+        emergencyContacts = (ArrayList<String>) fields.get("emergencyContacts", null);
+        emergencyAlerts = (ArrayList<EmergencyAlert>) fields.get("emergencyAlerts", null);
+        physicianId = (String) fields.get("physicianId", null);
+
+        // Older files contain a full copy of the physician
+        physician = SerializationUtil.readLegacyField(fields, "physician");
+        if (physician != null && physicianId == null) {
+            physicianId = physician.getId();
+        }
+        if (feedbacks == null) {
+            feedbacks = new ArrayList<>();
+        }
+    }
 }
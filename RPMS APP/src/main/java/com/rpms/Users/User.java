@@ -83,6 +83,15 @@ public abstract class User implements Serializable {
         return username;
     }
 
+    /**
+     * Gets the user's password
+     *
+     * @return The password
+     */
+    public String getPassword() {
+        return password;
+    }
+
     /**
      * Sets the user's password
      * @param password The new password
@@ -0,0 +1,156 @@
+package com.rpms.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import com.rpms.EmergencyAlertSystem.AlertRules;
+import com.rpms.EmergencyAlertSystem.CompiledAlertRules;
+import com.rpms.HealthData.VitalSeries;
+import com.rpms.HealthData.VitalSign;
+
+/**
+ * Compares the readings per second of the hard-coded abnormal-vitals check that EmergencyAlert used
+ * with {@link CompiledAlertRules}, per reading and per batch.
+ * <p>
+ * The rules are configured in memory, so no rules file is read. The default rules must flag exactly the
+ * readings the hard-coded check flags.
+ * <pre>
+ * java -Xmx3g -cp target/classes com.rpms.benchmarks.AlertRulesBenchmark [readings, default 10000000]
+ * </pre>
+ */
+public class AlertRulesBenchmark {
+
+    /** Cohort with its own oxygen range and two compound rules */
+    private static final String COHORT = "bench";
+
+    /**
+     * Runs the benchmark and prints the best readings per second of each check
+     *
+     * @param args Number of readings, optional
+     */
+    public static void main(String[] args) {
+        int count = Benchmarks.readingCount(args, 10_000_000);
+        VitalSeries series = wardReadings(count, 3);
+
+        Properties rules = new Properties();
+        rules.setProperty("cohort." + COHORT + ".oxygenLevel", "88..");
+        rules.setProperty("cohort." + COHORT + ".rule.shock", "heartRate > 110 & systolic < 90");
+        rules.setProperty("cohort." + COHORT + ".rule.fever", "temperature > 38 & heartRate > 100");
+        AlertRules.configure(rules);
+        CompiledAlertRules defaults = AlertRules.getDefaults();
+        CompiledAlertRules cohort = AlertRules.forCohort(COHORT);
+        boolean[] flags = new boolean[count];
+
+        System.out.printf("%,d readings, best of %d rounds%n", count, Benchmarks.ROUNDS);
+        long expected = measure("hard-coded check", count, () -> {
+            long abnormal = 0;
+            for (int i = 0; i < series.size(); i++) {
+                abnormal += isAbnormalHardCoded(series.getHeartRate(i), series.getOxygenLevel(i),
+                        series.getSystolic(i), series.getDiastolic(i), series.getTemperature(i)) ? 1 : 0;
+            }
+            return abnormal;
+        });
+        long scalar = measure("compiled defaults, per reading", count, () -> {
+            long abnormal = 0;
+            for (int i = 0; i < series.size(); i++) {
+                abnormal += defaults.isAbnormal(series.getHeartRate(i), series.getOxygenLevel(i),
+                        series.getSystolic(i), series.getDiastolic(i), series.getTemperature(i)) ? 1 : 0;
+            }
+            return abnormal;
+        });
+        long batch = measure("compiled defaults, evaluate()", count, () -> defaults.evaluate(series, flags));
+        measure("cohort range + 2 compound rules, evaluate()", count, () -> cohort.evaluate(series, flags));
+        long objects = measure("hard-coded check via VitalSign objects", count, () -> {
+            long abnormal = 0;
+            for (int i = 0; i < series.size(); i++) {
+                VitalSign vital = series.get(i);
+                abnormal += isAbnormalHardCoded(vital.getHeartRate(), vital.getOxygenLevel(),
+                        vital.getSystolic(), vital.getDiastolic(), vital.getTemperature()) ? 1 : 0;
+            }
+            return abnormal;
+        });
+        if (scalar != expected || batch != expected || objects != expected) {
+            throw new IllegalStateException("Compiled defaults flagged " + scalar + " and " + batch
+                    + " readings, the hard-coded check " + expected);
+        }
+    }
+
+    /**
+     * A check of all readings
+     */
+    private interface Check {
+        long run();
+    }
+
+    private static long measure(String check, int count, Check run) {
+        List<Long> timings = new ArrayList<>();
+        long abnormal = 0;
+        for (int round = 0; round < Benchmarks.ROUNDS; round++) {
+            long start = System.nanoTime();
+            abnormal = run.run();
+            timings.add(System.nanoTime() - start);
+        }
+        System.out.printf("  %-44s %6.1f M/s, %,d abnormal%n", check, Benchmarks.bestRate(count, timings), abnormal);
+        return abnormal;
+    }
+
+    /**
+     * Creates readings one minute apart of which about one in twenty has a measurement out of the default ranges,
+     * so the checks cannot stop at the first comparison for most readings
+     */
+    private static VitalSeries wardReadings(int count, long seed) {
+        Random random = new Random(seed);
+        VitalSeries series = new VitalSeries(Benchmarks.PATIENT_ID);
+        for (int i = 0; i < count; i++) {
+            double heartRate = 62 + random.nextInt(37);
+            double oxygenLevel = 92 + random.nextInt(9);
+            int systolic = 95 + random.nextInt(44);
+            int diastolic = 62 + random.nextInt(27);
+            double temperature = (362 + random.nextInt(10)) / 10.0;
+            if (random.nextInt(20) == 0) {
+                switch (random.nextInt(5)) {
+                    case 0:
+                        heartRate = 101 + random.nextInt(40);
+                        break;
+                    case 1:
+                        oxygenLevel = 80 + random.nextInt(10);
+                        break;
+                    case 2:
+                        systolic = 141 + random.nextInt(40);
+                        break;
+                    case 3:
+                        diastolic = 50 + random.nextInt(10);
+                        break;
+                    default:
+                        temperature = (375 + random.nextInt(20)) / 10.0;
+                        break;
+                }
+            }
+            series.add(new VitalSign(Benchmarks.PATIENT_ID, heartRate, oxygenLevel, systolic, diastolic, temperature,
+                    Benchmarks.START.plusMinutes(i)));
+        }
+        return series;
+    }
+
+    /**
+     * The check EmergencyAlert.isVitalSignAbnormal made before the thresholds became configurable
+     */
+    private static boolean isAbnormalHardCoded(double heartRate, double oxygenLevel, int systolic, int diastolic,
+                                               double temperature) {
+        // Heart rate outside normal range (60-100 bpm)
+        if (heartRate < 60 || heartRate > 100) return true;
+
+        // Oxygen saturation below 90% (hypoxemia)
+        if (oxygenLevel < 90) return true;
+
+        // Blood pressure outside normal range
+        if (systolic < 90 || systolic > 140 || diastolic < 60 || diastolic > 90) return true;
+
+        // Temperature outside normal range (36.1-37.2°C)
+        if (temperature < 36.1 || temperature > 37.2) return true;
+
+        return false;
+    }
+}
@@ -0,0 +1,153 @@
+package com.rpms.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.rpms.HealthData.VitalSeries;
+import com.rpms.HealthData.VitalSign;
+
+/**
+ * Synthetic readings and measuring helpers shared by the benchmarks.
+ * <p>
+ * Readings are generated from a fixed seed, so every run of a benchmark measures the same data.
+ */
+final class Benchmarks {
+
+    /** Patient the synthetic readings belong to */
+    static final String PATIENT_ID = "pat1";
+
+    /** Time of the first synthetic reading */
+    static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    /** Number of timed rounds of each benchmark (system property rpms.bench.rounds) */
+    static final int ROUNDS = Integer.getInteger("rpms.bench.rounds", 5);
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Gets the number of readings to measure with
+     *
+     * @param args Command line arguments; the first one, if any, is the number of readings
+     * @param defaultCount Number of readings used without an argument
+     * @return Number of readings
+     */
+    static int readingCount(String[] args, int defaultCount) {
+        return args.length > 0 ? Integer.parseInt(args[0].replace("_", "")) : defaultCount;
+    }
+
+    /**
+     * Creates readings one minute apart with measurements drawn independently within normal ranges
+     *
+     * @param count Number of readings
+     * @param seed Seed of the random measurements
+     * @return The readings, oldest first
+     */
+    static ArrayList<VitalSign> uniformReadings(int count, long seed) {
+        Random random = new Random(seed);
+        ArrayList<VitalSign> readings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            readings.add(new VitalSign(PATIENT_ID, 50 + random.nextInt(100), 90 + random.nextInt(10),
+                    100 + random.nextInt(60), 60 + random.nextInt(40), 36 + random.nextInt(30) / 10.0,
+                    START.plusMinutes(i)));
+        }
+        return readings;
+    }
+
+    /**
+     * Creates readings 30 seconds apart whose measurements follow random walks within the ranges
+     * VitalSign accepts, as a monitor would record them
+     *
+     * @param count Number of readings
+     * @param deviceRounded Whether measurements are rounded as devices report them (whole heart rate and
+     *                      oxygen, temperature to 0.1°C); otherwise they keep full precision and times
+     *                      vary by up to a second
+     * @param seed Seed of the random walks
+     * @return The readings, oldest first
+     */
+    static VitalSeries randomWalk(int count, boolean deviceRounded, long seed) {
+        Random random = new Random(seed);
+        VitalSeries series = new VitalSeries(PATIENT_ID);
+        double heartRate = 75, oxygenLevel = 97, systolic = 120, diastolic = 80, temperature = 36.8;
+        for (int i = 0; i < count; i++) {
+            heartRate = clamp(heartRate + random.nextGaussian() * 1.5, 30, 200);
+            oxygenLevel = clamp(oxygenLevel + random.nextGaussian() * 0.3, 85, 100);
+            systolic = clamp(systolic + random.nextGaussian(), 60, 250);
+            diastolic = clamp(diastolic + random.nextGaussian() * 0.7, 30, Math.min(150, systolic - 10));
+            temperature = clamp(temperature + random.nextGaussian() * 0.02, 35.0, 42.0);
+            LocalDateTime time = START.plusSeconds(30L * i);
+            if (deviceRounded) {
+                series.add(new VitalSign(PATIENT_ID, Math.round(heartRate), Math.round(oxygenLevel),
+                        (int) Math.round(systolic), (int) Math.round(diastolic),
+                        Math.round(temperature * 10) / 10.0, time));
+            } else {
+                series.add(new VitalSign(PATIENT_ID, heartRate, oxygenLevel,
+                        (int) Math.round(systolic), (int) Math.round(diastolic), temperature,
+                        time.plusNanos((random.nextInt(2000) - 1000) * 1_000_000L)));
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Checks that readings read back equal the ones written
+     *
+     * @param expected The readings written
+     * @param actual The readings read back
+     * @param what Name of what read them back, for the error
+     * @throws IllegalStateException if a reading differs
+     */
+    static void checkSame(VitalSeries expected, List<VitalSign> actual, String what) {
+        if (expected.size() != actual.size()) {
+            throw new IllegalStateException(what + " read " + actual.size() + " readings, expected " + expected.size());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (!expected.matches(i, actual.get(i))) {
+                throw new IllegalStateException(what + " read " + actual.get(i) + " at " + i
+                        + ", expected " + expected.get(i));
+            }
+        }
+    }
+
+    /**
+     * Gets the heap in use after collecting garbage
+     * @return Used heap in bytes
+     */
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Formats the fastest and slowest of a list of timings
+     *
+     * @param nanos Timings in nanoseconds
+     * @return Text such as "120-180 ms"
+     */
+    static String range(List<Long> nanos) {
+        long min = nanos.stream().mapToLong(Long::longValue).min().orElse(0);
+        long max = nanos.stream().mapToLong(Long::longValue).max().orElse(0);
+        return String.format("%d-%d ms", min / 1_000_000, max / 1_000_000);
+    }
+
+    /**
+     * Computes a throughput from the best of a list of timings
+     *
+     * @param count Number of items processed in each timing
+     * @param nanos Timings in nanoseconds
+     * @return Millions of items per second
+     */
+    static double bestRate(long count, List<Long> nanos) {
+        long best = nanos.stream().mapToLong(Long::longValue).min().orElse(Long.MAX_VALUE);
+        return count / (best / 1e3);
+    }
+
+    private static double clamp(double value, double low, double high) {
+        return Math.max(low, Math.min(high, value));
+    }
+}
@@ -0,0 +1,83 @@
+package com.rpms.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.rpms.HealthData.VitalSeries;
+import com.rpms.HealthData.VitalSign;
+import com.rpms.HealthData.VitalSignCodec;
+import com.rpms.utilities.SerializationUtil;
+
+/**
+ * Compares the size and speed of writing vital signs with Java serialization and with {@link VitalSignCodec}.
+ * <p>
+ * Both write the same list of readings to memory and read it back, so no disk time is measured.
+ * Run after {@code mvn compile} from the project directory:
+ * <pre>
+ * java -cp target/classes com.rpms.benchmarks.CodecBenchmark [readings, default 1000000]
+ * </pre>
+ */
+public class CodecBenchmark {
+
+    /**
+     * Runs the benchmark and prints the sizes and the fastest and slowest round of each format
+     *
+     * @param args Number of readings, optional
+     * @throws Exception if the readings cannot be written or read
+     */
+    public static void main(String[] args) throws Exception {
+        int count = Benchmarks.readingCount(args, 1_000_000);
+        ArrayList<VitalSign> readings = Benchmarks.uniformReadings(count, 42);
+        VitalSeries expected = new VitalSeries(Benchmarks.PATIENT_ID, readings);
+
+        List<Long> javaWrites = new ArrayList<>(), javaReads = new ArrayList<>();
+        List<Long> codecWrites = new ArrayList<>(), codecReads = new ArrayList<>();
+        int javaSize = 0, codecSize = 0;
+        for (int round = 0; round < Benchmarks.ROUNDS; round++) {
+            long start = System.nanoTime();
+            ByteArrayOutputStream javaBytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(javaBytes)) {
+                out.writeObject(readings);
+            }
+            javaWrites.add(System.nanoTime() - start);
+            javaSize = javaBytes.size();
+
+            start = System.nanoTime();
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(javaBytes.toByteArray()))) {
+                in.readObject();
+            }
+            javaReads.add(System.nanoTime() - start);
+
+            start = System.nanoTime();
+            ByteArrayOutputStream codecBytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(codecBytes))) {
+                SerializationUtil.writeRecords(out, readings, VitalSignCodec.INSTANCE);
+            }
+            codecWrites.add(System.nanoTime() - start);
+            codecSize = codecBytes.size();
+
+            start = System.nanoTime();
+            ArrayList<VitalSign> back;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new ByteArrayInputStream(codecBytes.toByteArray())))) {
+                back = SerializationUtil.readRecords(in, VitalSignCodec.INSTANCE);
+            }
+            codecReads.add(System.nanoTime() - start);
+            Benchmarks.checkSame(expected, back, "VitalSignCodec");
+        }
+
+        System.out.printf("%,d readings, %d rounds%n", count, Benchmarks.ROUNDS);
+        System.out.printf("  Java serialization: %,d B, write %s, read %s%n",
+                javaSize, Benchmarks.range(javaWrites), Benchmarks.range(javaReads));
+        System.out.printf("  VitalSignCodec:     %,d B, write %s, read %s%n",
+                codecSize, Benchmarks.range(codecWrites), Benchmarks.range(codecReads));
+    }
+}
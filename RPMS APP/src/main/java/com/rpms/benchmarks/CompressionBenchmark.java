@@ -0,0 +1,83 @@
+package com.rpms.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.rpms.HealthData.CompressedVitalBlock;
+import com.rpms.HealthData.VitalSeries;
+import com.rpms.HealthData.VitalSignCodec;
+import com.rpms.utilities.SerializationUtil;
+
+/**
+ * Compares the size of vital signs stored as one fixed-size record each with a {@link CompressedVitalBlock},
+ * and measures how fast blocks are encoded, decoded and scanned.
+ * <p>
+ * Readings follow random walks within the ranges VitalSign accepts, once rounded as devices report
+ * them and once at full precision with millisecond jitter.
+ * <pre>
+ * java -cp target/classes com.rpms.benchmarks.CompressionBenchmark [readings, default 1000000]
+ * </pre>
+ */
+public class CompressionBenchmark {
+
+    /**
+     * Runs the benchmark and prints the bytes per reading and the best throughput of each step
+     *
+     * @param args Number of readings, optional
+     * @throws IOException if a block cannot be decoded
+     */
+    public static void main(String[] args) throws IOException {
+        int count = Benchmarks.readingCount(args, 1_000_000);
+        System.out.printf("%,d readings 30 s apart, best of %d rounds%n", count, Benchmarks.ROUNDS);
+        measure("device-rounded", Benchmarks.randomWalk(count, true, 11));
+        measure("full-precision", Benchmarks.randomWalk(count, false, 11));
+    }
+
+    private static void measure(String values, VitalSeries series) throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        SerializationUtil.writeRecords(new DataOutputStream(records), series.asList(), VitalSignCodec.INSTANCE);
+        byte[] recordBytes = records.toByteArray();
+
+        List<Long> encodes = new ArrayList<>(), decodes = new ArrayList<>(), scans = new ArrayList<>();
+        List<Long> recordReads = new ArrayList<>();
+        byte[] block = null;
+        double sum = 0;
+        for (int round = 0; round < Benchmarks.ROUNDS; round++) {
+            long start = System.nanoTime();
+            block = CompressedVitalBlock.encode(series);
+            encodes.add(System.nanoTime() - start);
+
+            start = System.nanoTime();
+            VitalSeries decoded = CompressedVitalBlock.decode(block, Benchmarks.PATIENT_ID);
+            decodes.add(System.nanoTime() - start);
+            if (round == 0) {
+                Benchmarks.checkSame(series, decoded.asList(), "CompressedVitalBlock");
+            }
+
+            start = System.nanoTime();
+            CompressedVitalBlock.Cursor cursor = CompressedVitalBlock.cursor(block);
+            while (cursor.next()) {
+                sum += cursor.getHeartRate() + cursor.getSystolic();
+            }
+            scans.add(System.nanoTime() - start);
+
+            start = System.nanoTime();
+            VitalSignCodec.INSTANCE.readSeries(new DataInputStream(new ByteArrayInputStream(recordBytes)),
+                    Benchmarks.PATIENT_ID);
+            recordReads.add(System.nanoTime() - start);
+        }
+
+        int count = series.size();
+        System.out.printf("  %s: %.2f -> %.2f B/reading%n", values,
+                recordBytes.length / (double) count, block.length / (double) count);
+        System.out.printf("    encode %.1f M/s, decode to series %.1f M/s, cursor scan %.1f M/s%s%n",
+                Benchmarks.bestRate(count, encodes), Benchmarks.bestRate(count, decodes),
+                Benchmarks.bestRate(count, scans), sum > 0 ? "" : " (no readings)");
+        System.out.printf("    records read into a series %.1f M/s%n", Benchmarks.bestRate(count, recordReads));
+    }
+}
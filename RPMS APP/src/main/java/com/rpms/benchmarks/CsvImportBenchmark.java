@@ -0,0 +1,157 @@
+package com.rpms.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.rpms.HealthData.VitalSign;
+import com.rpms.HealthData.VitalsCsvImporter;
+
+/**
+ * Compares the rows per second of the row-by-row CSV import (split, Double.parseDouble and
+ * LocalDateTime.parse into a VitalSign per row) with {@link VitalsCsvImporter}.
+ * <p>
+ * The CSV file is generated in the temporary directory with one bad row in a hundred and deleted
+ * afterwards. Both sides only parse: no reading is added to a patient.
+ * <pre>
+ * java -Xmx2g -cp target/classes com.rpms.benchmarks.CsvImportBenchmark [rows, default 3000000]
+ * </pre>
+ */
+public class CsvImportBenchmark {
+
+    /**
+     * Runs the benchmark and prints the best rows per second and the allocation of each parser
+     *
+     * @param args Number of rows, optional
+     * @throws IOException if the CSV file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int rows = Benchmarks.readingCount(args, 3_000_000);
+        File file = File.createTempFile("rpms-bench-", ".csv");
+        try {
+            int bad = writeCsv(file, rows, 7);
+            System.out.printf("%,d rows (%,d bad), %.0f MB, best of %d rounds%n",
+                    rows, bad, file.length() / 1e6, Benchmarks.ROUNDS);
+            String path = file.getPath();
+            long splitAccepted = measure("split + parseDouble + LocalDateTime.parse", rows,
+                    () -> readBySplit(path));
+            long mappedAccepted = measure("VitalsCsvImporter (memory-mapped)", rows,
+                    () -> VitalsCsvImporter.readFile(Benchmarks.PATIENT_ID, path).getAcceptedCount());
+            if (splitAccepted != mappedAccepted || splitAccepted != rows - bad) {
+                throw new IllegalStateException("Parsers accepted " + splitAccepted + " and " + mappedAccepted
+                        + " rows, expected " + (rows - bad));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * A parse of the whole file
+     */
+    private interface Parse {
+        long run() throws IOException;
+    }
+
+    private static long measure(String parser, int rows, Parse parse) throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocation = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        List<Long> timings = new ArrayList<>();
+        long accepted = 0;
+        long allocated = -1;
+        for (int round = 0; round < Benchmarks.ROUNDS; round++) {
+            long allocatedBefore = allocation != null ? allocation.getCurrentThreadAllocatedBytes() : 0;
+            long start = System.nanoTime();
+            accepted = parse.run();
+            timings.add(System.nanoTime() - start);
+            if (allocation != null) {
+                allocated = allocation.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            }
+        }
+        System.out.printf("  %-42s %.2f M rows/s, %s%n", parser, Benchmarks.bestRate(rows, timings),
+                allocated < 0 ? "allocation not measured" : String.format("%.0f MB allocated per run", allocated / 1e6));
+        return accepted;
+    }
+
+    /**
+     * Parses the file the way the row-by-row import did
+     *
+     * @param path Path to the CSV file
+     * @return Number of accepted rows
+     * @throws IOException if the file cannot be read
+     */
+    private static long readBySplit(String path) throws IOException {
+        long accepted = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line = reader.readLine(); // Header
+            while ((line = reader.readLine()) != null) {
+                String[] data = line.split(",");
+                try {
+                    new VitalSign(Benchmarks.PATIENT_ID, Double.parseDouble(data[0].trim()),
+                            Double.parseDouble(data[1].trim()), data[2].trim(), Double.parseDouble(data[3].trim()),
+                            LocalDateTime.parse(data[4].trim()));
+                    accepted++;
+                } catch (RuntimeException e) {
+                    // Rejected row
+                }
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Writes a CSV export with a header, ten seconds between readings and one bad row in a hundred
+     *
+     * @param file File to write
+     * @param rows Number of rows after the header
+     * @param seed Seed of the random measurements
+     * @return Number of bad rows written
+     * @throws IOException if the file cannot be written
+     */
+    private static int writeCsv(File file, int rows, long seed) throws IOException {
+        Random random = new Random(seed);
+        int bad = 0;
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+            out.write("heartRate,oxygenLevel,bloodPressure,temperature,dateTime\n");
+            for (int i = 0; i < rows; i++) {
+                int heartRate = 50 + random.nextInt(60);
+                int oxygenLevel = 90 + random.nextInt(11);
+                int systolic = 100 + random.nextInt(50);
+                int diastolic = 60 + random.nextInt(30);
+                double temperature = (360 + random.nextInt(15)) / 10.0;
+                String time = Benchmarks.START.plusSeconds(10L * i).toString();
+                if (random.nextInt(100) == 0) {
+                    bad++;
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            // Missing date and time
+                            out.write(heartRate + "," + oxygenLevel + "," + systolic + "/" + diastolic + "," + temperature);
+                            break;
+                        case 1:
+                            // Not a number
+                            out.write("n/a," + oxygenLevel + "," + systolic + "/" + diastolic + "," + temperature + "," + time);
+                            break;
+                        default:
+                            // Out of range
+                            out.write(heartRate + ",140," + systolic + "/" + diastolic + "," + temperature + "," + time);
+                            break;
+                    }
+                } else {
+                    out.write(heartRate + "," + oxygenLevel + "," + systolic + "/" + diastolic + "," + temperature + "," + time);
+                }
+                out.write('\n');
+            }
+        }
+        return bad;
+    }
+}
@@ -0,0 +1,91 @@
+package com.rpms.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.rpms.HealthData.VitalSeries;
+import com.rpms.HealthData.VitalSign;
+import com.rpms.HealthData.VitalSignCodec;
+import com.rpms.utilities.SerializationUtil;
+
+/**
+ * Compares the heap taken by decoded vital signs kept as a list of {@link VitalSign} objects and as a
+ * columnar {@link VitalSeries}, and the time of a heart rate scan over each.
+ * <p>
+ * The heap is measured after garbage collection, so run with a fixed collector and heap for stable figures:
+ * <pre>
+ * java -Xmx2g -XX:+UseSerialGC -cp target/classes com.rpms.benchmarks.SeriesHeapBenchmark [readings, default 1000000]
+ * </pre>
+ */
+public class SeriesHeapBenchmark {
+
+    /** Number of passes of each heart rate scan */
+    private static final int SCAN_PASSES = 20;
+
+    /**
+     * Runs the benchmark and prints the heap per reading and the scan time of each form
+     *
+     * @param args Number of readings, optional
+     * @throws Exception if the readings cannot be decoded
+     */
+    public static void main(String[] args) throws Exception {
+        int count = Benchmarks.readingCount(args, 1_000_000);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        SerializationUtil.writeRecords(new DataOutputStream(encoded), Benchmarks.uniformReadings(count, 1),
+                VitalSignCodec.INSTANCE);
+        byte[] bytes = encoded.toByteArray();
+
+        System.out.printf("%,d readings%n", count);
+        // Each form is measured in its own method, so no reference to the other one is left on the stack
+        double listSum = measureList(bytes, count);
+        double seriesSum = measureSeries(bytes, count);
+        if (listSum != seriesSum) {
+            throw new IllegalStateException("Scans of the list and the series found different heart rates");
+        }
+    }
+
+    private static double measureList(byte[] bytes, int count) throws Exception {
+        long base = Benchmarks.usedHeap();
+        ArrayList<VitalSign> list = SerializationUtil.readRecords(
+                new DataInputStream(new ByteArrayInputStream(bytes)), VitalSignCodec.INSTANCE);
+        long used = Benchmarks.usedHeap() - base;
+        List<Long> scans = new ArrayList<>();
+        double sum = 0;
+        for (int pass = 0; pass < SCAN_PASSES; pass++) {
+            long start = System.nanoTime();
+            for (VitalSign vital : list) {
+                sum += vital.getHeartRate();
+            }
+            scans.add(System.nanoTime() - start);
+        }
+        print("ArrayList<VitalSign>:", used, count, scans);
+        return sum / SCAN_PASSES;
+    }
+
+    private static double measureSeries(byte[] bytes, int count) throws Exception {
+        long base = Benchmarks.usedHeap();
+        VitalSeries series = VitalSignCodec.INSTANCE.readSeries(
+                new DataInputStream(new ByteArrayInputStream(bytes)), Benchmarks.PATIENT_ID);
+        long used = Benchmarks.usedHeap() - base;
+        List<Long> scans = new ArrayList<>();
+        double sum = 0;
+        for (int pass = 0; pass < SCAN_PASSES; pass++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < series.size(); i++) {
+                sum += series.getHeartRate(i);
+            }
+            scans.add(System.nanoTime() - start);
+        }
+        print("VitalSeries:", used, count, scans);
+        return sum / SCAN_PASSES;
+    }
+
+    private static void print(String form, long used, int count, List<Long> scans) {
+        System.out.printf("  %-21s %.1f MB (%.0f B/reading), heart rate scan %.1f ms%n", form, used / 1e6,
+                used / (double) count, scans.stream().mapToLong(Long::longValue).min().orElse(0) / 1e6);
+    }
+}
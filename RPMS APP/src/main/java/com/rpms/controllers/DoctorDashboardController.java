@@ -1,22 +1,37 @@
 package com.rpms.controllers;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import com.rpms.AppointmentHandling.Appointment;
 import com.rpms.AppointmentHandling.AppointmentManager;
 import com.rpms.ChatVideoConsultation.ChatManager;
 import com.rpms.ChatVideoConsultation.VideoCall;
 import com.rpms.DoctorPatientInteraction.Feedback;
+import com.rpms.EmergencyAlertSystem.EarlyWarningScore;
+import com.rpms.EmergencyAlertSystem.EarlyWarningScores;
 import com.rpms.GUI.ChatWindow;
+import com.rpms.GUI.RegistryBinding;
 import com.rpms.Main;
 import com.rpms.Users.Doctor;
 import com.rpms.Users.Patient;
 import com.rpms.Users.User;
+import com.rpms.utilities.BackgroundLoader;
+import com.rpms.utilities.ChangeFeed;
 import com.rpms.utilities.DataManager;
+import com.rpms.utilities.DateUtil;
 
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -30,6 +45,9 @@ import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.scene.control.TabPane;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TextInputDialog;
@@ -54,7 +72,12 @@ public class DoctorDashboardController {
     
     // Patients tab
     @FXML private TabPane tabPane;
-    @FXML private ListView<Patient> patientsListView;
+    @FXML private TableView<Patient> patientsTable;
+    @FXML private TableColumn<Patient, String> patientNameColumn;
+    @FXML private TableColumn<Patient, String> patientIdColumn;
+    @FXML private TableColumn<Patient, EarlyWarningScore> warningScoreColumn;
+    @FXML private TableColumn<Patient, String> riskColumn;
+    @FXML private TableColumn<Patient, String> lastReadingColumn;
     @FXML private Button viewPatientButton;
     
     // Appointments tab
@@ -71,6 +94,19 @@ public class DoctorDashboardController {
     
     // Chat tab
     @FXML private VBox chatLayout;
+
+    /** Appointment and video call lists kept in sync with {@link AppointmentManager} */
+    private final List<RegistryBinding<?>> bindings = new ArrayList<>();
+
+    /** Whether the patients table is already due to be re-ranked */
+    private final AtomicBoolean scoresRefreshPending = new AtomicBoolean();
+
+    /** Re-ranks the patients table when a patient's early-warning score changes, once per burst of changes */
+    private final Consumer<String> scoreListener = patientId -> {
+        if (scoresRefreshPending.compareAndSet(false, true)) {
+            Platform.runLater(this::refreshScores);
+        }
+    };
     
     /**
      * Initializes the controller
@@ -95,14 +131,14 @@ public class DoctorDashboardController {
         welcomeLabel.setText("Welcome, Dr. " + doctor.getName());
         
         // Set up cell factories for all list views
-        setupPatientsListView();
+        setupPatientsTable();
         setupAppointmentsListViews();
         setupVideoCallsListViews();
         
-        // Load data for all tabs
+        // Load data for all tabs; each tab fills in when its data is ready
         loadPatientsData();
-        loadAppointmentsData();
-        loadVideoCallsData();
+        bindAppointments();
+        bindVideoCalls();
         loadFeedbacksData();
         loadChatData();
         
@@ -110,21 +146,37 @@ public class DoctorDashboardController {
     }
     
     /**
-     * Sets up the patients list view with custom cell factory
+     * Sets up the patients table, ranked by early-warning score (highest first).
+     * The score columns read the cached scores (see {@link EarlyWarningScores}), so sorting and
+     * rendering do not read any readings.
      */
-    private void setupPatientsListView() {
-        patientsListView.setCellFactory(lv -> new ListCell<Patient>() {
+    private void setupPatientsTable() {
+        patientNameColumn.setCellValueFactory(data -> new ReadOnlyStringWrapper(data.getValue().getName()));
+        patientIdColumn.setCellValueFactory(data -> new ReadOnlyStringWrapper(data.getValue().getId()));
+        warningScoreColumn.setCellValueFactory(data ->
+                new ReadOnlyObjectWrapper<>(EarlyWarningScores.getScore(data.getValue().getId())));
+        warningScoreColumn.setCellFactory(column -> new TableCell<Patient, EarlyWarningScore>() {
             @Override
-            protected void updateItem(Patient patient, boolean empty) {
-                super.updateItem(patient, empty);
-                if (empty || patient == null) {
-                    setText(null);
-                } else {
-                    setText(patient.getName() + " (ID: " + patient.getId() + ")");
-                }
+            protected void updateItem(EarlyWarningScore score, boolean empty) {
+                super.updateItem(score, empty);
+                setText(empty ? null : score == null ? "No readings" : String.valueOf(score.getTotal()));
             }
         });
-        
+        riskColumn.setCellValueFactory(data -> {
+            EarlyWarningScore score = EarlyWarningScores.getScore(data.getValue().getId());
+            return new ReadOnlyStringWrapper(score == null ? "" : score.getRisk());
+        });
+        riskColumn.setComparator(Comparator.comparingInt(DoctorDashboardController::riskRank));
+        lastReadingColumn.setCellValueFactory(data -> {
+            EarlyWarningScore score = EarlyWarningScores.getScore(data.getValue().getId());
+            return new ReadOnlyStringWrapper(score == null || score.getDateTimeRecorded() == null
+                    ? "" : DateUtil.format(score.getDateTimeRecorded()));
+        });
+        warningScoreColumn.setSortType(TableColumn.SortType.DESCENDING);
+        patientsTable.getSortOrder().add(warningScoreColumn);
+        EarlyWarningScores.addListener(scoreListener);
+
+
         feedbacksPatientsListView.setCellFactory(lv -> new ListCell<Patient>() {
             @Override
             protected void updateItem(Patient patient, boolean empty) {
@@ -158,14 +210,12 @@ public class DoctorDashboardController {
                 approveButton.setOnAction(event -> {
                     Appointment appointment = getItem();
                     AppointmentManager.approveAppointment(appointment);
-                    loadAppointmentsData(); // Refresh
                     showAlert("Appointment Approved", "Appointment with " + appointment.getPatient().getName() + " has been approved.", AlertType.INFORMATION);
                 });
                 
                 rejectButton.setOnAction(event -> {
                     Appointment appointment = getItem();
                     AppointmentManager.cancelAppointment(appointment);
-                    loadAppointmentsData(); // Refresh
                     showAlert("Appointment Rejected", "Appointment with " + appointment.getPatient().getName() + " has been rejected.", AlertType.INFORMATION);
                 });
             }
@@ -197,7 +247,6 @@ public class DoctorDashboardController {
                 cancelButton.setOnAction(event -> {
                     Appointment appointment = getItem();
                     AppointmentManager.cancelAppointment(appointment);
-                    loadAppointmentsData(); // Refresh
                     showAlert("Appointment Cancelled", "Appointment with " + appointment.getPatient().getName() + " has been cancelled.", AlertType.INFORMATION);
                 });
             }
@@ -243,7 +292,6 @@ public class DoctorDashboardController {
                     if (result.isPresent()) {
                         videoCall.setMeetingLink(result.get());
                         AppointmentManager.approveVideoCall(videoCall);
-                        loadVideoCallsData(); // Refresh
                         showAlert("Video Call Approved", "Video call with " + videoCall.getPatient().getName() + " has been approved.", AlertType.INFORMATION);
                     }
                 });
@@ -251,7 +299,6 @@ public class DoctorDashboardController {
                 rejectButton.setOnAction(event -> {
                     VideoCall videoCall = getItem();
                     AppointmentManager.cancelVideoCall(videoCall);
-                    loadVideoCallsData(); // Refresh
                     showAlert("Video Call Rejected", "Video call with " + videoCall.getPatient().getName() + " has been rejected.", AlertType.INFORMATION);
                 });
             }
@@ -283,7 +330,6 @@ public class DoctorDashboardController {
                 cancelButton.setOnAction(event -> {
                     VideoCall videoCall = getItem();
                     AppointmentManager.cancelVideoCall(videoCall);
-                    loadVideoCallsData(); // Refresh
                     showAlert("Video Call Cancelled", "Video call with " + videoCall.getPatient().getName() + " has been cancelled.", AlertType.INFORMATION);
                 });
             }
@@ -302,71 +348,99 @@ public class DoctorDashboardController {
     }
     
     /**
-     * Loads patients data
+     * Loads patients data in the background.
+     * The doctor's patients are copied here, on the Application Thread that changes them; their scores
+     * are looked up in the background, so ranking the table reads no readings.
      */
     private void loadPatientsData() {
-        if (doctor != null && patientsListView != null) {
-            List<Patient> patients = doctor.getPatients();
-            patientsListView.setItems(FXCollections.observableArrayList(patients));
-            feedbacksPatientsListView.setItems(FXCollections.observableArrayList(patients));
-            System.out.println("Loaded " + patients.size() + " patients");
+        if (doctor != null && patientsTable != null) {
+            List<Patient> doctorPatients = new ArrayList<>(doctor.getPatients());
+            BackgroundLoader.load(loadKey("patients"), () -> {
+                ObservableList<Patient> patients = FXCollections.observableArrayList(doctorPatients);
+                for (Patient patient : patients) {
+                    EarlyWarningScores.getScore(patient.getId()); // Looked up once, then kept up to date
+                }
+                return patients;
+            }, patients -> {
+                patientsTable.setItems(patients);
+                patientsTable.sort();
+                feedbacksPatientsListView.setItems(FXCollections.observableArrayList(patients));
+                System.out.println("Loaded " + patients.size() + " patients");
+            });
         }
     }
+
+    /**
+     * Gets the key of a load of this dashboard (see {@link BackgroundLoader})
+     */
+    private String loadKey(String view) {
+        return "doctor:" + doctor.getId() + ":" + view;
+    }
     
     /**
-     * Loads appointments data
+     * Shows the current early-warning scores and ranks the patients by them again
      */
-    private void loadAppointmentsData() {
-        if (doctor != null) {
-            // Get all appointments for this doctor
-            List<Appointment> allAppointments = AppointmentManager.getAppointments().stream()
-                .filter(a -> a.getDoctor().getId().equals(doctor.getId()))
-                .collect(Collectors.toList());
-            
-            // Filter by status
-            List<Appointment> pendingAppointments = allAppointments.stream()
-                .filter(a -> "Pending".equals(a.getStatus()))
-                .collect(Collectors.toList());
-                
-            List<Appointment> approvedAppointments = allAppointments.stream()
-                .filter(a -> "Approved".equals(a.getStatus()))
-                .collect(Collectors.toList());
-            
-            // Update UI
-            pendingAppointmentsListView.setItems(FXCollections.observableArrayList(pendingAppointments));
-            approvedAppointmentsListView.setItems(FXCollections.observableArrayList(approvedAppointments));
-            
-            System.out.println("Loaded " + pendingAppointments.size() + " pending appointments");
-            System.out.println("Loaded " + approvedAppointments.size() + " approved appointments");
+    private void refreshScores() {
+        scoresRefreshPending.set(false);
+        patientsTable.refresh();
+        patientsTable.sort();
+    }
+
+    /**
+     * Orders the risk levels of {@link EarlyWarningScore#getRisk()} from lowest to highest
+     */
+    private static int riskRank(String risk) {
+        switch (risk) {
+            case "High":
+                return 4;
+            case "Medium":
+                return 3;
+            case "Low-medium":
+                return 2;
+            case "Low":
+                return 1;
+            default:
+                return 0;
         }
     }
+
+    /**
+     * Shows the doctor's pending and approved appointments, following their changes
+     */
+    private void bindAppointments() {
+        pendingAppointmentsListView.setItems(bind("pendingAppointments", AppointmentManager.getAppointmentChanges(),
+                a -> a.getDoctor().getId().equals(doctor.getId()) && "Pending".equals(a.getStatus()),
+                AppointmentManager::getAppointments));
+        approvedAppointmentsListView.setItems(bind("approvedAppointments", AppointmentManager.getAppointmentChanges(),
+                a -> a.getDoctor().getId().equals(doctor.getId()) && "Approved".equals(a.getStatus()),
+                AppointmentManager::getAppointments));
+    }
     
     /**
-     * Loads video calls data
+     * Shows the doctor's pending and scheduled video calls, following their changes
      */
-    private void loadVideoCallsData() {
-        if (doctor != null) {
-            // Get all video calls for this doctor
-            List<VideoCall> allVideoCalls = AppointmentManager.getVideoCalls().stream()
-                .filter(vc -> vc.getDoctor().getId().equals(doctor.getId()))
-                .collect(Collectors.toList());
-            
-            // Filter by status
-            List<VideoCall> pendingVideoCalls = allVideoCalls.stream()
-                .filter(vc -> "Pending".equals(vc.getStatus()))
-                .collect(Collectors.toList());
-                
-            List<VideoCall> scheduledVideoCalls = allVideoCalls.stream()
-                .filter(vc -> "Approved".equals(vc.getStatus()))
-                .collect(Collectors.toList());
-            
-            // Update UI
-            pendingVideoCallsListView.setItems(FXCollections.observableArrayList(pendingVideoCalls));
-            scheduledVideoCallsListView.setItems(FXCollections.observableArrayList(scheduledVideoCalls));
-            
-            System.out.println("Loaded " + pendingVideoCalls.size() + " pending video calls");
-            System.out.println("Loaded " + scheduledVideoCalls.size() + " scheduled video calls");
-        }
+    private void bindVideoCalls() {
+        pendingVideoCallsListView.setItems(bind("pendingVideoCalls", AppointmentManager.getVideoCallChanges(),
+                vc -> vc.getDoctor().getId().equals(doctor.getId()) && "Pending".equals(vc.getStatus()),
+                AppointmentManager::getVideoCalls));
+        scheduledVideoCallsListView.setItems(bind("scheduledVideoCalls", AppointmentManager.getVideoCallChanges(),
+                vc -> vc.getDoctor().getId().equals(doctor.getId()) && "Approved".equals(vc.getStatus()),
+                AppointmentManager::getVideoCalls));
+    }
+
+    /**
+     * Creates a list of this dashboard kept in sync with a registry
+     *
+     * @param view Name of the list
+     * @param feed Changes of the registry
+     * @param filter Selects the elements shown
+     * @param source Reads the registry
+     * @return The list
+     */
+    private <T> ObservableList<T> bind(String view, ChangeFeed<T> feed, Predicate<T> filter, Supplier<List<T>> source) {
+        RegistryBinding<T> binding = new RegistryBinding<>(loadKey(view), feed, filter, source);
+        bindings.add(binding);
+        return binding.getItems();
     }
     
     /**
@@ -378,18 +452,23 @@ public class DoctorDashboardController {
     }
     
     /**
-     * Loads chat data
+     * Loads chat data; the contacts are the doctor's patients, copied on the Application Thread
      */
     private void loadChatData() {
+        showChatContacts(ChatManager.getChatContactsForUser(doctor));
+    }
+
+    /**
+     * Shows the patients this doctor can chat with
+     * @param availablePatients The chat contacts
+     */
+    private void showChatContacts(List<User> availablePatients) {
         chatLayout.getChildren().clear();
         
         Label chatLabel = new Label("Chat with your patients");
         chatLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
         chatLayout.getChildren().add(chatLabel);
         
-        // Get all patients this doctor can chat with
-        List<User> availablePatients = ChatManager.getChatContactsForUser(doctor);
-        
         if (!availablePatients.isEmpty()) {
             for (User user : availablePatients) {
                 if (user instanceof Patient) {
@@ -422,7 +501,7 @@ public class DoctorDashboardController {
      */
     @FXML
     private void handleViewPatient() {
-        Patient selectedPatient = patientsListView.getSelectionModel().getSelectedItem();
+        Patient selectedPatient = patientsTable.getSelectionModel().getSelectedItem();
         if (selectedPatient == null) {
             showAlert("No Selection", "Please select a patient to view", AlertType.WARNING);
             return;
@@ -525,7 +604,7 @@ public class DoctorDashboardController {
             selectedPatient.addFeedback(feedback);
             feedback.setDoctor(doctor);
             showAlert("Feedback Provided", "Your feedback has been sent to " + selectedPatient.getName(), AlertType.INFORMATION);
-            DataManager.saveAllData();
+            DataManager.markUserChanged(selectedPatient);
         });
     }
     
@@ -535,14 +614,13 @@ public class DoctorDashboardController {
     @FXML
     private void handleLogout() {
         try {
-            // Save data before logging out
-            DataManager.saveAllData();
-            
             // Get the current stage
+            EarlyWarningScores.removeListener(scoreListener);
+            bindings.forEach(RegistryBinding::close);
             Stage currentStage = (Stage) logoutButton.getScene().getWindow();
             currentStage.close();
             
-            // Show login screen
+            // Show login screen (saves data before logging out)
             Main.logout();
         } catch (Exception e) {
             showAlert("Error", "Error during logout: " + e.getMessage(), AlertType.ERROR);
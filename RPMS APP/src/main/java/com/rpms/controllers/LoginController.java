@@ -12,6 +12,8 @@ import com.rpms.Users.Doctor;
 import com.rpms.Users.Patient;
 import com.rpms.Users.User;
 import com.rpms.utilities.DataManager;
+import com.rpms.utilities.SystemLogEntry;
+import com.rpms.utilities.SystemLogStore;
 
 import javafx.application.Platform;
 import javafx.fxml.FXML;
@@ -100,7 +102,7 @@ public class LoginController {
             stage.setOnCloseRequest(event -> {
                 try {
                     System.out.println("Application is closing. Saving all data...");
-                    DataManager.saveAllData();
+                    DataManager.flush();
                     System.out.println("Data saved successfully.");
                     Platform.exit();
                     System.exit(0);  // Force JVM shutdown
@@ -247,10 +249,12 @@ public class LoginController {
         if (user == null) {
             showError("Invalid username or password");
             // Log the failed login attempt
-            Administrator.addSystemLog("Failed login attempt for username '" + username + "' with role '" + selectedRole + "'.");
+            Administrator.addSystemLog(SystemLogEntry.Level.WARNING, username,
+                    "Failed login attempt for username '" + username + "' with role '" + selectedRole + "'.");
         }
         else {
-            // Log successful login
+            // Log successful login; the user's actions are logged on their behalf from now on
+            SystemLogStore.setSessionActor(user.getUsername());
             Administrator.addSystemLog("Successful login for user: " + user.getName() + " (" + selectedRole + ")");
             
             try {
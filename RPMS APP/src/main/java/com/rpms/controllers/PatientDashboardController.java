@@ -3,15 +3,22 @@ package com.rpms.controllers;
 import java.io.File;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 import com.rpms.AppointmentHandling.Appointment;
+import com.rpms.AppointmentHandling.AppointmentManager;
 import com.rpms.ChatVideoConsultation.ChatManager;
 import com.rpms.ChatVideoConsultation.VideoCall;
 import com.rpms.DoctorPatientInteraction.Feedback;
+import com.rpms.DoctorPatientInteraction.Prescription;
 import com.rpms.GUI.ChatWindow;
+import com.rpms.GUI.RegistryBinding;
+import com.rpms.GUI.VitalsGraph;
+import com.rpms.GUI.VitalsList;
 import com.rpms.HealthData.VitalSign;
+import com.rpms.HealthData.VitalsImportReport;
 import com.rpms.Main;
 import com.rpms.NotificationsAndReminders.ReminderService;
 import com.rpms.Reports.ReportGenerator;
@@ -20,11 +27,11 @@ import com.rpms.Users.Doctor;
 import com.rpms.Users.Patient;
 import com.rpms.Users.User;
 import com.rpms.controllers.tabs.VitalsTabController;
+import com.rpms.utilities.BackgroundLoader;
 import com.rpms.utilities.DataManager;
 
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -90,6 +97,12 @@ public class PatientDashboardController {
     
     // Chat tab
     @FXML private VBox chatLayout;
+
+    /** Appointment and video call lists kept in sync with {@link AppointmentManager} */
+    private final List<RegistryBinding<?>> bindings = new ArrayList<>();
+
+    /** Readings shown by the fallback vitals list, or null */
+    private VitalsList vitalsList;
     
     /**
      * Initializes the controller
@@ -145,34 +158,12 @@ public class PatientDashboardController {
             loadVitalsData();
         }
         
-        // Load data for all tabs
-        try {
-            loadAppointmentsData();
-            System.out.println("Appointments data loaded successfully");
-        } catch (Exception e) {
-            System.err.println("Error loading appointments data: " + e.getMessage());
-        }
-        
-        try {
-            loadEmergencyContactsData();
-            System.out.println("Emergency contacts data loaded successfully");
-        } catch (Exception e) {
-            System.err.println("Error loading emergency contacts data: " + e.getMessage());
-        }
-        
-        try {
-            loadFeedbacksData();
-            System.out.println("Feedbacks data loaded successfully");
-        } catch (Exception e) {
-            System.err.println("Error loading feedbacks data: " + e.getMessage());
-        }
-        
-        try {
-            loadChatData();
-            System.out.println("Chat data loaded successfully");
-        } catch (Exception e) {
-            System.err.println("Error loading chat data: " + e.getMessage());
-        }
+        // Load data for all tabs in the background; each tab fills in when its data is ready
+        setupListViews();
+        bindAppointments();
+        loadEmergencyContactsData();
+        loadFeedbacksData();
+        loadChatData();
         
         // Show reminders
         showReminders();
@@ -187,9 +178,13 @@ public class PatientDashboardController {
     private void loadVitalsData() {
         System.out.println("Loading vitals data...");
         if (patient != null && vitalsListView != null) {
-            ObservableList<VitalSign> vitalsData = FXCollections.observableArrayList(patient.viewPreviousVitals());
-            vitalsListView.setItems(vitalsData);
-            System.out.println("Loaded " + vitalsData.size() + " vital records");
+            // The list reads the readings on screen only, so nothing has to be loaded up front
+            if (vitalsList != null) {
+                vitalsList.close();
+            }
+            vitalsList = new VitalsList(patient.getVitals());
+            vitalsListView.setItems(vitalsList);
+            System.out.println("Loaded " + vitalsList.size() + " vital records");
         } else {
             System.err.println("Cannot load vitals: " + 
                               (patient == null ? "patient is null" : "vitalsListView is null"));
@@ -197,13 +192,16 @@ public class PatientDashboardController {
     }
     
     /**
-     * Loads appointments data
+     * Gets the key of a load of this dashboard (see {@link BackgroundLoader})
      */
-    private void loadAppointmentsData() {
-        // Clear and update appointments list
-        ObservableList<Appointment> appointmentsData = FXCollections.observableArrayList(patient.viewAppointments());
-        appointmentsListView.setItems(appointmentsData);
-        
+    private String loadKey(String view) {
+        return "patient:" + patient.getId() + ":" + view;
+    }
+
+    /**
+     * Sets up the cell factories of the appointment, video call and contact lists
+     */
+    private void setupListViews() {
         // Custom cell factory to add cancel buttons
         appointmentsListView.setCellFactory(lv -> new ListCell<Appointment>() {
             private final Button cancelButton = new Button("Cancel");
@@ -219,7 +217,6 @@ public class PatientDashboardController {
                 cancelButton.setOnAction(event -> {
                     Appointment appointment = getItem();
                     boolean removed = patient.cancelAppointment(appointment);
-                    loadAppointmentsData(); // Refresh
                     showAlert("Appointment", removed ? "Cancelled" : "Failed to cancel");
                 });
             }
@@ -236,10 +233,6 @@ public class PatientDashboardController {
             }
         });
         
-        // Clear and update video calls list
-        ObservableList<VideoCall> videoCallsData = FXCollections.observableArrayList(patient.viewVideoCalls());
-        videoCallsListView.setItems(videoCallsData);
-        
         // Custom cell factory to add cancel buttons for video calls
         videoCallsListView.setCellFactory(lv -> new ListCell<VideoCall>() {
             private final Button cancelButton = new Button("Cancel");
@@ -255,7 +248,6 @@ public class PatientDashboardController {
                 cancelButton.setOnAction(event -> {
                     VideoCall videoCall = getItem();
                     boolean removed = patient.cancelVideoCall(videoCall);
-                    loadAppointmentsData(); // Refresh
                     showAlert("Video Call", removed ? "Cancelled" : "Failed to cancel");
                 });
             }
@@ -271,15 +263,6 @@ public class PatientDashboardController {
                 }
             }
         });
-    }
-    
-    /**
-     * Loads emergency contacts data
-     */
-    private void loadEmergencyContactsData() {
-        // Clear and update contacts list
-        ObservableList<String> contactsData = FXCollections.observableArrayList(patient.getEmergencyContacts());
-        contactsListView.setItems(contactsData);
         
         // Custom cell factory to add remove buttons
         contactsListView.setCellFactory(lv -> new ListCell<String>() {
@@ -315,27 +298,54 @@ public class PatientDashboardController {
     }
     
     /**
-     * Loads feedbacks data
+     * Shows the patient's appointments and video calls, following their changes
+     */
+    private void bindAppointments() {
+        RegistryBinding<Appointment> appointments = new RegistryBinding<>(loadKey("appointments"),
+                AppointmentManager.getAppointmentChanges(), a -> a.getPatient().equals(patient),
+                AppointmentManager::getAppointments);
+        RegistryBinding<VideoCall> videoCalls = new RegistryBinding<>(loadKey("videoCalls"),
+                AppointmentManager.getVideoCallChanges(), vc -> vc.getPatient().equals(patient),
+                AppointmentManager::getVideoCalls);
+        bindings.add(appointments);
+        bindings.add(videoCalls);
+        appointmentsListView.setItems(appointments.getItems());
+        videoCallsListView.setItems(videoCalls.getItems());
+    }
+    
+    /**
+     * Loads emergency contacts data; the list is copied on the Application Thread that changes it
+     */
+    private void loadEmergencyContactsData() {
+        contactsListView.setItems(FXCollections.observableArrayList(patient.getEmergencyContacts()));
+    }
+    
+    /**
+     * Loads feedbacks data; the list is copied on the Application Thread that changes it
      */
     private void loadFeedbacksData() {
-        // Clear and update feedbacks list
-        ObservableList<Feedback> feedbacksData = FXCollections.observableArrayList(patient.viewPreviousFeedbacks());
-        feedbacksListView.setItems(feedbacksData);
+        feedbacksListView.setItems(FXCollections.observableArrayList(patient.viewPreviousFeedbacks()));
     }
     
     /**
-     * Loads chat data
+     * Loads chat data; the contacts are looked up in the doctors' patient lists,
+     * on the Application Thread that changes them
      */
     private void loadChatData() {
+        showChatContacts(ChatManager.getChatContactsForUser(patient));
+    }
+
+    /**
+     * Shows the doctors this patient can chat with
+     * @param availableDoctors The chat contacts
+     */
+    private void showChatContacts(List<User> availableDoctors) {
         chatLayout.getChildren().clear();
         
         Label chatLabel = new Label("Chat with your doctors");
         chatLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
         chatLayout.getChildren().add(chatLabel);
         
-        // Get all doctors this patient can chat with
-        List<User> availableDoctors = ChatManager.getChatContactsForUser(patient);
-        
         if (!availableDoctors.isEmpty()) {
             // Create a section for the primary physician
             Doctor physician = patient.getPhysician();
@@ -399,21 +409,29 @@ public class PatientDashboardController {
     }
     
     /**
-     * Shows reminders for the patient
+     * Shows reminders for the patient.
+     * The registries are copied here; the reminders are gathered and sent in the background.
      */
     private void showReminders() {
         if (!remindersShown) {
-            ReminderService reminderService = new ReminderService(patient);
-            String appointments = reminderService.getAppointmentReminders();
-            String medications = reminderService.getMedicationReminders();
-            String videoCalls = reminderService.getApprovedVideoCalls();
-            StringBuilder reminderMsg = new StringBuilder();
-            if (!appointments.isEmpty()) reminderMsg.append("Upcoming Appointments:\n").append(appointments).append("\n");
-            if (!medications.isEmpty()) reminderMsg.append("Medications:\n").append(medications).append("\n");
-            if (!videoCalls.isEmpty()) reminderMsg.append("Upcoming Video Calls:\n").append(videoCalls);
-            if (reminderMsg.length() > 0) {
-                Platform.runLater(() -> showAlert("Reminders", reminderMsg.toString()));
-            }
+            List<Appointment> appointmentsCopy = new ArrayList<>(AppointmentManager.getAppointments());
+            List<VideoCall> videoCallsCopy = new ArrayList<>(AppointmentManager.getVideoCalls());
+            List<Prescription> prescriptions = ReminderService.getPrescriptions(patient);
+            BackgroundLoader.load(loadKey("reminders"), () -> {
+                ReminderService reminderService = new ReminderService(patient);
+                String appointments = reminderService.getAppointmentReminders(appointmentsCopy);
+                String medications = reminderService.getMedicationReminders(prescriptions);
+                String videoCalls = reminderService.getApprovedVideoCalls(videoCallsCopy);
+                StringBuilder reminderMsg = new StringBuilder();
+                if (!appointments.isEmpty()) reminderMsg.append("Upcoming Appointments:\n").append(appointments).append("\n");
+                if (!medications.isEmpty()) reminderMsg.append("Medications:\n").append(medications).append("\n");
+                if (!videoCalls.isEmpty()) reminderMsg.append("Upcoming Video Calls:\n").append(videoCalls);
+                return reminderMsg.toString();
+            }, reminderMsg -> {
+                if (!reminderMsg.isEmpty()) {
+                    showAlert("Reminders", reminderMsg);
+                }
+            });
             remindersShown = true;
         }
     }
@@ -479,14 +497,18 @@ public class PatientDashboardController {
     @FXML
     private void handleLogout() {
         try {
-            // Save data before logging out
-            DataManager.saveAllData();
-            
+            bindings.forEach(RegistryBinding::close);
+            if (vitalsTabController != null) {
+                vitalsTabController.close();
+            }
+            if (vitalsList != null) {
+                vitalsList.close();
+            }
             // Get the current stage
             Stage currentStage = (Stage) logoutButton.getScene().getWindow();
             currentStage.close();
             
-            // Show login screen
+            // Show login screen (saves data before logging out)
             Main.logout();
         } catch (Exception e) {
             showAlert("Error", "Error during logout: " + e.getMessage());
@@ -503,10 +525,10 @@ public class PatientDashboardController {
         fileChooser.setTitle("Select Vital Signs CSV");
         File file = fileChooser.showOpenDialog(null);
         if (file != null) {
-            List<String> alerts = patient.uploadVitalsFromCSV(file.getAbsolutePath());
-            showAlert("Vitals Uploaded", "Vitals uploaded from: " + file.getName());
-            if (!alerts.isEmpty()) {
-                showAlert("Critical Vitals Detected", String.join("\n", alerts));
+            VitalsImportReport report = patient.uploadVitalsFromCSV(file.getAbsolutePath());
+            showAlert("Vitals Uploaded", "Vitals uploaded from: " + file.getName() + "\n" + report.getSummary());
+            if (!report.getAlerts().isEmpty()) {
+                showAlert("Critical Vitals Detected", String.join("\n", report.getAlerts()));
             }
             loadVitalsData(); // Refresh vitals list
         }
@@ -518,8 +540,7 @@ public class PatientDashboardController {
     @FXML
     private void handleGraphVitals() {
         if (patient != null) {
-            // Directly use the patient's method to generate the graph
-            patient.getVitals().generateVitalsGraph(new Stage());
+            VitalsGraph.show(patient.getVitals(), new Stage());
         }
     }
     
@@ -554,7 +575,6 @@ public class PatientDashboardController {
                     Appointment appt = new Appointment(dateTime, selectedDoctor, patient);
                     patient.requestAppointment(appt);
                     showAlert("Appointment Requested", appt.toString());
-                    loadAppointmentsData(); // Refresh appointment list
                 }
             } catch (Exception ex) {
                 showAlert("Invalid Input", "Invalid date-time format: " + ex.getMessage());
@@ -605,7 +625,6 @@ public class PatientDashboardController {
                             patient.requestVideoCall(videoCall);
                             showAlert("Video Call Requested", 
                                     "Video call scheduled with " + selectedDoctor.getName());
-                            loadAppointmentsData(); // Refresh video calls list
                         }
                     } catch (Exception ex) {
                         showAlert("Invalid Input", "Invalid end date-time format: " + ex.getMessage());
@@ -1,10 +1,9 @@
 package com.rpms.controllers.tabs;
 
+import com.rpms.GUI.VitalsList;
 import com.rpms.HealthData.VitalSign;
 import com.rpms.Users.Patient;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.ListView;
@@ -21,6 +20,9 @@ public class SimpleVitalsTabController {
     @FXML private ListView<VitalSign> vitalsListView;
     
     private Patient patient;
+
+    /** Readings shown by the list, read a page at a time */
+    private VitalsList vitalsList;
     
     /**
      * Initialize the controller
@@ -41,6 +43,16 @@ public class SimpleVitalsTabController {
         this.patient = patient;
         loadVitalsData();
     }
+
+    /**
+     * Stops following the patient's readings, e.g. when the tab is closed
+     */
+    public void close() {
+        if (vitalsList != null) {
+            vitalsList.close();
+            vitalsList = null;
+        }
+    }
     
     /**
      * Load vital signs data
@@ -48,10 +60,10 @@ public class SimpleVitalsTabController {
     public void loadVitalsData() {
         if (patient != null && vitalsListView != null) {
             System.out.println("Loading vitals data for: " + patient.getName());
-            ObservableList<VitalSign> vitalsData = 
-                FXCollections.observableArrayList(patient.viewPreviousVitals());
-            vitalsListView.setItems(vitalsData);
-            System.out.println("Loaded " + vitalsData.size() + " vital records");
+            close();
+            vitalsList = new VitalsList(patient.getVitals());
+            vitalsListView.setItems(vitalsList);
+            System.out.println("Loaded " + vitalsList.size() + " vital records");
         } else {
             System.err.println("Cannot load vitals: " + 
                               (patient == null ? "patient is null" : "vitalsListView is null"));
@@ -1,18 +1,35 @@
 package com.rpms.controllers.tabs;
 
 import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import com.rpms.EmergencyAlertSystem.AlertRules;
+import com.rpms.EmergencyAlertSystem.CompiledAlertRules;
+import com.rpms.GUI.ChartViewport;
+import com.rpms.GUI.TimeAxis;
+import com.rpms.GUI.VitalsList;
+import com.rpms.HealthData.VitalDownsampler;
+import com.rpms.HealthData.VitalSeries;
 import com.rpms.HealthData.VitalSign;
+import com.rpms.HealthData.VitalStatistics;
+import com.rpms.HealthData.VitalStatistics.Channel;
+import com.rpms.HealthData.VitalsImportReport;
 import com.rpms.Users.Patient;
+import com.rpms.utilities.BackgroundLoader;
+import com.rpms.utilities.ChangeFeed;
 import com.rpms.utilities.DateUtil;
 
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -23,6 +40,7 @@ import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonBar;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
@@ -51,10 +69,18 @@ public class VitalsTabController {
     @FXML private TabPane graphTabPane;
     
     // Charts
-    @FXML private LineChart<String, Number> heartRateChart;
-    @FXML private LineChart<String, Number> bloodPressureChart;
-    @FXML private LineChart<String, Number> oxygenChart;
-    @FXML private LineChart<String, Number> temperatureChart;
+    @FXML private LineChart<Number, Number> heartRateChart;
+    @FXML private LineChart<Number, Number> bloodPressureChart;
+    @FXML private LineChart<Number, Number> oxygenChart;
+    @FXML private LineChart<Number, Number> temperatureChart;
+
+    // Chart window controls
+    @FXML private ComboBox<String> chartRangeComboBox;
+    @FXML private Button panLeftButton;
+    @FXML private Button zoomInButton;
+    @FXML private Button zoomOutButton;
+    @FXML private Button panRightButton;
+    @FXML private Label chartWindowLabel;
     
     // Latest vital signs display labels
     @FXML private Label heartRateLabel;
@@ -65,29 +91,153 @@ public class VitalsTabController {
     @FXML private Label o2StatusLabel;
     @FXML private Label tempLabel;
     @FXML private Label tempStatusLabel;
+
+    // Rolling statistics labels below the latest values
+    @FXML private Label heartRateStatsLabel;
+    @FXML private Label bpStatsLabel;
+    @FXML private Label o2StatsLabel;
+    @FXML private Label tempStatsLabel;
     
     // Reference to the patient
     private Patient patient;
     
     // Data for charts
-    private XYChart.Series<String, Number> heartRateSeries;
-    private XYChart.Series<String, Number> systolicSeries;
-    private XYChart.Series<String, Number> diastolicSeries;
-    private XYChart.Series<String, Number> oxygenSeries;
-    private XYChart.Series<String, Number> temperatureSeries;
+    private XYChart.Series<Number, Number> heartRateSeries;
+    private XYChart.Series<Number, Number> systolicSeries;
+    private XYChart.Series<Number, Number> diastolicSeries;
+    private XYChart.Series<Number, Number> oxygenSeries;
+    private XYChart.Series<Number, Number> temperatureSeries;
+
+    /** The chart lines with the points they show, updated by difference */
+    private final List<ChartLine> chartLines = new ArrayList<>();
+
+    /** Whether the charts are already due to be refreshed after a resize, zoom or pan */
+    private boolean chartsRefreshPending;
+
+    /** Time window shown by the charts; only the readings inside it are fetched */
+    private final ChartViewport viewport = new ChartViewport(toEpochMillis(LocalDateTime.now()));
+
+    /** Scene x of the mouse while a chart is dragged to pan, or NaN */
+    private double dragSceneX = Double.NaN;
+
+    /** Readings shown by the list, read a page at a time */
+    private VitalsList vitalsList;
+
+    /** Shows the changes of the patient's readings, whichever window made them */
+    private final Consumer<ChangeFeed.Change<VitalSign>> vitalsListener = change -> {
+        if (Platform.isFxApplicationThread()) {
+            applyChange(change);
+        } else {
+            Platform.runLater(() -> applyChange(change));
+        }
+    };
     
-    // Constants for normal vital ranges
-    private static final int MIN_HEART_RATE = 60;
-    private static final int MAX_HEART_RATE = 100;
-    private static final int MIN_SYSTOLIC = 90;
-    private static final int MAX_SYSTOLIC = 120;
-    private static final int MIN_DIASTOLIC = 60;
-    private static final int MAX_DIASTOLIC = 80;
-    private static final int MIN_OXYGEN = 95;
-    private static final int MAX_OXYGEN = 100;
-    private static final double MIN_TEMP = 36.5;
-    private static final double MAX_TEMP = 37.5;
+    /** Window of the statistics shown on the summary cards */
+    private static final VitalStatistics.Window SUMMARY_WINDOW = VitalStatistics.Window.of(Duration.ofHours(24));
+
+    /** Horizontal pixels per charted point; longer histories are downsampled to fit */
+    private static final double PIXELS_PER_POINT = 4;
+
+    /** Number of points charted before a chart was laid out */
+    private static final int DEFAULT_CHART_POINTS = 200;
+
+    /** Chart windows to choose from, by label; null shows the whole history */
+    private static final Map<String, Duration> CHART_RANGES = new LinkedHashMap<>();
+    static {
+        CHART_RANGES.put("Last 6 hours", Duration.ofHours(6));
+        CHART_RANGES.put("Last 24 hours", Duration.ofHours(24));
+        CHART_RANGES.put("Last 7 days", Duration.ofDays(7));
+        CHART_RANGES.put("Last 30 days", Duration.ofDays(30));
+        CHART_RANGES.put("All", null);
+    }
+
+    /** Factor of the window length per zoom step */
+    private static final double ZOOM_STEP = 1.5;
+
+    /** Part of the window length moved per pan step */
+    private static final double PAN_STEP = 0.5;
+
+    /**
+     * A line of a chart with the points it shows.
+     * New points are compared with the shown ones and only the nodes that differ are replaced,
+     * so adding or removing a reading changes a few nodes instead of rebuilding the chart.
+     */
+    private static class ChartLine {
+        private final LineChart<Number, Number> chart;
+        private final XYChart.Series<Number, Number> series;
+        private final Channel channel;
+
+        /** Times and values of the points shown */
+        private long[] times = new long[0];
+        private double[] values = new double[0];
+
+        ChartLine(LineChart<Number, Number> chart, XYChart.Series<Number, Number> series, Channel channel) {
+            this.chart = chart;
+            this.series = series;
+            this.channel = channel;
+        }
+
+        /**
+         * Gets the number of points that fit the chart's width
+         */
+        int maxPoints() {
+            double width = chart.getXAxis().getWidth();
+            return width > 0 ? Math.max(3, (int) (width / PIXELS_PER_POINT)) : DEFAULT_CHART_POINTS;
+        }
+
+        /**
+         * Shows new points, replacing only the nodes between the unchanged start and end of the line
+         */
+        void show(VitalDownsampler.Points points) {
+            int oldSize = times.length;
+            int newSize = points.size();
+            int prefix = 0;
+            while (prefix < oldSize && prefix < newSize && times[prefix] == points.getEpochMillis(prefix)
+                    && values[prefix] == points.getValue(prefix)) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < oldSize - prefix && suffix < newSize - prefix
+                    && times[oldSize - 1 - suffix] == points.getEpochMillis(newSize - 1 - suffix)
+                    && values[oldSize - 1 - suffix] == points.getValue(newSize - 1 - suffix)) {
+                suffix++;
+            }
+            List<XYChart.Data<Number, Number>> added = new ArrayList<>(newSize - prefix - suffix);
+            for (int i = prefix; i < newSize - suffix; i++) {
+                added.add(new XYChart.Data<>(points.getEpochMillis(i), points.getValue(i)));
+            }
+            series.getData().remove(prefix, oldSize - suffix);
+            series.getData().addAll(prefix, added);
+
+            times = new long[newSize];
+            values = new double[newSize];
+            for (int i = 0; i < newSize; i++) {
+                times[i] = points.getEpochMillis(i);
+                values[i] = points.getValue(i);
+            }
+        }
+    }
     
+    /**
+     * Data of the tab read in the background when the tab is loaded
+     */
+    private static final class VitalsSnapshot {
+        /** Times of the oldest and newest readings, or null */
+        private final long[] timeRange;
+
+        /** The newest reading, or null */
+        private final VitalSign latest;
+
+        /** Statistics of the summary window */
+        private final Map<Channel, VitalStatistics.Summary> statistics;
+
+        VitalsSnapshot(Patient patient) {
+            timeRange = patient.getVitals().getTimeRange();
+            latest = patient.getVitals().latest();
+            statistics = patient.getVitals().getStatistics(SUMMARY_WINDOW);
+        }
+    }
+
     /**
      * Initializes the controller after FXML is loaded
      */
@@ -109,9 +259,21 @@ public class VitalsTabController {
         bloodPressureChart.getData().addAll(systolicSeries, diastolicSeries);
         oxygenChart.getData().add(oxygenSeries);
         temperatureChart.getData().add(temperatureSeries);
+
+        chartLines.add(new ChartLine(heartRateChart, heartRateSeries, Channel.HEART_RATE));
+        chartLines.add(new ChartLine(bloodPressureChart, systolicSeries, Channel.SYSTOLIC));
+        chartLines.add(new ChartLine(bloodPressureChart, diastolicSeries, Channel.DIASTOLIC));
+        chartLines.add(new ChartLine(oxygenChart, oxygenSeries, Channel.OXYGEN_LEVEL));
+        chartLines.add(new ChartLine(temperatureChart, temperatureSeries, Channel.TEMPERATURE));
+
+        // Charts hidden in other tabs have no width yet; downsample again once they are laid out or resized
+        for (LineChart<Number, Number> chart : charts()) {
+            chart.getXAxis().widthProperty().addListener((obs, oldWidth, newWidth) -> scheduleChartsRefresh());
+        }
         
         // Set up listeners and actions
         setupButtonActions();
+        setupChartNavigation();
         setupListView();
         
         System.out.println("VitalsTabController initialized.");
@@ -122,9 +284,30 @@ public class VitalsTabController {
      * @param patient The patient whose vital signs to display
      */
     public void setPatient(Patient patient) {
+        close();
         this.patient = patient;
+        if (patient != null) {
+            patient.getVitals().getChanges().addListener(vitalsListener);
+            vitalsList = new VitalsList(patient.getVitals());
+            vitalsListView.setItems(vitalsList);
+        } else {
+            vitalsListView.setItems(FXCollections.observableArrayList());
+        }
         loadVitalsData();
     }
+
+    /**
+     * Stops following the patient's readings, e.g. when the dashboard is closed
+     */
+    public void close() {
+        if (patient != null) {
+            patient.getVitals().getChanges().removeListener(vitalsListener);
+        }
+        if (vitalsList != null) {
+            vitalsList.close();
+            vitalsList = null;
+        }
+    }
     
     /**
      * Sets up the button actions for upload, add, and remove vital buttons
@@ -140,6 +323,78 @@ public class VitalsTabController {
         removeVitalButton.setOnAction(e -> handleRemoveVital());
     }
     
+    /**
+     * Sets up zooming and panning of the charts: the range box and buttons, scrolling on a chart
+     * to zoom around the mouse, and dragging a chart to pan. Moves of the window are coalesced
+     * into one refresh, which fetches only the readings inside the new window.
+     */
+    private void setupChartNavigation() {
+        chartRangeComboBox.getItems().setAll(CHART_RANGES.keySet());
+        chartRangeComboBox.setValue("All");
+        viewport.showAll();
+        chartRangeComboBox.setOnAction(e -> {
+            String range = chartRangeComboBox.getValue();
+            if (range == null) {
+                return;
+            }
+            Duration duration = CHART_RANGES.get(range);
+            if (duration == null) {
+                viewport.showAll();
+            } else {
+                viewport.showLast(duration);
+            }
+        });
+
+        zoomInButton.setOnAction(e -> navigate(() -> viewport.zoom(1 / ZOOM_STEP, viewport.getEnd())));
+        zoomOutButton.setOnAction(e -> navigate(() -> viewport.zoom(ZOOM_STEP, viewport.getEnd())));
+        panLeftButton.setOnAction(e -> navigate(() -> viewport.pan(-PAN_STEP)));
+        panRightButton.setOnAction(e -> navigate(() -> viewport.pan(PAN_STEP)));
+
+        for (LineChart<Number, Number> chart : charts()) {
+            TimeAxis axis = (TimeAxis) chart.getXAxis();
+            chart.setOnScroll(e -> {
+                if (e.getDeltaY() != 0) {
+                    long center = timeAt(axis, e.getSceneX());
+                    navigate(() -> viewport.zoom(e.getDeltaY() > 0 ? 1 / ZOOM_STEP : ZOOM_STEP, center));
+                }
+            });
+            chart.setOnMousePressed(e -> dragSceneX = e.getSceneX());
+            chart.setOnMouseDragged(e -> {
+                if (!Double.isNaN(dragSceneX)) {
+                    long moved = timeAt(axis, dragSceneX) - timeAt(axis, e.getSceneX());
+                    dragSceneX = e.getSceneX();
+                    navigate(() -> viewport.panBy(moved));
+                }
+            });
+            chart.setOnMouseReleased(e -> dragSceneX = Double.NaN);
+        }
+
+        viewport.setOnChange(this::scheduleChartsRefresh);
+    }
+
+    /**
+     * Moves the chart window by hand; the range box no longer matches the window
+     */
+    private void navigate(Runnable move) {
+        chartRangeComboBox.getSelectionModel().clearSelection();
+        move.run();
+    }
+
+    /**
+     * Gets the time under a scene x coordinate of a chart's time axis
+     */
+    private static long timeAt(TimeAxis axis, double sceneX) {
+        double x = axis.sceneToLocal(sceneX, 0).getX();
+        return axis.getValueForDisplay(x).longValue();
+    }
+
+    /**
+     * Gets the charts of the tab
+     */
+    private List<LineChart<Number, Number>> charts() {
+        return List.of(heartRateChart, bloodPressureChart, oxygenChart, temperatureChart);
+    }
+    
     /**
      * Sets up the list view for vital signs
      */
@@ -199,7 +454,9 @@ public class VitalsTabController {
     }
     
     /**
-     * Loads all vital signs data for the patient
+     * Loads the charts and summary of the patient's vital signs.
+     * The statistics are read in the background, and the tab is filled in once they are ready;
+     * the list reads the readings on screen itself.
      */
     public void loadVitalsData() {
         if (patient == null) {
@@ -209,110 +466,164 @@ public class VitalsTabController {
         
         System.out.println("Loading vital signs for patient: " + patient.getName());
         
-        ArrayList<VitalSign> vitals = patient.viewPreviousVitals();
-        
-        // Update the ListView
-        Platform.runLater(() -> {
-            ObservableList<VitalSign> vitalsData = FXCollections.observableArrayList(vitals);
-            vitalsListView.setItems(vitalsData);
-            
-            // Clear existing chart data
-            heartRateSeries.getData().clear();
-            systolicSeries.getData().clear();
-            diastolicSeries.getData().clear();
-            oxygenSeries.getData().clear();
-            temperatureSeries.getData().clear();
-            
-            // Populate chart series with data
-            for (VitalSign vital : vitals) {
-                String dateTime = DateUtil.format(vital.getDateTimeRecorded());
-                
-                // Add data to chart series
-                heartRateSeries.getData().add(new XYChart.Data<>(dateTime, vital.getHeartRate()));
-                
-                // Parse blood pressure (format: "120/80")
-                String[] bpParts = vital.getBloodPressure().split("/");
-                if (bpParts.length == 2) {
-                    try {
-                        int systolic = Integer.parseInt(bpParts[0]);
-                        int diastolic = Integer.parseInt(bpParts[1]);
-                        
-                        systolicSeries.getData().add(new XYChart.Data<>(dateTime, systolic));
-                        diastolicSeries.getData().add(new XYChart.Data<>(dateTime, diastolic));
-                    } catch (NumberFormatException e) {
-                        System.err.println("Error parsing blood pressure: " + vital.getBloodPressure());
-                    }
-                }
-                
-                oxygenSeries.getData().add(new XYChart.Data<>(dateTime, vital.getOxygenLevel()));
-                temperatureSeries.getData().add(new XYChart.Data<>(dateTime, vital.getTemperature()));
+        Patient loading = patient;
+        BackgroundLoader.load("vitals:" + loading.getId(), () -> new VitalsSnapshot(loading), snapshot -> {
+            if (patient != loading) {
+                return;
             }
+            // Charts show at most one point per few pixels of the window, whatever the length of the history
+            if (snapshot.timeRange == null) {
+                viewport.clearDataRange();
+            } else {
+                viewport.setDataRange(snapshot.timeRange[0], snapshot.timeRange[1]);
+            }
+            refreshCharts();
+            updateVitalSummaryCards(snapshot.latest);
+            updateStatisticsLabels(snapshot.statistics);
             
-            // Update summary cards with latest values
-            updateVitalSummaryCards(vitals);
+            System.out.println("Loaded " + vitalsList.size() + " vital sign records.");
         });
-        
-        System.out.println("Loaded " + vitals.size() + " vital sign records.");
+    }
+
+    /**
+     * Shows a change of the patient's readings
+     *
+     * @param change The change reported by the patient's vitals database
+     */
+    private void applyChange(ChangeFeed.Change<VitalSign> change) {
+        if (patient == null) {
+            return;
+        }
+        switch (change.getType()) {
+            case ADDED:
+            case REMOVED:
+                showChangedVitals();
+                break;
+            default:
+                loadVitalsData();
+                break;
+        }
+    }
+
+    /**
+     * Shows a reading that was just added or removed, without reloading the other readings;
+     * the list updates the rows from the reading on by itself
+     */
+    private void showChangedVitals() {
+        updateChartDataRange();
+        refreshCharts();
+        refreshSummary();
+    }
+
+    /**
+     * Tells the chart window the time span of the history, so a window following the newest
+     * readings moves along and zooming and panning stop at the ends of the history
+     */
+    private void updateChartDataRange() {
+        long[] timeRange = patient.getVitals().getTimeRange();
+        if (timeRange == null) {
+            viewport.clearDataRange();
+        } else {
+            viewport.setDataRange(timeRange[0], timeRange[1]);
+        }
+    }
+
+    /**
+     * Fetches the readings inside the chart window, downsampled to the charts' widths,
+     * and updates the points that changed
+     */
+    private void refreshCharts() {
+        if (patient == null) {
+            return;
+        }
+        long start = viewport.getStart();
+        long end = viewport.getEnd();
+        for (ChartLine line : chartLines) {
+            line.show(patient.getVitals().downsample(line.channel, start, end, line.maxPoints()));
+        }
+        for (LineChart<Number, Number> chart : charts()) {
+            ((TimeAxis) chart.getXAxis()).setRange(start, end);
+        }
+        chartWindowLabel.setText(DateUtil.format(toDateTime(start)) + " to " + DateUtil.format(toDateTime(end)));
+    }
+
+    /**
+     * Refreshes the charts once after a burst of resize, zoom or pan events
+     */
+    private void scheduleChartsRefresh() {
+        if (!chartsRefreshPending) {
+            chartsRefreshPending = true;
+            Platform.runLater(() -> {
+                chartsRefreshPending = false;
+                refreshCharts();
+            });
+        }
+    }
+
+    /**
+     * Updates the summary cards and statistics from the vitals database
+     */
+    private void refreshSummary() {
+        updateVitalSummaryCards(patient.getVitals().latest());
+        updateStatisticsLabels(patient.getVitals().getStatistics(SUMMARY_WINDOW));
     }
     
     /**
      * Updates the summary cards with the latest vital signs
      * 
-     * @param vitals List of vital signs to analyze
+     * @param latest The most recent vital sign, or null if there are none
      */
-    private void updateVitalSummaryCards(List<VitalSign> vitals) {
-        if (vitals == null || vitals.isEmpty()) {
-            resetSummaryCards();
-            return;
-        }
-        
-        // Find the most recent vital sign
-        VitalSign latest = vitals.stream()
-                .sorted((v1, v2) -> v2.getDateTimeRecorded().compareTo(v1.getDateTimeRecorded()))
-                .findFirst()
-                .orElse(null);
-                
+    private void updateVitalSummaryCards(VitalSign latest) {
         if (latest == null) {
             resetSummaryCards();
             return;
         }
         
+        CompiledAlertRules rules = alertRules();
+
         // Update heart rate card
         heartRateLabel.setText(String.format("%.0f bpm", latest.getHeartRate()));
-        updateStatusLabel(heartRateStatusLabel, 
-                           latest.getHeartRate() >= MIN_HEART_RATE && 
-                           latest.getHeartRate() <= MAX_HEART_RATE);
+        updateStatusLabel(heartRateStatusLabel, rules.isInRange(Channel.HEART_RATE, latest.getHeartRate()));
         
         // Update blood pressure card
         bpLabel.setText(latest.getBloodPressure() + " mmHg");
-        // Parse blood pressure
-        String[] bpParts = latest.getBloodPressure().split("/");
-        boolean bpNormal = false;
-        if (bpParts.length == 2) {
-            try {
-                int systolic = Integer.parseInt(bpParts[0]);
-                int diastolic = Integer.parseInt(bpParts[1]);
-                bpNormal = systolic >= MIN_SYSTOLIC && systolic <= MAX_SYSTOLIC && 
-                           diastolic >= MIN_DIASTOLIC && diastolic <= MAX_DIASTOLIC;
-            } catch (NumberFormatException e) {
-                bpNormal = false;
-            }
-        }
+        boolean bpNormal = latest.hasBloodPressureValues() &&
+                           rules.isInRange(Channel.SYSTOLIC, latest.getSystolic()) &&
+                           rules.isInRange(Channel.DIASTOLIC, latest.getDiastolic());
         updateStatusLabel(bpStatusLabel, bpNormal);
         
         // Update oxygen level card
         o2Label.setText(String.format("%.0f%%", latest.getOxygenLevel()));
-        updateStatusLabel(o2StatusLabel, 
-                           latest.getOxygenLevel() >= MIN_OXYGEN && 
-                           latest.getOxygenLevel() <= MAX_OXYGEN);
+        updateStatusLabel(o2StatusLabel, rules.isInRange(Channel.OXYGEN_LEVEL, latest.getOxygenLevel()));
         
         // Update temperature card
         tempLabel.setText(String.format("%.1f°C", latest.getTemperature()));
-        updateStatusLabel(tempStatusLabel, 
-                           latest.getTemperature() >= MIN_TEMP && 
-                           latest.getTemperature() <= MAX_TEMP);
+        updateStatusLabel(tempStatusLabel, rules.isInRange(Channel.TEMPERATURE, latest.getTemperature()));
     }
     
+    /**
+     * Shows the rolling statistics of the summary window below the latest values
+     *
+     * @param statistics Statistics by measurement, kept up to date by the vitals database
+     */
+    private void updateStatisticsLabels(Map<Channel, VitalStatistics.Summary> statistics) {
+        String window = SUMMARY_WINDOW.getLabel() + ": ";
+        VitalStatistics.Summary heartRate = statistics.get(Channel.HEART_RATE);
+        VitalStatistics.Summary systolic = statistics.get(Channel.SYSTOLIC);
+        VitalStatistics.Summary diastolic = statistics.get(Channel.DIASTOLIC);
+        VitalStatistics.Summary oxygen = statistics.get(Channel.OXYGEN_LEVEL);
+        VitalStatistics.Summary temperature = statistics.get(Channel.TEMPERATURE);
+
+        heartRateStatsLabel.setText(heartRate.isEmpty() ? window + "--" : String.format("%savg %.0f (%.0f-%.0f)",
+                window, heartRate.getMean(), heartRate.getMin(), heartRate.getMax()));
+        bpStatsLabel.setText(systolic.isEmpty() ? window + "--" : String.format("%savg %.0f/%.0f",
+                window, systolic.getMean(), diastolic.getMean()));
+        o2StatsLabel.setText(oxygen.isEmpty() ? window + "--" : String.format("%savg %.0f%% (min %.0f%%)",
+                window, oxygen.getMean(), oxygen.getMin()));
+        tempStatsLabel.setText(temperature.isEmpty() ? window + "--" : String.format("%savg %.1f (max %.1f)",
+                window, temperature.getMean(), temperature.getMax()));
+    }
+
     /**
      * Updates a status label based on whether the value is normal or not
      * 
@@ -351,42 +662,21 @@ public class VitalsTabController {
     }
     
     /**
-     * Checks if any vital sign is outside the normal range
+     * Checks if a vital sign is abnormal under the patient's alert rules
      * 
      * @param vital The vital sign to check
-     * @return True if any vital is out of range, false otherwise
+     * @return True if any vital is out of range or a compound rule matches, false otherwise
      */
     private boolean isAnyVitalOutOfRange(VitalSign vital) {
         if (vital == null) return false;
-        
-        // Check heart rate
-        boolean heartRateNormal = vital.getHeartRate() >= MIN_HEART_RATE && 
-                                 vital.getHeartRate() <= MAX_HEART_RATE;
-        
-        // Check blood pressure
-        boolean bpNormal = true;
-        String[] bpParts = vital.getBloodPressure().split("/");
-        if (bpParts.length == 2) {
-            try {
-                int systolic = Integer.parseInt(bpParts[0]);
-                int diastolic = Integer.parseInt(bpParts[1]);
-                bpNormal = systolic >= MIN_SYSTOLIC && systolic <= MAX_SYSTOLIC && 
-                          diastolic >= MIN_DIASTOLIC && diastolic <= MAX_DIASTOLIC;
-            } catch (NumberFormatException e) {
-                bpNormal = false;
-            }
-        }
-        
-        // Check oxygen level
-        boolean oxygenNormal = vital.getOxygenLevel() >= MIN_OXYGEN && 
-                              vital.getOxygenLevel() <= MAX_OXYGEN;
-        
-        // Check temperature
-        boolean tempNormal = vital.getTemperature() >= MIN_TEMP && 
-                            vital.getTemperature() <= MAX_TEMP;
-        
-        // Return true if any vital is out of range
-        return !heartRateNormal || !bpNormal || !oxygenNormal || !tempNormal;
+        return alertRules().isAbnormal(vital);
+    }
+
+    /**
+     * Gets the alert rules of the patient, which define the normal ranges shown
+     */
+    private CompiledAlertRules alertRules() {
+        return patient != null ? AlertRules.forPatient(patient.getId()) : AlertRules.getDefaults();
     }
     
     /**
@@ -395,13 +685,24 @@ public class VitalsTabController {
      * @param vital The vital sign to highlight
      */
     private void highlightDataPoint(VitalSign vital) {
-        // Implement highlighting for selected vital sign in charts
-        String dateTime = DateUtil.format(vital.getDateTimeRecorded());
+        if (vital.getDateTimeRecorded() == null) {
+            return;
+        }
+        long time = toEpochMillis(vital.getDateTimeRecorded());
+
+        // Bring the reading into the chart window first
+        if (time < viewport.getStart() || time > viewport.getEnd()) {
+            navigate(() -> viewport.panBy(time - (viewport.getStart() + viewport.getEnd()) / 2));
+            refreshCharts();
+        }
         
         // Find the corresponding data points in each chart
-        for (XYChart.Series<String, Number> series : heartRateChart.getData()) {
-            for (XYChart.Data<String, Number> dataPoint : series.getData()) {
-                if (dataPoint.getXValue().equals(dateTime)) {
+        for (XYChart.Series<Number, Number> series : heartRateChart.getData()) {
+            for (XYChart.Data<Number, Number> dataPoint : series.getData()) {
+                if (dataPoint.getNode() == null) {
+                    continue;
+                }
+                if (dataPoint.getXValue().longValue() == time) {
                     // Apply highlight style
                     dataPoint.getNode().setStyle("-fx-background-color: #ff9800, white; -fx-background-radius: 5px; -fx-padding: 5px;");
                 } else {
@@ -412,6 +713,14 @@ public class VitalsTabController {
         }
     }
     
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return VitalSeries.toEpochMillis(dateTime);
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+    
     /**
      * Handles uploading vitals from CSV file
      */
@@ -429,17 +738,15 @@ public class VitalsTabController {
         
         File file = fileChooser.showOpenDialog(vitalsRoot.getScene().getWindow());
         if (file != null) {
-            List<String> alerts = patient.uploadVitalsFromCSV(file.getAbsolutePath());
-            showAlert("Vitals Uploaded", "Vitals uploaded successfully from: " + file.getName(), AlertType.INFORMATION);
+            VitalsImportReport report = patient.uploadVitalsFromCSV(file.getAbsolutePath());
+            showAlert("Vitals Uploaded", "Vitals uploaded from: " + file.getName() + "\n" + report.getSummary(),
+                      report.isImported() ? AlertType.INFORMATION : AlertType.ERROR);
             
             // Show alerts for critical vitals
-            if (!alerts.isEmpty()) {
-                String alertMessage = String.join("\n", alerts);
+            if (!report.getAlerts().isEmpty()) {
+                String alertMessage = String.join("\n", report.getAlerts());
                 showAlert("Critical Vitals Detected", alertMessage, AlertType.WARNING);
             }
-            
-            // Refresh the data
-            loadVitalsData();
         }
     }
     
@@ -503,12 +810,11 @@ public class VitalsTabController {
                     double heartRate = Double.parseDouble(heartRateField.getText());
                     int systolic = Integer.parseInt(systolicField.getText());
                     int diastolic = Integer.parseInt(diastolicField.getText());
-                    String bloodPressure = systolic + "/" + diastolic;
                     double oxygenLevel = Double.parseDouble(oxygenField.getText());
                     double temperature = Double.parseDouble(tempField.getText());
                     
                     return new VitalSign(patient.getId(), heartRate, oxygenLevel, 
-                                         bloodPressure, temperature, LocalDateTime.now());
+                                         systolic, diastolic, temperature, LocalDateTime.now());
                 } catch (NumberFormatException e) {
                     showAlert("Invalid Input", "Please enter valid numbers for all fields", AlertType.ERROR);
                     return null;
@@ -521,7 +827,6 @@ public class VitalsTabController {
         result.ifPresent(vital -> {
             // Add the vital sign to patient
             String alert = patient.uploadVitalSign(vital);
-            loadVitalsData();
             
             // Show alert if critical
             if (alert != null && !alert.isEmpty()) {
@@ -544,7 +849,6 @@ public class VitalsTabController {
             Optional<ButtonType> result = confirmAlert.showAndWait();
             if (result.isPresent() && result.get() == ButtonType.OK) {
                 patient.removeVital(selected);
-                loadVitalsData();
                 showAlert("Vital Removed", "Vital sign record has been removed", AlertType.INFORMATION);
             }
         } else {
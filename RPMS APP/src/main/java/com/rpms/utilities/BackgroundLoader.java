@@ -0,0 +1,101 @@
+package com.rpms.utilities;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+/**
+ * Prepares the data shown by dashboards off the JavaFX Application Thread.
+ * <p>
+ * A load reads and filters data on a background thread, e.g. into the ObservableLists of a view,
+ * and hands the result back to the Application Thread in one step, where it is put on screen.
+ * Dashboards start all their loads at once and appear immediately; each view fills in as soon
+ * as its own data is ready, instead of the window waiting for the slowest load.
+ * <p>
+ * Loads are keyed (for example "doctor:doc1:appointments"). A new load with the key of a load
+ * that has not finished yet supersedes it: the older load is cancelled, and its result is dropped
+ * if it was already running, so a view never shows older data after newer data.
+ * <p>
+ * The registries are plain collections changed on the Application Thread, so a load must not read
+ * them itself: copy what it needs on the Application Thread before starting the load, and leave only
+ * filtering, sorting and lookups to the loader thread. Data kept behind a lock, such as the vital
+ * signs in the {@link PatientStore}, may be read by the load through its locked queries. A load is
+ * run once; a load that fails is reported and its view keeps the data it shows.
+ * <p>
+ * The number of loader threads can be configured with the system property rpms.ui.loaderThreads
+ * (default 2). Loads must be started on the Application Thread.
+ */
+public class BackgroundLoader {
+
+    /** Number of loader threads */
+    private static final int LOADER_THREADS = Math.max(1, Integer.getInteger("rpms.ui.loaderThreads", 2));
+
+    /** Loader threads; daemons so they never keep the application alive */
+    private static final ExecutorService loader = Executors.newFixedThreadPool(LOADER_THREADS, r -> {
+        Thread thread = new Thread(r, "rpms-ui-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The latest load of each key that has not finished; only used on the Application Thread */
+    private static final Map<String, Task<?>> latest = new HashMap<>();
+
+    /**
+     * Prepares data in the background and shows it on the Application Thread
+     *
+     * @param key Identifies the view being loaded
+     * @param work Prepares the data; runs on a loader thread, must not touch the scene graph
+     *             and must only read copies or data kept behind a lock
+     * @param publish Shows the data; runs on the Application Thread
+     * @param <T> Type of the data
+     * @return The load, e.g. to wait for it
+     * @throws IllegalStateException If called on another thread than the Application Thread
+     */
+    public static <T> Task<T> load(String key, Callable<T> work, Consumer<T> publish) {
+        if (!Platform.isFxApplicationThread()) {
+            throw new IllegalStateException("Loads must be started on the JavaFX Application Thread: " + key);
+        }
+        Task<T> task = new Task<>() {
+            @Override
+            protected T call() throws Exception {
+                return work.call();
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (finished(key, task)) {
+                publish.accept(task.getValue());
+            }
+        });
+        task.setOnFailed(e -> {
+            finished(key, task);
+            System.err.println("Error loading " + key + ": " + task.getException());
+        });
+        task.setOnCancelled(e -> finished(key, task));
+
+        Task<?> previous = latest.put(key, task);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        loader.execute(task);
+        return task;
+    }
+
+    /**
+     * Forgets a finished load
+     *
+     * @return true if it is still the latest load of its key, so its result is current
+     */
+    private static boolean finished(String key, Task<?> task) {
+        if (latest.get(key) != task) {
+            return false;
+        }
+        latest.remove(key);
+        return true;
+    }
+}
@@ -0,0 +1,162 @@
+package com.rpms.utilities;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Change events of a registry, e.g. the doctors of the system or the readings of a patient.
+ * <p>
+ * The registry reports each element added, removed or updated, so views showing it can apply the
+ * change instead of reading the whole registry again, and every open window stays in sync without
+ * polling. Changes too large to report one by one, such as loading data from disk or importing a
+ * batch of readings, are reported as a reload, after which views read the registry again.
+ * <p>
+ * Listeners are called on the thread that changed the registry, after the change, so they should
+ * only hand the work off, e.g. with Platform.runLater. All methods are thread-safe.
+ *
+ * @param <T> Type of the elements
+ */
+public class ChangeFeed<T> {
+
+    /**
+     * A change of a registry
+     *
+     * @param <T> Type of the elements
+     */
+    public static final class Change<T> {
+        /** Kinds of change */
+        public enum Type {
+            /** An element was added */
+            ADDED,
+            /** An element was removed */
+            REMOVED,
+            /** An element was changed in place */
+            UPDATED,
+            /** Any number of elements changed; the registry should be read again */
+            RELOADED
+        }
+
+        /** Kind of change */
+        private final Type type;
+
+        /** The changed element; for a reload the first element changed, or null */
+        private final T element;
+
+        private Change(Type type, T element) {
+            this.type = type;
+            this.element = element;
+        }
+
+        /**
+         * Gets the kind of change
+         * @return Kind of change
+         */
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * Gets the changed element.
+         * A reload of an ordered registry may name the first element changed; elements before it are unchanged.
+         * @return The element, or null for a reload of the whole registry
+         */
+        public T getElement() {
+            return element;
+        }
+
+        @Override
+        public String toString() {
+            return type + (element != null ? " " + element : "");
+        }
+    }
+
+    /** Listeners called with each change */
+    private final List<Consumer<Change<T>>> listeners = new CopyOnWriteArrayList<>();
+
+    /** Number of changes reported */
+    private final AtomicLong version = new AtomicLong();
+
+    // ===== Listeners =====
+
+    /**
+     * Registers a listener for changes
+     * @param listener Called with each change, on the thread that made it
+     */
+    public void addListener(Consumer<Change<T>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener registered with {@link #addListener}
+     * @param listener The listener
+     */
+    public void removeListener(Consumer<Change<T>> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Gets the number of changes reported so far.
+     * A view that read the registry can compare it with the number before reading to tell
+     * whether the registry changed in the meantime.
+     *
+     * @return Number of changes
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    // ===== Changes =====
+
+    /**
+     * Reports an added element
+     * @param element The element
+     */
+    public void added(T element) {
+        publish(new Change<>(Change.Type.ADDED, element));
+    }
+
+    /**
+     * Reports a removed element
+     * @param element The element
+     */
+    public void removed(T element) {
+        publish(new Change<>(Change.Type.REMOVED, element));
+    }
+
+    /**
+     * Reports an element changed in place
+     * @param element The element
+     */
+    public void updated(T element) {
+        publish(new Change<>(Change.Type.UPDATED, element));
+    }
+
+    /**
+     * Reports that any number of elements changed
+     */
+    public void reloaded() {
+        publish(new Change<>(Change.Type.RELOADED, null));
+    }
+
+    /**
+     * Reports that any number of elements of an ordered registry changed, none before a given one,
+     * e.g. after a batch of readings was inserted by time
+     * @param from The first element changed
+     */
+    public void reloaded(T from) {
+        publish(new Change<>(Change.Type.RELOADED, from));
+    }
+
+    private void publish(Change<T> change) {
+        version.incrementAndGet();
+        for (Consumer<Change<T>> listener : listeners) {
+            try {
+                listener.accept(change);
+            } catch (RuntimeException e) {
+                System.err.println("Error in change listener: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -1,19 +1,59 @@
 package com.rpms.utilities;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.rpms.AppointmentHandling.Appointment;
+import com.rpms.AppointmentHandling.AppointmentCodec;
 import com.rpms.AppointmentHandling.AppointmentManager;
 import com.rpms.ChatVideoConsultation.ChatHistory;
 import com.rpms.ChatVideoConsultation.ChatMessage;
 import com.rpms.ChatVideoConsultation.VideoCall;
+import com.rpms.HealthData.VitalSign;
 import com.rpms.Users.Administrator;
 import com.rpms.Users.Doctor;
 import com.rpms.Users.Patient;
+import com.rpms.Users.User;
+
+import javafx.application.Platform;
 
 /**
- * Manages automatic data persistence operations
+ * Manages automatic data persistence operations.
+ * By default every mutation is appended to a write-ahead {@link Journal} and the full
+ * snapshot is only rewritten at checkpoints (saveAllData). On startup the journal is
+ * replayed on top of the last snapshot. Run with -Drpms.journal=false to fall back to
+ * writing a full snapshot on every mutation.
+ * Journal syncs, per-user files and snapshots are written in the background by the
+ * {@link PersistenceScheduler}, which merges bursts of mutations into a single write.
+ * Snapshot files are tracked individually, so a checkpoint only rewrites the files whose
+ * collections changed since the last one.
+ * On startup the user registry and schedules are read in parallel; chat histories are only read
+ * when they are first accessed. System logs are kept by the {@link SystemLogStore}. Vital signs are stored per patient by the
+ * {@link PatientStore} and read when a patient's history is needed.
  */
 public class DataManager {
 
@@ -24,10 +64,124 @@ public class DataManager {
     private static final String APPOINTMENTS_FILE = DATA_DIR + "/appointments.ser";
     private static final String VIDEOCALLS_FILE = DATA_DIR + "/videocalls.ser";
     private static final String CHAT_HISTORIES_FILE = DATA_DIR + "/chat_histories.ser";
-    private static final String LOGS_FILE = DATA_DIR + "/logs.ser";
+
+    /** Marker holding the journal generation the current snapshot was taken at */
+    private static final String CHECKPOINT_FILE = DATA_DIR + "/checkpoint";
+
+    /** Suffix of snapshot files that are written but not yet committed */
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /** Whether mutations are journaled instead of triggering a full snapshot */
+    private static final boolean JOURNAL_ENABLED =
+            !"false".equalsIgnoreCase(System.getProperty("rpms.journal"));
+
+    /** Number of journal records after which a checkpoint is written automatically */
+    private static final int CHECKPOINT_THRESHOLD = Integer.getInteger("rpms.journal.checkpoint", 5000);
+
+    /**
+     * The snapshot files, each holding one collection
+     */
+    private enum DataFile {
+        DOCTORS(DOCTORS_FILE),
+        PATIENTS(PATIENTS_FILE),
+        ADMINS(ADMINS_FILE),
+        APPOINTMENTS(APPOINTMENTS_FILE),
+        VIDEOCALLS(VIDEOCALLS_FILE),
+        CHATS(CHAT_HISTORIES_FILE);
+
+        /** Path of the snapshot file */
+        private final String path;
+
+        DataFile(String path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * Copies of the changed collections taken for a checkpoint
+     */
+    private static final class Snapshot {
+        /** Journal generation started when the copies were taken; older segments are covered by them */
+        private final long generation;
+
+        /** Serialized collections by file */
+        private final EnumMap<DataFile, byte[]> files;
+
+        Snapshot(long generation, EnumMap<DataFile, byte[]> files) {
+            this.generation = generation;
+            this.files = files;
+        }
+    }
+
+    /**
+     * Files holding the two sides of a doctor-patient link (Doctor.patients and Patient.physician)
+     */
+    private static final Set<DataFile> LINK_FILES = Collections.unmodifiableSet(EnumSet.of(
+            DataFile.DOCTORS, DataFile.PATIENTS));
+
+    /** Files whose collections changed since they were last written; everything until data is loaded */
+    private static final EnumSet<DataFile> dirtyFiles = EnumSet.allOf(DataFile.class);
+
+    /** Files that are not needed to log in, and are read the first time they are accessed */
+    private static final Set<DataFile> LAZY_FILES = Collections.unmodifiableSet(EnumSet.of(
+            DataFile.CHATS));
+
+    /** Number of threads reading snapshot files on startup */
+    private static final int LOADER_THREADS = 4;
+
+    /** Lazily loaded files that have not been read yet */
+    private static final EnumSet<DataFile> unloadedFiles = EnumSet.noneOf(DataFile.class);
+
+    /** Updates to lazily loaded files that arrived before the file was read, in order */
+    private static final Map<DataFile, List<Runnable>> deferredUpdates = new EnumMap<>(DataFile.class);
+
+    /** Guards reading lazily loaded files and their deferred updates */
+    private static final Object lazyLock = new Object();
+
+    /** Whether the data was loaded; the data in memory is authoritative from then on */
+    private static volatile boolean dataLoaded = false;
+
+    /** Time spent in loadAllData on startup, in milliseconds */
+    private static long loadMillis;
+
+    /** Whether the time-to-login startup metric was logged */
+    private static boolean loginScreenReported = false;
+
+    /** Number of files written by the last checkpoint */
+    private static int lastSaveFileCount;
+
+    /** Number of bytes written by the last checkpoint */
+    private static long lastSaveBytes;
+
+    /** Copies of the changed collections not written yet, or null; guarded by snapshotLock */
+    private static Snapshot pendingSnapshot;
+
+    /** Guards the snapshot not written yet */
+    private static final Object snapshotLock = new Object();
+
+    /** Whether a snapshot is due to be taken on the Application Thread */
+    private static final AtomicBoolean snapshotRequested = new AtomicBoolean();
 
     private static ArrayList<ChatHistory> chatHistories = new ArrayList<>();
 
+    /** The write-ahead journal, opened on first use */
+    private static Journal journal;
+
+    /** Guards opening and replacing the journal */
+    private static final Object journalLock = new Object();
+
+    /** True while journal records are being replayed, so replay does not journal itself again */
+    private static volatile boolean replaying = false;
+
+    /** Doctor-patient links seen during replay, resolved once all users are registered */
+    private static final List<String[]> pendingLinks = new ArrayList<>();
+
+    /** Keys of each replayed patient's vitals already in the snapshot, so replay does not add them twice */
+    private static final Map<String, Set<String>> snapshotVitalKeys = new HashMap<>();
+
+    /** Keys of chat messages already in the snapshot, so replay does not add them twice */
+    private static final Set<String> snapshotMessageKeys = new HashSet<>();
+
     /**
      * Initializes the data directory
      */
@@ -40,45 +194,174 @@ public class DataManager {
     }
 
     /**
-     * Saves all system data automatically
+     * Saves all system data automatically.
+     * This is a checkpoint: a pending checkpoint marker is written, the changed collections are
+     * written to temporary files, and committing the marker makes the snapshot valid. Only then are
+     * the files swapped in and the journal segments covered by the snapshot deleted.
+     * Files whose collections did not change since the last checkpoint are left untouched.
+     * <p>
+     * The changed collections are copied on the calling thread, which must own them: the
+     * Application Thread once the UI is shown.
      */
     public static void saveAllData() {
-        initDataDirectory();
+        takeSnapshot();
+        writeSnapshot();
+    }
 
-        // Save doctors
-        SerializationUtil.serializeObject(Administrator.getDoctors(), DOCTORS_FILE);
+    /**
+     * Copies the collections changed since the last snapshot, so the background writer never
+     * reads the live collections. Must be called on the thread that owns them.
+     * Snapshots that were not written yet are merged with this one.
+     */
+    private static void takeSnapshot() {
+        EnumSet<DataFile> changed;
+        synchronized (dirtyFiles) {
+            changed = EnumSet.copyOf(dirtyFiles);
+            dirtyFiles.clear();
+        }
+        if (changed.isEmpty() && !PatientStore.hasUnsavedChanges()
+                && (!JOURNAL_ENABLED || journal().getRecordCount() == 0)) {
+            return; // Nothing changed since the last checkpoint
+        }
 
-        // Save patients
-        SerializationUtil.serializeObject(Administrator.getPatients(), PATIENTS_FILE);
+        // Records appended from now on belong to the next checkpoint; the copies include all older ones
+        long generation = JOURNAL_ENABLED ? journal().rotate() : readCheckpoint();
 
-        // Save administrators
-        SerializationUtil.serializeObject(Administrator.getAdministrators(), ADMINS_FILE);
+        EnumMap<DataFile, byte[]> files = new EnumMap<>(DataFile.class);
+        try {
+            for (DataFile file : changed) {
+                files.put(file, serializeSnapshotFile(file));
+            }
+        } catch (IOException e) {
+            System.err.println("Error copying data for a snapshot: " + e.getMessage());
+            e.printStackTrace();
+            markDirty(changed);
+            return;
+        }
+        synchronized (snapshotLock) {
+            if (pendingSnapshot != null) {
+                // Files copied earlier did not change since, unless they were copied again
+                pendingSnapshot.files.forEach(files::putIfAbsent);
+            }
+            pendingSnapshot = new Snapshot(generation, files);
+        }
+    }
 
-        // Save appointments
-        SerializationUtil.serializeObject(AppointmentManager.getAppointments(), APPOINTMENTS_FILE);
+    /**
+     * Writes the snapshot taken last as a checkpoint, if it was not written yet
+     */
+    private static synchronized void writeSnapshot() {
+        Snapshot snapshot;
+        synchronized (snapshotLock) {
+            snapshot = pendingSnapshot;
+            pendingSnapshot = null;
+        }
+        if (snapshot == null) {
+            return;
+        }
+        initDataDirectory();
+        Set<DataFile> changed = snapshot.files.keySet();
 
-        // Save video calls
-        SerializationUtil.serializeObject(AppointmentManager.getVideoCalls(), VIDEOCALLS_FILE);
+        // Vital sign shards are written first, so no reading is only in journal segments about to be deleted
+        int shards = PatientStore.flushAll();
+        if (shards < 0) {
+            System.err.println("Writing vital sign shards failed - keeping journal for recovery");
+            markDirty(changed);
+            return;
+        }
 
-        // Save chat histories
-        SerializationUtil.serializeObject(chatHistories, CHAT_HISTORIES_FILE);
+        // The pending marker flags the temporary files as incomplete until it is committed
+        boolean written = writePendingCheckpoint(snapshot.generation);
+        long bytes = 0;
+        for (Map.Entry<DataFile, byte[]> file : snapshot.files.entrySet()) {
+            if (!written) {
+                break;
+            }
+            written = SerializationUtil.writeBytes(file.getValue(), file.getKey().path + TMP_SUFFIX);
+            bytes += file.getValue().length;
+        }
+        if (!written || !moveFile(new File(CHECKPOINT_FILE + TMP_SUFFIX), new File(CHECKPOINT_FILE))) {
+            System.err.println("Snapshot failed - keeping journal for recovery");
+            discardSnapshot();
+            markDirty(changed);
+            return;
+        }
+        commitSnapshotFiles();
+        if (JOURNAL_ENABLED) {
+            journal().deleteBefore(snapshot.generation);
+        }
 
-        // Save system logs
-        SerializationUtil.serializeObject(Administrator.getSystemLogs(), LOGS_FILE);
+        lastSaveFileCount = changed.size();
+        lastSaveBytes = bytes;
+        System.out.println("Checkpoint wrote " + changed.size() + " of " + DataFile.values().length
+                + " files (" + bytes + " bytes): " + changed + " and " + shards + " vital sign shards");
 
         // Log the save operation
-        Administrator.addSystemLog("System data automatically saved at " + java.time.LocalDateTime.now());
+        Administrator.addSystemLog("System data automatically saved at " + java.time.LocalDateTime.now()
+                + " (" + changed.size() + " files, " + bytes + " bytes)");
     }
 
     /**
-     * Loads all system data automatically
+     * Gets the number of files written by the last checkpoint
+     * @return File count
      */
-    public static void loadAllData() {
+    public static int getLastSaveFileCount() {
+        return lastSaveFileCount;
+    }
+
+    /**
+     * Gets the number of bytes written by the last checkpoint
+     * @return Byte count
+     */
+    public static long getLastSaveBytes() {
+        return lastSaveBytes;
+    }
+
+    /**
+     * Loads all system data automatically.
+     * The snapshot files needed to log in are read in parallel; chat histories and system logs are
+     * read on first access. Data is only loaded once, later calls keep the data in memory.
+     */
+    public static synchronized void loadAllData() {
+        if (dataLoaded) {
+            System.out.println("Data already loaded - keeping the data in memory");
+            return;
+        }
+        long started = System.nanoTime();
+        ExecutorService loader = Executors.newFixedThreadPool(LOADER_THREADS, r -> {
+            Thread thread = new Thread(r, "rpms-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
             initDataDirectory();
+            long checkpoint = recoverSnapshot();
+
+            if (JOURNAL_ENABLED) {
+                // Snapshot plus journal is the complete state, so start from a clean slate
+                Administrator.getDoctors().clear();
+                Administrator.getPatients().clear();
+                Administrator.getAdministrators().clear();
+                AppointmentManager.getAppointments().clear();
+                AppointmentManager.getVideoCalls().clear();
+                chatHistories.clear();
+            }
+            synchronized (lazyLock) {
+                unloadedFiles.addAll(LAZY_FILES);
+                deferredUpdates.clear();
+            }
+            PatientStore.clear();
+
+            // The files are independent, so read them concurrently
+            Future<ArrayList<Doctor>> doctorsLoad = loader.submit(() -> SerializationUtil.deserializeObject(DOCTORS_FILE));
+            Future<ArrayList<Patient>> patientsLoad = loader.submit(() -> SerializationUtil.deserializeObject(PATIENTS_FILE));
+            Future<ArrayList<Administrator>> adminsLoad = loader.submit(() -> SerializationUtil.deserializeObject(ADMINS_FILE));
+            Future<ArrayList<Appointment>> appointmentsLoad = loader.submit(
+                    () -> SerializationUtil.deserializeRecords(APPOINTMENTS_FILE, AppointmentCodec.INSTANCE));
+            Future<ArrayList<VideoCall>> videoCallsLoad = loader.submit(() -> SerializationUtil.deserializeObject(VIDEOCALLS_FILE));
 
             // Load doctors
-            ArrayList<Doctor> doctors = SerializationUtil.deserializeObject(DOCTORS_FILE);
+            ArrayList<Doctor> doctors = doctorsLoad.get();
             if (doctors != null && !doctors.isEmpty()) {
                 Administrator.getDoctors().clear();
                 Administrator.getDoctors().addAll(doctors);
@@ -88,7 +371,7 @@ public class DataManager {
             }
 
             // Load patients
-            ArrayList<Patient> patients = SerializationUtil.deserializeObject(PATIENTS_FILE);
+            ArrayList<Patient> patients = patientsLoad.get();
             if (patients != null && !patients.isEmpty()) {
                 Administrator.getPatients().clear();
                 Administrator.getPatients().addAll(patients);
@@ -98,7 +381,7 @@ public class DataManager {
             }
 
             // Load administrators
-            ArrayList<Administrator> admins = SerializationUtil.deserializeObject(ADMINS_FILE);
+            ArrayList<Administrator> admins = adminsLoad.get();
             if (admins != null && !admins.isEmpty()) {
                 Administrator.getAdministrators().clear();
                 Administrator.getAdministrators().addAll(admins);
@@ -108,7 +391,7 @@ public class DataManager {
             }
 
             // Load appointments
-            ArrayList<Appointment> appointments = SerializationUtil.deserializeObject(APPOINTMENTS_FILE);
+            ArrayList<Appointment> appointments = appointmentsLoad.get();
             if (appointments != null && !appointments.isEmpty()) {
                 AppointmentManager.getAppointments().clear();
                 AppointmentManager.getAppointments().addAll(appointments);
@@ -116,61 +399,396 @@ public class DataManager {
             }
 
             // Load video calls
-            ArrayList<VideoCall> videoCalls = SerializationUtil.deserializeObject(VIDEOCALLS_FILE);
+            ArrayList<VideoCall> videoCalls = videoCallsLoad.get();
             if (videoCalls != null && !videoCalls.isEmpty()) {
                 AppointmentManager.getVideoCalls().clear();
                 AppointmentManager.getVideoCalls().addAll(videoCalls);
                 System.out.println("Loaded " + videoCalls.size() + " video calls");
             }
 
-            // Load chat histories
-            ArrayList<ChatHistory> chats = SerializationUtil.deserializeObject(CHAT_HISTORIES_FILE);
-            if (chats != null && !chats.isEmpty()) {
-                chatHistories.clear();
-                chatHistories.addAll(chats);
-                System.out.println("Loaded " + chats.size() + " chat histories");
+            // Links are stored as IDs, point them at the loaded instances
+            resolveReferences();
+
+            // The files on disk now match memory, unless they still use the old format
+            synchronized (dirtyFiles) {
+                dirtyFiles.clear();
+            }
+            if (SerializationUtil.checkLegacyFormatRead()) {
+                System.out.println("Data files use an older format, they will be rewritten in the current format");
+                markDirty(EnumSet.allOf(DataFile.class));
             }
 
-            // Load system logs
-            ArrayList<String> logs = SerializationUtil.deserializeObject(LOGS_FILE);
-            if (logs != null && !logs.isEmpty()) {
-                Administrator.getSystemLogs().clear();
-                Administrator.getSystemLogs().addAll(logs);
-                System.out.println("Loaded " + logs.size() + " system logs");
+            // Apply mutations journaled since the snapshot
+            if (JOURNAL_ENABLED) {
+                replayJournal(checkpoint);
             }
 
+            dataLoaded = true;
+
+            // Views opened before the load read the lists again
+            Administrator.usersReloaded();
+            AppointmentManager.reloaded();
+
             // Log the load operation
             Administrator.addSystemLog("System data automatically loaded at " + java.time.LocalDateTime.now());
-            
-            System.out.println("Total users after loading: " + Administrator.getAllUsers().size());
+
+            loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            System.out.println("Total users after loading: " + Administrator.getAllUsers().size()
+                    + " (loaded in " + loadMillis + " ms)");
         } catch (Exception e) {
             System.err.println("Error during data loading: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    /**
+     * Logs the time from application launch until the login screen is shown, once per run
+     */
+    public static synchronized void reportLoginScreenShown() {
+        if (loginScreenReported) {
+            return;
+        }
+        loginScreenReported = true;
+        ProcessHandle.current().info().startInstant().ifPresent(start ->
+                System.out.println("Startup metric: login screen shown " + Duration.between(start, Instant.now()).toMillis()
+                        + " ms after launch (data loaded in " + loadMillis + " ms)"));
+    }
+
+    /**
+     * Reads a lazily loaded file if it has not been read yet, then applies the updates that
+     * arrived in the meantime
+     *
+     * @param file The file to read
+     */
+    private static void ensureLoaded(DataFile file) {
+        synchronized (lazyLock) {
+            if (!unloadedFiles.remove(file)) {
+                return;
+            }
+            long started = System.nanoTime();
+            if (file == DataFile.CHATS) {
+                ArrayList<ChatHistory> chats = SerializationUtil.deserializeObject(CHAT_HISTORIES_FILE);
+                if (chats != null && !chats.isEmpty()) {
+                    chatHistories.clear();
+                    chatHistories.addAll(chats);
+                    System.out.println("Loaded " + chats.size() + " chat histories");
+                }
+                for (ChatHistory history : chatHistories) {
+                    for (ChatMessage message : history.getMessages()) {
+                        snapshotMessageKeys.add(messageKey(message.getSenderId(), message.getReceiverId(),
+                                message.getContent(), message.getTimestamp()));
+                    }
+                }
+            }
+            if (SerializationUtil.checkLegacyFormatRead()) {
+                markDirty(EnumSet.of(file));
+            }
+
+            List<Runnable> updates = deferredUpdates.remove(file);
+            if (updates != null) {
+                for (Runnable update : updates) {
+                    try {
+                        update.run();
+                    } catch (Exception e) {
+                        System.err.println("Skipping deferred update of " + file + ": " + e.getMessage());
+                    }
+                }
+            }
+            snapshotMessageKeys.clear();
+            System.out.println("Read " + file + " on first access in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+        }
+    }
+
+    /**
+     * Applies an update to a lazily loaded file, or queues it until the file is read
+     *
+     * @param file The file the update changes
+     * @param update The update
+     */
+    private static void applyWhenLoaded(DataFile file, Runnable update) {
+        synchronized (lazyLock) {
+            if (unloadedFiles.contains(file)) {
+                deferredUpdates.computeIfAbsent(file, f -> new ArrayList<>()).add(update);
+                return;
+            }
         }
+        update.run();
     }
 
     /**
-     * Automatically saves a specific doctor's data
+     * Automatically saves a specific doctor's data.
+     * The doctor is copied right away and the copy is written in the background;
+     * repeated saves of the same doctor are merged.
      */
     public static void saveDoctor(Doctor doctor) {
-        initDataDirectory();
+        if (replaying) {
+            return;
+        }
         String filename = DATA_DIR + "/doctor_" + doctor.getId() + ".ser";
-        SerializationUtil.serializeObject(doctor, filename);
+        byte[] copy;
+        try {
+            copy = SerializationUtil.serializeToBytes(doctor); // On the calling thread, which owns the doctor
+        } catch (IOException e) {
+            System.err.println("Error saving doctor " + doctor.getId() + ": " + e.getMessage());
+            return;
+        }
+        PersistenceScheduler.schedule("doctor:" + doctor.getId(), () -> {
+            initDataDirectory();
+            SerializationUtil.writeBytes(copy, filename);
+        });
     }
 
     /**
-     * Automatically saves a specific patient's data
+     * Automatically saves a specific patient's vital signs to the patient's shard.
+     * The shard is written in the background; repeated saves of the same patient are merged.
+     * The rest of the patient is saved with the patients snapshot.
      */
     public static void savePatient(Patient patient) {
-        initDataDirectory();
-        String filename = DATA_DIR + "/patient_" + patient.getId() + ".ser";
-        SerializationUtil.serializeObject(patient, filename);
+        if (replaying) {
+            return;
+        }
+        String patientId = patient.getId();
+        PersistenceScheduler.schedule("patient:" + patientId, () -> PatientStore.flush(patientId));
+    }
+
+    /**
+     * Writes a patient's vital signs to the patient's shard right away.
+     * Used after bulk imports, which are saved once instead of being journaled reading by reading.
+     *
+     * @param patient The patient
+     * @return true if the shard was written or had no changes, false otherwise
+     */
+    public static boolean savePatientNow(Patient patient) {
+        if (replaying) {
+            return true;
+        }
+        return PatientStore.flush(patient.getId());
+    }
+
+    /**
+     * Writes the vital signs of every changed patient to their shards right away.
+     * Used after batch imports covering many patients, which are saved once at the end.
+     *
+     * @return true if all changed shards were written, false otherwise
+     */
+    public static boolean saveAllPatientsNow() {
+        if (replaying) {
+            return true;
+        }
+        return PatientStore.flushAll() >= 0;
+    }
+
+    /**
+     * Requests a snapshot of the changed collections in the background.
+     * The collections are copied on the Application Thread, which owns them, once it is done with
+     * the current burst of changes; bursts of requests are merged into a single snapshot.
+     */
+    public static void requestSave() {
+        if (!snapshotRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Platform.runLater(DataManager::scheduleSnapshot);
+        } catch (IllegalStateException e) {
+            // No Application Thread yet (e.g. while sample data is created), so the calling thread owns the data
+            scheduleSnapshot();
+        }
+    }
+
+    /**
+     * Copies the changed collections and has the background writer write them
+     */
+    private static void scheduleSnapshot() {
+        snapshotRequested.set(false);
+        takeSnapshot();
+        PersistenceScheduler.schedule("checkpoint", DataManager::writeSnapshot);
+    }
+
+    /**
+     * Marks a user's data as changed for changes that are not journaled (e.g. profile edits,
+     * emergency contacts or feedback) and requests a snapshot.
+     *
+     * @param user The user that was changed
+     */
+    public static void markUserChanged(User user) {
+        if (user instanceof Patient) {
+            markDirty(LINK_FILES); // The physician may have changed as well
+        } else {
+            markDirty(EnumSet.of(user instanceof Doctor ? DataFile.DOCTORS : DataFile.ADMINS));
+        }
+        requestSave();
+    }
+
+    /**
+     * Writes all pending changes and waits until they are on disk.
+     * Takes a snapshot of the changed collections as well, copied on the calling thread,
+     * which must own them (see {@link #saveAllData}).
+     */
+    public static void flush() {
+        takeSnapshot();
+        PersistenceScheduler.schedule("checkpoint", DataManager::writeSnapshot);
+        PersistenceScheduler.flush();
+    }
+
+    //------------------------------
+    // Journaled Mutations
+    //------------------------------
+
+    /**
+     * Persists a single mutation.
+     * In journaled mode the mutation is appended to the write-ahead journal, which is synced by the
+     * background writer, and a checkpoint is requested once the journal grows past the threshold.
+     * Otherwise a full snapshot is requested.
+     *
+     * @param op The operation that was performed
+     * @param fields The operation arguments
+     */
+    private static void record(Journal.Op op, Object... fields) {
+        if (replaying) {
+            return;
+        }
+        markDirty(filesChangedBy(op));
+        if (!JOURNAL_ENABLED) {
+            requestSave();
+            return;
+        }
+        Journal current = journal();
+        if (!current.append(op, fields)) {
+            requestSave(); // Could not journal - fall back to a snapshot
+            return;
+        }
+        PersistenceScheduler.schedule("journal", () -> {
+            if (!current.sync()) {
+                requestSave(); // The records since the last sync were dropped - fall back to a snapshot
+            }
+        });
+        if (current.getRecordCount() >= CHECKPOINT_THRESHOLD) {
+            requestSave();
+        }
+    }
+
+    /**
+     * Records the registration of a user
+     * @param user The doctor, patient or administrator that was registered
+     */
+    public static void recordUserRegistered(User user) {
+        if (user instanceof Patient patient) {
+            Doctor physician = patient.getPhysician();
+            record(Journal.Op.REGISTER_PATIENT, patient.getId(), patient.getName(), patient.getPhoneNumber(),
+                   patient.getEmail(), patient.getUsername(), patient.getPassword(),
+                   new ArrayList<>(patient.getEmergencyContacts()), physician != null ? physician.getId() : null);
+        } else {
+            Journal.Op op = user instanceof Doctor ? Journal.Op.REGISTER_DOCTOR : Journal.Op.REGISTER_ADMIN;
+            record(op, user.getId(), user.getName(), user.getPhoneNumber(),
+                   user.getEmail(), user.getUsername(), user.getPassword());
+        }
+    }
+
+    /**
+     * Records the removal of a user
+     * @param user The doctor, patient or administrator that was removed
+     */
+    public static void recordUserRemoved(User user) {
+        Journal.Op op = user instanceof Patient ? Journal.Op.REMOVE_PATIENT
+                : user instanceof Doctor ? Journal.Op.REMOVE_DOCTOR : Journal.Op.REMOVE_ADMIN;
+        record(op, user.getId());
+    }
+
+    /**
+     * Records that a patient was added to a doctor's patient list
+     * @param doctor The doctor
+     * @param patient The patient added to the doctor's list
+     */
+    public static void recordDoctorAddedPatient(Doctor doctor, Patient patient) {
+        record(Journal.Op.DOCTOR_ADD_PATIENT, doctor.getId(), patient.getId());
+    }
+
+    /**
+     * Records a new appointment request
+     * @param appointment The appointment that was added
+     */
+    public static void recordAppointmentAdded(Appointment appointment) {
+        record(Journal.Op.ADD_APPOINTMENT, appointment.getDateTime(),
+               idOf(appointment.getDoctor()), idOf(appointment.getPatient()), appointment.getStatus());
+    }
+
+    /**
+     * Records a status change of an appointment
+     * @param appointment The appointment whose status changed
+     */
+    public static void recordAppointmentStatus(Appointment appointment) {
+        record(Journal.Op.APPOINTMENT_STATUS, appointment.getDateTime(),
+               idOf(appointment.getDoctor()), idOf(appointment.getPatient()), appointment.getStatus());
+    }
+
+    /**
+     * Records the removal of an appointment
+     * @param appointment The appointment that was removed
+     */
+    public static void recordAppointmentRemoved(Appointment appointment) {
+        record(Journal.Op.REMOVE_APPOINTMENT, appointment.getDateTime(),
+               idOf(appointment.getDoctor()), idOf(appointment.getPatient()));
     }
 
+    /**
+     * Records a new video call request
+     * @param videoCall The video call that was added
+     */
+    public static void recordVideoCallAdded(VideoCall videoCall) {
+        record(Journal.Op.ADD_VIDEOCALL, idOf(videoCall.getDoctor()), idOf(videoCall.getPatient()),
+               videoCall.getStartTime(), videoCall.getEndTime(), videoCall.getLink(), videoCall.getStatus());
+    }
+
+    /**
+     * Records a status or meeting link change of a video call
+     * @param videoCall The video call that changed
+     */
+    public static void recordVideoCallUpdated(VideoCall videoCall) {
+        record(Journal.Op.VIDEOCALL_UPDATE, idOf(videoCall.getDoctor()), idOf(videoCall.getPatient()),
+               videoCall.getStartTime(), videoCall.getStatus(), videoCall.getLink());
+    }
+
+    /**
+     * Records the removal of a video call
+     * @param videoCall The video call that was removed
+     */
+    public static void recordVideoCallRemoved(VideoCall videoCall) {
+        record(Journal.Op.REMOVE_VIDEOCALL, idOf(videoCall.getDoctor()), idOf(videoCall.getPatient()),
+               videoCall.getStartTime());
+    }
+
+    /**
+     * Records a vital sign uploaded for a patient
+     * @param patient The patient
+     * @param vital The vital sign that was added
+     */
+    public static void recordVitalAdded(Patient patient, VitalSign vital) {
+        record(Journal.Op.ADD_VITAL, patient.getId(), vital.getHeartRate(), vital.getOxygenLevel(),
+               vital.getBloodPressure(), vital.getTemperature(), vital.getDateTimeRecorded());
+    }
+
+    /**
+     * Records a vital sign removed from a patient's records
+     * @param patient The patient
+     * @param vital The vital sign that was removed
+     */
+    public static void recordVitalRemoved(Patient patient, VitalSign vital) {
+        record(Journal.Op.REMOVE_VITAL, patient.getId(), vital.getHeartRate(), vital.getOxygenLevel(),
+               vital.getBloodPressure(), vital.getTemperature(), vital.getDateTimeRecorded());
+    }
+
+    //------------------------------
+    // Chat Histories
+    //------------------------------
+
     /**
      * Gets the chat history between two users
      */
     public static ChatHistory getChatHistory(String user1Id, String user2Id) {
+        ensureLoaded(DataFile.CHATS);
         for (ChatHistory history : chatHistories) {
             if (history.isForUsers(user1Id, user2Id)) {
                 return history;
@@ -179,10 +797,14 @@ public class DataManager {
         // If no chat history exists, create a new one
         ChatHistory newHistory = new ChatHistory(user1Id, user2Id);
         chatHistories.add(newHistory);
-        
-        // IMPORTANT: Save when creating a new chat history
-        saveAllData();
-        
+
+        // IMPORTANT: Save when creating a new chat history.
+        // In journaled mode empty histories are recreated on demand, so nothing needs writing.
+        if (!JOURNAL_ENABLED && !replaying) {
+            markDirty(EnumSet.of(DataFile.CHATS));
+            requestSave();
+        }
+
         return newHistory;
     }
 
@@ -192,39 +814,29 @@ public class DataManager {
     public static synchronized void addChatMessage(ChatMessage message) {
         ChatHistory history = getChatHistory(message.getSenderId(), message.getReceiverId());
         history.addMessage(message);
-        
+
         // IMPORTANT: Make sure to save immediately after adding a message
-        saveAllData();
-        
-        System.out.println("Added message to chat history: from " + message.getSenderId() + 
-                          " to " + message.getReceiverId() + 
+        record(Journal.Op.CHAT_MESSAGE, message.getSenderId(), message.getSenderName(),
+               message.getReceiverId(), message.getContent(), message.getTimestamp());
+
+        System.out.println("Added message to chat history: from " + message.getSenderId() +
+                          " to " + message.getReceiverId() +
                           " - Content: " + message.getContent());
     }
-    
+
     /**
      * Clears all chat histories for a specific user
-     * 
+     *
      * @param userId The ID of the user whose chat histories should be cleared
      * @return true if successful, false otherwise
      */
     public static boolean clearChatHistoriesForUser(String userId) {
         try {
-            List<ChatHistory> toRemove = new ArrayList<>();
-            
-            // Find all chat histories involving this user
-            for (ChatHistory history : chatHistories) {
-                if (history.isForUsers(userId, history.getUser2Id()) || 
-                    history.isForUsers(history.getUser1Id(), userId)) {
-                    toRemove.add(history);
-                }
-            }
-            
-            // Remove the identified histories
-            chatHistories.removeAll(toRemove);
-            
+            removeChatHistoriesFor(userId);
+
             // Save changes
-            saveAllData();
-            
+            record(Journal.Op.CLEAR_CHATS_FOR_USER, userId);
+
             Administrator.addSystemLog("Chat histories cleared for user ID: " + userId);
             return true;
         } catch (Exception e) {
@@ -233,17 +845,18 @@ public class DataManager {
             return false;
         }
     }
-    
+
     /**
      * Clears all chat histories in the system
-     * 
+     *
      * @return true if successful, false otherwise
      */
     public static boolean clearAllChatHistories() {
         try {
+            ensureLoaded(DataFile.CHATS);
             chatHistories.clear();
-            saveAllData();
-            
+            record(Journal.Op.CLEAR_ALL_CHATS);
+
             Administrator.addSystemLog("All chat histories in the system have been cleared");
             return true;
         } catch (Exception e) {
@@ -252,4 +865,527 @@ public class DataManager {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Removes every chat history involving the given user
+     * @param userId The ID of the user
+     */
+    private static void removeChatHistoriesFor(String userId) {
+        ensureLoaded(DataFile.CHATS);
+        List<ChatHistory> toRemove = new ArrayList<>();
+
+        // Find all chat histories involving this user
+        for (ChatHistory history : chatHistories) {
+            if (history.isForUsers(userId, history.getUser2Id()) ||
+                history.isForUsers(history.getUser1Id(), userId)) {
+                toRemove.add(history);
+            }
+        }
+
+        // Remove the identified histories
+        chatHistories.removeAll(toRemove);
+    }
+
+    //------------------------------
+    // Journal Replay and Checkpoints
+    //------------------------------
+
+    /**
+     * Gets the journal, opening a fresh segment if none is open yet
+     */
+    private static Journal journal() {
+        synchronized (journalLock) {
+            if (journal == null) {
+                File dataDir = new File(DATA_DIR);
+                Journal existing = new Journal(dataDir, 0);
+                journal = new Journal(dataDir, existing.latestGeneration(readCheckpoint()) + 1);
+            }
+            return journal;
+        }
+    }
+
+    /**
+     * Replays journal records written since the given checkpoint on top of the loaded snapshot.
+     * A record may already be part of the snapshot when the mutation raced with a background
+     * checkpoint, so records are applied idempotently.
+     *
+     * @param checkpoint Generation of the loaded snapshot
+     */
+    private static void replayJournal(long checkpoint) {
+        synchronized (journalLock) {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        }
+
+        List<Journal.Record> records = new Journal(new File(DATA_DIR), checkpoint).readFrom(checkpoint);
+        snapshotVitalKeys.clear();
+        replaying = true;
+        try {
+            for (Journal.Record record : records) {
+                try {
+                    Set<DataFile> changed = filesChangedBy(record.getOp());
+                    if (changed.size() == 1 && LAZY_FILES.containsAll(changed)) {
+                        // Chat records only touch their own file, apply them once it is read
+                        applyWhenLoaded(changed.iterator().next(), () -> applyRecord(record));
+                    } else {
+                        applyRecord(record);
+                    }
+                    markDirty(changed);
+                } catch (Exception e) {
+                    System.err.println("Skipping journal record " + record.getOp() + ": " + e.getMessage());
+                }
+            }
+            resolvePendingLinks();
+        } finally {
+            replaying = false;
+            snapshotVitalKeys.clear();
+        }
+
+        // Always continue in a fresh segment so a torn tail is never appended to
+        journal().setRecordCount(records.size());
+        if (!records.isEmpty()) {
+            System.out.println("Replayed " + records.size() + " journal records");
+        }
+    }
+
+    /**
+     * Applies a single journal record to the in-memory state
+     * @param record The record to apply
+     */
+    private static void applyRecord(Journal.Record record) {
+        switch (record.getOp()) {
+            case LOG:
+                // Journaled by earlier versions; logs are now kept by the SystemLogStore
+                SystemLogStore.replayLegacyLog(record.getString(0));
+                break;
+            case CLEAR_LOGS:
+                SystemLogStore.replayLegacyClear();
+                break;
+            case REGISTER_DOCTOR:
+                if (findDoctor(record.getString(0)) == null) {
+                    Administrator.getDoctors().add(new Doctor(record.getString(0), record.getString(1),
+                            record.getString(2), record.getString(3), record.getString(4), record.getString(5)));
+                }
+                break;
+            case REGISTER_PATIENT:
+                if (findPatient(record.getString(0)) == null) {
+                    Administrator.getPatients().add(new Patient(record.getString(0), record.getString(1),
+                            record.getString(2), record.getString(3), record.getString(4), record.getString(5),
+                            new ArrayList<>(record.getStringList(6)), null));
+                    if (record.getString(7) != null) {
+                        pendingLinks.add(new String[] { record.getString(7), record.getString(0) });
+                    }
+                }
+                break;
+            case REGISTER_ADMIN:
+                if (findUser(Administrator.getAdministrators(), record.getString(0)) == null) {
+                    Administrator.getAdministrators().add(new Administrator(record.getString(0), record.getString(1),
+                            record.getString(2), record.getString(3), record.getString(4), record.getString(5)));
+                }
+                break;
+            case REMOVE_DOCTOR:
+                Administrator.getDoctors().removeIf(d -> d.getId().equals(record.getString(0)));
+                break;
+            case REMOVE_PATIENT:
+                Administrator.getPatients().removeIf(p -> p.getId().equals(record.getString(0)));
+                break;
+            case REMOVE_ADMIN:
+                Administrator.getAdministrators().removeIf(a -> a.getId().equals(record.getString(0)));
+                break;
+            case DOCTOR_ADD_PATIENT:
+                pendingLinks.add(new String[] { record.getString(0), record.getString(1) });
+                break;
+            case ADD_APPOINTMENT: {
+                if (findAppointment(record.getDateTime(0), record.getString(1), record.getString(2)) == null) {
+                    Appointment appointment = new Appointment(record.getDateTime(0),
+                            findDoctor(record.getString(1)), findPatient(record.getString(2)));
+                    appointment.setStatus(record.getString(3));
+                    AppointmentManager.getAppointments().add(appointment);
+                }
+                break;
+            }
+            case APPOINTMENT_STATUS: {
+                Appointment appointment = findAppointment(record.getDateTime(0), record.getString(1), record.getString(2));
+                if (appointment != null) {
+                    appointment.setStatus(record.getString(3));
+                }
+                break;
+            }
+            case REMOVE_APPOINTMENT:
+                AppointmentManager.getAppointments().remove(
+                        findAppointment(record.getDateTime(0), record.getString(1), record.getString(2)));
+                break;
+            case ADD_VIDEOCALL: {
+                if (findVideoCall(record.getString(0), record.getString(1), record.getDateTime(2)) == null) {
+                    VideoCall videoCall = new VideoCall(findDoctor(record.getString(0)),
+                            findPatient(record.getString(1)), record.getDateTime(2), record.getDateTime(3));
+                    videoCall.setMeetingLink(record.getString(4));
+                    videoCall.setStatus(record.getString(5));
+                    AppointmentManager.getVideoCalls().add(videoCall);
+                }
+                break;
+            }
+            case VIDEOCALL_UPDATE: {
+                VideoCall videoCall = findVideoCall(record.getString(0), record.getString(1), record.getDateTime(2));
+                if (videoCall != null) {
+                    videoCall.setStatus(record.getString(3));
+                    videoCall.setMeetingLink(record.getString(4));
+                }
+                break;
+            }
+            case REMOVE_VIDEOCALL:
+                AppointmentManager.getVideoCalls().remove(
+                        findVideoCall(record.getString(0), record.getString(1), record.getDateTime(2)));
+                break;
+            case ADD_VITAL: {
+                Patient patient = findPatient(record.getString(0));
+                // Readings past the raw retention are already counted in the snapshot's aggregates
+                if (patient != null && !patient.getVitals().isCompacted(record.getDateTime(5))
+                        && !snapshotVitalKeys(patient).remove(vitalKey(record.getString(0), record.getDouble(1),
+                        record.getDouble(2), record.getString(3), record.getDouble(4), record.getDateTime(5)))) {
+                    patient.getVitals().addVital(new VitalSign(patient.getId(), record.getDouble(1),
+                            record.getDouble(2), record.getString(3), record.getDouble(4), record.getDateTime(5)));
+                }
+                break;
+            }
+            case REMOVE_VITAL: {
+                Patient patient = findPatient(record.getString(0));
+                if (patient != null) {
+                    snapshotVitalKeys(patient).remove(vitalKey(record.getString(0), record.getDouble(1),
+                            record.getDouble(2), record.getString(3), record.getDouble(4), record.getDateTime(5)));
+                    patient.getVitals().removeVitalsIf(v -> v.getHeartRate() == record.getDouble(1)
+                            && v.getOxygenLevel() == record.getDouble(2)
+                            && v.getBloodPressure().equals(record.getString(3))
+                            && v.getTemperature() == record.getDouble(4)
+                            && v.getDateTimeRecorded().equals(record.getDateTime(5)));
+                }
+                break;
+            }
+            case CHAT_MESSAGE:
+                if (!snapshotMessageKeys.remove(messageKey(record.getString(0), record.getString(2),
+                        record.getString(3), record.getDateTime(4)))) {
+                    getChatHistory(record.getString(0), record.getString(2)).addMessage(new ChatMessage(
+                            record.getString(0), record.getString(1), record.getString(2),
+                            record.getString(3), record.getDateTime(4)));
+                }
+                break;
+            case CLEAR_CHATS_FOR_USER:
+                removeChatHistoriesFor(record.getString(0));
+                break;
+            case CLEAR_ALL_CHATS:
+                chatHistories.clear();
+                break;
+        }
+    }
+
+    /**
+     * Gets the keys of a patient's vitals as they were in the snapshot.
+     * Built the first time replay touches the patient, so vitals of other patients stay encoded.
+     *
+     * @param patient The patient
+     * @return Keys of the snapshot vitals not yet matched by a journal record
+     */
+    private static Set<String> snapshotVitalKeys(Patient patient) {
+        return snapshotVitalKeys.computeIfAbsent(patient.getId(), id -> PatientStore.query(id, series -> {
+            Set<String> keys = new HashSet<>();
+            for (int i = 0; i < series.size(); i++) {
+                keys.add(vitalKey(id, series.getHeartRate(i), series.getOxygenLevel(i),
+                        series.getBloodPressure(i), series.getTemperature(i), series.getDateTimeRecorded(i)));
+            }
+            return keys;
+        }));
+    }
+
+    /**
+     * Links doctors and patients seen during replay.
+     * Links are resolved last because a patient is usually created before its doctor is registered.
+     */
+    private static void resolvePendingLinks() {
+        for (String[] link : pendingLinks) {
+            Doctor doctor = findDoctor(link[0]);
+            Patient patient = findPatient(link[1]);
+            if (doctor == null || patient == null) {
+                continue;
+            }
+            if (patient.getPhysician() == null) {
+                patient.setPhysician(doctor);
+            } else if (!doctor.getPatients().contains(patient)) {
+                doctor.getPatients().add(patient);
+            }
+        }
+        pendingLinks.clear();
+    }
+
+    /**
+     * Resolves the doctor and patient IDs stored in the loaded entities through a registry of the
+     * loaded users, so every link points to the single registered instance.
+     * Appointments and video calls whose doctor or patient no longer exists are dropped.
+     */
+    private static void resolveReferences() {
+        EntityRegistry registry = new EntityRegistry(Administrator.getDoctors(), Administrator.getPatients());
+        for (Doctor doctor : Administrator.getDoctors()) {
+            doctor.resolveReferences(registry);
+        }
+        for (Patient patient : Administrator.getPatients()) {
+            patient.resolveReferences(registry);
+        }
+
+        int appointments = AppointmentManager.getAppointments().size();
+        AppointmentManager.getAppointments().removeIf(appointment -> !appointment.resolveReferences(registry));
+        int videoCalls = AppointmentManager.getVideoCalls().size();
+        AppointmentManager.getVideoCalls().removeIf(videoCall -> !videoCall.resolveReferences(registry));
+
+        int dropped = appointments - AppointmentManager.getAppointments().size()
+                + videoCalls - AppointmentManager.getVideoCalls().size();
+        if (dropped > 0) {
+            System.out.println("Dropped " + dropped + " appointments/video calls referencing removed users");
+        }
+    }
+
+    /**
+     * Finishes or discards a snapshot that was interrupted by a crash.
+     * If the checkpoint marker was committed the temporary files are complete and are swapped in,
+     * otherwise they are deleted and the previous snapshot plus journal is used.
+     *
+     * @return The generation of the committed snapshot
+     */
+    private static long recoverSnapshot() {
+        File pendingMarker = new File(CHECKPOINT_FILE + TMP_SUFFIX);
+        if (pendingMarker.exists()) {
+            System.out.println("Discarding incomplete snapshot from an interrupted save");
+            discardSnapshot();
+        } else {
+            commitSnapshotFiles();
+        }
+        return readCheckpoint();
+    }
+
+    /**
+     * Deletes the temporary files and pending marker of a snapshot that was not committed
+     */
+    private static void discardSnapshot() {
+        for (DataFile file : DataFile.values()) {
+            new File(file.path + TMP_SUFFIX).delete();
+        }
+        new File(CHECKPOINT_FILE + TMP_SUFFIX).delete();
+    }
+
+    /**
+     * Moves committed temporary snapshot files over the live ones
+     */
+    private static void commitSnapshotFiles() {
+        for (DataFile file : DataFile.values()) {
+            File tmp = new File(file.path + TMP_SUFFIX);
+            if (tmp.exists()) {
+                moveFile(tmp, new File(file.path));
+            }
+        }
+    }
+
+    //------------------------------
+    // Dirty Tracking
+    //------------------------------
+
+    /**
+     * Marks snapshot files as changed so the next checkpoint rewrites them
+     * @param files The files to mark
+     */
+    private static void markDirty(Set<DataFile> files) {
+        synchronized (dirtyFiles) {
+            dirtyFiles.addAll(files);
+        }
+    }
+
+    /**
+     * Gets the snapshot files whose contents are changed by an operation
+     * @param op The journaled operation
+     * @return The affected files
+     */
+    private static Set<DataFile> filesChangedBy(Journal.Op op) {
+        switch (op) {
+            case REGISTER_ADMIN:
+            case REMOVE_ADMIN:
+                return EnumSet.of(DataFile.ADMINS);
+            case ADD_APPOINTMENT:
+            case APPOINTMENT_STATUS:
+            case REMOVE_APPOINTMENT:
+                return EnumSet.of(DataFile.APPOINTMENTS);
+            case ADD_VIDEOCALL:
+            case VIDEOCALL_UPDATE:
+            case REMOVE_VIDEOCALL:
+                return EnumSet.of(DataFile.VIDEOCALLS);
+            case CHAT_MESSAGE:
+            case CLEAR_CHATS_FOR_USER:
+            case CLEAR_ALL_CHATS:
+                return EnumSet.of(DataFile.CHATS);
+            case REGISTER_DOCTOR:
+            case REMOVE_DOCTOR:
+                return EnumSet.of(DataFile.DOCTORS);
+            case REGISTER_PATIENT:
+            case REMOVE_PATIENT:
+                return EnumSet.of(DataFile.PATIENTS);
+            case ADD_VITAL:
+            case REMOVE_VITAL:
+                return EnumSet.noneOf(DataFile.class); // Written to the patient's shard
+            case LOG:
+            case CLEAR_LOGS:
+                return EnumSet.noneOf(DataFile.class); // Kept by the SystemLogStore
+            default:
+                return LINK_FILES;
+        }
+    }
+
+    /**
+     * Copies the collection stored in a snapshot file.
+     * Appointments use the compact record format; the other files hold object graphs
+     * and use default serialization.
+     *
+     * @param file The snapshot file
+     * @return The contents of the file
+     * @throws IOException If the collection cannot be serialized
+     */
+    private static byte[] serializeSnapshotFile(DataFile file) throws IOException {
+        if (file == DataFile.APPOINTMENTS) {
+            return SerializationUtil.serializeBlockToBytes(out -> SerializationUtil.writeRecords(
+                    out, AppointmentManager.getAppointments(), AppointmentCodec.INSTANCE));
+        }
+        return SerializationUtil.serializeToBytes(dataFor(file));
+    }
+
+    /**
+     * Gets the collection stored in a snapshot file
+     * @param file The snapshot file
+     * @return The collection to serialize
+     */
+    private static Object dataFor(DataFile file) {
+        switch (file) {
+            case DOCTORS:
+                return Administrator.getDoctors();
+            case PATIENTS:
+                return Administrator.getPatients();
+            case ADMINS:
+                return Administrator.getAdministrators();
+            case APPOINTMENTS:
+                return AppointmentManager.getAppointments();
+            case VIDEOCALLS:
+                return AppointmentManager.getVideoCalls();
+            default:
+                ensureLoaded(DataFile.CHATS);
+                return chatHistories;
+        }
+    }
+
+    /**
+     * Reads the generation of the last committed snapshot
+     * @return Snapshot generation, or 0 if no checkpoint was written yet
+     */
+    private static long readCheckpoint() {
+        File file = new File(CHECKPOINT_FILE);
+        if (!file.exists()) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readLong();
+        } catch (IOException e) {
+            System.err.println("Error reading checkpoint marker: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Writes the pending checkpoint marker. The snapshot is committed by renaming it to the
+     * checkpoint file once all snapshot files have been written.
+     *
+     * @param generation The journal generation the snapshot is taken at
+     * @return true if the marker was written, false otherwise
+     */
+    private static boolean writePendingCheckpoint(long generation) {
+        File tmp = new File(CHECKPOINT_FILE + TMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeLong(generation);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing checkpoint marker: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the target file with the source file, atomically where supported
+     */
+    static boolean moveFile(File source, File target) {
+        try {
+            try {
+                Files.move(source.toPath(), target.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error replacing " + target + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    //------------------------------
+    // Lookup Helpers
+    //------------------------------
+
+    private static Doctor findDoctor(String id) {
+        return findUser(Administrator.getDoctors(), id);
+    }
+
+    private static Patient findPatient(String id) {
+        return findUser(Administrator.getPatients(), id);
+    }
+
+    private static <T extends User> T findUser(List<T> users, String id) {
+        if (id == null) {
+            return null;
+        }
+        for (T user : users) {
+            if (user.getId().equals(id)) {
+                return user;
+            }
+        }
+        return null;
+    }
+
+    private static String idOf(User user) {
+        return user != null ? user.getId() : null;
+    }
+
+    private static Appointment findAppointment(LocalDateTime dateTime, String doctorId, String patientId) {
+        for (Appointment appointment : AppointmentManager.getAppointments()) {
+            if (Objects.equals(appointment.getDateTime(), dateTime)
+                    && Objects.equals(idOf(appointment.getDoctor()), doctorId)
+                    && Objects.equals(idOf(appointment.getPatient()), patientId)) {
+                return appointment;
+            }
+        }
+        return null;
+    }
+
+    private static VideoCall findVideoCall(String doctorId, String patientId, LocalDateTime startTime) {
+        for (VideoCall videoCall : AppointmentManager.getVideoCalls()) {
+            if (Objects.equals(videoCall.getStartTime(), startTime)
+                    && Objects.equals(idOf(videoCall.getDoctor()), doctorId)
+                    && Objects.equals(idOf(videoCall.getPatient()), patientId)) {
+                return videoCall;
+            }
+        }
+        return null;
+    }
+
+    private static String vitalKey(String patientId, double heartRate, double oxygenLevel,
+                                   String bloodPressure, double temperature, LocalDateTime recorded) {
+        return patientId + "|" + heartRate + "|" + oxygenLevel + "|" + bloodPressure + "|" + temperature + "|" + recorded;
+    }
+
+    private static String messageKey(String senderId, String receiverId, String content, LocalDateTime timestamp) {
+        return senderId + "|" + receiverId + "|" + timestamp + "|" + content;
+    }
+}
@@ -0,0 +1,54 @@
+package com.rpms.utilities;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.rpms.Users.Doctor;
+import com.rpms.Users.Patient;
+
+/**
+ * Lookup of doctors and patients by ID.
+ * Cross-entity links are persisted as IDs; after loading, every entity resolves its links
+ * through a registry built from the loaded users, so all references point to one shared instance.
+ */
+public class EntityRegistry {
+    /** Doctors by ID */
+    private final Map<String, Doctor> doctors = new HashMap<>();
+
+    /** Patients by ID */
+    private final Map<String, Patient> patients = new HashMap<>();
+
+    /**
+     * Creates a registry of the given users
+     *
+     * @param doctors The registered doctors
+     * @param patients The registered patients
+     */
+    public EntityRegistry(List<Doctor> doctors, List<Patient> patients) {
+        for (Doctor doctor : doctors) {
+            this.doctors.put(doctor.getId(), doctor);
+        }
+        for (Patient patient : patients) {
+            this.patients.put(patient.getId(), patient);
+        }
+    }
+
+    /**
+     * Gets a doctor by ID
+     * @param id The doctor's ID, may be null
+     * @return The registered doctor, or null if there is none with this ID
+     */
+    public Doctor getDoctor(String id) {
+        return id != null ? doctors.get(id) : null;
+    }
+
+    /**
+     * Gets a patient by ID
+     * @param id The patient's ID, may be null
+     * @return The registered patient, or null if there is none with this ID
+     */
+    public Patient getPatient(String id) {
+        return id != null ? patients.get(id) : null;
+    }
+}
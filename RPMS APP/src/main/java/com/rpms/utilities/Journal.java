@@ -0,0 +1,454 @@
+package com.rpms.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal used for incremental persistence.
+ * Every mutation is written as a small length-prefixed, checksummed record,
+ * so the full snapshot only has to be rewritten at checkpoints.
+ * The journal is split into numbered segments (journal-&lt;generation&gt;.wal);
+ * a checkpoint starts a new segment and deletes the older ones once the snapshot is committed.
+ * Appends are buffered; {@link #sync()} forces them to disk, so several records can share one write.
+ * If a write fails part way, the segment is cut back to its last synced record (or, failing that,
+ * later records go to a new segment), so that replay never stops at a torn record followed by good ones.
+ */
+public class Journal {
+
+    /**
+     * Types of journaled mutations.
+     * New operations must be appended at the end because the ordinal is stored on disk.
+     */
+    public enum Op {
+        LOG,
+        CLEAR_LOGS,
+        REGISTER_DOCTOR,
+        REGISTER_PATIENT,
+        REGISTER_ADMIN,
+        REMOVE_DOCTOR,
+        REMOVE_PATIENT,
+        REMOVE_ADMIN,
+        DOCTOR_ADD_PATIENT,
+        ADD_APPOINTMENT,
+        APPOINTMENT_STATUS,
+        REMOVE_APPOINTMENT,
+        ADD_VIDEOCALL,
+        VIDEOCALL_UPDATE,
+        REMOVE_VIDEOCALL,
+        ADD_VITAL,
+        REMOVE_VITAL,
+        CHAT_MESSAGE,
+        CLEAR_CHATS_FOR_USER,
+        CLEAR_ALL_CHATS
+    }
+
+    /**
+     * A single decoded journal record
+     */
+    public static class Record {
+        /** The operation this record describes */
+        private final Op op;
+
+        /** The operation arguments, in the order they were appended */
+        private final Object[] fields;
+
+        Record(Op op, Object[] fields) {
+            this.op = op;
+            this.fields = fields;
+        }
+
+        public Op getOp() { return op; }
+
+        public String getString(int index) { return (String) fields[index]; }
+
+        public double getDouble(int index) { return (Double) fields[index]; }
+
+        public int getInt(int index) { return ((Long) fields[index]).intValue(); }
+
+        public LocalDateTime getDateTime(int index) { return (LocalDateTime) fields[index]; }
+
+        @SuppressWarnings("unchecked")
+        public List<String> getStringList(int index) { return (List<String>) fields[index]; }
+    }
+
+    // Field tags used in the record encoding
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_LONG = 2;
+    private static final byte TAG_DOUBLE = 3;
+    private static final byte TAG_DATETIME = 4;
+    private static final byte TAG_STRING_LIST = 5;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    /** Directory holding the journal segments */
+    private final File directory;
+
+    /** Generation of the segment currently being appended to */
+    private long generation;
+
+    /** Output stream of the current segment, opened lazily */
+    private DataOutputStream out;
+
+    /** File stream underneath {@link #out}, used to force written records to disk */
+    private FileOutputStream fileOut;
+
+    /** Length of the current segment up to its last synced record */
+    private long syncedLength;
+
+    /** Number of records appended since the last checkpoint */
+    private int recordCount;
+
+    /**
+     * Creates a journal stored in the given directory
+     *
+     * @param directory The directory holding the journal segments
+     * @param generation The generation to append to
+     */
+    public Journal(File directory, long generation) {
+        this.directory = directory;
+        this.generation = generation;
+    }
+
+    /**
+     * Gets the generation of the segment currently being appended to
+     * @return Current segment generation
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the number of records written since the last checkpoint
+     * @return Record count
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Sets the record count, used after replaying existing segments on startup
+     * @param recordCount Number of records already in the journal
+     */
+    public synchronized void setRecordCount(int recordCount) {
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * Appends a record to the current segment.
+     * The record is buffered in memory until the next {@link #sync()}.
+     * Supported field types are String, Integer/Long, Double, LocalDateTime and List of String.
+     * If writing fails, the records appended since the last sync are dropped as well.
+     *
+     * @param op The operation being journaled
+     * @param fields The operation arguments
+     * @return true if the record was written, false if it and the records since the last sync were not
+     */
+    public synchronized boolean append(Op op, Object... fields) {
+        byte[] bytes;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+            DataOutputStream body = new DataOutputStream(buffer);
+            body.writeByte(op.ordinal());
+            body.writeByte(fields.length);
+            for (Object field : fields) {
+                writeField(body, field);
+            }
+            body.flush();
+            bytes = buffer.toByteArray();
+        } catch (IOException e) {
+            System.err.println("Error encoding journal record: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        try {
+            DataOutputStream stream = stream();
+            stream.writeInt(bytes.length);
+            stream.write(bytes);
+            stream.writeInt((int) crc.getValue());
+            recordCount++;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error appending to journal: " + e.getMessage());
+            e.printStackTrace();
+            discardUnsynced();
+            return false;
+        }
+    }
+
+    /**
+     * Writes buffered records of the current segment and forces them to disk
+     * @return true if the segment was synced, false if the records since the last sync were dropped
+     */
+    public synchronized boolean sync() {
+        if (out == null) {
+            return true;
+        }
+        try {
+            out.flush();
+            fileOut.getChannel().force(false);
+            syncedLength = fileOut.getChannel().position();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error syncing journal: " + e.getMessage());
+            e.printStackTrace();
+            discardUnsynced();
+            return false;
+        }
+    }
+
+    /**
+     * Starts a new segment. Records appended afterwards belong to the next checkpoint.
+     *
+     * @return The generation of the new segment
+     */
+    public synchronized long rotate() {
+        close();
+        generation++;
+        recordCount = 0;
+        return generation;
+    }
+
+    /**
+     * Reads all records from segments with a generation greater than or equal to the given one.
+     * Reading of a segment stops at the first incomplete or corrupt record (e.g. a torn write).
+     *
+     * @param fromGeneration The first generation to read
+     * @return List of decoded records in append order
+     */
+    public synchronized List<Record> readFrom(long fromGeneration) {
+        List<Record> records = new ArrayList<>();
+        for (long gen : listGenerations()) {
+            if (gen >= fromGeneration) {
+                readSegment(segmentFile(gen), records);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Deletes all segments older than the given generation
+     * @param generation The oldest generation to keep
+     */
+    public synchronized void deleteBefore(long generation) {
+        for (long gen : listGenerations()) {
+            if (gen < generation && !segmentFile(gen).delete()) {
+                System.err.println("Could not delete journal segment: " + segmentFile(gen));
+            }
+        }
+    }
+
+    /**
+     * Gets the highest segment generation present on disk
+     *
+     * @param defaultGeneration Value returned if there are no segments
+     * @return Highest generation found, or the default
+     */
+    public synchronized long latestGeneration(long defaultGeneration) {
+        long latest = defaultGeneration;
+        for (long gen : listGenerations()) {
+            latest = Math.max(latest, gen);
+        }
+        return latest;
+    }
+
+    /**
+     * Syncs and closes the current segment's output stream
+     */
+    public synchronized void close() {
+        if (out != null && sync()) { // A failed sync already closed the segment
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Error closing journal: " + e.getMessage());
+            }
+            out = null;
+            fileOut = null;
+        }
+    }
+
+    // ===== Internal helpers =====
+
+    private DataOutputStream stream() throws IOException {
+        if (out == null) {
+            if (!directory.exists()) {
+                directory.mkdirs();
+            }
+            fileOut = new FileOutputStream(segmentFile(generation), true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            syncedLength = fileOut.getChannel().position();
+        }
+        return out;
+    }
+
+    /**
+     * Drops what was written since the last sync after a write failed part way. Otherwise a torn
+     * record would be left in the middle of the segment, and replay would stop there and skip every
+     * later record. The segment is cut back to its last synced record; if that fails as well, later
+     * records go to a new segment, which replay reads after the torn one.
+     */
+    private void discardUnsynced() {
+        if (fileOut != null) {
+            try {
+                fileOut.close(); // Not through out, which would write the buffered records
+            } catch (IOException e) {
+                // The segment is cut back below
+            }
+        }
+        out = null;
+        fileOut = null;
+        File segment = segmentFile(generation);
+        if (!segment.exists()) {
+            return; // Nothing was written
+        }
+        try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.WRITE)) {
+            if (channel.size() > syncedLength) {
+                channel.truncate(syncedLength);
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not cut back journal segment " + segment.getName()
+                    + " (" + e.getMessage() + ") - continuing in a new segment");
+            generation++;
+        }
+    }
+
+    private File segmentFile(long gen) {
+        return new File(directory, SEGMENT_PREFIX + gen + SEGMENT_SUFFIX);
+    }
+
+    private List<Long> listGenerations() {
+        List<Long> generations = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return generations;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    generations.add(Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    System.err.println("Ignoring unexpected journal file: " + name);
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private void readSegment(File file, List<Record> records) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return; // clean end of segment
+                }
+                if (length <= 0 || length > (1 << 24)) {
+                    System.err.println("Corrupt journal record length in " + file.getName() + ", stopping replay");
+                    return;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                int storedCrc = in.readInt();
+
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                if ((int) crc.getValue() != storedCrc) {
+                    System.err.println("Journal checksum mismatch in " + file.getName() + ", stopping replay");
+                    return;
+                }
+                records.add(decode(bytes));
+            }
+        } catch (EOFException e) {
+            System.err.println("Incomplete trailing record in " + file.getName() + " ignored");
+        } catch (IOException e) {
+            System.err.println("Error reading journal segment " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static Record decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        Op op = Op.values()[in.readUnsignedByte()];
+        Object[] fields = new Object[in.readUnsignedByte()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = readField(in);
+        }
+        return new Record(op, fields);
+    }
+
+    private static void writeField(DataOutputStream out, Object field) throws IOException {
+        if (field == null) {
+            out.writeByte(TAG_NULL);
+        } else if (field instanceof String s) {
+            out.writeByte(TAG_STRING);
+            out.writeUTF(s);
+        } else if (field instanceof Integer || field instanceof Long) {
+            out.writeByte(TAG_LONG);
+            out.writeLong(((Number) field).longValue());
+        } else if (field instanceof Double d) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble(d);
+        } else if (field instanceof LocalDateTime dt) {
+            out.writeByte(TAG_DATETIME);
+            out.writeLong(dt.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(dt.getNano());
+        } else if (field instanceof List<?> list) {
+            out.writeByte(TAG_STRING_LIST);
+            out.writeInt(list.size());
+            for (Object item : list) {
+                out.writeUTF(String.valueOf(item));
+            }
+        } else {
+            throw new IOException("Unsupported journal field type: " + field.getClass().getName());
+        }
+    }
+
+    private static Object readField(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return in.readUTF();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_DATETIME:
+                return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            case TAG_STRING_LIST:
+                int size = in.readInt();
+                List<String> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(in.readUTF());
+                }
+                return list;
+            default:
+                throw new IOException("Unknown journal field tag: " + tag);
+        }
+    }
+}
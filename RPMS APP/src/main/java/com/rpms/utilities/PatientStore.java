@@ -0,0 +1,570 @@
+package com.rpms.utilities;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.rpms.EmergencyAlertSystem.CriticalVitalsIndex;
+import com.rpms.EmergencyAlertSystem.EarlyWarningScores;
+import com.rpms.EmergencyAlertSystem.VitalTrendDetector;
+import com.rpms.HealthData.VitalSeries;
+import com.rpms.HealthData.VitalSign;
+import com.rpms.HealthData.VitalSignCodec;
+import com.rpms.Users.Administrator;
+
+/**
+ * Sharded storage of patients' vital sign histories.
+ * Each patient's readings are stored in their own file (data/patients/&lt;id&gt;.vitals) and only
+ * read when they are needed, for example when a dashboard or report accesses them.
+ * In memory a history is held as a columnar {@link VitalSeries}.
+ * Loaded histories are kept in an LRU cache bounded by the total number of readings; the least
+ * recently used histories are dropped when the cache is full or the heap runs low. Changed
+ * histories are written back first, in the background by the {@link PersistenceScheduler}, and
+ * dropped once they are written; a history that could not be written after a few attempts stays in
+ * memory until a checkpoint writes it.
+ * <p>
+ * Histories are compacted when they are loaded and as readings are added: raw readings past their
+ * retention period are dropped, keeping only their minute, hour and day aggregates
+ * (see {@link com.rpms.HealthData.VitalRollups}).
+ * <p>
+ * Changes are passed on to the {@link CriticalVitalsIndex}, which checks each new reading once,
+ * and to the {@link EarlyWarningScores}, which score the newest reading.
+ * <p>
+ * Evicted histories are kept a while longer as compressed blocks (see
+ * {@link com.rpms.HealthData.CompressedVitalBlock}), a few bytes per reading, so that loading
+ * them again does not read the disk. They are compressed in the background, outside the store lock. These blocks are dropped first when the heap runs low.
+ * <p>
+ * The cache size can be configured with the system property rpms.vitals.cacheReadings
+ * (default 500000 readings), and the size of the compressed blocks with rpms.vitals.coldCacheBytes
+ * (default 32 MB, 0 to turn them off).
+ */
+public class PatientStore {
+
+    /** Directory holding one shard per patient */
+    private static final String SHARD_DIR = "data/patients";
+
+    /** File name suffix of a shard */
+    private static final String SHARD_SUFFIX = ".vitals";
+
+    /** Suffix of shards that are being written */
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /** Number of readings kept in memory before histories are evicted */
+    private static final long CACHE_READINGS = Long.getLong("rpms.vitals.cacheReadings", 500_000);
+
+    /** Number of bytes of compressed evicted histories kept in memory */
+    private static final long COLD_CACHE_BYTES = Long.getLong("rpms.vitals.coldCacheBytes", 32L << 20);
+
+    /** Attempts to write a changed history so that it can be evicted */
+    private static final int MAX_EVICTION_WRITES = 3;
+
+    /** Fraction of the maximum heap in use above which histories are evicted early */
+    private static final double LOW_MEMORY_RATIO = 0.85;
+
+    /**
+     * A patient's loaded vital sign history
+     */
+    private static class Shard {
+        /** The readings */
+        private final VitalSeries vitals;
+
+        /** Number of readings last added to the cache size */
+        private int counted;
+
+        /** Whether the readings changed since the shard was last written */
+        private boolean dirty;
+
+        /** Whether the readings were taken over from an older file and not written yet */
+        private boolean adopted;
+
+        /** Whether a write was requested so that the shard can be evicted */
+        private boolean writeQueued;
+
+        /** Number of such writes that failed since the shard was last written */
+        private int failedWrites;
+
+        Shard(VitalSeries vitals) {
+            this.vitals = vitals;
+        }
+    }
+
+    /** Loaded histories by patient ID, least recently used first */
+    private static final LinkedHashMap<String, Shard> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Evicted histories as compressed shard blocks by patient ID, least recently used first */
+    private static final LinkedHashMap<String, byte[]> coldCache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Evicted histories still to be compressed by patient ID */
+    private static final Map<String, VitalSeries> coldPending = new HashMap<>();
+
+    /** Number of bytes held by the compressed histories */
+    private static long coldBytes;
+
+    /** Number of readings held by the cache */
+    private static long cachedReadings;
+
+    /** Number of shards read from disk */
+    private static long loadCount;
+
+    /** Number of histories evicted from the cache */
+    private static long evictionCount;
+
+    /** Number of histories loaded from their compressed blocks */
+    private static long coldHitCount;
+
+    // ===== Access =====
+
+    /**
+     * Runs a query on a patient's history while no other thread can change it.
+     * The history is read from disk if it is not loaded; it is never handed out otherwise,
+     * since it may be changed or evicted as soon as the query returns.
+     *
+     * @param patientId The patient's ID
+     * @param query Reads from the history; must not keep a reference to it
+     * @return The query result
+     */
+    public static synchronized <T> T query(String patientId, Function<VitalSeries, T> query) {
+        return query.apply(shard(patientId).vitals);
+    }
+
+    /**
+     * Adds a reading to a patient's history
+     *
+     * @param patientId The patient's ID
+     * @param vital The reading to add
+     * @param added Updates data derived from the history, e.g. statistics, in the same step;
+     *              it runs under the store lock on the history including the reading, once it was compacted
+     */
+    public static synchronized void addVital(String patientId, VitalSign vital, Consumer<VitalSeries> added) {
+        Shard shard = shard(patientId);
+        shard.vitals.add(vital);
+        shard.vitals.compact();
+        added.accept(shard.vitals);
+        shard.dirty = true;
+        CriticalVitalsIndex.added(patientId, vital);
+        CriticalVitalsIndex.retained(patientId, shard.vitals);
+        EarlyWarningScores.updated(patientId, shard.vitals);
+        recount(shard);
+        trim(patientId);
+    }
+
+    /**
+     * Adds a batch of readings to a patient's history in one step
+     *
+     * @param patientId The patient's ID
+     * @param vitals The readings to add
+     */
+    public static synchronized void addVitals(String patientId, VitalSeries vitals) {
+        Shard shard = shard(patientId);
+        shard.vitals.addAll(vitals);
+        shard.vitals.compact();
+        shard.dirty = true;
+        CriticalVitalsIndex.addedAll(patientId, vitals);
+        CriticalVitalsIndex.retained(patientId, shard.vitals);
+        EarlyWarningScores.updated(patientId, shard.vitals);
+        recount(shard);
+        trim(patientId);
+    }
+
+    /**
+     * Removes the first reading with the same values from a patient's history
+     *
+     * @param patientId The patient's ID
+     * @param vital The reading to remove
+     * @param removed Updates data derived from the history, e.g. statistics, in the same step if a
+     *                reading was removed; it runs under the store lock on the history without the reading
+     * @return true if a reading was removed, false otherwise
+     */
+    public static synchronized boolean removeVital(String patientId, VitalSign vital, Consumer<VitalSeries> removed) {
+        Shard shard = shard(patientId);
+        boolean found = shard.vitals.remove(vital);
+        if (found) {
+            removed.accept(shard.vitals);
+            shard.dirty = true;
+            CriticalVitalsIndex.removed(patientId, vital);
+            EarlyWarningScores.updated(patientId, shard.vitals);
+            recount(shard);
+        }
+        return found;
+    }
+
+    /**
+     * Removes the readings matching a filter from a patient's history
+     *
+     * @param patientId The patient's ID
+     * @param filter Selects the readings to remove
+     * @return true if any reading was removed, false otherwise
+     */
+    public static synchronized boolean removeVitals(String patientId, Predicate<VitalSign> filter) {
+        Shard shard = shard(patientId);
+        boolean removed = shard.vitals.removeIf(filter);
+        if (removed) {
+            shard.dirty = true;
+            CriticalVitalsIndex.removedIf(patientId, filter);
+            EarlyWarningScores.updated(patientId, shard.vitals);
+            recount(shard);
+        }
+        return removed;
+    }
+
+    /**
+     * Takes over a patient's history read from a file written before histories were sharded.
+     * The history is written to a new shard at the next flush. If the patient already has a shard,
+     * it was written after the history was taken over before (the patients file was not rewritten
+     * yet), so the shard is newer and is kept.
+     * <p>
+     * Older files hold copies of a patient in several places (patient and doctor lists, appointments).
+     * Readings were only ever added to those copies in bulk, so the copy with the most readings is the
+     * latest one and is taken, whatever order the files are read in.
+     *
+     * @param patientId The patient's ID
+     * @param vitals The readings
+     */
+    public static synchronized void adopt(String patientId, List<VitalSign> vitals) {
+        Shard previous = cache.get(patientId);
+        if (previous != null ? !previous.adopted || previous.vitals.size() >= vitals.size()
+                : shardFile(patientId).exists()) {
+            return; // The stored history is newer
+        }
+        if (previous != null) {
+            cache.remove(patientId);
+            cachedReadings -= previous.counted;
+        }
+        dropCold(patientId);
+        CriticalVitalsIndex.invalidate(patientId);
+        EarlyWarningScores.invalidate(patientId);
+        Shard shard = new Shard(new VitalSeries(patientId, vitals));
+        shard.vitals.compact();
+        shard.dirty = true;
+        shard.adopted = true;
+        cache.put(patientId, shard);
+        recount(shard);
+        trim(patientId);
+    }
+
+    // ===== Persistence =====
+
+    /**
+     * Writes a patient's history if it changed since it was last written
+     *
+     * @param patientId The patient's ID
+     * @return false if writing failed, true otherwise
+     */
+    public static synchronized boolean flush(String patientId) {
+        Shard shard = cache.get(patientId);
+        return shard == null || !shard.dirty || write(patientId, shard);
+    }
+
+    /**
+     * Writes every changed history
+     *
+     * @return Number of shards written, or -1 if a shard could not be written
+     */
+    public static synchronized int flushAll() {
+        int written = 0;
+        for (Map.Entry<String, Shard> entry : cache.entrySet()) {
+            if (entry.getValue().dirty) {
+                if (!write(entry.getKey(), entry.getValue())) {
+                    return -1;
+                }
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Checks whether any loaded history changed since it was last written
+     * @return true if a flush would write data, false otherwise
+     */
+    public static synchronized boolean hasUnsavedChanges() {
+        for (Shard shard : cache.values()) {
+            if (shard.dirty) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops all loaded histories without writing them.
+     * Used before data is loaded from disk.
+     */
+    public static synchronized void clear() {
+        cache.clear();
+        cachedReadings = 0;
+        coldCache.clear();
+        coldPending.clear();
+        coldBytes = 0;
+        CriticalVitalsIndex.clear();
+        EarlyWarningScores.clear();
+        VitalTrendDetector.clear();
+    }
+
+    // ===== Statistics =====
+
+    /**
+     * Gets the number of readings held in memory
+     * @return Cached reading count
+     */
+    public static synchronized long getCachedReadings() {
+        return cachedReadings;
+    }
+
+    /**
+     * Gets the number of patient histories held in memory
+     * @return Cached history count
+     */
+    public static synchronized int getCachedPatients() {
+        return cache.size();
+    }
+
+    /**
+     * Gets the number of shards read from disk so far
+     * @return Load count
+     */
+    public static synchronized long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * Gets the number of histories evicted from memory so far
+     * @return Eviction count
+     */
+    public static synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the number of evicted histories held as compressed blocks
+     * @return Compressed history count
+     */
+    public static synchronized int getColdPatients() {
+        return coldCache.size();
+    }
+
+    /**
+     * Gets the number of bytes held by compressed evicted histories
+     * @return Compressed size in bytes
+     */
+    public static synchronized long getColdBytes() {
+        return coldBytes;
+    }
+
+    /**
+     * Gets the number of histories loaded from their compressed blocks instead of disk so far
+     * @return Compressed load count
+     */
+    public static synchronized long getColdHitCount() {
+        return coldHitCount;
+    }
+
+    // ===== Internals =====
+
+    /**
+     * Gets a loaded history, decoding it from its compressed block or reading it from disk if needed
+     */
+    private static Shard shard(String patientId) {
+        Shard shard = cache.get(patientId);
+        if (shard != null) {
+            recount(shard);
+            return shard;
+        }
+
+        File file = shardFile(patientId);
+        VitalSeries vitals = null;
+        byte[] block = dropCold(patientId);
+        if (block != null) {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(block))) {
+                vitals = VitalSignCodec.INSTANCE.readSeries(in, patientId);
+                coldHitCount++;
+            } catch (IOException e) {
+                System.err.println("Error decoding cached vital signs of " + patientId + ": " + e.getMessage());
+            }
+        }
+        if (vitals == null && file.exists()) {
+            vitals = SerializationUtil.deserializeBlock(file.getPath(),
+                    in -> VitalSignCodec.INSTANCE.readSeries(in, patientId));
+            loadCount++;
+        }
+        shard = new Shard(vitals != null ? vitals : new VitalSeries(patientId));
+        shard.dirty = shard.vitals.compact();
+        if (shard.dirty) {
+            CriticalVitalsIndex.retained(patientId, shard.vitals);
+        }
+        cache.put(patientId, shard);
+        recount(shard);
+        trim(patientId);
+        return shard;
+    }
+
+    /**
+     * Updates the cache size after a history changed size
+     */
+    private static void recount(Shard shard) {
+        int size = shard.vitals.size();
+        cachedReadings += size - shard.counted;
+        shard.counted = size;
+    }
+
+    /**
+     * Evicts least recently used histories while the cache is over its size or the heap runs low.
+     * Changed histories are not written here, since the callers hold the store lock: they stay in
+     * memory and are written in the background, then evicted (see {@link #writeEvicted(String)}).
+     *
+     * @param keepId The patient being accessed, which is never evicted, or null
+     */
+    private static void trim(String keepId) {
+        boolean memoryLow = isMemoryLow();
+        if (memoryLow) {
+            coldCache.clear();
+            coldPending.clear();
+            coldBytes = 0;
+        }
+        long limit = memoryLow ? CACHE_READINGS / 2 : CACHE_READINGS;
+        Iterator<Map.Entry<String, Shard>> eldest = cache.entrySet().iterator();
+        while (cachedReadings > limit && eldest.hasNext()) {
+            Map.Entry<String, Shard> entry = eldest.next();
+            Shard shard = entry.getValue();
+            if (entry.getKey().equals(keepId)) {
+                continue;
+            }
+            if (shard.dirty) {
+                if (!shard.writeQueued && shard.failedWrites < MAX_EVICTION_WRITES) {
+                    shard.writeQueued = true;
+                    String patientId = entry.getKey();
+                    PersistenceScheduler.schedule("patient:" + patientId, () -> writeEvicted(patientId));
+                }
+                continue;
+            }
+            eldest.remove();
+            cachedReadings -= shard.counted;
+            evictionCount++;
+            if (!memoryLow && COLD_CACHE_BYTES > 0) {
+                String patientId = entry.getKey();
+                coldPending.put(patientId, shard.vitals);
+                PersistenceScheduler.schedule("cold:" + patientId, () -> keepCold(patientId));
+            }
+        }
+    }
+
+    /**
+     * Writes a changed history that is due to be evicted, then evicts the histories the cache
+     * holds too many. Runs on the persistence thread. A history that cannot be written is tried
+     * again by the next trims, and kept in memory once it failed {@link #MAX_EVICTION_WRITES} times.
+     */
+    private static void writeEvicted(String patientId) {
+        int failedWrites = 0;
+        synchronized (PatientStore.class) {
+            // Looked up without making it the most recently used history
+            for (Map.Entry<String, Shard> entry : cache.entrySet()) {
+                if (entry.getKey().equals(patientId)) {
+                    Shard shard = entry.getValue();
+                    shard.writeQueued = false; // Requested again by the next trim if writing fails
+                    if (shard.dirty && !write(patientId, shard)) {
+                        failedWrites = ++shard.failedWrites;
+                    }
+                    break;
+                }
+            }
+            trim(null);
+        }
+        if (failedWrites == MAX_EVICTION_WRITES) {
+            Administrator.addSystemLog("Could not write the vital signs of patient " + patientId + " after "
+                    + failedWrites + " attempts - keeping them in memory until the next checkpoint");
+        }
+    }
+
+    /**
+     * Keeps an evicted, unchanged history as a compressed block, dropping the least recently
+     * used blocks while they take more than their share of memory. Runs on the persistence thread
+     * and compresses without the store lock: nothing changes an evicted history any more.
+     */
+    private static void keepCold(String patientId) {
+        VitalSeries vitals;
+        synchronized (PatientStore.class) {
+            vitals = coldPending.get(patientId);
+        }
+        if (vitals == null) {
+            return; // Loaded again meanwhile
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            VitalSignCodec.INSTANCE.writeSeries(out, vitals);
+        } catch (IOException e) {
+            return; // Not thrown by byte arrays
+        }
+        synchronized (PatientStore.class) {
+            // A history loaded again meanwhile may have changed, and was dropped from the pending ones
+            if (!coldPending.remove(patientId, vitals) || bytes.size() > COLD_CACHE_BYTES) {
+                return;
+            }
+            byte[] block = bytes.toByteArray();
+            coldCache.put(patientId, block);
+            coldBytes += block.length;
+            Iterator<byte[]> eldest = coldCache.values().iterator();
+            while (coldBytes > COLD_CACHE_BYTES && eldest.hasNext()) {
+                coldBytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes a history's compressed block, and forgets it if it is still to be compressed
+     *
+     * @return The block, or null if the history has none
+     */
+    private static byte[] dropCold(String patientId) {
+        coldPending.remove(patientId);
+        byte[] block = coldCache.remove(patientId);
+        if (block != null) {
+            coldBytes -= block.length;
+        }
+        return block;
+    }
+
+    /**
+     * Checks whether most of the maximum heap is in use
+     */
+    private static boolean isMemoryLow() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used > runtime.maxMemory() * LOW_MEMORY_RATIO;
+    }
+
+    /**
+     * Writes a history to its shard, replacing the old shard only once the new one is complete
+     */
+    private static boolean write(String patientId, Shard shard) {
+        File target = shardFile(patientId);
+        File tmp = new File(target.getPath() + TMP_SUFFIX);
+        if (!SerializationUtil.serializeBlock(out -> VitalSignCodec.INSTANCE.writeSeries(out, shard.vitals), tmp.getPath())
+                || !DataManager.moveFile(tmp, target)) {
+            return false;
+        }
+        shard.dirty = false;
+        shard.adopted = false;
+        shard.writeQueued = false;
+        shard.failedWrites = 0;
+        return true;
+    }
+
+    /**
+     * Gets the shard file of a patient
+     */
+    private static File shardFile(String patientId) {
+        return new File(SHARD_DIR, patientId + SHARD_SUFFIX);
+    }
+}
@@ -0,0 +1,157 @@
+package com.rpms.utilities;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background writer that group-commits persistence work.
+ * Save requests are keyed (for example "journal", "checkpoint" or "patient:pat1"); repeated
+ * requests for the same key are merged, so a burst of mutations results in a single write.
+ * Pending work is written on a dedicated thread once no new request arrived for the debounce
+ * window, and never later than the maximum latency after the first pending request.
+ * The work runs while the data may keep changing, so it must only write copies taken by the thread
+ * that owns the data, or data guarded by a lock of its own.
+ * <p>
+ * The window sizes can be configured with the system properties rpms.persist.debounceMs
+ * (default 250) and rpms.persist.maxLatencyMs (default 2000).
+ */
+public class PersistenceScheduler {
+
+    /** Quiet period after the last request before pending work is written */
+    private static final long DEBOUNCE_MS = Long.getLong("rpms.persist.debounceMs", 250);
+
+    /** Longest time a request may stay pending while new requests keep arriving */
+    private static final long MAX_LATENCY_MS = Long.getLong("rpms.persist.maxLatencyMs", 2000);
+
+    /** Name of the writer thread */
+    private static final String THREAD_NAME = "rpms-persistence";
+
+    /** Single writer thread; daemon so it never keeps the application alive */
+    private static final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, THREAD_NAME);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Pending work by key, in the order the keys were first requested */
+    private static final Map<String, Runnable> pending = new LinkedHashMap<>();
+
+    /** When the oldest pending request arrived (System.nanoTime), or -1 if nothing is pending */
+    private static long firstPendingAt = -1;
+
+    /** The currently scheduled write, if any */
+    private static ScheduledFuture<?> scheduledWrite;
+
+    /** Number of save requests received */
+    private static long requestCount;
+
+    /** Number of writes actually performed */
+    private static long writeCount;
+
+    static {
+        // Pending work must not be lost when the application exits through System.exit
+        Runtime.getRuntime().addShutdownHook(new Thread(PersistenceScheduler::flush, "rpms-persistence-shutdown"));
+    }
+
+    /**
+     * Requests that the given work is performed in the background.
+     * If work with the same key is already pending it is replaced, so only the latest request runs.
+     *
+     * @param key Identifies the data being saved
+     * @param task The work that writes it
+     */
+    public static synchronized void schedule(String key, Runnable task) {
+        pending.put(key, task);
+        requestCount++;
+
+        long now = System.nanoTime();
+        if (firstPendingAt < 0) {
+            firstPendingAt = now;
+        }
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(now - firstPendingAt);
+        long delay = Math.max(0, Math.min(DEBOUNCE_MS, MAX_LATENCY_MS - waitedMs));
+
+        if (scheduledWrite != null) {
+            scheduledWrite.cancel(false);
+        }
+        scheduledWrite = writer.schedule(PersistenceScheduler::writePending, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes all pending work and waits until it is done.
+     * Used as a barrier before logout and shutdown.
+     */
+    public static void flush() {
+        if (Thread.currentThread().getName().equals(THREAD_NAME)) {
+            writePending();
+            return;
+        }
+
+        Future<?> write;
+        synchronized (PersistenceScheduler.class) {
+            if (scheduledWrite != null) {
+                scheduledWrite.cancel(false);
+                scheduledWrite = null;
+            }
+            write = writer.submit(PersistenceScheduler::writePending);
+        }
+
+        try {
+            write.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while flushing pending saves");
+        } catch (ExecutionException e) {
+            System.err.println("Error flushing pending saves: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Gets the number of save requests received so far
+     * @return Request count
+     */
+    public static synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Gets the number of writes performed so far
+     * @return Write count
+     */
+    public static synchronized long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * Runs all pending work on the writer thread.
+     * The work only writes copies taken by the thread that owns the data, or data guarded by its own lock.
+     */
+    private static void writePending() {
+        Map<String, Runnable> batch;
+        synchronized (PersistenceScheduler.class) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new LinkedHashMap<>(pending);
+            pending.clear();
+            firstPendingAt = -1;
+            scheduledWrite = null;
+            writeCount += batch.size();
+        }
+
+        for (Map.Entry<String, Runnable> entry : batch.entrySet()) {
+            try {
+                entry.getValue().run();
+            } catch (Exception e) {
+                System.err.println("Error saving " + entry.getKey() + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+}
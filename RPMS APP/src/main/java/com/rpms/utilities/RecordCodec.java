@@ -0,0 +1,43 @@
+package com.rpms.utilities;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact binary encoding for a record type that is stored in large numbers.
+ * Used through {@link SerializationUtil#writeRecords} and {@link SerializationUtil#readRecords}
+ * instead of default Java serialization, which writes class descriptors and boxed values per record.
+ * <p>
+ * Every block of records starts with the codec version it was written with, so a codec can keep
+ * reading blocks written by older versions of itself.
+ *
+ * @param <T> The record type
+ */
+public interface RecordCodec<T> {
+
+    /**
+     * Gets the version written in front of each block of records
+     * @return Current format version
+     */
+    int getVersion();
+
+    /**
+     * Writes a single record
+     *
+     * @param out Output to write to
+     * @param record The record to write
+     * @throws IOException If an I/O error occurs
+     */
+    void write(DataOutput out, T record) throws IOException;
+
+    /**
+     * Reads a single record
+     *
+     * @param in Input to read from
+     * @param version The format version the record was written with
+     * @return The decoded record
+     * @throws IOException If an I/O error occurs or the data is invalid
+     */
+    T read(DataInput in, int version) throws IOException;
+}
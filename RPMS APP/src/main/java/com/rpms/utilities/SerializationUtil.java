@@ -1,18 +1,41 @@
 package com.rpms.utilities;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Utility class for object serialization and deserialization.
- * Provides static methods to save and load objects to/from files.
+ * Provides static methods to save and load objects to/from files,
+ * and to store large collections of records with a compact {@link RecordCodec}.
  */
 public class SerializationUtil {
 
+    /** First bytes of a file written by {@link #serializeRecords} */
+    private static final int RECORDS_MAGIC = 0x52504D53; // "RPMS"
+
+    /** First bytes of a Java serialization stream */
+    private static final short JAVA_STREAM_MAGIC = (short) 0xACED;
+
+    /** Set when data in the format of an older version was found while reading */
+    private static volatile boolean legacyFormatRead = false;
+
     /**
      * Serializes an object to a file.
      * 
@@ -42,6 +65,104 @@ public class SerializationUtil {
         }
     }
 
+    /**
+     * Serializes an object to bytes, e.g. to copy live data on the thread that owns it
+     * and write the copy to a file later with {@link #writeBytes}
+     *
+     * @param obj The object to serialize
+     * @return The bytes {@link #serializeObject} would write
+     * @throws IOException If the object cannot be serialized
+     */
+    public static byte[] serializeToBytes(Object obj) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(obj);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes custom contents of a record file to bytes, e.g. to copy live data on the thread
+     * that owns it and write the copy to a file later with {@link #writeBytes}
+     *
+     * @param writer Writes the contents
+     * @return The bytes {@link #serializeBlock} would write
+     * @throws IOException If the contents cannot be written
+     */
+    public static byte[] serializeBlockToBytes(BlockWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(RECORDS_MAGIC);
+            writer.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes serialized data to a file
+     *
+     * @param data Bytes from {@link #serializeToBytes} or {@link #serializeBlockToBytes}
+     * @param filePath The file path to save to
+     * @return True if successful, false otherwise
+     */
+    public static boolean writeBytes(byte[] data, String filePath) {
+        try {
+            File parent = new File(filePath).getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+
+            try (FileOutputStream out = new FileOutputStream(filePath)) {
+                out.write(data);
+                System.out.println("Object serialized to: " + filePath);
+                return true;
+            }
+        } catch (IOException e) {
+            System.err.println("Error serializing object: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Reads a field that only exists in streams written by older versions of a class,
+     * such as object references that are now stored as IDs.
+     *
+     * @param fields The fields read from the stream
+     * @param name The name of the old field
+     * @return The field value, or null if the stream does not contain the field
+     * @throws IOException If the field cannot be read
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T readLegacyField(ObjectInputStream.GetField fields, String name) throws IOException {
+        try {
+            T value = (T) fields.get(name, null);
+            if (value != null) {
+                legacyFormatRead = true;
+            }
+            return value;
+        } catch (IllegalArgumentException e) {
+            return null; // written by the current version
+        }
+    }
+
+    /**
+     * Records that data in an older format was read, so it is rewritten in the current format
+     */
+    public static void markLegacyFormatRead() {
+        legacyFormatRead = true;
+    }
+
+    /**
+     * Checks whether data in an older format was read since the last call, and resets the flag
+     * @return true if data in an older format was read, false otherwise
+     */
+    public static boolean checkLegacyFormatRead() {
+        boolean read = legacyFormatRead;
+        legacyFormatRead = false;
+        return read;
+    }
+
     /**
      * Deserializes an object from a file.
      * 
@@ -67,4 +188,292 @@ public class SerializationUtil {
             return null;
         }
     }
+
+    //------------------------------
+    // Compact Record Encoding
+    //------------------------------
+
+    /**
+     * Writes a list of records as one versioned block: codec version, record count, records.
+     * Works inside writeObject as well, since ObjectOutputStream is a DataOutput.
+     *
+     * @param out Output to write to
+     * @param records The records to write
+     * @param codec Codec for the record type
+     * @throws IOException If an I/O error occurs
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void writeRecords(DataOutput out, List<T> records, RecordCodec<T> codec) throws IOException {
+        // Copy first so the count always matches the records written
+        Object[] snapshot = records.toArray();
+        out.writeByte(codec.getVersion());
+        out.writeInt(snapshot.length);
+        for (Object record : snapshot) {
+            codec.write(out, (T) record);
+        }
+    }
+
+    /**
+     * Reads a block of records written by {@link #writeRecords}
+     *
+     * @param in Input to read from
+     * @param codec Codec for the record type
+     * @return The decoded records
+     * @throws IOException If an I/O error occurs or the block was written by a newer version
+     */
+    public static <T> ArrayList<T> readRecords(DataInput in, RecordCodec<T> codec) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version > codec.getVersion()) {
+            throw new InvalidObjectException("Unsupported record format version " + version
+                    + " for " + codec.getClass().getSimpleName());
+        }
+        int count = in.readInt();
+        ArrayList<T> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(codec.read(in, version));
+        }
+        return records;
+    }
+
+    /**
+     * Writes the contents of a record file
+     */
+    @FunctionalInterface
+    public interface BlockWriter {
+        /**
+         * Writes the contents
+         * @param out Output to write to
+         * @throws IOException If an I/O error occurs
+         */
+        void write(DataOutput out) throws IOException;
+    }
+
+    /**
+     * Reads the contents of a record file
+     * @param <T> Type of the contents
+     */
+    @FunctionalInterface
+    public interface BlockReader<T> {
+        /**
+         * Reads the contents
+         * @param in Input to read from
+         * @return The contents
+         * @throws IOException If an I/O error occurs or the data is invalid
+         */
+        T read(DataInput in) throws IOException;
+    }
+
+    /**
+     * Saves a list of records to a file using a compact codec
+     *
+     * @param records The records to save
+     * @param codec Codec for the record type
+     * @param filePath The file path to save to
+     * @return True if successful, false otherwise
+     */
+    public static <T> boolean serializeRecords(List<T> records, RecordCodec<T> codec, String filePath) {
+        return serializeBlock(out -> writeRecords(out, records, codec), filePath);
+    }
+
+    /**
+     * Saves custom contents to a record file, such as records written without a list of objects
+     *
+     * @param writer Writes the contents
+     * @param filePath The file path to save to
+     * @return True if successful, false otherwise
+     */
+    public static boolean serializeBlock(BlockWriter writer, String filePath) {
+        try {
+            File parent = new File(filePath).getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(filePath)))) {
+                out.writeInt(RECORDS_MAGIC);
+                writer.write(out);
+                System.out.println("Records serialized to: " + filePath);
+                return true;
+            }
+        } catch (IOException e) {
+            System.err.println("Error serializing records: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Loads custom contents from a record file written by {@link #serializeBlock}
+     *
+     * @param filePath The file path to read from
+     * @param reader Reads the contents
+     * @return The contents, or null if unsuccessful
+     */
+    public static <T> T deserializeBlock(String filePath, BlockReader<T> reader) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            System.err.println("File does not exist: " + filePath);
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != RECORDS_MAGIC) {
+                throw new InvalidObjectException("Not a record file");
+            }
+            T contents = reader.read(in);
+            System.out.println("Records deserialized from: " + filePath);
+            return contents;
+        } catch (IOException e) {
+            System.err.println("Error deserializing records: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Loads a list of records saved by {@link #serializeRecords}.
+     * Files written with default Java serialization by older versions are still read.
+     *
+     * @param filePath The file path to read from
+     * @param codec Codec for the record type
+     * @return The records, or null if unsuccessful
+     */
+    public static <T> ArrayList<T> deserializeRecords(String filePath, RecordCodec<T> codec) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            System.err.println("File does not exist: " + filePath);
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            in.mark(4);
+            if (in.readShort() == JAVA_STREAM_MAGIC) {
+                legacyFormatRead = true;
+                return deserializeObject(filePath);
+            }
+            in.reset();
+            if (in.readInt() != RECORDS_MAGIC) {
+                throw new InvalidObjectException("Not a record file");
+            }
+            ArrayList<T> records = readRecords(in, codec);
+            System.out.println("Records deserialized from: " + filePath);
+            return records;
+        } catch (IOException e) {
+            System.err.println("Error deserializing records: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Writes a nullable string as a varint length followed by its UTF-8 bytes.
+     * Unlike writeUTF this has no 64 KB limit.
+     *
+     * @param out Output to write to
+     * @param value The string, may be null
+     * @throws IOException If an I/O error occurs
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}
+     *
+     * @param in Input to read from
+     * @return The string, or null
+     * @throws IOException If an I/O error occurs
+     */
+    public static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a nullable date-time as epoch milliseconds (UTC).
+     * Sub-millisecond precision is kept in an extra field only when present.
+     *
+     * @param out Output to write to
+     * @param value The date-time, may be null
+     * @throws IOException If an I/O error occurs
+     */
+    public static void writeDateTime(DataOutput out, LocalDateTime value) throws IOException {
+        if (value == null) {
+            out.writeByte(0);
+            return;
+        }
+        writeDateTime(out, value.toInstant(ZoneOffset.UTC).toEpochMilli(), value.getNano() % 1_000_000);
+    }
+
+    /**
+     * Writes a date-time given as epoch milliseconds (UTC) in the format of {@link #writeDateTime(DataOutput, LocalDateTime)},
+     * for callers that already hold the time in this form
+     *
+     * @param out Output to write to
+     * @param epochMillis Epoch milliseconds
+     * @param subMillisNanos Nanoseconds below the millisecond
+     * @throws IOException If an I/O error occurs
+     */
+    public static void writeDateTime(DataOutput out, long epochMillis, int subMillisNanos) throws IOException {
+        out.writeByte(subMillisNanos == 0 ? 1 : 2);
+        out.writeLong(epochMillis);
+        if (subMillisNanos != 0) {
+            out.writeInt(subMillisNanos);
+        }
+    }
+
+    /**
+     * Reads a date-time written by {@link #writeDateTime}
+     *
+     * @param in Input to read from
+     * @return The date-time, or null
+     * @throws IOException If an I/O error occurs or the data is invalid
+     */
+    public static LocalDateTime readDateTime(DataInput in) throws IOException {
+        int kind = in.readUnsignedByte();
+        if (kind == 0) {
+            return null;
+        }
+        if (kind > 2) {
+            throw new InvalidObjectException("Invalid date-time marker " + kind);
+        }
+        long epochMillis = in.readLong();
+        int nanos = (int) Math.floorMod(epochMillis, 1000L) * 1_000_000;
+        if (kind == 2) {
+            nanos += in.readInt();
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000L), nanos, ZoneOffset.UTC);
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new InvalidObjectException("Malformed varint");
+    }
 }
@@ -0,0 +1,112 @@
+package com.rpms.utilities;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * A single entry of the system log: when it was written, how important it is, who caused it
+ * and what happened.
+ * Entries are stored by the {@link SystemLogStore}, which numbers them in the order they were written.
+ */
+public class SystemLogEntry {
+
+    /**
+     * Importance of an entry.
+     * New levels must be appended at the end because the ordinal is stored on disk.
+     */
+    public enum Level {
+        INFO,
+        WARNING,
+        ERROR
+    }
+
+    /** Format of the time shown for an entry */
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /** Position of the entry in the log */
+    private final long sequence;
+
+    /** When the entry was written, in epoch milliseconds */
+    private final long timeMillis;
+
+    /** Importance of the entry */
+    private final Level level;
+
+    /** User name of whoever caused the entry, or "system" */
+    private final String actor;
+
+    /** What happened */
+    private final String message;
+
+    /**
+     * Creates a log entry
+     *
+     * @param sequence Position of the entry in the log
+     * @param timeMillis When the entry was written, in epoch milliseconds
+     * @param level Importance of the entry
+     * @param actor Who caused the entry
+     * @param message What happened
+     */
+    public SystemLogEntry(long sequence, long timeMillis, Level level, String actor, String message) {
+        this.sequence = sequence;
+        this.timeMillis = timeMillis;
+        this.level = level;
+        this.actor = actor;
+        this.message = message;
+    }
+
+    /**
+     * Gets the position of the entry in the log
+     * @return Sequence number, increasing in the order entries were written
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets when the entry was written
+     * @return Epoch milliseconds
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Gets when the entry was written, in the local time zone
+     * @return Local date and time
+     */
+    public LocalDateTime getTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), ZoneId.systemDefault());
+    }
+
+    /**
+     * Gets the importance of the entry
+     * @return Log level
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets who caused the entry
+     * @return User name, or "system"
+     */
+    public String getActor() {
+        return actor;
+    }
+
+    /**
+     * Gets what happened
+     * @return Log message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return getTime().format(TIME_FORMAT) + " [" + level + "] " + actor + ": " + message;
+    }
+}
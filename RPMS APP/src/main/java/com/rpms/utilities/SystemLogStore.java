@@ -0,0 +1,699 @@
+package com.rpms.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import com.rpms.utilities.SystemLogEntry.Level;
+
+/**
+ * Bounded, structured storage of the system log.
+ * <p>
+ * Entries (time, level, actor and message) are appended to numbered segment files
+ * (data/logs/system-&lt;generation&gt;.log) as length-prefixed, checksummed records, without reading
+ * the log first. Each run starts a new segment, so a torn record at the end of a segment is never
+ * appended to, and a segment is closed once it reaches its size limit. The oldest segments are
+ * deleted once all segments together exceed the size of the log, which bounds the log both on disk
+ * and in memory. Appends are buffered and synced by the {@link PersistenceScheduler}.
+ * <p>
+ * The entries are read into memory, column by column, the first time they are queried. They are
+ * numbered in the order they were written and their times never go back, so a time range is found
+ * by binary search, and each actor has its own list of entry numbers, so filtering by actor does not
+ * scan the log. Views read entries by position, only for the rows they show (see {@link #lowerBound}
+ * and {@link #entryAt}), and follow new entries through {@link #getChanges()}.
+ * <p>
+ * Logs written by earlier versions (logs.ser and journaled log lines) are imported once, when the
+ * log directory is created.
+ * <p>
+ * The segment size can be configured with the system property rpms.logs.segmentBytes (default 256 KB)
+ * and the size of the whole log with rpms.logs.maxBytes (default 4 MB).
+ */
+public class SystemLogStore {
+
+    /** Actor of entries not caused by a logged-in user */
+    public static final String SYSTEM_ACTOR = "system";
+
+    /** Directory holding the segments */
+    private static final String LOG_DIR = "data/logs";
+
+    private static final String SEGMENT_PREFIX = "system-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /** Log file of earlier versions, imported once */
+    private static final String LEGACY_FILE = "data/logs.ser";
+
+    /** Size at which a segment is closed and the next one started */
+    private static final long SEGMENT_BYTES = Math.max(1024, Long.getLong("rpms.logs.segmentBytes", 256L << 10));
+
+    /** Size of all segments together above which the oldest segments are deleted */
+    private static final long MAX_BYTES = Math.max(SEGMENT_BYTES, Long.getLong("rpms.logs.maxBytes", 4L << 20));
+
+    /** Longest message stored; longer messages are cut */
+    private static final int MAX_MESSAGE_CHARS = 8192;
+
+    /**
+     * A segment file
+     */
+    private static final class Segment {
+        /** Number of the segment, increasing in the order segments were started */
+        private final long generation;
+
+        /** Size of the segment file */
+        private long bytes;
+
+        /** Number of the first entry of the segment, once the log was read */
+        private long firstSequence;
+
+        Segment(long generation, long bytes) {
+            this.generation = generation;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Numbers of the entries of one actor, oldest first.
+     * Positions count every entry the actor ever had, so they stay valid when old entries are dropped.
+     */
+    private static final class Positions {
+        private long[] sequences = new long[16];
+        private int head;
+        private int size;
+
+        /** Position of the oldest entry kept */
+        private long start;
+
+        void add(long sequence) {
+            if (head + size == sequences.length) {
+                long[] grown = size * 2 > sequences.length ? new long[sequences.length * 2] : sequences;
+                System.arraycopy(sequences, head, grown, 0, size);
+                sequences = grown;
+                head = 0;
+            }
+            sequences[head + size++] = sequence;
+        }
+
+        long end() {
+            return start + size;
+        }
+
+        long get(long position) {
+            return sequences[head + (int) (position - start)];
+        }
+
+        void dropBefore(long sequence) {
+            while (size > 0 && sequences[head] < sequence) {
+                head++;
+                size--;
+                start++;
+            }
+        }
+    }
+
+    /** The segments, oldest first; the last one is appended to */
+    private static final ArrayDeque<Segment> segments = new ArrayDeque<>();
+
+    /** Whether the segments on disk were listed */
+    private static boolean initialized;
+
+    /** Whether the log directory was created by this run, so logs of earlier versions are imported */
+    private static boolean migrating;
+
+    /** Output stream of the segment being appended to, opened lazily */
+    private static DataOutputStream out;
+
+    /** File stream underneath {@link #out}, used to force written entries to disk */
+    private static FileOutputStream fileOut;
+
+    /** Time of the newest entry written by this run */
+    private static long lastMillis = Long.MIN_VALUE;
+
+    /** User name recorded for entries that do not name their actor, or null for the system */
+    private static String sessionActor;
+
+    // ===== Entries in memory, once read =====
+
+    /** Whether the entries were read into memory */
+    private static boolean loaded;
+
+    /** Number of the oldest entry kept, and of the next entry */
+    private static long firstSequence;
+    private static long nextSequence;
+
+    /** Index of the oldest entry in the columns */
+    private static int offset;
+
+    /** Columns of the entries */
+    private static long[] times = new long[0];
+    private static byte[] levels = new byte[0];
+    private static int[] actors = new int[0];
+    private static String[] messages = new String[0];
+
+    /** Actor names by ID, IDs by name, and the entries of each actor */
+    private static final List<String> actorNames = new ArrayList<>();
+    private static final Map<String, Integer> actorIds = new HashMap<>();
+    private static final List<Positions> actorPositions = new ArrayList<>();
+
+    /** Number of times the entries were cleared */
+    private static long resetCount;
+
+    /** Added entries, and clears of the log */
+    private static final ChangeFeed<SystemLogEntry> changes = new ChangeFeed<>();
+
+    // ===== Writing =====
+
+    /**
+     * Sets the user recorded for entries that do not name their actor, e.g. when a user logs in
+     * @param actor User name, or null for the system
+     */
+    public static synchronized void setSessionActor(String actor) {
+        sessionActor = actor;
+    }
+
+    /**
+     * Appends an entry to the log
+     *
+     * @param level Importance of the entry
+     * @param actor Who caused the entry, or null for the user logged in
+     * @param message What happened
+     */
+    public static synchronized void append(Level level, String actor, String message) {
+        init();
+        if (actor == null) {
+            actor = sessionActor != null ? sessionActor : SYSTEM_ACTOR;
+        }
+        if (message == null) {
+            message = "";
+        } else if (message.length() > MAX_MESSAGE_CHARS) {
+            message = message.substring(0, MAX_MESSAGE_CHARS) + "...";
+        }
+        // Times never go back, so time ranges can be found by binary search
+        long time = Math.max(System.currentTimeMillis(), lastMillis);
+        appendEntry(time, level, actor, message);
+    }
+
+    /**
+     * Removes all entries from the log
+     */
+    public static synchronized void clear() {
+        init();
+        closeStream();
+        for (Segment segment : segments) {
+            File file = segmentFile(segment.generation);
+            if (file.exists() && !file.delete()) {
+                System.err.println("Could not delete log segment: " + file);
+            }
+        }
+        long generation = segments.getLast().generation + 1;
+        segments.clear();
+        segments.add(new Segment(generation, 0));
+        segments.getLast().firstSequence = nextSequence;
+        if (loaded) {
+            dropBefore(nextSequence);
+        }
+        resetCount++;
+        changes.reloaded();
+    }
+
+    /**
+     * Writes buffered entries and forces them to disk
+     * @return true if the entries were synced, false otherwise
+     */
+    public static synchronized boolean sync() {
+        if (out == null) {
+            return true;
+        }
+        try {
+            out.flush();
+            fileOut.getChannel().force(false);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error syncing system log: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Imports a log line journaled by an earlier version, when the log is being migrated
+     * @param message The log line
+     */
+    public static synchronized void replayLegacyLog(String message) {
+        init();
+        if (migrating) {
+            append(Level.INFO, SYSTEM_ACTOR, message);
+        }
+    }
+
+    /**
+     * Imports a clear of the logs journaled by an earlier version, when the log is being migrated
+     */
+    public static synchronized void replayLegacyClear() {
+        init();
+        if (migrating) {
+            clear();
+        }
+    }
+
+    // ===== Queries =====
+
+    /**
+     * Gets the changes of the log: each added entry, and a reload when the log was cleared
+     * @return Change feed of the log
+     */
+    public static ChangeFeed<SystemLogEntry> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Gets the number of times the log was cleared; positions from before a clear are no longer valid
+     * @return Number of clears
+     */
+    public static synchronized long getResetCount() {
+        return resetCount;
+    }
+
+    /**
+     * Gets the number of entries kept
+     * @return Entry count
+     */
+    public static synchronized long size() {
+        load();
+        return nextSequence - firstSequence;
+    }
+
+    /**
+     * Gets the size of the log on disk
+     * @return Bytes of all segments
+     */
+    public static synchronized long getDiskBytes() {
+        init();
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the actors that have entries in the log
+     * @return Actor names, sorted
+     */
+    public static synchronized List<String> getActors() {
+        load();
+        List<String> names = new ArrayList<>();
+        for (int id = 0; id < actorNames.size(); id++) {
+            if (actorPositions.get(id).size > 0) {
+                names.add(actorNames.get(id));
+            }
+        }
+        names.sort(String.CASE_INSENSITIVE_ORDER);
+        return names;
+    }
+
+    /**
+     * Finds the position of the first entry written at or after a time.
+     * Positions of all entries are their sequence numbers; positions of an actor's entries count
+     * that actor's entries. Positions stay valid until the log is cleared (see {@link #getResetCount()}).
+     *
+     * @param actor Only count this actor's entries, or null for all entries
+     * @param millis Epoch milliseconds; Long.MIN_VALUE for the oldest entry kept,
+     *               Long.MAX_VALUE for the position after the newest entry
+     * @return Position of the first entry at or after the time
+     */
+    public static synchronized long lowerBound(String actor, long millis) {
+        load();
+        Positions positions = positionsOf(actor);
+        long low;
+        long high;
+        if (actor == null) {
+            low = firstSequence;
+            high = nextSequence;
+        } else if (positions == null) {
+            return 0;
+        } else {
+            low = positions.start;
+            high = positions.end();
+        }
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            long sequence = positions == null ? middle : positions.get(middle);
+            if (times[index(sequence)] < millis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reads the entry at a position
+     *
+     * @param actor Only count this actor's entries, or null for all entries
+     * @param position Position of the entry (see {@link #lowerBound})
+     * @return The entry, or null if it is no longer kept
+     */
+    public static synchronized SystemLogEntry entryAt(String actor, long position) {
+        load();
+        long sequence;
+        if (actor == null) {
+            sequence = position;
+        } else {
+            Positions positions = positionsOf(actor);
+            if (positions == null || position < positions.start || position >= positions.end()) {
+                return null;
+            }
+            sequence = positions.get(position);
+        }
+        if (sequence < firstSequence || sequence >= nextSequence) {
+            return null;
+        }
+        int i = index(sequence);
+        return new SystemLogEntry(sequence, times[i], Level.values()[levels[i]], actorNames.get(actors[i]), messages[i]);
+    }
+
+    // ===== Segments =====
+
+    /**
+     * Lists the segments on disk and starts a new one, the first time the log is used
+     */
+    private static void init() {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+        File dir = new File(LOG_DIR);
+        migrating = !dir.exists();
+        if (migrating && !dir.mkdirs()) {
+            System.err.println("Could not create log directory: " + dir);
+        }
+        long latest = 0;
+        for (long generation : listGenerations()) {
+            segments.add(new Segment(generation, segmentFile(generation).length()));
+            latest = generation;
+        }
+        segments.add(new Segment(latest + 1, 0));
+        if (migrating) {
+            importLegacyFile();
+        }
+    }
+
+    /**
+     * Imports the log file of earlier versions, then deletes it
+     */
+    private static void importLegacyFile() {
+        File legacy = new File(LEGACY_FILE);
+        if (!legacy.exists()) {
+            return;
+        }
+        List<String> lines = SerializationUtil.deserializeObject(LEGACY_FILE);
+        if (lines == null) {
+            return;
+        }
+        for (String line : lines) {
+            append(Level.INFO, SYSTEM_ACTOR, line);
+        }
+        if (sync() && !legacy.delete()) {
+            System.err.println("Could not delete imported log file: " + legacy);
+        }
+        System.out.println("Imported " + lines.size() + " system logs from " + LEGACY_FILE);
+    }
+
+    /**
+     * Writes an entry to the current segment and keeps it in memory if the log was read
+     */
+    private static void appendEntry(long time, Level level, String actor, String message) {
+        lastMillis = time;
+        Segment segment = segments.getLast();
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 + message.length());
+            DataOutputStream body = new DataOutputStream(buffer);
+            body.writeLong(time);
+            body.writeByte(level.ordinal());
+            body.writeUTF(actor);
+            body.writeUTF(message);
+            body.flush();
+
+            byte[] bytes = buffer.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+
+            DataOutputStream stream = stream();
+            stream.writeInt(bytes.length);
+            stream.write(bytes);
+            stream.writeInt((int) crc.getValue());
+            segment.bytes += bytes.length + 8;
+        } catch (IOException e) {
+            // The segment may end in a torn record now, so continue in a new one
+            System.err.println("Error writing system log: " + e.getMessage());
+            segment.bytes = Math.max(segment.bytes, SEGMENT_BYTES);
+        }
+
+        SystemLogEntry entry = null;
+        if (loaded) {
+            entry = add(time, level, actor, message);
+        }
+        if (segment.bytes >= SEGMENT_BYTES) {
+            rotate();
+        }
+        PersistenceScheduler.schedule("logs", SystemLogStore::sync);
+        if (entry != null) {
+            changes.added(entry);
+        }
+    }
+
+    /**
+     * Closes the current segment, starts the next one and deletes the oldest segments
+     * while the log is larger than its limit
+     */
+    private static void rotate() {
+        closeStream();
+        Segment next = new Segment(segments.getLast().generation + 1, 0);
+        next.firstSequence = nextSequence;
+        segments.add(next);
+
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.bytes;
+        }
+        while (total > MAX_BYTES && segments.size() > 1) {
+            Segment oldest = segments.removeFirst();
+            total -= oldest.bytes;
+            File file = segmentFile(oldest.generation);
+            if (file.exists() && !file.delete()) {
+                System.err.println("Could not delete log segment: " + file);
+            }
+            if (loaded) {
+                dropBefore(segments.getFirst().firstSequence);
+            }
+        }
+    }
+
+    private static DataOutputStream stream() throws IOException {
+        if (out == null) {
+            fileOut = new FileOutputStream(segmentFile(segments.getLast().generation), true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        }
+        return out;
+    }
+
+    private static void closeStream() {
+        if (out != null) {
+            sync();
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Error closing system log: " + e.getMessage());
+            }
+            out = null;
+            fileOut = null;
+        }
+    }
+
+    private static File segmentFile(long generation) {
+        return new File(LOG_DIR, SEGMENT_PREFIX + generation + SEGMENT_SUFFIX);
+    }
+
+    private static List<Long> listGenerations() {
+        List<Long> generations = new ArrayList<>();
+        File[] files = new File(LOG_DIR).listFiles();
+        if (files == null) {
+            return generations;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    generations.add(Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    System.err.println("Ignoring unexpected log file: " + name);
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    // ===== Entries in memory =====
+
+    /**
+     * Reads all segments into memory, the first time the log is queried
+     */
+    private static void load() {
+        init();
+        if (loaded) {
+            return;
+        }
+        long started = System.nanoTime();
+        if (out != null) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                System.err.println("Error writing system log: " + e.getMessage());
+            }
+        }
+        loaded = true;
+        for (Segment segment : segments) {
+            segment.firstSequence = nextSequence;
+            File file = segmentFile(segment.generation);
+            if (file.exists()) {
+                readSegment(file);
+            }
+        }
+        if (nextSequence > firstSequence) {
+            lastMillis = Math.max(lastMillis, times[index(nextSequence - 1)]);
+        }
+        System.out.println("Read " + (nextSequence - firstSequence) + " system log entries from " + segments.size()
+                + " segments in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+    }
+
+    /**
+     * Reads the entries of a segment, up to the first incomplete or corrupt record
+     */
+    private static void readSegment(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return; // clean end of segment
+                }
+                if (length <= 0 || length > (1 << 20)) {
+                    System.err.println("Corrupt log record length in " + file.getName() + ", skipping the rest");
+                    return;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                int storedCrc = in.readInt();
+
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                if ((int) crc.getValue() != storedCrc) {
+                    System.err.println("Log checksum mismatch in " + file.getName() + ", skipping the rest");
+                    return;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+                long time = record.readLong();
+                int level = record.readUnsignedByte();
+                String actor = record.readUTF();
+                String message = record.readUTF();
+                add(time, level < Level.values().length ? Level.values()[level] : Level.ERROR, actor, message);
+            }
+        } catch (EOFException e) {
+            System.err.println("Incomplete trailing record in " + file.getName() + " ignored");
+        } catch (IOException e) {
+            System.err.println("Error reading log segment " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds an entry to the columns and to its actor's index
+     */
+    private static SystemLogEntry add(long time, Level level, String actor, String message) {
+        int count = (int) (nextSequence - firstSequence);
+        if (offset + count == times.length) {
+            int capacity = Math.max(256, count * 2 > times.length ? times.length * 2 : times.length);
+            times = moveColumn(times, new long[capacity], count);
+            levels = moveColumn(levels, new byte[capacity], count);
+            actors = moveColumn(actors, new int[capacity], count);
+            messages = moveColumn(messages, new String[capacity], count);
+            offset = 0;
+        }
+        int i = offset + count;
+        if (count > 0) {
+            // Clocks may go back; keep the times ordered
+            time = Math.max(time, times[i - 1]);
+        }
+        Integer id = actorIds.get(actor);
+        if (id == null) {
+            id = actorNames.size();
+            actorNames.add(actor);
+            actorIds.put(actor, id);
+            actorPositions.add(new Positions());
+        }
+        long sequence = nextSequence++;
+        times[i] = time;
+        levels[i] = (byte) level.ordinal();
+        actors[i] = id;
+        messages[i] = message;
+        actorPositions.get(id).add(sequence);
+        return new SystemLogEntry(sequence, time, level, actor, message);
+    }
+
+    /**
+     * Copies the kept part of a column to the start of a new column
+     */
+    private static <A> A moveColumn(A from, A to, int count) {
+        System.arraycopy(from, offset, to, 0, count);
+        return to;
+    }
+
+    /**
+     * Drops the entries older than an entry number from memory
+     */
+    private static void dropBefore(long sequence) {
+        sequence = Math.min(sequence, nextSequence);
+        if (sequence <= firstSequence) {
+            return;
+        }
+        int dropped = (int) (sequence - firstSequence);
+        Arrays.fill(messages, offset, offset + dropped, null);
+        offset += dropped;
+        firstSequence = sequence;
+        if (firstSequence == nextSequence) {
+            offset = 0;
+        }
+        for (Positions positions : actorPositions) {
+            positions.dropBefore(sequence);
+        }
+    }
+
+    private static Positions positionsOf(String actor) {
+        if (actor == null) {
+            return null;
+        }
+        Integer id = actorIds.get(actor);
+        return id != null ? actorPositions.get(id) : null;
+    }
+
+    private static int index(long sequence) {
+        return offset + (int) (sequence - firstSequence);
+    }
+}